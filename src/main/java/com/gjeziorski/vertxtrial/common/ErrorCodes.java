@@ -6,5 +6,10 @@ public class ErrorCodes {
     public static int INSUFFICIENT_FUNDS = 1;
     public static int ACCOUNT_DOESNT_EXIST = 2;
     public static int TECHNICAL_ERROR = 3;
+    public static int SERVICE_UNAVAILABLE = 4;
+    public static int INVALID_CURSOR = 5;
+    public static int RECONCILIATION_RUNNING = 6;
+    public static int VELOCITY_LIMIT_EXCEEDED = 7;
+    public static int HOLD_DOESNT_EXIST = 8;
 
 }
@@ -1,8 +1,13 @@
 package com.gjeziorski.vertxtrial.common;
 
 import static com.gjeziorski.vertxtrial.common.ErrorCodes.ACCOUNT_DOESNT_EXIST;
+import static com.gjeziorski.vertxtrial.common.ErrorCodes.HOLD_DOESNT_EXIST;
 import static com.gjeziorski.vertxtrial.common.ErrorCodes.INSUFFICIENT_FUNDS;
+import static com.gjeziorski.vertxtrial.common.ErrorCodes.INVALID_CURSOR;
+import static com.gjeziorski.vertxtrial.common.ErrorCodes.RECONCILIATION_RUNNING;
+import static com.gjeziorski.vertxtrial.common.ErrorCodes.SERVICE_UNAVAILABLE;
 import static com.gjeziorski.vertxtrial.common.ErrorCodes.TECHNICAL_ERROR;
+import static com.gjeziorski.vertxtrial.common.ErrorCodes.VELOCITY_LIMIT_EXCEEDED;
 
 import com.google.common.collect.ImmutableMap;
 import io.netty.handler.codec.http.HttpResponseStatus;
@@ -14,17 +19,43 @@ public class ErrorCodesTranslator {
     public static final String INVALID_TRANSACTION_AMOUNT_MESSAGE = "Transaction amount should be grater than 0";
     public static final String INVALID_TRANSACTION_TYPE_MESSAGE = "Unsupported transaction type";
     public static final String NOT_NULLABLE_ACCOUNT_ID_MESSAGE = "Source account id cannot be null";
+    public static final String INVALID_EXECUTE_AT_MESSAGE = "Execute at should be an ISO-8601 instant, e.g. 2020-01-29T17:29:50Z";
+    public static final String INVALID_RECORD_TYPE_MESSAGE = "Record type should be account or transaction";
+    public static final String INVALID_ID_MESSAGE = "Ids should be non-negative integers";
+    public static final String INVALID_OWNER_MESSAGE = "Name and surname should have 1 to 20 characters";
+    public static final String INVALID_BALANCE_MESSAGE = "Balance should be a non-negative amount";
+    public static final String INVALID_EXECUTION_TIME_MESSAGE = "Execution time should be an ISO-8601 instant, e.g. 2020-01-29T17:29:50Z";
+    public static final String INVALID_HOLD_AMOUNT_MESSAGE = "Hold amount should be greater than 0";
     public static final String INSUFFICIENT_FUNDS_MESSAGE = "Insufficient funds on the account to charge";
     public static final String ACCOUNT_DOESNT_EXIST_MESSAGE = "Requested account doesn't exist";
     public static final String TECHNICAL_ERROR_MESSAGE = "Technical error";
+    public static final String SERVICE_UNAVAILABLE_MESSAGE = "Service is overloaded, try again later";
+    public static final String INVALID_CURSOR_MESSAGE = "Cursor doesn't belong to the query";
+    public static final String RECONCILIATION_RUNNING_MESSAGE = "Reconciliation is already running";
+    public static final String VELOCITY_LIMIT_EXCEEDED_MESSAGE = "Transaction exceeds velocity limits of the account";
+    public static final String HOLD_DOESNT_EXIST_MESSAGE = "Hold doesn't exist or isn't active anymore";
 
-    private static final Map<Integer, Integer> ERROR_CODES_TO_HTTP_CODES = ImmutableMap.of(INSUFFICIENT_FUNDS,
-        HttpResponseStatus.BAD_REQUEST.code(), ACCOUNT_DOESNT_EXIST, HttpResponseStatus.BAD_REQUEST.code(),
-        TECHNICAL_ERROR, HttpResponseStatus.INTERNAL_SERVER_ERROR.code());
+    private static final Map<Integer, Integer> ERROR_CODES_TO_HTTP_CODES = ImmutableMap.<Integer, Integer>builder()
+        .put(INSUFFICIENT_FUNDS, HttpResponseStatus.BAD_REQUEST.code())
+        .put(ACCOUNT_DOESNT_EXIST, HttpResponseStatus.BAD_REQUEST.code())
+        .put(TECHNICAL_ERROR, HttpResponseStatus.INTERNAL_SERVER_ERROR.code())
+        .put(SERVICE_UNAVAILABLE, HttpResponseStatus.SERVICE_UNAVAILABLE.code())
+        .put(INVALID_CURSOR, HttpResponseStatus.BAD_REQUEST.code())
+        .put(RECONCILIATION_RUNNING, HttpResponseStatus.CONFLICT.code())
+        .put(VELOCITY_LIMIT_EXCEEDED, HttpResponseStatus.FORBIDDEN.code())
+        .put(HOLD_DOESNT_EXIST, HttpResponseStatus.NOT_FOUND.code())
+        .build();
 
-    private static final Map<Integer, String> ERROR_CODES_TO_MESSAGES = ImmutableMap
-        .of(INSUFFICIENT_FUNDS, INSUFFICIENT_FUNDS_MESSAGE, ACCOUNT_DOESNT_EXIST,
-            ACCOUNT_DOESNT_EXIST_MESSAGE, TECHNICAL_ERROR, TECHNICAL_ERROR_MESSAGE);
+    private static final Map<Integer, String> ERROR_CODES_TO_MESSAGES = ImmutableMap.<Integer, String>builder()
+        .put(INSUFFICIENT_FUNDS, INSUFFICIENT_FUNDS_MESSAGE)
+        .put(ACCOUNT_DOESNT_EXIST, ACCOUNT_DOESNT_EXIST_MESSAGE)
+        .put(TECHNICAL_ERROR, TECHNICAL_ERROR_MESSAGE)
+        .put(SERVICE_UNAVAILABLE, SERVICE_UNAVAILABLE_MESSAGE)
+        .put(INVALID_CURSOR, INVALID_CURSOR_MESSAGE)
+        .put(RECONCILIATION_RUNNING, RECONCILIATION_RUNNING_MESSAGE)
+        .put(VELOCITY_LIMIT_EXCEEDED, VELOCITY_LIMIT_EXCEEDED_MESSAGE)
+        .put(HOLD_DOESNT_EXIST, HOLD_DOESNT_EXIST_MESSAGE)
+        .build();
 
     public static void translateErrorCode(final int errorCode, final RoutingContext routingContext) {
         int statusCode = ERROR_CODES_TO_HTTP_CODES
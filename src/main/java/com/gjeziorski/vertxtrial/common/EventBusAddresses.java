@@ -4,10 +4,35 @@ public class EventBusAddresses {
 
     public static final String DATABASE_ACCOUNT_CREATE = "database.account.create";
     public static final String DATABASE_ACCOUNT_LIST = "database.account.list";
+    public static final String DATABASE_ACCOUNT_SUMMARY = "database.account.summary";
+    public static final String DATABASE_ACCOUNT_DELETE = "database.account.delete";
+    public static final String DATABASE_ACCOUNT_HOT = "database.account.hot";
+    public static final String DATABASE_ACCOUNT_BALANCE = "database.account.balance";
+
+    public static final String INDEX_ACCOUNT_TOP = "index.account.top";
+    public static final String INDEX_ACCOUNT_BALANCE_RANGE = "index.account.balance.range";
+    public static final String INDEX_ACCOUNT_SEARCH = "index.account.search";
 
     public static final String DATABASE_TRANSACTION_WITHDRAW = "database.transaction.withdraw";
     public static final String DATABASE_TRANSACTION_DEPOSIT = "database.transaction.deposit";
     public static final String DATABASE_TRANSACTION_TRANSFER = "database.transaction.transfer";
     public static final String DATABASE_TRANSACTION_LIST = "database.transaction.list";
+    public static final String DATABASE_TRANSACTION_SCHEDULE = "database.transaction.schedule";
+
+    public static final String DATABASE_HOLD_PLACE = "database.hold.place";
+    public static final String DATABASE_HOLD_CAPTURE = "database.hold.capture";
+    public static final String DATABASE_HOLD_RELEASE = "database.hold.release";
+
+    public static final String DATABASE_METRICS_POOLS = "database.metrics.pools";
+    public static final String DATABASE_METRICS_VELOCITY = "database.metrics.velocity";
+    public static final String DATABASE_METRICS_NETTING = "database.metrics.netting";
+    public static final String DATABASE_METRICS_HOLDS = "database.metrics.holds";
+    public static final String DATABASE_METRICS_REPLICA = "database.metrics.replica";
+
+    public static final String DATABASE_BULK_EXPORT = "database.bulk.export";
+    public static final String DATABASE_BULK_IMPORT = "database.bulk.import";
+
+    public static final String DATABASE_RECONCILIATION_START = "database.reconciliation.start";
+    public static final String DATABASE_RECONCILIATION_STATUS = "database.reconciliation.status";
 
 }
@@ -1,13 +1,16 @@
 package com.gjeziorski.vertxtrial.common;
 
+import com.fasterxml.jackson.core.JsonFactory;
 import com.fasterxml.jackson.databind.MapperFeature;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
 
 public class ObjectMapperProvider {
 
     private static ObjectMapper instance = null;
+    private static ObjectMapper cborInstance = null;
 
     private ObjectMapperProvider() {
     }
@@ -16,13 +19,29 @@ public class ObjectMapperProvider {
         if (instance == null) {
             synchronized (ObjectMapperProvider.class) {
                 if (instance == null) {
-                    instance = new ObjectMapper().registerModule(new JavaTimeModule())
-                        .configure(MapperFeature.ACCEPT_CASE_INSENSITIVE_PROPERTIES, true)
-                        .configure(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS, false);
+                    instance = createObjectMapper(new JsonFactory());
                 }
             }
         }
         return instance;
     }
 
+    // Same configuration as the JSON mapper, but reads and writes CBOR
+    public static ObjectMapper getCborObjectMapper() {
+        if (cborInstance == null) {
+            synchronized (ObjectMapperProvider.class) {
+                if (cborInstance == null) {
+                    cborInstance = createObjectMapper(new CBORFactory());
+                }
+            }
+        }
+        return cborInstance;
+    }
+
+    private static ObjectMapper createObjectMapper(final JsonFactory jsonFactory) {
+        return new ObjectMapper(jsonFactory).registerModule(new JavaTimeModule())
+            .configure(MapperFeature.ACCEPT_CASE_INSENSITIVE_PROPERTIES, true)
+            .configure(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS, false);
+    }
+
 }
@@ -0,0 +1,54 @@
+package com.gjeziorski.vertxtrial.common;
+
+import io.vertx.core.shareddata.LocalMap;
+import io.vertx.core.shareddata.SharedData;
+
+// Version counters of data served by listings, kept in local maps so that repository bumps them after commit
+// and services read them without a round trip over the event bus.
+// Epoch changes with every start, so tags handed out before a restart never match again.
+// Account list version is the commit sequence: every commit takes the next one and stamps it on the changed account,
+// so a single number orders commits of all accounts. It's bumped after the commit, so every sequence up to a read
+// one is already visible in the database.
+public class VersionRegistry {
+
+    // Event bus header of listing replies, carries the commit sequence the listed data was read at
+    public static final String SEQUENCE_HEADER = "sequence";
+
+    private static final String ACCOUNT_VERSIONS_MAP = "versions.accounts";
+    private static final String GLOBAL_VERSIONS_MAP = "versions.global";
+    private static final String EPOCH_KEY = "epoch";
+    private static final String ACCOUNT_LIST_KEY = "account_list";
+
+    private final LocalMap<Long, Long> accountVersions;
+    private final LocalMap<String, Long> globalVersions;
+
+    public VersionRegistry(final SharedData sharedData) {
+        this.accountVersions = sharedData.getLocalMap(ACCOUNT_VERSIONS_MAP);
+        this.globalVersions = sharedData.getLocalMap(GLOBAL_VERSIONS_MAP);
+        globalVersions.putIfAbsent(EPOCH_KEY, System.currentTimeMillis());
+    }
+
+    public long epoch() {
+        return globalVersions.get(EPOCH_KEY);
+    }
+
+    public long accountVersion(final long accountId) {
+        return accountVersions.getOrDefault(accountId, 0L);
+    }
+
+    public long accountListVersion() {
+        return globalVersions.getOrDefault(ACCOUNT_LIST_KEY, 0L);
+    }
+
+    // Balances are part of the account list, so every change of an account changes the list too
+    public long bumpAccount(final long accountId) {
+        final long sequence = bumpAccountList();
+        accountVersions.merge(accountId, sequence, Math::max);
+        return sequence;
+    }
+
+    public long bumpAccountList() {
+        return globalVersions.merge(ACCOUNT_LIST_KEY, 1L, Long::sum);
+    }
+
+}
@@ -0,0 +1,19 @@
+package com.gjeziorski.vertxtrial.domain;
+
+import java.math.BigDecimal;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class AccountBalance {
+
+    private Long id;
+
+    private BigDecimal balance;
+
+}
@@ -0,0 +1,37 @@
+package com.gjeziorski.vertxtrial.domain;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class AccountDailySummary {
+
+    @JsonProperty("account_id")
+    private Long accountId;
+
+    @JsonProperty("summary_date")
+    private LocalDate summaryDate;
+
+    @JsonProperty("transaction_type")
+    private TransactionType transactionType;
+
+    @JsonProperty("inflow")
+    private BigDecimal inflow;
+
+    @JsonProperty("outflow")
+    private BigDecimal outflow;
+
+    @JsonProperty("transaction_count")
+    private Integer transactionCount;
+
+}
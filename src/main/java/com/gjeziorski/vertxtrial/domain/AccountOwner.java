@@ -0,0 +1,20 @@
+package com.gjeziorski.vertxtrial.domain;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class AccountOwner {
+
+    private Long id;
+
+    private String name;
+
+    private String surname;
+
+}
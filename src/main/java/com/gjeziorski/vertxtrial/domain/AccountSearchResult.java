@@ -0,0 +1,23 @@
+package com.gjeziorski.vertxtrial.domain;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import java.util.List;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class AccountSearchResult {
+
+    @JsonProperty("accounts")
+    private List<AccountOwner> accounts;
+
+    // Null when there are no more results
+    @JsonProperty("next_cursor")
+    private String nextCursor;
+
+}
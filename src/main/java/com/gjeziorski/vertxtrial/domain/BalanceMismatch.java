@@ -0,0 +1,27 @@
+package com.gjeziorski.vertxtrial.domain;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import java.math.BigDecimal;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class BalanceMismatch {
+
+    @JsonProperty("account_id")
+    private Long accountId;
+
+    // Account balance including balance slots
+    @JsonProperty("balance")
+    private BigDecimal balance;
+
+    // Net sum of the transactions of the account
+    @JsonProperty("expected")
+    private BigDecimal expected;
+
+}
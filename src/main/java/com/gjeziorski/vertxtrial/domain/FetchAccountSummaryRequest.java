@@ -0,0 +1,21 @@
+package com.gjeziorski.vertxtrial.domain;
+
+import java.time.LocalDate;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class FetchAccountSummaryRequest {
+
+    private Long accountId;
+
+    private LocalDate from;
+
+    private LocalDate to;
+
+}
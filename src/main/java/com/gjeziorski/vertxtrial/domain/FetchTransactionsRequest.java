@@ -18,4 +18,7 @@ public class FetchTransactionsRequest {
 
     private Instant to;
 
+    // Commit sequence the listing has to include, taken from a write response
+    private Long minSequence;
+
 }
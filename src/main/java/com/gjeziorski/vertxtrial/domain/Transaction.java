@@ -1,6 +1,7 @@
 package com.gjeziorski.vertxtrial.domain;
 
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import java.math.BigDecimal;
 import java.time.Instant;
@@ -34,4 +35,9 @@ public class Transaction {
     @JsonProperty("execution_time")
     private Instant executionTime;
 
+    // Set only on requests, transaction is stored and executed at this time instead of right away
+    @JsonProperty("execute_at")
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Instant executeAt;
+
 }
\ No newline at end of file
@@ -0,0 +1,23 @@
+package com.gjeziorski.vertxtrial.holds;
+
+import java.math.BigDecimal;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class Hold {
+
+    private long id;
+
+    private long accountId;
+
+    private BigDecimal amount;
+
+    private long expiresAtMs;
+
+}
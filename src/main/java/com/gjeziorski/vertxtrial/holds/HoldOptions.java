@@ -0,0 +1,34 @@
+package com.gjeziorski.vertxtrial.holds;
+
+import io.vertx.core.json.JsonObject;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class HoldOptions {
+
+    // Used when a hold is placed without expires_in_ms, longer requested expiries are cut to max_expiry_ms
+    private long defaultExpiryMs;
+
+    private long maxExpiryMs;
+
+    private long sweepIntervalMs;
+
+    // Expired holds released with one statement, a sweep continues with the next batch right away
+    private int sweepBatchSize;
+
+    public static HoldOptions fromJson(final JsonObject json, final HoldOptions defaults) {
+        return HoldOptions.builder()
+            .defaultExpiryMs(json.getLong("default_expiry_ms", defaults.getDefaultExpiryMs()))
+            .maxExpiryMs(json.getLong("max_expiry_ms", defaults.getMaxExpiryMs()))
+            .sweepIntervalMs(json.getLong("sweep_interval_ms", defaults.getSweepIntervalMs()))
+            .sweepBatchSize(json.getInteger("sweep_batch_size", defaults.getSweepBatchSize()))
+            .build();
+    }
+
+}
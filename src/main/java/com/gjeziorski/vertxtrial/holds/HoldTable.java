@@ -0,0 +1,172 @@
+package com.gjeziorski.vertxtrial.holds;
+
+import com.gjeziorski.vertxtrial.domain.Transaction;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+// Active holds by id and the amount held on every account, available balance of an account is its balance minus
+// the held amount and the amount of debits in flight. A hold is claimed by removing it from the table, so only one
+// of capture, release and expiry gets it. The amount stays held until the claim is completed and a failed claim puts
+// the hold back. Debits are reserved here until they're applied to the balance, so holds and debits checked against
+// the same balance can't both take the same funds.
+public class HoldTable {
+
+    private static final Comparator<Hold> EXPIRY_ORDER = Comparator.comparingLong(Hold::getExpiresAtMs)
+        .thenComparingLong(Hold::getId);
+
+    private final Map<Long, Hold> holds = new ConcurrentHashMap<>();
+    private final NavigableSet<Hold> expiring = new ConcurrentSkipListSet<>(EXPIRY_ORDER);
+    private final Map<Long, Reserved> reservedByAccount = new ConcurrentHashMap<>();
+
+    // False when the balance doesn't cover the amount on top of amounts already held and being debited
+    public boolean reserve(final long accountId, final BigDecimal amount, final BigDecimal balance) {
+        final boolean[] reserved = new boolean[1];
+        reservedByAccount.compute(accountId, (id, current) -> {
+            final Reserved account = current == null ? Reserved.NONE : current;
+            reserved[0] = account.available(balance, BigDecimal.ZERO).compareTo(amount) >= 0;
+            return reserved[0] ? account.add(amount, BigDecimal.ZERO) : current;
+        });
+        return reserved[0];
+    }
+
+    // Takes back a reservation which didn't become a hold or the amount of a completed claim
+    public void unreserve(final long accountId, final BigDecimal amount) {
+        reservedByAccount.computeIfPresent(accountId, (id, account) -> account.add(amount.negate(), BigDecimal.ZERO)
+            .orNull());
+    }
+
+    // False when the debit would reach funds held by the account's holds, except the captured hold itself. Accounts
+    // without holds only record the debit, their balance is checked by the database. A capture is covered by its
+    // hold, so it's checked but not reserved.
+    public boolean reserveDebit(final Transaction transaction, final BigDecimal balance,
+        final BigDecimal capturedHold) {
+        final Long accountId = debitedAccountId(transaction);
+        if (accountId == null || balance == null) {
+            return true;
+        }
+        final boolean[] reserved = new boolean[1];
+        reservedByAccount.compute(accountId, (id, current) -> {
+            final Reserved account = current == null ? Reserved.NONE : current;
+            reserved[0] = account.held.signum() == 0
+                || account.available(balance, capturedHold).compareTo(transaction.getAmount()) >= 0;
+            return reserved[0] && capturedHold.signum() == 0
+                ? account.add(BigDecimal.ZERO, transaction.getAmount()) : current;
+        });
+        return reserved[0];
+    }
+
+    // Called once the debit is applied to the balance or wasn't committed
+    public void releaseDebit(final Transaction transaction, final BigDecimal balance,
+        final BigDecimal capturedHold) {
+        final Long accountId = debitedAccountId(transaction);
+        if (accountId == null || balance == null || capturedHold.signum() != 0) {
+            return;
+        }
+        reservedByAccount.computeIfPresent(accountId, (id, account) -> account.add(BigDecimal.ZERO,
+            transaction.getAmount().negate()).orNull());
+    }
+
+    // Holds loaded at startup were checked against the balance when they were placed
+    public void load(final Hold hold) {
+        reservedByAccount.merge(hold.getAccountId(), Reserved.NONE.add(hold.getAmount(), BigDecimal.ZERO),
+            (current, loaded) -> current.add(loaded.held, BigDecimal.ZERO));
+        put(hold);
+    }
+
+    // Adds a reserved hold or puts back a claimed one
+    public void put(final Hold hold) {
+        holds.put(hold.getId(), hold);
+        expiring.add(hold);
+    }
+
+    // Null when the hold doesn't exist, has expired or was claimed already
+    public Hold claim(final long id, final long nowMs) {
+        final Hold hold = holds.get(id);
+        if (hold == null || hold.getExpiresAtMs() <= nowMs || !holds.remove(id, hold)) {
+            return null;
+        }
+        expiring.remove(hold);
+        return hold;
+    }
+
+    public List<Hold> claimExpired(final long nowMs, final int limit) {
+        final List<Hold> claimed = new ArrayList<>();
+        final Iterator<Hold> iterator = expiring.iterator();
+        while (iterator.hasNext() && claimed.size() < limit) {
+            final Hold hold = iterator.next();
+            if (hold.getExpiresAtMs() > nowMs) {
+                break;
+            }
+            if (holds.remove(hold.getId(), hold)) {
+                iterator.remove();
+                claimed.add(hold);
+            }
+        }
+        return claimed;
+    }
+
+    public BigDecimal held(final long accountId) {
+        final Reserved account = reservedByAccount.get(accountId);
+        return account == null ? BigDecimal.ZERO : account.held;
+    }
+
+    public int size() {
+        return holds.size();
+    }
+
+    public int accounts() {
+        return (int) reservedByAccount.values().stream().filter(account -> account.held.signum() > 0).count();
+    }
+
+    public BigDecimal total() {
+        return reservedByAccount.values().stream().map(account -> account.held).reduce(BigDecimal.ZERO,
+            BigDecimal::add);
+    }
+
+    private static Long debitedAccountId(final Transaction transaction) {
+        switch (transaction.getTransactionType()) {
+            case WITHDRAW:
+                return transaction.getDestinationAccountId();
+            case TRANSFER:
+                return transaction.getSourceAccountId();
+            default:
+                return null;
+        }
+    }
+
+    // Amounts of an account held by holds and being debited, replaced as a whole so both change atomically
+    private static final class Reserved {
+
+        private static final Reserved NONE = new Reserved(BigDecimal.ZERO, BigDecimal.ZERO);
+
+        private final BigDecimal held;
+        private final BigDecimal debiting;
+
+        private Reserved(final BigDecimal held, final BigDecimal debiting) {
+            this.held = held;
+            this.debiting = debiting;
+        }
+
+        private BigDecimal available(final BigDecimal balance, final BigDecimal capturedHold) {
+            return balance.subtract(held.subtract(capturedHold)).subtract(debiting);
+        }
+
+        private Reserved add(final BigDecimal heldChange, final BigDecimal debitingChange) {
+            return new Reserved(held.add(heldChange), debiting.add(debitingChange));
+        }
+
+        // Entries without reservations are removed from the table
+        private Reserved orNull() {
+            return held.signum() > 0 || debiting.signum() > 0 ? this : null;
+        }
+
+    }
+
+}
@@ -0,0 +1,105 @@
+package com.gjeziorski.vertxtrial.index;
+
+import com.gjeziorski.vertxtrial.domain.AccountBalance;
+import com.gjeziorski.vertxtrial.domain.Transaction;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+// In-memory copy of account balances ordered by (balance, id). It's loaded at startup and updated with deltas of
+// committed transactions, so queries never touch the database. Deltas commute, so the order in which concurrent
+// commits are applied doesn't matter. Readers iterate the skip list without locks, writers only lock the account.
+public class BalanceIndex {
+
+    private static final Comparator<AccountBalance> BALANCE_ORDER = Comparator
+        .comparing(AccountBalance::getBalance).thenComparing(AccountBalance::getId);
+
+    private final ConcurrentHashMap<Long, BigDecimal> balances = new ConcurrentHashMap<>();
+    private final ConcurrentSkipListSet<AccountBalance> ordered = new ConcurrentSkipListSet<>(BALANCE_ORDER);
+
+    public void put(final long accountId, final BigDecimal balance) {
+        balances.compute(accountId, (id, previous) -> replace(id, previous, balance));
+    }
+
+    public void remove(final long accountId) {
+        balances.computeIfPresent(accountId, (id, previous) -> {
+            ordered.remove(new AccountBalance(id, previous));
+            return null;
+        });
+    }
+
+    public void apply(final Transaction transaction) {
+        switch (transaction.getTransactionType()) {
+            case DEPOSIT:
+                add(transaction.getDestinationAccountId(), transaction.getAmount());
+                break;
+            case WITHDRAW:
+                add(transaction.getDestinationAccountId(), transaction.getAmount().negate());
+                break;
+            case TRANSFER:
+                add(transaction.getSourceAccountId(), transaction.getAmount().negate());
+                add(transaction.getDestinationAccountId(), transaction.getAmount());
+                break;
+            default:
+                throw new IllegalArgumentException("Unsupported transaction type " + transaction.getTransactionType());
+        }
+    }
+
+    // Null when the account isn't known
+    public BigDecimal balance(final long accountId) {
+        return balances.get(accountId);
+    }
+
+    public List<AccountBalance> top(final int limit) {
+        return collect(ordered.descendingIterator(), null, limit);
+    }
+
+    // Accounts with balance in [min, max), ascending, unbounded when min or max is null
+    public List<AccountBalance> range(final BigDecimal min, final BigDecimal max, final int limit) {
+        final NavigableSet<AccountBalance> tail = min == null ? ordered
+            : ordered.tailSet(new AccountBalance(Long.MIN_VALUE, min), true);
+        return collect(tail.iterator(), max, limit);
+    }
+
+    public int size() {
+        return balances.size();
+    }
+
+    private void add(final long accountId, final BigDecimal delta) {
+        balances.computeIfPresent(accountId, (id, previous) -> replace(id, previous, previous.add(delta)));
+    }
+
+    // New entry is added before the old one is removed, so concurrent readers never miss the account. They can meet
+    // it twice meanwhile, so collect keeps the first entry of every account.
+    private BigDecimal replace(final long accountId, final BigDecimal previous, final BigDecimal balance) {
+        ordered.add(new AccountBalance(accountId, balance));
+        if (previous != null && previous.compareTo(balance) != 0) {
+            ordered.remove(new AccountBalance(accountId, previous));
+        }
+        return balance;
+    }
+
+    private static List<AccountBalance> collect(final Iterator<AccountBalance> iterator, final BigDecimal max,
+        final int limit) {
+        final List<AccountBalance> result = new ArrayList<>();
+        final Set<Long> accountIds = new HashSet<>();
+        while (iterator.hasNext() && result.size() < limit) {
+            final AccountBalance accountBalance = iterator.next();
+            if (max != null && accountBalance.getBalance().compareTo(max) >= 0) {
+                break;
+            }
+            if (accountIds.add(accountBalance.getId())) {
+                result.add(accountBalance);
+            }
+        }
+        return result;
+    }
+
+}
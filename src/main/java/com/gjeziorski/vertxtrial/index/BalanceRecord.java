@@ -0,0 +1,17 @@
+package com.gjeziorski.vertxtrial.index;
+
+import java.math.BigDecimal;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+@Data
+@AllArgsConstructor
+public class BalanceRecord {
+
+    private long accountId;
+
+    private BigDecimal balance;
+
+    private long version;
+
+}
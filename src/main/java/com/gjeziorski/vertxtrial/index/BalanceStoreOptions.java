@@ -0,0 +1,29 @@
+package com.gjeziorski.vertxtrial.index;
+
+import io.vertx.core.json.JsonObject;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class BalanceStoreOptions {
+
+    private boolean enabled;
+
+    private String path;
+
+    private int segmentRecords;
+
+    public static BalanceStoreOptions fromJson(final JsonObject json, final BalanceStoreOptions defaults) {
+        return BalanceStoreOptions.builder()
+            .enabled(json.getBoolean("enabled", defaults.isEnabled()))
+            .path(json.getString("path", defaults.getPath()))
+            .segmentRecords(json.getInteger("segment_records", defaults.getSegmentRecords()))
+            .build();
+    }
+
+}
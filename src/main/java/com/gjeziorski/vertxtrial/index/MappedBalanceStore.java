@@ -0,0 +1,299 @@
+package com.gjeziorski.vertxtrial.index;
+
+import com.gjeziorski.vertxtrial.domain.Transaction;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.BitSet;
+import lombok.extern.slf4j.Slf4j;
+
+// Balances in a memory mapped file of fixed size records indexed by account id, which is dense because it comes
+// from an identity column. A record holds the balance in hundredths, a version bumped by every write and a status.
+// The database stays the source of truth: the store is reconciled with it at startup and updated only after
+// commits, like the balance index, so it's never ahead of an acknowledged commit. Balances which don't fit in
+// hundredths as a long mark the record absent and callers fall back to the database, so do account ids from
+// MAX_ACCOUNT_ID on, which don't fit the int indexes of segments and of the reconciliation bit set.
+@Slf4j
+public class MappedBalanceStore {
+
+    private static final int MAGIC = 0x42414c31;
+    private static final int HEADER_SIZE = 64;
+    private static final int RECORD_SIZE = 32;
+    private static final int BALANCE_OFFSET = 0;
+    private static final int VERSION_OFFSET = 8;
+    private static final int STATUS_OFFSET = 16;
+    private static final int ABSENT = 0;
+    private static final int ACTIVE = 1;
+    private static final int LOCK_STRIPES = 256;
+    private static final long MAX_ACCOUNT_ID = Integer.MAX_VALUE;
+
+    private final FileChannel channel;
+    private final MappedByteBuffer header;
+    private final int segmentRecords;
+    private final Object[] locks = new Object[LOCK_STRIPES];
+    private volatile MappedByteBuffer[] segments;
+
+    private MappedBalanceStore(final FileChannel channel, final MappedByteBuffer header, final int segmentRecords,
+        final MappedByteBuffer[] segments) {
+        this.channel = channel;
+        this.header = header;
+        this.segmentRecords = segmentRecords;
+        this.segments = segments;
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            locks[i] = new Object();
+        }
+    }
+
+    // Maps existing segments of the file, a file written with another layout is discarded
+    public static MappedBalanceStore open(final Path path, final int segmentRecords) throws IOException {
+        if (path.getParent() != null) {
+            Files.createDirectories(path.getParent());
+        }
+        final FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+            StandardOpenOption.WRITE);
+        final long size = channel.size();
+        MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE);
+        if (size < HEADER_SIZE || header.getInt(0) != MAGIC || header.getInt(4) != RECORD_SIZE
+            || header.getInt(8) != segmentRecords) {
+            if (size > 0) {
+                log.warn("Balance store {} has a different layout, discarding it", path);
+            }
+            channel.truncate(0);
+            header = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE);
+            header.putInt(0, MAGIC);
+            header.putInt(4, RECORD_SIZE);
+            header.putInt(8, segmentRecords);
+        }
+        final long segmentSize = (long) segmentRecords * RECORD_SIZE;
+        final int existingSegments = (int) ((Math.max(channel.size() - HEADER_SIZE, 0) + segmentSize - 1)
+            / segmentSize);
+        final MappedByteBuffer[] segments = new MappedByteBuffer[existingSegments];
+        for (int i = 0; i < existingSegments; i++) {
+            segments[i] = mapSegment(channel, i, segmentSize);
+        }
+        log.info("Opened balance store {} with {} segments", path, existingSegments);
+        return new MappedBalanceStore(channel, header, segmentRecords, segments);
+    }
+
+    // Null when the account isn't in the store
+    public BalanceRecord get(final long accountId) {
+        final MappedByteBuffer segment = segment(accountId);
+        if (segment == null) {
+            return null;
+        }
+        final int offset = offset(accountId);
+        synchronized (lock(accountId)) {
+            if (segment.getInt(offset + STATUS_OFFSET) != ACTIVE) {
+                return null;
+            }
+            return new BalanceRecord(accountId, BigDecimal.valueOf(segment.getLong(offset + BALANCE_OFFSET), 2),
+                segment.getLong(offset + VERSION_OFFSET));
+        }
+    }
+
+    // Writes the balance only when the record is present and still has the expected version
+    public boolean compareAndSet(final long accountId, final long expectedVersion, final BigDecimal balance) {
+        final MappedByteBuffer segment = segment(accountId);
+        if (segment == null) {
+            return false;
+        }
+        final int offset = offset(accountId);
+        synchronized (lock(accountId)) {
+            if (segment.getInt(offset + STATUS_OFFSET) != ACTIVE
+                || segment.getLong(offset + VERSION_OFFSET) != expectedVersion) {
+                return false;
+            }
+            write(segment, offset, balance);
+            return true;
+        }
+    }
+
+    public void put(final long accountId, final BigDecimal balance) {
+        final MappedByteBuffer segment = segmentForWrite(accountId);
+        if (segment == null) {
+            log.warn("Account {} is beyond the balance store, its balance is read from the database", accountId);
+            return;
+        }
+        synchronized (lock(accountId)) {
+            write(segment, offset(accountId), balance);
+        }
+    }
+
+    public void remove(final long accountId) {
+        final MappedByteBuffer segment = segment(accountId);
+        if (segment == null) {
+            return;
+        }
+        final int offset = offset(accountId);
+        synchronized (lock(accountId)) {
+            segment.putInt(offset + STATUS_OFFSET, ABSENT);
+            segment.putLong(offset + VERSION_OFFSET, segment.getLong(offset + VERSION_OFFSET) + 1);
+        }
+    }
+
+    public void apply(final Transaction transaction) {
+        switch (transaction.getTransactionType()) {
+            case DEPOSIT:
+                add(transaction.getDestinationAccountId(), transaction.getAmount());
+                break;
+            case WITHDRAW:
+                add(transaction.getDestinationAccountId(), transaction.getAmount().negate());
+                break;
+            case TRANSFER:
+                add(transaction.getSourceAccountId(), transaction.getAmount().negate());
+                add(transaction.getDestinationAccountId(), transaction.getAmount());
+                break;
+            default:
+                throw new IllegalArgumentException("Unsupported transaction type " + transaction.getTransactionType());
+        }
+    }
+
+    // True only when the store knows the debited account can't cover the amount and, for transfers, that the
+    // destination exists, so the database would reject the transaction with insufficient funds anyway
+    public boolean lacksFunds(final Transaction transaction) {
+        switch (transaction.getTransactionType()) {
+            case WITHDRAW:
+                return isBelow(transaction.getDestinationAccountId(), transaction.getAmount());
+            case TRANSFER:
+                return get(transaction.getDestinationAccountId()) != null
+                    && isBelow(transaction.getSourceAccountId(), transaction.getAmount());
+            default:
+                return false;
+        }
+    }
+
+    public Reconciliation reconcile() {
+        return new Reconciliation();
+    }
+
+    public void flush() {
+        header.force();
+        for (MappedByteBuffer segment : segments) {
+            segment.force();
+        }
+    }
+
+    public void close() throws IOException {
+        flush();
+        channel.close();
+    }
+
+    private boolean isBelow(final long accountId, final BigDecimal amount) {
+        final BalanceRecord record = get(accountId);
+        return record != null && record.getBalance().compareTo(amount) < 0;
+    }
+
+    // Deltas are applied with compare-and-set, an account removed in the meantime is left absent
+    private void add(final long accountId, final BigDecimal delta) {
+        BalanceRecord record = get(accountId);
+        while (record != null && !compareAndSet(accountId, record.getVersion(), record.getBalance().add(delta))) {
+            record = get(accountId);
+        }
+    }
+
+    private static void write(final MappedByteBuffer segment, final int offset, final BigDecimal balance) {
+        final long version = segment.getLong(offset + VERSION_OFFSET) + 1;
+        try {
+            segment.putLong(offset + BALANCE_OFFSET, balance.setScale(2, RoundingMode.UNNECESSARY)
+                .unscaledValue().longValueExact());
+            segment.putInt(offset + STATUS_OFFSET, ACTIVE);
+        } catch (ArithmeticException e) {
+            segment.putInt(offset + STATUS_OFFSET, ABSENT);
+        }
+        segment.putLong(offset + VERSION_OFFSET, version);
+    }
+
+    private Object lock(final long accountId) {
+        return locks[(int) (accountId & (LOCK_STRIPES - 1))];
+    }
+
+    private int offset(final long accountId) {
+        return (int) (accountId % segmentRecords) * RECORD_SIZE;
+    }
+
+    private MappedByteBuffer segment(final long accountId) {
+        if (accountId < 0 || accountId >= MAX_ACCOUNT_ID) {
+            return null;
+        }
+        final MappedByteBuffer[] current = segments;
+        final int index = Math.toIntExact(accountId / segmentRecords);
+        return index < current.length ? current[index] : null;
+    }
+
+    // Segments are only appended, readers see either the old or the grown array. Null for ids beyond the store.
+    private MappedByteBuffer segmentForWrite(final long accountId) {
+        final MappedByteBuffer segment = segment(accountId);
+        if (segment != null) {
+            return segment;
+        }
+        if (accountId < 0) {
+            throw new IllegalArgumentException("Negative account id " + accountId);
+        }
+        if (accountId >= MAX_ACCOUNT_ID) {
+            return null;
+        }
+        synchronized (this) {
+            final int index = Math.toIntExact(accountId / segmentRecords);
+            final MappedByteBuffer[] current = segments;
+            if (index < current.length) {
+                return current[index];
+            }
+            final MappedByteBuffer[] grown = new MappedByteBuffer[index + 1];
+            System.arraycopy(current, 0, grown, 0, current.length);
+            try {
+                for (int i = current.length; i < grown.length; i++) {
+                    grown[i] = mapSegment(channel, i, (long) segmentRecords * RECORD_SIZE);
+                }
+            } catch (IOException e) {
+                throw new IllegalStateException("Failed to grow balance store", e);
+            }
+            segments = grown;
+            return grown[index];
+        }
+    }
+
+    private static MappedByteBuffer mapSegment(final FileChannel channel, final int index, final long segmentSize)
+        throws IOException {
+        return channel.map(FileChannel.MapMode.READ_WRITE, HEADER_SIZE + index * segmentSize, segmentSize);
+    }
+
+    // Compares the store with balances streamed from the database, once per account. Records which differ are
+    // overwritten and records of accounts which weren't streamed are marked absent when the reconciliation ends.
+    public class Reconciliation {
+
+        private final BitSet seen = new BitSet();
+        private int repaired;
+
+        public void verify(final long accountId, final BigDecimal balance) {
+            if (accountId >= MAX_ACCOUNT_ID) {
+                return;
+            }
+            seen.set(Math.toIntExact(accountId));
+            final BalanceRecord record = get(accountId);
+            if (record == null || record.getBalance().compareTo(balance) != 0) {
+                put(accountId, balance);
+                repaired++;
+            }
+        }
+
+        public int finish() {
+            final long capacity = Math.min((long) segments.length * segmentRecords, MAX_ACCOUNT_ID);
+            for (int accountId = seen.nextClearBit(0); accountId < capacity;
+                accountId = seen.nextClearBit(accountId + 1)) {
+                if (get(accountId) != null) {
+                    remove(accountId);
+                    repaired++;
+                }
+            }
+            flush();
+            return repaired;
+        }
+
+    }
+
+}
@@ -0,0 +1,97 @@
+package com.gjeziorski.vertxtrial.index;
+
+import com.gjeziorski.vertxtrial.domain.AccountOwner;
+import com.gjeziorski.vertxtrial.domain.AccountSearchResult;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+// Case insensitive prefix index over account names and surnames. Every account has one key per column, made of
+// the lower case value and the account id, so all matches of a prefix are a contiguous range of the sorted map and
+// a lookup costs O(log n + limit). Cursor is the last key of the previous page.
+public class NamePrefixIndex {
+
+    private static final char SEPARATOR = '\u0000';
+    private static final char LAST_CHARACTER = '\uffff';
+    private static final int ID_DIGITS = 19;
+
+    private final ConcurrentSkipListMap<String, AccountOwner> entries = new ConcurrentSkipListMap<>();
+    private final ConcurrentHashMap<Long, AccountOwner> owners = new ConcurrentHashMap<>();
+
+    public void put(final AccountOwner owner) {
+        owners.put(owner.getId(), owner);
+        entries.put(key(owner.getName(), owner.getId()), owner);
+        entries.put(key(owner.getSurname(), owner.getId()), owner);
+    }
+
+    public void remove(final long accountId) {
+        final AccountOwner owner = owners.remove(accountId);
+        if (owner != null) {
+            entries.remove(key(owner.getName(), accountId));
+            entries.remove(key(owner.getSurname(), accountId));
+        }
+    }
+
+    // Account whose name and surname both match is returned once per page.
+    // Throws IllegalArgumentException when cursor wasn't returned for the same query.
+    public AccountSearchResult search(final String query, final int limit, final String cursor) {
+        final String prefix = normalize(query);
+        final String from = cursor == null ? prefix : decodeCursor(cursor);
+        if (!from.startsWith(prefix)) {
+            throw new IllegalArgumentException("Cursor doesn't belong to query " + query);
+        }
+        final NavigableMap<String, AccountOwner> matches = entries
+            .subMap(from, cursor == null, prefix + LAST_CHARACTER, false);
+
+        final Map<Long, AccountOwner> page = new LinkedHashMap<>();
+        String lastKey = null;
+        for (Map.Entry<String, AccountOwner> entry : matches.entrySet()) {
+            if (lastKey != null && page.size() == limit) {
+                return new AccountSearchResult(new ArrayList<>(page.values()), encodeCursor(lastKey));
+            }
+            page.putIfAbsent(entry.getValue().getId(), entry.getValue());
+            lastKey = entry.getKey();
+        }
+        return new AccountSearchResult(new ArrayList<>(page.values()), null);
+    }
+
+    public int size() {
+        return owners.size();
+    }
+
+    // Account id is appended as fixed width decimal digits, so keys with the same value are ordered by id and every
+    // key survives the UTF-8 round trip of the cursor
+    private static String key(final String value, final long accountId) {
+        final String normalized = normalize(value);
+        final String id = Long.toString(accountId);
+        final StringBuilder key = new StringBuilder(normalized.length() + 1 + ID_DIGITS).append(normalized)
+            .append(SEPARATOR);
+        for (int i = id.length(); i < ID_DIGITS; i++) {
+            key.append('0');
+        }
+        return key.append(id).toString();
+    }
+
+    private static String normalize(final String value) {
+        return value.trim().toLowerCase(Locale.ROOT);
+    }
+
+    private static String encodeCursor(final String key) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(key.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String decodeCursor(final String cursor) {
+        final String key = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+        if (key.indexOf(SEPARATOR) < 0) {
+            throw new IllegalArgumentException("Malformed cursor");
+        }
+        return key;
+    }
+
+}
@@ -0,0 +1,307 @@
+package com.gjeziorski.vertxtrial.monitoring;
+
+import io.netty.util.concurrent.EventExecutor;
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+import io.vertx.core.eventbus.DeliveryContext;
+import io.vertx.core.http.HttpServerRequest;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.web.RoutingContext;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import lombok.extern.slf4j.Slf4j;
+
+// Every event loop gets a probe scheduled directly on its Netty executor: how late the probe runs is the loop lag
+// and CPU time of the loop thread between probes is its utilization. Route handlers and event bus deliveries mark
+// the loop busy while they run and a watchdog thread samples stacks of loops busy for longer than the threshold,
+// grouped by route and address. Loops stuck outside of tracked handlers show up as overdue probes and their stacks
+// are sampled as unattributed.
+@Slf4j
+public class EventLoopMonitor {
+
+    private static final String REPLY_ADDRESS_PREFIX = "__vertx.reply.";
+    private static final String REPLY_LABEL = "reply";
+    private static final Pattern ID_SEGMENT = Pattern.compile("/\\d+(?=/|$)");
+    private static final String STACK_SEPARATOR = "\n";
+
+    private final Vertx vertx;
+    private final EventLoopMonitorOptions options;
+    private final long thresholdNanos;
+    private final ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+    private final ThreadLocal<Loop> currentLoop = new ThreadLocal<>();
+    private final List<Loop> loops = new CopyOnWriteArrayList<>();
+    private final Map<String, Hotspot> routes = new ConcurrentHashMap<>();
+    private final Map<String, Hotspot> addresses = new ConcurrentHashMap<>();
+    private final Hotspot unattributed = new Hotspot();
+    private final Handler<DeliveryContext<Object>> deliveryInterceptor = this::trackDelivery;
+    private ScheduledExecutorService watchdog;
+    private volatile boolean closed;
+
+    public EventLoopMonitor(final Vertx vertx, final EventLoopMonitorOptions options) {
+        this.vertx = vertx;
+        this.options = options;
+        this.thresholdNanos = TimeUnit.MILLISECONDS.toNanos(options.getThresholdMs());
+    }
+
+    public EventLoopMonitorOptions options() {
+        return options;
+    }
+
+    public void start() {
+        for (EventExecutor executor : vertx.nettyEventLoopGroup()) {
+            executor.execute(() -> {
+                final Loop loop = new Loop(Thread.currentThread());
+                currentLoop.set(loop);
+                loops.add(loop);
+                scheduleProbe(executor, loop);
+            });
+        }
+        vertx.eventBus().addInboundInterceptor(deliveryInterceptor);
+        watchdog = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            final Thread thread = new Thread(runnable, "event-loop-monitor");
+            thread.setDaemon(true);
+            return thread;
+        });
+        watchdog.scheduleAtFixedRate(this::check, options.getCheckIntervalMs(), options.getCheckIntervalMs(),
+            TimeUnit.MILLISECONDS);
+        log.info("Monitoring event loops, handlers blocking for more than {} ms are sampled",
+            options.getThresholdMs());
+    }
+
+    public void close() {
+        closed = true;
+        if (watchdog != null) {
+            watchdog.shutdownNow();
+            vertx.eventBus().removeInboundInterceptor(deliveryInterceptor);
+        }
+    }
+
+    public void trackRoute(final RoutingContext routingContext) {
+        final HttpServerRequest request = routingContext.request();
+        track(routes, request.method().name(), request.path(), routingContext::next);
+    }
+
+    public JsonObject metrics() {
+        final JsonObject metrics = new JsonObject().put("enabled", options.isEnabled());
+        if (!options.isEnabled()) {
+            return metrics;
+        }
+        final long now = System.nanoTime();
+        return metrics
+            .put("threshold_ms", options.getThresholdMs())
+            .put("event_loops", new JsonArray(loops.stream()
+                .sorted(Comparator.comparing(loop -> loop.thread.getName()))
+                .map(loop -> loop.metrics(now))
+                .collect(Collectors.toList())))
+            .put("routes", metrics(routes))
+            .put("addresses", metrics(addresses))
+            .put("unattributed", unattributed.metrics());
+    }
+
+    private void trackDelivery(final DeliveryContext<Object> deliveryContext) {
+        track(addresses, null, deliveryContext.message().address(), deliveryContext::next);
+    }
+
+    // Nested handlers are accounted to the outermost one
+    private void track(final Map<String, Hotspot> group, final String method, final String name,
+        final Runnable handler) {
+        final Loop loop = currentLoop.get();
+        if (loop == null || loop.startedAt != 0) {
+            handler.run();
+            return;
+        }
+        loop.begin(group, method, name);
+        try {
+            handler.run();
+        } finally {
+            final long elapsed = loop.end();
+            if (elapsed >= thresholdNanos) {
+                hotspot(group, method, name).recordBlocked(elapsed);
+            }
+        }
+    }
+
+    private void scheduleProbe(final EventExecutor executor, final Loop loop) {
+        if (closed) {
+            return;
+        }
+        final long dueAt = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(options.getProbeIntervalMs());
+        loop.probeDueAt = dueAt;
+        try {
+            executor.schedule(() -> {
+                loop.measure(System.nanoTime() - dueAt, currentThreadCpuTime());
+                scheduleProbe(executor, loop);
+            }, options.getProbeIntervalMs(), TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            log.debug("Event loop {} is shutting down", loop.thread.getName());
+        }
+    }
+
+    private long currentThreadCpuTime() {
+        return threadMXBean.isCurrentThreadCpuTimeSupported() ? threadMXBean.getCurrentThreadCpuTime() : -1;
+    }
+
+    // Fields of the loop are read before the stack is taken and thrown away when the loop moved on meanwhile
+    private void check() {
+        final long now = System.nanoTime();
+        for (Loop loop : loops) {
+            final long startedAt = loop.startedAt;
+            if (startedAt != 0) {
+                if (now - startedAt >= thresholdNanos) {
+                    final Map<String, Hotspot> group = loop.group;
+                    final String method = loop.method;
+                    final String name = loop.name;
+                    final StackTraceElement[] stack = loop.thread.getStackTrace();
+                    if (loop.startedAt == startedAt) {
+                        hotspot(group, method, name).recordSample(stack);
+                    }
+                }
+            } else {
+                final long probeDueAt = loop.probeDueAt;
+                if (now - probeDueAt >= thresholdNanos) {
+                    final StackTraceElement[] stack = loop.thread.getStackTrace();
+                    if (loop.startedAt == 0 && loop.probeDueAt == probeDueAt) {
+                        unattributed.recordSample(stack);
+                    }
+                }
+            }
+        }
+    }
+
+    private Hotspot hotspot(final Map<String, Hotspot> group, final String method, final String name) {
+        return group.computeIfAbsent(label(method, name), label -> new Hotspot());
+    }
+
+    // Ids in paths are replaced by the route parameter, replies are grouped together as their addresses are unique
+    private static String label(final String method, final String name) {
+        if (method != null) {
+            return method + " " + ID_SEGMENT.matcher(name).replaceAll("/:id");
+        }
+        return name.startsWith(REPLY_ADDRESS_PREFIX) ? REPLY_LABEL : name;
+    }
+
+    private static JsonObject metrics(final Map<String, Hotspot> group) {
+        final JsonObject metrics = new JsonObject();
+        group.forEach((label, hotspot) -> metrics.put(label, hotspot.metrics()));
+        return metrics;
+    }
+
+    private static long toMillis(final long nanos) {
+        return TimeUnit.NANOSECONDS.toMillis(nanos);
+    }
+
+    // Written by its own loop thread, read by the watchdog and metrics
+    private static class Loop {
+
+        private final Thread thread;
+        private volatile long startedAt;
+        private volatile Map<String, Hotspot> group;
+        private volatile String method;
+        private volatile String name;
+        private volatile long probeDueAt = Long.MAX_VALUE;
+        private volatile long lagNanos;
+        private volatile long maxLagNanos;
+        private volatile double utilization;
+        private long lastProbeAt;
+        private long lastCpuTime = -1;
+
+        private Loop(final Thread thread) {
+            this.thread = thread;
+        }
+
+        private void begin(final Map<String, Hotspot> group, final String method, final String name) {
+            this.group = group;
+            this.method = method;
+            this.name = name;
+            startedAt = System.nanoTime();
+        }
+
+        private long end() {
+            final long elapsed = System.nanoTime() - startedAt;
+            startedAt = 0;
+            return elapsed;
+        }
+
+        private void measure(final long lag, final long cpuTime) {
+            final long now = System.nanoTime();
+            lagNanos = lag;
+            maxLagNanos = Math.max(maxLagNanos, lag);
+            if (cpuTime >= 0 && lastCpuTime >= 0) {
+                utilization = Math.min(1.0, (double) (cpuTime - lastCpuTime) / (now - lastProbeAt));
+            }
+            lastProbeAt = now;
+            lastCpuTime = cpuTime;
+        }
+
+        private JsonObject metrics(final long now) {
+            final long started = startedAt;
+            return new JsonObject()
+                .put("thread", thread.getName())
+                .put("lag_ms", toMillis(lagNanos))
+                .put("max_lag_ms", toMillis(maxLagNanos))
+                .put("utilization", Math.round(utilization * 1000) / 1000.0)
+                .put("busy_ms", started == 0 ? 0 : toMillis(now - started));
+        }
+
+    }
+
+    private class Hotspot {
+
+        private final LongAdder blocked = new LongAdder();
+        private final LongAdder blockedNanos = new LongAdder();
+        private final AtomicLong maxNanos = new AtomicLong();
+        private final LongAdder samples = new LongAdder();
+        private final LongAdder otherStacks = new LongAdder();
+        private final Map<String, LongAdder> stacks = new ConcurrentHashMap<>();
+
+        private void recordBlocked(final long nanos) {
+            blocked.increment();
+            blockedNanos.add(nanos);
+            maxNanos.accumulateAndGet(nanos, Math::max);
+        }
+
+        private void recordSample(final StackTraceElement[] stack) {
+            samples.increment();
+            final String key = Arrays.stream(stack).limit(options.getStackDepth()).map(StackTraceElement::toString)
+                .collect(Collectors.joining(STACK_SEPARATOR));
+            final LongAdder count = stacks.size() < options.getMaxStacks()
+                ? stacks.computeIfAbsent(key, k -> new LongAdder()) : stacks.get(key);
+            if (count == null) {
+                otherStacks.increment();
+            } else {
+                count.increment();
+            }
+        }
+
+        private JsonObject metrics() {
+            return new JsonObject()
+                .put("blocked", blocked.sum())
+                .put("blocked_ms", toMillis(blockedNanos.sum()))
+                .put("max_ms", toMillis(maxNanos.get()))
+                .put("samples", samples.sum())
+                .put("stacks", new JsonArray(stacks.entrySet().stream()
+                    .sorted(Comparator.comparingLong(entry -> -entry.getValue().sum()))
+                    .map(entry -> new JsonObject().put("count", entry.getValue().sum())
+                        .put("frames", new JsonArray(Arrays.asList(entry.getKey().split(STACK_SEPARATOR)))))
+                    .collect(Collectors.toList())))
+                .put("other_stacks", otherStacks.sum());
+        }
+
+    }
+
+}
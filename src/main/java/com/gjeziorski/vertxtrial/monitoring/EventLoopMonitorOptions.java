@@ -0,0 +1,41 @@
+package com.gjeziorski.vertxtrial.monitoring;
+
+import io.vertx.core.json.JsonObject;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class EventLoopMonitorOptions {
+
+    private boolean enabled;
+
+    // Lag and utilization of every event loop are measured by a probe scheduled on it at this interval
+    private long probeIntervalMs;
+
+    // Handlers running longer than this are counted as blocking and their stacks are sampled
+    private long thresholdMs;
+
+    private long checkIntervalMs;
+
+    private int stackDepth;
+
+    // Distinct stacks kept per route or address, further stacks are only counted
+    private int maxStacks;
+
+    public static EventLoopMonitorOptions fromJson(final JsonObject json, final EventLoopMonitorOptions defaults) {
+        return EventLoopMonitorOptions.builder()
+            .enabled(json.getBoolean("enabled", defaults.isEnabled()))
+            .probeIntervalMs(json.getLong("probe_interval_ms", defaults.getProbeIntervalMs()))
+            .thresholdMs(json.getLong("threshold_ms", defaults.getThresholdMs()))
+            .checkIntervalMs(json.getLong("check_interval_ms", defaults.getCheckIntervalMs()))
+            .stackDepth(json.getInteger("stack_depth", defaults.getStackDepth()))
+            .maxStacks(json.getInteger("max_stacks", defaults.getMaxStacks()))
+            .build();
+    }
+
+}
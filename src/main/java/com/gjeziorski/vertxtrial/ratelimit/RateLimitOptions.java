@@ -0,0 +1,43 @@
+package com.gjeziorski.vertxtrial.ratelimit;
+
+import io.vertx.core.json.JsonObject;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class RateLimitOptions {
+
+    private boolean enabled;
+
+    // Client is identified by this header when it's present, otherwise by its remote address
+    private String clientIdHeader;
+
+    private double clientRate;
+
+    private int clientBurst;
+
+    // Applies separately to the source and destination account of every transaction
+    private double accountRate;
+
+    private int accountBurst;
+
+    private long idleEvictionMs;
+
+    public static RateLimitOptions fromJson(final JsonObject json, final RateLimitOptions defaults) {
+        return RateLimitOptions.builder()
+            .enabled(json.getBoolean("enabled", defaults.isEnabled()))
+            .clientIdHeader(json.getString("client_id_header", defaults.getClientIdHeader()))
+            .clientRate(json.getDouble("client_rate", defaults.getClientRate()))
+            .clientBurst(json.getInteger("client_burst", defaults.getClientBurst()))
+            .accountRate(json.getDouble("account_rate", defaults.getAccountRate()))
+            .accountBurst(json.getInteger("account_burst", defaults.getAccountBurst()))
+            .idleEvictionMs(json.getLong("idle_eviction_ms", defaults.getIdleEvictionMs()))
+            .build();
+    }
+
+}
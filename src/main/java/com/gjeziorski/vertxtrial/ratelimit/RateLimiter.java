@@ -0,0 +1,149 @@
+package com.gjeziorski.vertxtrial.ratelimit;
+
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.shareddata.Shareable;
+import io.vertx.core.shareddata.SharedData;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+// Buckets per client and per account. A single limiter is kept in a local map, so all instances
+// of the HTTP verticle draw from the same buckets.
+public class RateLimiter implements Shareable {
+
+    private static final String LOCAL_MAP = "rate_limiter";
+    private static final String INSTANCE_KEY = "instance";
+
+    private final RateLimitOptions options;
+    private final Limit clientLimit;
+    private final Limit accountLimit;
+
+    public RateLimiter(final RateLimitOptions options) {
+        this.options = options;
+        this.clientLimit = new Limit(options.getClientRate(), options.getClientBurst());
+        this.accountLimit = new Limit(options.getAccountRate(), options.getAccountBurst());
+    }
+
+    public static RateLimiter shared(final SharedData sharedData, final RateLimitOptions options) {
+        return sharedData.<String, RateLimiter>getLocalMap(LOCAL_MAP)
+            .computeIfAbsent(INSTANCE_KEY, key -> new RateLimiter(options));
+    }
+
+    public RateLimitOptions options() {
+        return options;
+    }
+
+    // Both return 0 when the request may proceed, otherwise nanoseconds after which it may be retried
+    public long acquireForClient(final String clientId) {
+        return clientLimit.acquire(clientId, System.nanoTime());
+    }
+
+    // Takes a token of every given account or none of them, null ids are skipped
+    public long acquireForAccounts(final Long... accountIds) {
+        final long now = System.nanoTime();
+        for (int i = 0; i < accountIds.length; i++) {
+            if (isSkipped(accountIds, i)) {
+                continue;
+            }
+            final long waitNanos = accountLimit.acquire(accountIds[i], now);
+            if (waitNanos > 0) {
+                for (int j = 0; j < i; j++) {
+                    if (!isSkipped(accountIds, j)) {
+                        accountLimit.release(accountIds[j]);
+                    }
+                }
+                return waitNanos;
+            }
+        }
+        return 0;
+    }
+
+    // Self-transfer names the same account twice, it's charged once
+    private static boolean isSkipped(final Long[] accountIds, final int index) {
+        if (accountIds[index] == null) {
+            return true;
+        }
+        for (int i = 0; i < index; i++) {
+            if (accountIds[index].equals(accountIds[i])) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Buckets of deleted accounts would otherwise stay until they refill
+    public void evictAccounts(final Collection<Long> accountIds) {
+        accountIds.forEach(accountLimit::evict);
+    }
+
+    public void evictIdle() {
+        final long now = System.nanoTime();
+        clientLimit.evictIdle(now);
+        accountLimit.evictIdle(now);
+    }
+
+    public JsonObject metrics() {
+        return new JsonObject()
+            .put("enabled", options.isEnabled())
+            .put("client", clientLimit.metrics())
+            .put("account", accountLimit.metrics());
+    }
+
+    private static class Limit {
+
+        private final double rate;
+        private final int burst;
+        private final Map<Object, TokenBucket> buckets = new ConcurrentHashMap<>();
+        private final LongAdder allowed = new LongAdder();
+        private final LongAdder throttled = new LongAdder();
+
+        private Limit(final double rate, final int burst) {
+            this.rate = rate;
+            this.burst = burst;
+        }
+
+        private long acquire(final Object key, final long now) {
+            final long waitNanos = buckets.computeIfAbsent(key, k -> new TokenBucket(rate, burst, now))
+                .tryAcquire(now);
+            if (waitNanos == 0) {
+                allowed.increment();
+            } else {
+                throttled.increment();
+            }
+            return waitNanos;
+        }
+
+        // The bucket may have been evicted meanwhile, a new one is full anyway
+        private void release(final Object key) {
+            final TokenBucket bucket = buckets.get(key);
+            if (bucket != null) {
+                bucket.release();
+            }
+            allowed.decrement();
+        }
+
+        private void evict(final Object key) {
+            buckets.remove(key);
+        }
+
+        private void evictIdle(final long now) {
+            buckets.forEach((key, bucket) -> {
+                if (bucket.isFull(now)) {
+                    buckets.remove(key, bucket);
+                }
+            });
+        }
+
+        private JsonObject metrics() {
+            return new JsonObject()
+                .put("rate", rate)
+                .put("burst", burst)
+                .put("allowed", allowed.sum())
+                .put("throttled", throttled.sum())
+                .put("buckets", buckets.size());
+        }
+
+    }
+
+}
@@ -0,0 +1,44 @@
+package com.gjeziorski.vertxtrial.ratelimit;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+// Token bucket in its GCRA form: the whole state is the theoretical arrival time of the next request,
+// so taking a token is a single compare-and-set and the bucket can be shared by any number of event loops
+public class TokenBucket {
+
+    private final long emissionIntervalNanos;
+    private final long burstToleranceNanos;
+    private final AtomicLong theoreticalArrivalTime;
+
+    public TokenBucket(final double tokensPerSecond, final int capacity, final long nowNanos) {
+        this.emissionIntervalNanos = (long) (1_000_000_000L / tokensPerSecond);
+        this.burstToleranceNanos = emissionIntervalNanos * capacity;
+        this.theoreticalArrivalTime = new AtomicLong(nowNanos);
+    }
+
+    // Returns 0 when a token was taken, otherwise nanoseconds until the next token is available
+    public long tryAcquire(final long nowNanos) {
+        while (true) {
+            final long current = theoreticalArrivalTime.get();
+            final long next = Math.max(current, nowNanos) + emissionIntervalNanos;
+            final long waitNanos = next - nowNanos - burstToleranceNanos;
+            if (waitNanos > 0) {
+                return waitNanos;
+            }
+            if (theoreticalArrivalTime.compareAndSet(current, next)) {
+                return 0;
+            }
+        }
+    }
+
+    // Gives back a token taken by tryAcquire, for requests rejected by another limit after all
+    public void release() {
+        theoreticalArrivalTime.addAndGet(-emissionIntervalNanos);
+    }
+
+    // Full bucket behaves exactly like a new one, so it can be dropped
+    public boolean isFull(final long nowNanos) {
+        return theoreticalArrivalTime.get() <= nowNanos;
+    }
+
+}
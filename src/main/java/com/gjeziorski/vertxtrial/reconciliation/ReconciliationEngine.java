@@ -0,0 +1,284 @@
+package com.gjeziorski.vertxtrial.reconciliation;
+
+import com.gjeziorski.vertxtrial.domain.BalanceMismatch;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import java.sql.Array;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.stream.LongStream;
+import lombok.extern.slf4j.Slf4j;
+
+// Checks that balance of every account (including balance slots) equals the net sum of its transactions.
+// Runs on its own fork-join pool with plain JDBC connections, so it takes neither event loop time nor connections
+// of the service pools. Each partition is checked by a single read-only statement, which sees balances and
+// transactions of the same moment: under MVCC it reads a snapshot without locks, under LOCKS it holds shared table
+// locks only for that statement. Partitions are paced to accounts_per_second, so writers are only ever delayed
+// by one partition.
+// Finished runs are recorded in RECONCILIATION_RUN. With incremental set, runs only check accounts recorded in
+// ACCOUNT_CHANGE (created or touched by transactions), hot accounts and earlier mismatches, otherwise every run is
+// full. Changes are read, checked and removed page_size accounts at a time, a row is removed only if no change
+// was committed after it was read, so ids assigned out of commit order don't matter.
+// Accounts changed without a transaction row are only found by full runs.
+@Slf4j
+public class ReconciliationEngine {
+
+    private static final String CHECK_PARTITION_SQL = "SELECT A.ID, "
+        + "A.BALANCE + COALESCE((SELECT SUM(S.BALANCE) FROM ACCOUNT_BALANCE_SLOT S WHERE S.ACCOUNT_ID = A.ID), 0) "
+        + "+ COALESCE((SELECT R.AMOUNT FROM NETTING_RESERVE R WHERE R.ACCOUNT_ID = A.ID), 0), "
+        + "COALESCE((SELECT SUM(CASE WHEN T.TRANSACTION_TYPE = 'WITHDRAW' THEN -T.AMOUNT ELSE T.AMOUNT END) FROM TRANSACTION T WHERE T.DESTINATION_ACCOUNT_ID = A.ID), 0) "
+        + "- COALESCE((SELECT SUM(T.AMOUNT) FROM TRANSACTION T WHERE T.SOURCE_ACCOUNT_ID = A.ID), 0) "
+        + "FROM ACCOUNT A WHERE A.ID IN (UNNEST(?))";
+    private static final String SELECT_ALL_ACCOUNTS_SQL = "SELECT ID FROM ACCOUNT";
+    private static final String SELECT_HOT_ACCOUNTS_SQL = "SELECT DISTINCT ACCOUNT_ID FROM ACCOUNT_BALANCE_SLOT";
+    private static final String COUNT_CHANGES_SQL = "SELECT COUNT(*) FROM ACCOUNT_CHANGE";
+    private static final String SELECT_CHANGES_SQL = "SELECT ACCOUNT_ID, VERSION FROM ACCOUNT_CHANGE WHERE ACCOUNT_ID > ? ORDER BY ACCOUNT_ID LIMIT ?";
+    private static final String DELETE_CHANGE_SQL = "DELETE FROM ACCOUNT_CHANGE WHERE ACCOUNT_ID = ? AND VERSION = ?";
+    private static final String INSERT_RUN_SQL = "INSERT INTO RECONCILIATION_RUN(FULL_RUN) VALUES (?)";
+    private static final String FINISH_RUN_SQL = "UPDATE RECONCILIATION_RUN SET FINISHED_AT = NOW(), ACCOUNTS_CHECKED = ?, MISMATCHES = ? WHERE ID = ?";
+
+    private final String url;
+    private final ReconciliationOptions options;
+    private final ForkJoinPool pool;
+    private final AtomicBoolean running = new AtomicBoolean();
+    private final AtomicLong nextPartitionAt = new AtomicLong(System.nanoTime());
+    private final AtomicLong checked = new AtomicLong();
+    private final AtomicInteger partitionsDone = new AtomicInteger();
+    private volatile boolean fullRun;
+    private volatile Instant startedAt;
+    private volatile Instant finishedAt;
+    private volatile int accounts;
+    private volatile int partitions;
+    private volatile String error;
+    private volatile List<BalanceMismatch> mismatches = new ArrayList<>();
+
+    public ReconciliationEngine(final String url, final ReconciliationOptions options) {
+        this.url = url;
+        this.options = options;
+        this.pool = new ForkJoinPool(options.getParallelism());
+    }
+
+    // Returns false when a run is already in progress
+    public boolean start(final boolean full) {
+        if (!running.compareAndSet(false, true)) {
+            return false;
+        }
+        fullRun = full || !options.isIncremental();
+        startedAt = Instant.now();
+        finishedAt = null;
+        error = null;
+        checked.set(0);
+        partitionsDone.set(0);
+        accounts = 0;
+        partitions = 0;
+        pool.execute(this::run);
+        return true;
+    }
+
+    public JsonObject status() {
+        final JsonArray mismatchesJson = new JsonArray();
+        mismatches.forEach(mismatch -> mismatchesJson.add(JsonObject.mapFrom(mismatch)));
+        return new JsonObject()
+            .put("running", running.get())
+            .put("full", fullRun)
+            .put("started_at", startedAt == null ? null : startedAt.toString())
+            .put("finished_at", finishedAt == null ? null : finishedAt.toString())
+            .put("accounts", accounts)
+            .put("checked", checked.get())
+            .put("partitions", partitions)
+            .put("partitions_done", partitionsDone.get())
+            .put("mismatches", mismatchesJson)
+            .put("error", error);
+    }
+
+    int partitionSize() {
+        return options.getPartitionSize();
+    }
+
+    List<BalanceMismatch> checkPartition(final long[] accountIds, final int from, final int to) {
+        pace(to - from);
+        final List<BalanceMismatch> found = new ArrayList<>();
+        try (Connection connection = open()) {
+            connection.setReadOnly(true);
+            connection.setAutoCommit(false);
+            connection.setTransactionIsolation(Connection.TRANSACTION_REPEATABLE_READ);
+            final Array ids = connection.createArrayOf("BIGINT",
+                LongStream.of(Arrays.copyOfRange(accountIds, from, to)).boxed().toArray());
+            try (PreparedStatement statement = connection.prepareStatement(CHECK_PARTITION_SQL)) {
+                statement.setArray(1, ids);
+                try (ResultSet resultSet = statement.executeQuery()) {
+                    while (resultSet.next()) {
+                        if (resultSet.getBigDecimal(2).compareTo(resultSet.getBigDecimal(3)) != 0) {
+                            found.add(BalanceMismatch.builder().accountId(resultSet.getLong(1))
+                                .balance(resultSet.getBigDecimal(2)).expected(resultSet.getBigDecimal(3)).build());
+                        }
+                    }
+                }
+            }
+            connection.commit();
+        } catch (SQLException e) {
+            throw new IllegalStateException("Failed to check accounts " + accountIds[from] + " to "
+                + accountIds[to - 1], e);
+        }
+        checked.addAndGet(to - from);
+        partitionsDone.incrementAndGet();
+        return found;
+    }
+
+    private void run() {
+        final List<BalanceMismatch> previousMismatches = mismatches;
+        try (Connection connection = open()) {
+            final long runId = insertRun(connection);
+            final List<BalanceMismatch> found = fullRun ? check(selectAllAccounts(connection))
+                : checkChanged(connection, previousMismatches);
+            finishRun(connection, runId, checked.get(), found.size());
+            mismatches = found;
+            if (found.isEmpty()) {
+                log.info("Reconciled {} accounts, no mismatches", checked.get());
+            } else {
+                log.error("Reconciled {} accounts, {} mismatches: {}", checked.get(), found.size(), found);
+            }
+        } catch (SQLException | RuntimeException e) {
+            log.error("Reconciliation failed", e);
+            error = e.getMessage();
+        } finally {
+            finishedAt = Instant.now();
+            running.set(false);
+        }
+    }
+
+    // Hot accounts aren't recorded as changed and earlier mismatches are checked again, both go first
+    private List<BalanceMismatch> checkChanged(final Connection connection,
+        final List<BalanceMismatch> previousMismatches) throws SQLException {
+        final TreeSet<Long> accountIds = selectAccounts(connection, SELECT_HOT_ACCOUNTS_SQL);
+        previousMismatches.forEach(mismatch -> accountIds.add(mismatch.getAccountId()));
+        accounts = accountIds.size() + (int) selectLong(connection, COUNT_CHANGES_SQL);
+        final List<BalanceMismatch> found = check(accountIds.stream().mapToLong(Long::longValue).toArray());
+        long afterAccountId = Long.MIN_VALUE;
+        while (true) {
+            final TreeMap<Long, Long> changes = selectChanges(connection, afterAccountId);
+            if (changes.isEmpty()) {
+                return found;
+            }
+            found.addAll(check(changes.keySet().stream().mapToLong(Long::longValue).toArray()));
+            deleteChanges(connection, changes);
+            afterAccountId = changes.lastKey();
+        }
+    }
+
+    private List<BalanceMismatch> check(final long[] accountIds) {
+        if (accountIds.length == 0) {
+            return new ArrayList<>();
+        }
+        partitions += (accountIds.length + options.getPartitionSize() - 1) / options.getPartitionSize();
+        return new ReconciliationTask(this, accountIds, 0, accountIds.length).invoke();
+    }
+
+    // Spreads partitions evenly over time, a worker waits until its partition's turn
+    private void pace(final int partitionAccounts) {
+        if (options.getAccountsPerSecond() <= 0) {
+            return;
+        }
+        final long cost = (long) (partitionAccounts * 1_000_000_000L / options.getAccountsPerSecond());
+        final long now = System.nanoTime();
+        final long startAt = nextPartitionAt.getAndUpdate(next -> Math.max(next, now) + cost);
+        if (startAt > now) {
+            LockSupport.parkNanos(startAt - now);
+        }
+    }
+
+    private Connection open() throws SQLException {
+        return DriverManager.getConnection(url);
+    }
+
+    private long selectLong(final Connection connection, final String sql) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(sql);
+            ResultSet resultSet = statement.executeQuery()) {
+            resultSet.next();
+            return resultSet.getLong(1);
+        }
+    }
+
+    private long[] selectAllAccounts(final Connection connection) throws SQLException {
+        final TreeSet<Long> accountIds = selectAccounts(connection, SELECT_ALL_ACCOUNTS_SQL);
+        accounts = accountIds.size();
+        return accountIds.stream().mapToLong(Long::longValue).toArray();
+    }
+
+    private TreeSet<Long> selectAccounts(final Connection connection, final String sql) throws SQLException {
+        final TreeSet<Long> accountIds = new TreeSet<>();
+        try (PreparedStatement statement = connection.prepareStatement(sql);
+            ResultSet resultSet = statement.executeQuery()) {
+            while (resultSet.next()) {
+                accountIds.add(resultSet.getLong(1));
+            }
+        }
+        return accountIds;
+    }
+
+    // Next page of changed account ids with the versions read, changes are read before the accounts are checked
+    private TreeMap<Long, Long> selectChanges(final Connection connection, final long afterAccountId)
+        throws SQLException {
+        final TreeMap<Long, Long> changes = new TreeMap<>();
+        try (PreparedStatement statement = connection.prepareStatement(SELECT_CHANGES_SQL)) {
+            statement.setLong(1, afterAccountId);
+            statement.setInt(2, options.getPageSize());
+            try (ResultSet resultSet = statement.executeQuery()) {
+                while (resultSet.next()) {
+                    changes.put(resultSet.getLong(1), resultSet.getLong(2));
+                }
+            }
+        }
+        return changes;
+    }
+
+    // Rows changed again since they were read keep their newer version and stay for the next run
+    private void deleteChanges(final Connection connection, final Map<Long, Long> changes) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(DELETE_CHANGE_SQL)) {
+            for (Map.Entry<Long, Long> change : changes.entrySet()) {
+                statement.setLong(1, change.getKey());
+                statement.setLong(2, change.getValue());
+                statement.addBatch();
+            }
+            statement.executeBatch();
+        }
+    }
+
+    private long insertRun(final Connection connection) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(INSERT_RUN_SQL,
+            PreparedStatement.RETURN_GENERATED_KEYS)) {
+            statement.setBoolean(1, fullRun);
+            statement.executeUpdate();
+            try (ResultSet keys = statement.getGeneratedKeys()) {
+                keys.next();
+                return keys.getLong(1);
+            }
+        }
+    }
+
+    private void finishRun(final Connection connection, final long runId, final long accountsChecked,
+        final int mismatchesFound) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(FINISH_RUN_SQL)) {
+            statement.setLong(1, accountsChecked);
+            statement.setInt(2, mismatchesFound);
+            statement.setLong(3, runId);
+            statement.executeUpdate();
+        }
+    }
+
+}
@@ -0,0 +1,44 @@
+package com.gjeziorski.vertxtrial.reconciliation;
+
+import io.vertx.core.json.JsonObject;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ReconciliationOptions {
+
+    // Runs are started periodically when set, otherwise only from the admin endpoint
+    private long intervalMs;
+
+    // Changed accounts are tracked so that runs not asked to be full check only them, tracking costs a write per
+    // account of every transaction. Without it every run is full.
+    private boolean incremental;
+
+    private int parallelism;
+
+    // Accounts checked by a single statement
+    private int partitionSize;
+
+    // Checked accounts per second across all workers, 0 disables throttling
+    private double accountsPerSecond;
+
+    // Changed accounts read, checked and cleared at a time by incremental runs
+    private int pageSize;
+
+    public static ReconciliationOptions fromJson(final JsonObject json, final ReconciliationOptions defaults) {
+        return ReconciliationOptions.builder()
+            .intervalMs(json.getLong("interval_ms", defaults.getIntervalMs()))
+            .incremental(json.getBoolean("incremental", defaults.isIncremental()))
+            .parallelism(json.getInteger("parallelism", defaults.getParallelism()))
+            .partitionSize(json.getInteger("partition_size", defaults.getPartitionSize()))
+            .accountsPerSecond(json.getDouble("accounts_per_second", defaults.getAccountsPerSecond()))
+            .pageSize(json.getInteger("page_size", defaults.getPageSize()))
+            .build();
+    }
+
+}
@@ -0,0 +1,40 @@
+package com.gjeziorski.vertxtrial.reconciliation;
+
+import com.gjeziorski.vertxtrial.domain.BalanceMismatch;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.RecursiveTask;
+
+// Splits sorted account ids on partition boundaries until a single partition is left, which is checked by one
+// statement
+class ReconciliationTask extends RecursiveTask<List<BalanceMismatch>> {
+
+    private final ReconciliationEngine engine;
+    private final long[] accountIds;
+    private final int from;
+    private final int to;
+
+    ReconciliationTask(final ReconciliationEngine engine, final long[] accountIds, final int from, final int to) {
+        this.engine = engine;
+        this.accountIds = accountIds;
+        this.from = from;
+        this.to = to;
+    }
+
+    @Override
+    protected List<BalanceMismatch> compute() {
+        final int partitionSize = engine.partitionSize();
+        final int partitions = (to - from + partitionSize - 1) / partitionSize;
+        if (partitions <= 1) {
+            return engine.checkPartition(accountIds, from, to);
+        }
+        final int middle = from + partitions / 2 * partitionSize;
+        final ReconciliationTask left = new ReconciliationTask(engine, accountIds, from, middle);
+        left.fork();
+        final List<BalanceMismatch> mismatches = new ArrayList<>(
+            new ReconciliationTask(engine, accountIds, middle, to).compute());
+        mismatches.addAll(left.join());
+        return mismatches;
+    }
+
+}
@@ -1,18 +1,42 @@
 package com.gjeziorski.vertxtrial.repository;
 
+import static com.gjeziorski.vertxtrial.common.ErrorCodes.ACCOUNT_DOESNT_EXIST;
+import static com.gjeziorski.vertxtrial.common.ErrorCodes.INVALID_CURSOR;
 import static com.gjeziorski.vertxtrial.common.ErrorCodes.TECHNICAL_ERROR;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.gjeziorski.vertxtrial.common.ErrorCodesTranslator;
 import com.gjeziorski.vertxtrial.common.ObjectMapperProvider;
+import com.gjeziorski.vertxtrial.common.VersionRegistry;
 import com.gjeziorski.vertxtrial.domain.Account;
+import com.gjeziorski.vertxtrial.domain.AccountBalance;
+import com.gjeziorski.vertxtrial.domain.AccountDailySummary;
+import com.gjeziorski.vertxtrial.domain.AccountOwner;
+import com.gjeziorski.vertxtrial.domain.AccountSearchResult;
+import com.gjeziorski.vertxtrial.domain.FetchAccountSummaryRequest;
+import com.gjeziorski.vertxtrial.domain.TransactionType;
+import com.gjeziorski.vertxtrial.index.BalanceIndex;
+import com.gjeziorski.vertxtrial.index.BalanceRecord;
+import com.gjeziorski.vertxtrial.index.MappedBalanceStore;
+import com.gjeziorski.vertxtrial.index.NamePrefixIndex;
+import com.gjeziorski.vertxtrial.serialization.ContentFormat;
+import com.gjeziorski.vertxtrial.serialization.Payload;
+import com.gjeziorski.vertxtrial.velocity.VelocityRules;
+import io.reactivex.Completable;
 import io.reactivex.Single;
 import io.vertx.core.json.JsonArray;
 import io.vertx.core.json.JsonObject;
 import io.vertx.ext.sql.ResultSet;
 import io.vertx.ext.sql.UpdateResult;
+import io.vertx.reactivex.core.Vertx;
 import io.vertx.reactivex.core.eventbus.Message;
-import io.vertx.reactivex.ext.jdbc.JDBCClient;
+import io.vertx.reactivex.ext.sql.SQLClientHelper;
+import io.vertx.reactivex.ext.sql.SQLRowStream;
 import java.io.IOException;
+import java.math.BigDecimal;
+import java.sql.PreparedStatement;
+import java.sql.Statement;
+import java.time.LocalDate;
 import java.util.ArrayList;
 import java.util.List;
 import lombok.extern.slf4j.Slf4j;
@@ -20,54 +44,412 @@ import lombok.extern.slf4j.Slf4j;
 @Slf4j
 public class AccountsRepository {
 
-    private static final String INSERT_NEW_ACCOUNT_SQL = "INSERT INTO ACCOUNT(BALANCE, NAME, SURNAME) VALUES (0, ?, ?)";
+    private static final String INSERT_NEW_ACCOUNT_SQL = "INSERT INTO ACCOUNT(ID, BALANCE, NAME, SURNAME) VALUES (?, 0, ?, ?)";
+    private static final String TOTAL_BALANCE_COLUMN = "A.BALANCE + COALESCE((SELECT SUM(S.BALANCE) FROM ACCOUNT_BALANCE_SLOT S WHERE S.ACCOUNT_ID = A.ID), 0) + COALESCE((SELECT R.AMOUNT FROM NETTING_RESERVE R WHERE R.ACCOUNT_ID = A.ID), 0) AS BALANCE";
+    private static final String SELECT_ACCOUNTS_SQL = "SELECT A.ID, A.NAME, A.SURNAME, " + TOTAL_BALANCE_COLUMN + " FROM ACCOUNT A ORDER BY A.ID";
+    private static final String SELECT_ACCOUNT_BALANCE_SQL = "SELECT " + TOTAL_BALANCE_COLUMN + " FROM ACCOUNT A WHERE A.ID = ?";
+    private static final String SELECT_HOT_ACCOUNTS_SQL = "SELECT ACCOUNT_ID, COUNT(*) FROM ACCOUNT_BALANCE_SLOT GROUP BY ACCOUNT_ID";
+    private static final String LOCK_ACCOUNT_ID_SQL = "SELECT ID FROM ACCOUNT WHERE ID = ? FOR UPDATE";
+    private static final String COUNT_BALANCE_SLOTS_SQL = "SELECT COUNT(*) FROM ACCOUNT_BALANCE_SLOT WHERE ACCOUNT_ID = ?";
+    private static final String INSERT_BALANCE_SLOT_SQL = "INSERT INTO ACCOUNT_BALANCE_SLOT(ACCOUNT_ID, SLOT, BALANCE) VALUES (?, ?, 0)";
+    private static final String SELECT_ACCOUNT_ID_SQL = "SELECT ID FROM ACCOUNT WHERE ID = ?";
+    private static final String FETCH_ACCOUNT_DAILY_SUMMARY_SQL = "SELECT * FROM ACCOUNT_DAILY_SUMMARY WHERE ACCOUNT_ID = ? AND SUMMARY_DATE BETWEEN ? AND ? ORDER BY SUMMARY_DATE, TRANSACTION_TYPE";
+    private static final String DELETE_ACCOUNT_TRANSACTIONS_SQL = "DELETE FROM TRANSACTION WHERE SOURCE_ACCOUNT_ID = ? OR DESTINATION_ACCOUNT_ID = ?";
+    private static final String DELETE_ACCOUNT_DAILY_SUMMARY_SQL = "DELETE FROM ACCOUNT_DAILY_SUMMARY WHERE ACCOUNT_ID = ?";
+    private static final String DELETE_ACCOUNT_SCHEDULED_TRANSACTIONS_SQL = "DELETE FROM SCHEDULED_TRANSACTION WHERE SOURCE_ACCOUNT_ID = ? OR DESTINATION_ACCOUNT_ID = ?";
+    private static final String DELETE_ACCOUNT_BALANCE_SLOTS_SQL = "DELETE FROM ACCOUNT_BALANCE_SLOT WHERE ACCOUNT_ID = ?";
+    private static final String DELETE_ACCOUNT_NETTING_RESERVE_SQL = "DELETE FROM NETTING_RESERVE WHERE ACCOUNT_ID = ?";
+    private static final String DELETE_ACCOUNT_HOLDS_SQL = "DELETE FROM FUNDS_HOLD WHERE ACCOUNT_ID = ?";
+    private static final String DELETE_ACCOUNT_SQL = "DELETE FROM ACCOUNT WHERE ID = ?";
 
-    private JDBCClient jdbcClient;
+    private static final String ACCOUNT_LIST_KEY = "accounts";
+
+    private static final LocalDate FIRST_SUMMARY_DATE = LocalDate.of(1, 1, 1);
+    private static final LocalDate LAST_SUMMARY_DATE = LocalDate.of(9999, 12, 31);
+
+    private ConnectionScheduler connectionScheduler;
+    private IdAllocator idAllocator;
+    private BalanceIndex balanceIndex;
+    private MappedBalanceStore balanceStore;
+    private NamePrefixIndex namePrefixIndex;
+    private VersionRegistry versionRegistry;
+    private HotAccounts hotAccounts;
+    private VelocityRules velocityRules;
+    private VirtualThreads virtualThreads;
+    private ReadReplica<String, List<Account>> accountListReplica;
     private ObjectMapper objectMapper;
 
-    public AccountsRepository(final JDBCClient jdbcClient) {
-        this.jdbcClient = jdbcClient;
+    // Virtual threads are null in REACTIVE threading mode. Creating and listing accounts and reading summaries run
+    // as blocking JDBC on virtual threads when they're set, startup and admin operations stay reactive. Balance
+    // store is null when it's disabled.
+    public AccountsRepository(final Vertx vertx, final ConnectionScheduler connectionScheduler,
+        final IdAllocator idAllocator, final BalanceIndex balanceIndex, final MappedBalanceStore balanceStore,
+        final NamePrefixIndex namePrefixIndex, final VersionRegistry versionRegistry, final HotAccounts hotAccounts,
+        final VelocityRules velocityRules, final ReplicaOptions replicaOptions, final VirtualThreads virtualThreads) {
+        this.connectionScheduler = connectionScheduler;
+        this.idAllocator = idAllocator;
+        this.balanceIndex = balanceIndex;
+        this.balanceStore = balanceStore;
+        this.namePrefixIndex = namePrefixIndex;
+        this.versionRegistry = versionRegistry;
+        this.hotAccounts = hotAccounts;
+        this.velocityRules = velocityRules;
+        this.virtualThreads = virtualThreads;
+        this.accountListReplica = new ReadReplica<>(vertx, ACCOUNT_LIST_KEY, replicaOptions, versionRegistry,
+            key -> versionRegistry.accountListVersion(), key -> selectAccounts());
         this.objectMapper = ObjectMapperProvider.getObjectMapper();
     }
 
     public Single<UpdateResult> createAccount(Message<Object> message) {
         log.info("inside create account");
         final Account account = deserializeAccount(message);
-        return jdbcClient.rxGetConnection().flatMap(connection -> {
-            final Single<UpdateResult> updateResult = connection.rxUpdateWithParams(INSERT_NEW_ACCOUNT_SQL,
-                new JsonArray().add(account.getName()).add(account.getSurname()));
-            return updateResult.doAfterTerminate(connection::close);
-        }).doOnSuccess(updateResult -> {
-            log.info("Account created: " + updateResult.getKeys().toString());
-            message.reply(updateResult.getKeys().getLong(0));
-        }).doOnError(throwable -> {
-            log.error("Failed to create account", throwable);
-            message.fail(TECHNICAL_ERROR, "Failed to create account");
-        });
+        return insertAccount(account)
+            .doOnSuccess(updateResult -> {
+                log.info("Account created: " + updateResult.getKeys().toString());
+                final long accountId = updateResult.getKeys().getLong(0);
+                balanceIndex.put(accountId, BigDecimal.ZERO);
+                if (balanceStore != null) {
+                    balanceStore.put(accountId, BigDecimal.ZERO);
+                }
+                namePrefixIndex.put(new AccountOwner(accountId, account.getName(), account.getSurname()));
+                versionRegistry.bumpAccount(accountId);
+                message.reply(accountId);
+            }).doOnError(throwable -> {
+                log.error("Failed to create account", throwable);
+                message.fail(RepositoryFailures.failureCode(throwable), "Failed to create account");
+            });
     }
 
     // Serving JSON directly from database feels wrong
     // Optimally I would put transformation / serialization logic in service layer
     // I decided to put it here because serialization is required in order to use eventBus
-    public Single<String> listAccounts(Message<Object> message) {
-        return jdbcClient.rxGetConnection().flatMap(connection -> {
-            final Single<String> result = connection.rxQuery("SELECT * FROM Account").map(this::mapAccounts)
-                .map(accounts -> objectMapper.writeValueAsString(
-                    accounts));
-            return result.doAfterTerminate(connection::close);
-        }).doOnSuccess(result -> {
-            log.info("Fetched list of accounts from db");
-            message.reply(result);
-        }).doOnError(throwable -> {
-            log.error("Failed to fetch accounts", throwable);
-            message.fail(TECHNICAL_ERROR, "Failed to fetch accounts");
+    public Single<Payload> listAccounts(Message<Object> message) {
+        final String body = message.body() == null ? "" : message.body().toString();
+        final long minSequence = body.isEmpty() ? 0 : new JsonObject(body).getLong("min_sequence", 0L);
+        return accountListReplica.read(ACCOUNT_LIST_KEY, minSequence)
+            .flatMap(copy -> Single.fromCallable(() -> Payload.write(copy.value(),
+                ContentFormat.fromName(message.headers().get(ContentFormat.HEADER))))
+                .doOnSuccess(result -> {
+                    log.info("Fetched list of accounts");
+                    accountListReplica.reply(message, result, copy);
+                }))
+            .doOnError(throwable -> {
+                log.error("Failed to fetch accounts", throwable);
+                message.fail(RepositoryFailures.failureCode(throwable), "Failed to fetch accounts");
+            });
+    }
+
+    public JsonObject replicaMetrics() {
+        return accountListReplica.metrics();
+    }
+
+    // Streams all accounts into in-memory indexes, reconciles the balance store with the same rows and loads hot
+    // accounts, used once at startup
+    public Completable loadIndexes() {
+        final MappedBalanceStore.Reconciliation reconciliation = balanceStore != null ? balanceStore.reconcile()
+            : null;
+        return connectionScheduler.usingReadConnection(connection -> connection.rxQueryStream(SELECT_ACCOUNTS_SQL)
+            .flatMapPublisher(SQLRowStream::toFlowable)
+            .doOnNext(row -> {
+                final BigDecimal balance = new BigDecimal(row.getValue(3).toString());
+                balanceIndex.put(row.getLong(0), balance);
+                if (reconciliation != null) {
+                    reconciliation.verify(row.getLong(0), balance);
+                }
+                namePrefixIndex.put(new AccountOwner(row.getLong(0), row.getString(1), row.getString(2)));
+            })
+            .count()
+            .doOnSuccess(count -> {
+                log.info("Loaded {} accounts into indexes", count);
+                if (reconciliation != null) {
+                    log.info("Reconciled balance store, repaired {} records", reconciliation.finish());
+                }
+            })
+            .flatMap(count -> connection.rxQuery(SELECT_HOT_ACCOUNTS_SQL)))
+            .doOnSuccess(resultSet -> {
+                resultSet.getResults().forEach(row -> hotAccounts.put(row.getLong(0), row.getInteger(1)));
+                log.info("Loaded {} hot accounts", hotAccounts.size());
+            })
+            .ignoreElement();
+    }
+
+    // Adds balance slots up to the requested count, slots are never removed so that their balances stay in place
+    public Single<JsonObject> markHot(Message<Object> message) {
+        final JsonObject request = new JsonObject(message.body().toString());
+        final long accountId = request.getLong("id");
+        final int slots = request.getInteger("slots");
+        return connectionScheduler.usingWriteConnection(connection -> connection
+            .rxQueryWithParams(LOCK_ACCOUNT_ID_SQL, new JsonArray().add(accountId))
+            .flatMap(account -> {
+                if (account.getNumRows() == 0) {
+                    return Single.<Integer>error(new TransactionAbortedException(ACCOUNT_DOESNT_EXIST));
+                }
+                return connection.rxQueryWithParams(COUNT_BALANCE_SLOTS_SQL, new JsonArray().add(accountId))
+                    .flatMap(existing -> {
+                        final int existingSlots = existing.getResults().get(0).getInteger(0);
+                        final List<JsonArray> slotsParameters = new ArrayList<>();
+                        for (int slot = existingSlots; slot < slots; slot++) {
+                            slotsParameters.add(new JsonArray().add(accountId).add(slot));
+                        }
+                        if (slotsParameters.isEmpty()) {
+                            return Single.just(existingSlots);
+                        }
+                        return connection.rxBatchWithParams(INSERT_BALANCE_SLOT_SQL, slotsParameters)
+                            .map(inserted -> slots);
+                    });
+            })
+            .compose(SQLClientHelper.txSingleTransformer(connection)))
+            .map(slotCount -> new JsonObject().put("id", accountId).put("slots", slotCount))
+            .doOnSuccess(result -> {
+                hotAccounts.put(accountId, result.getInteger("slots"));
+                log.info("Account {} uses {} balance slots", accountId, result.getInteger("slots"));
+                message.reply(result.toString());
+            }).doOnError(throwable -> {
+                if (throwable instanceof TransactionAbortedException) {
+                    final int errorCode = ((TransactionAbortedException) throwable).getErrorCode();
+                    message.fail(errorCode, ErrorCodesTranslator.translateErrorCode(errorCode));
+                    return;
+                }
+                log.error("Failed to mark account as hot", throwable);
+                message.fail(RepositoryFailures.failureCode(throwable), "Failed to mark account as hot");
+            });
+    }
+
+    // Answered from the name prefix index without touching the database
+    public void searchAccounts(Message<Object> message) {
+        final JsonObject query = new JsonObject(message.body().toString());
+        final AccountSearchResult result;
+        try {
+            result = namePrefixIndex.search(query.getString("q"), query.getInteger("limit"),
+                query.getString("cursor"));
+        } catch (IllegalArgumentException e) {
+            message.fail(INVALID_CURSOR, ErrorCodesTranslator.translateErrorCode(INVALID_CURSOR));
+            return;
+        }
+        try {
+            message.reply(objectMapper.writeValueAsString(result));
+        } catch (IOException e) {
+            log.error("Failed to serialize account search result", e);
+            message.fail(TECHNICAL_ERROR, "Failed to serialize account search result");
+        }
+    }
+
+    // Answered from the balance index without touching the database
+    public void getTopAccounts(Message<Object> message) {
+        final JsonObject query = new JsonObject(message.body().toString());
+        replyWithAccountBalances(message, balanceIndex.top(query.getInteger("limit")));
+    }
+
+    // Answered from the balance index without touching the database
+    public void getAccountsInBalanceRange(Message<Object> message) {
+        final JsonObject query = new JsonObject(message.body().toString());
+        replyWithAccountBalances(message, balanceIndex.range(toBigDecimal(query.getString("min")),
+            toBigDecimal(query.getString("max")), query.getInteger("limit")));
+    }
+
+    // Answered from the balance store when the account is in it, from the database otherwise
+    public Single<String> getAccountBalance(Message<Object> message) {
+        final long accountId = Long.parseLong(message.body().toString());
+        final BalanceRecord record = balanceStore != null ? balanceStore.get(accountId) : null;
+        final Single<BigDecimal> balance = record != null ? Single.just(record.getBalance())
+            : connectionScheduler.usingReadConnection(connection -> connection
+                .rxQueryWithParams(SELECT_ACCOUNT_BALANCE_SQL, new JsonArray().add(accountId))
+                .flatMap(resultSet -> resultSet.getNumRows() == 0
+                    ? Single.error(new TransactionAbortedException(ACCOUNT_DOESNT_EXIST))
+                    : Single.just(new BigDecimal(resultSet.getResults().get(0).getValue(0).toString()))));
+        return balance
+            .map(value -> objectMapper.writeValueAsString(new AccountBalance(accountId, value)))
+            .doOnSuccess(message::reply)
+            .doOnError(throwable -> {
+                if (throwable instanceof TransactionAbortedException) {
+                    final int errorCode = ((TransactionAbortedException) throwable).getErrorCode();
+                    message.fail(errorCode, ErrorCodesTranslator.translateErrorCode(errorCode));
+                    return;
+                }
+                log.error("Failed to fetch account balance", throwable);
+                message.fail(RepositoryFailures.failureCode(throwable), "Failed to fetch account balance");
+            });
+    }
+
+    // Reads one row per day and transaction type from ACCOUNT_DAILY_SUMMARY instead of aggregating transactions
+    public Single<String> getAccountSummary(Message<Object> message) {
+        return Single.fromCallable(() -> objectMapper.readValue(message.body().toString(),
+            FetchAccountSummaryRequest.class))
+            .flatMap(this::selectAccountDailySummaries)
+            .map(summaries -> objectMapper.writeValueAsString(summaries))
+            .doOnSuccess(result -> {
+                log.info("Fetched account summary from db");
+                message.reply(result);
+            }).doOnError(throwable -> {
+                if (throwable instanceof TransactionAbortedException) {
+                    final int errorCode = ((TransactionAbortedException) throwable).getErrorCode();
+                    message.fail(errorCode, ErrorCodesTranslator.translateErrorCode(errorCode));
+                    return;
+                }
+                log.error("Failed to fetch account summary", throwable);
+                message.fail(RepositoryFailures.failureCode(throwable), "Failed to fetch account summary");
+            });
+    }
+
+    // Not exposed over HTTP, used to remove scratch accounts created by warm-up together with their transactions
+    public Single<Integer> deleteAccounts(Message<Object> message) {
+        final List<JsonArray> transactionsParameters = new ArrayList<>();
+        final List<JsonArray> accountsParameters = new ArrayList<>();
+        for (Object accountId : new JsonArray(message.body().toString())) {
+            transactionsParameters.add(new JsonArray().add(accountId).add(accountId));
+            accountsParameters.add(new JsonArray().add(accountId));
+        }
+        return connectionScheduler.usingWriteConnection(connection -> connection
+            .rxBatchWithParams(DELETE_ACCOUNT_TRANSACTIONS_SQL, transactionsParameters)
+            .flatMap(result -> connection.rxBatchWithParams(DELETE_ACCOUNT_SCHEDULED_TRANSACTIONS_SQL,
+                transactionsParameters))
+            .flatMap(result -> connection.rxBatchWithParams(DELETE_ACCOUNT_DAILY_SUMMARY_SQL, accountsParameters))
+            .flatMap(result -> connection.rxBatchWithParams(DELETE_ACCOUNT_BALANCE_SLOTS_SQL, accountsParameters))
+            .flatMap(result -> connection.rxBatchWithParams(DELETE_ACCOUNT_NETTING_RESERVE_SQL, accountsParameters))
+            .flatMap(result -> connection.rxBatchWithParams(DELETE_ACCOUNT_HOLDS_SQL, accountsParameters))
+            .flatMap(result -> connection.rxBatchWithParams(DELETE_ACCOUNT_SQL, accountsParameters))
+            .map(deleted -> deleted.stream().mapToInt(Integer::intValue).sum())
+            .compose(SQLClientHelper.txSingleTransformer(connection)))
+            .doOnSuccess(deleted -> {
+                accountsParameters.forEach(parameters -> {
+                    balanceIndex.remove(parameters.getLong(0));
+                    if (balanceStore != null) {
+                        balanceStore.remove(parameters.getLong(0));
+                    }
+                    namePrefixIndex.remove(parameters.getLong(0));
+                    hotAccounts.remove(parameters.getLong(0));
+                    if (velocityRules != null) {
+                        velocityRules.evict(parameters.getLong(0));
+                    }
+                    versionRegistry.bumpAccount(parameters.getLong(0));
+                });
+                log.info("Deleted {} accounts", deleted);
+                message.reply(deleted);
+            }).doOnError(throwable -> {
+                log.error("Failed to delete accounts", throwable);
+                message.fail(RepositoryFailures.failureCode(throwable), "Failed to delete accounts");
+            });
+    }
+
+    // Id comes from the allocator, so the insert doesn't read generated keys back
+    private Single<UpdateResult> insertAccount(final Account account) {
+        return idAllocator.nextId().flatMap(accountId -> {
+            if (virtualThreads != null) {
+                return virtualThreads.call(() -> connectionScheduler.withWriteConnection(connection -> {
+                    try (PreparedStatement statement = connection.prepareStatement(INSERT_NEW_ACCOUNT_SQL)) {
+                        statement.setLong(1, accountId);
+                        statement.setString(2, account.getName());
+                        statement.setString(3, account.getSurname());
+                        return new UpdateResult(statement.executeUpdate(), new JsonArray().add(accountId));
+                    }
+                }));
+            }
+            return connectionScheduler.usingWriteConnection(connection -> connection.rxUpdateWithParams(
+                INSERT_NEW_ACCOUNT_SQL, new JsonArray().add(accountId).add(account.getName())
+                    .add(account.getSurname())))
+                .map(updated -> new UpdateResult(updated.getUpdated(), new JsonArray().add(accountId)));
         });
     }
 
-    private List<Account> mapAccounts(final ResultSet resultSet) throws IOException {
+    private Single<List<Account>> selectAccounts() {
+        if (virtualThreads != null) {
+            return virtualThreads.call(() -> connectionScheduler.withReadConnection(connection -> {
+                final List<Account> accounts = new ArrayList<>();
+                try (Statement statement = connection.createStatement();
+                    java.sql.ResultSet resultSet = statement.executeQuery(SELECT_ACCOUNTS_SQL)) {
+                    while (resultSet.next()) {
+                        accounts.add(Account.builder()
+                            .id(resultSet.getLong("ID"))
+                            .balance(resultSet.getBigDecimal("BALANCE"))
+                            .name(resultSet.getString("NAME"))
+                            .surname(resultSet.getString("SURNAME"))
+                            .build());
+                    }
+                }
+                return accounts;
+            }));
+        }
+        return connectionScheduler.usingReadConnection(connection -> connection.rxQuery(SELECT_ACCOUNTS_SQL)
+            .map(this::mapAccounts));
+    }
+
+    private Single<List<AccountDailySummary>> selectAccountDailySummaries(final FetchAccountSummaryRequest request) {
+        final LocalDate from = request.getFrom() != null ? request.getFrom() : FIRST_SUMMARY_DATE;
+        final LocalDate to = request.getTo() != null ? request.getTo() : LAST_SUMMARY_DATE;
+        if (virtualThreads != null) {
+            return virtualThreads.call(() -> connectionScheduler.withReadConnection(connection -> {
+                try (PreparedStatement statement = connection.prepareStatement(SELECT_ACCOUNT_ID_SQL)) {
+                    statement.setLong(1, request.getAccountId());
+                    try (java.sql.ResultSet resultSet = statement.executeQuery()) {
+                        if (!resultSet.next()) {
+                            throw new TransactionAbortedException(ACCOUNT_DOESNT_EXIST);
+                        }
+                    }
+                }
+                final List<AccountDailySummary> summaries = new ArrayList<>();
+                try (PreparedStatement statement = connection.prepareStatement(FETCH_ACCOUNT_DAILY_SUMMARY_SQL)) {
+                    statement.setLong(1, request.getAccountId());
+                    statement.setString(2, from.toString());
+                    statement.setString(3, to.toString());
+                    try (java.sql.ResultSet resultSet = statement.executeQuery()) {
+                        while (resultSet.next()) {
+                            summaries.add(AccountDailySummary.builder()
+                                .accountId(resultSet.getLong("ACCOUNT_ID"))
+                                .summaryDate(resultSet.getDate("SUMMARY_DATE").toLocalDate())
+                                .transactionType(TransactionType.valueOf(resultSet.getString("TRANSACTION_TYPE")))
+                                .inflow(resultSet.getBigDecimal("INFLOW"))
+                                .outflow(resultSet.getBigDecimal("OUTFLOW"))
+                                .transactionCount(resultSet.getInt("TRANSACTION_COUNT"))
+                                .build());
+                        }
+                    }
+                }
+                return summaries;
+            }));
+        }
+        return connectionScheduler.usingReadConnection(connection -> connection
+            .rxQueryWithParams(SELECT_ACCOUNT_ID_SQL, new JsonArray().add(request.getAccountId()))
+            .flatMap(account -> {
+                if (account.getNumRows() == 0) {
+                    return Single.error(new TransactionAbortedException(ACCOUNT_DOESNT_EXIST));
+                }
+                final JsonArray parameters = new JsonArray().add(request.getAccountId())
+                    .add(from.toString()).add(to.toString());
+                return connection.rxQueryWithParams(FETCH_ACCOUNT_DAILY_SUMMARY_SQL, parameters)
+                    .map(this::mapAccountDailySummaries);
+            }));
+    }
+
+    private List<Account> mapAccounts(final ResultSet resultSet) {
         List<Account> result = new ArrayList<>();
+        for (JsonObject row : resultSet.getRows()) {
+            result.add(Account.builder()
+                .id(row.getLong("ID"))
+                .balance(new BigDecimal(row.getValue("BALANCE").toString()))
+                .name(row.getString("NAME"))
+                .surname(row.getString("SURNAME"))
+                .build());
+        }
+        return result;
+    }
+
+    private void replyWithAccountBalances(final Message<Object> message, final List<AccountBalance> accountBalances) {
+        try {
+            message.reply(objectMapper.writeValueAsString(accountBalances));
+        } catch (IOException e) {
+            log.error("Failed to serialize account balances", e);
+            message.fail(TECHNICAL_ERROR, "Failed to serialize account balances");
+        }
+    }
+
+    private static BigDecimal toBigDecimal(final String value) {
+        return value == null ? null : new BigDecimal(value);
+    }
+
+    private List<AccountDailySummary> mapAccountDailySummaries(final ResultSet resultSet) throws IOException {
+        List<AccountDailySummary> result = new ArrayList<>();
         for (JsonObject jsonObject : resultSet.getRows()) {
-            result.add(objectMapper.readValue(jsonObject.toString(), Account.class));
+            result.add(objectMapper.readValue(jsonObject.toString(), AccountDailySummary.class));
         }
         return result;
     }
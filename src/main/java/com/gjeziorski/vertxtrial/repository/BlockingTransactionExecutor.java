@@ -0,0 +1,258 @@
+package com.gjeziorski.vertxtrial.repository;
+
+import static com.gjeziorski.vertxtrial.common.ErrorCodes.ACCOUNT_DOESNT_EXIST;
+import static com.gjeziorski.vertxtrial.common.ErrorCodes.INSUFFICIENT_FUNDS;
+import static com.gjeziorski.vertxtrial.common.ErrorCodes.OK;
+
+import com.gjeziorski.vertxtrial.domain.Transaction;
+import io.reactivex.Single;
+import java.math.BigDecimal;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.concurrent.ThreadLocalRandom;
+import lombok.extern.slf4j.Slf4j;
+
+// Straight-line JDBC version of the pessimistic, optimistic and procedure executors, every transaction runs on
+// a virtual thread which blocks on statements and lock waits instead of holding a worker thread. Statements,
+// lock order and retries are the same as in the reactive executors. Anything but OK rolls the transaction back.
+@Slf4j
+class BlockingTransactionExecutor implements TransactionExecutor {
+
+    private static final String LOCK_ACCOUNT_ID_SQL = "SELECT ID, BALANCE FROM ACCOUNT WHERE ID = ? FOR UPDATE";
+    private static final String ACCOUNT_EXISTS_SQL = "SELECT ID FROM ACCOUNT WHERE ID = ?";
+
+    private static final String INCREASE_ACCOUNT_BALANCE_SQL = "UPDATE ACCOUNT SET BALANCE = BALANCE + ? WHERE ID = ?";
+    private static final String DECREASE_ACCOUNT_BALANCE_SQL = "UPDATE ACCOUNT SET BALANCE = BALANCE - ? WHERE ID = ?";
+    private static final String DECREASE_ACCOUNT_BALANCE_IF_SUFFICIENT_SQL = "UPDATE ACCOUNT SET BALANCE = BALANCE - ? WHERE ID = ? AND BALANCE >= ?";
+
+    private static final String INSERT_TRANSACTION_SQL = "INSERT INTO TRANSACTION(ID, DESTINATION_ACCOUNT_ID, TRANSACTION_TYPE, AMOUNT) VALUES (?, ?, ?, ?)";
+    private static final String INSERT_TRANSFER_TRANSACTION_SQL = "INSERT INTO TRANSACTION(ID, SOURCE_ACCOUNT_ID, DESTINATION_ACCOUNT_ID, TRANSACTION_TYPE, AMOUNT) VALUES (?, ?, ?, ?, ?)";
+
+    private static final String DEPOSIT_CALL_SQL = "{call DEPOSIT_FUNDS(?, ?, ?, ?)}";
+    private static final String WITHDRAW_CALL_SQL = "{call WITHDRAW_FUNDS(?, ?, ?, ?)}";
+    private static final String TRANSFER_CALL_SQL = "{call TRANSFER_FUNDS(?, ?, ?, ?, ?)}";
+
+    private static final String SERIALIZATION_FAILURE_SQL_STATE_CLASS = "40";
+
+    private ConnectionScheduler connectionScheduler;
+    private VirtualThreads virtualThreads;
+    private TransactionExecutionOptions options;
+
+    BlockingTransactionExecutor(final ConnectionScheduler connectionScheduler, final VirtualThreads virtualThreads,
+        final TransactionExecutionOptions options) {
+        this.connectionScheduler = connectionScheduler;
+        this.virtualThreads = virtualThreads;
+        this.options = options;
+    }
+
+    @Override
+    public Single<Integer> deposit(final Transaction transaction) {
+        return virtualThreads.call(() -> {
+            if (options.getMode() == TransactionExecutionMode.PROCEDURE) {
+                return call(DEPOSIT_CALL_SQL, transaction.getId(), transaction.getDestinationAccountId(),
+                    transaction.getAmount());
+            }
+            return inTransaction(connection -> {
+                if (options.getMode() == TransactionExecutionMode.PESSIMISTIC
+                    && lockBalance(connection, transaction.getDestinationAccountId()) == null) {
+                    return ACCOUNT_DOESNT_EXIST;
+                }
+                if (update(connection, INCREASE_ACCOUNT_BALANCE_SQL, transaction.getAmount(),
+                    transaction.getDestinationAccountId()) == 0) {
+                    return ACCOUNT_DOESNT_EXIST;
+                }
+                insertTransaction(connection, transaction);
+                return OK;
+            });
+        });
+    }
+
+    @Override
+    public Single<Integer> withdraw(final Transaction transaction) {
+        return virtualThreads.call(() -> {
+            if (options.getMode() == TransactionExecutionMode.PROCEDURE) {
+                return call(WITHDRAW_CALL_SQL, transaction.getId(), transaction.getDestinationAccountId(),
+                    transaction.getAmount());
+            }
+            return inTransaction(connection -> {
+                final int debited = debit(connection, transaction.getDestinationAccountId(), transaction.getAmount());
+                if (debited != OK) {
+                    return debited;
+                }
+                insertTransaction(connection, transaction);
+                return OK;
+            });
+        });
+    }
+
+    @Override
+    public Single<Integer> transfer(final Transaction transaction) {
+        return virtualThreads.call(() -> {
+            final long sourceAccountId = transaction.getSourceAccountId();
+            final long destinationAccountId = transaction.getDestinationAccountId();
+            final BigDecimal amount = transaction.getAmount();
+            if (options.getMode() == TransactionExecutionMode.PROCEDURE) {
+                return call(TRANSFER_CALL_SQL, transaction.getId(), sourceAccountId, destinationAccountId, amount);
+            }
+            return inTransaction(connection -> {
+                if (options.getMode() == TransactionExecutionMode.PESSIMISTIC) {
+                    final BigDecimal firstBalance = lockBalance(connection,
+                        Math.min(sourceAccountId, destinationAccountId));
+                    final BigDecimal secondBalance = firstBalance == null ? null
+                        : lockBalance(connection, Math.max(sourceAccountId, destinationAccountId));
+                    if (secondBalance == null) {
+                        return ACCOUNT_DOESNT_EXIST;
+                    }
+                    final BigDecimal sourceBalance = sourceAccountId < destinationAccountId ? firstBalance
+                        : secondBalance;
+                    if (sourceBalance.compareTo(amount) < 0) {
+                        return INSUFFICIENT_FUNDS;
+                    }
+                    update(connection, DECREASE_ACCOUNT_BALANCE_SQL, amount, sourceAccountId);
+                } else {
+                    final int debited = debit(connection, sourceAccountId, amount);
+                    if (debited != OK) {
+                        return debited;
+                    }
+                }
+                if (update(connection, INCREASE_ACCOUNT_BALANCE_SQL, amount, destinationAccountId) == 0) {
+                    return ACCOUNT_DOESNT_EXIST;
+                }
+                try (PreparedStatement statement = connection.prepareStatement(INSERT_TRANSFER_TRANSACTION_SQL)) {
+                    statement.setLong(1, transaction.getId());
+                    statement.setLong(2, sourceAccountId);
+                    statement.setLong(3, destinationAccountId);
+                    statement.setString(4, transaction.getTransactionType().name());
+                    statement.setBigDecimal(5, amount);
+                    statement.executeUpdate();
+                }
+                return OK;
+            });
+        });
+    }
+
+    // Optimistic transactions rolled back by the database because of conflicts are retried, sleeping only parks
+    // the virtual thread
+    private int inTransaction(final ConnectionScheduler.JdbcWork<Integer> work) throws Exception {
+        int attempt = 0;
+        while (true) {
+            try {
+                return connectionScheduler.withWriteConnection(connection -> {
+                    connection.setAutoCommit(false);
+                    try {
+                        final int result = work.apply(connection);
+                        if (result == OK) {
+                            connection.commit();
+                        } else {
+                            connection.rollback();
+                        }
+                        return result;
+                    } catch (SQLException | RuntimeException e) {
+                        connection.rollback();
+                        throw e;
+                    } finally {
+                        connection.setAutoCommit(true);
+                    }
+                });
+            } catch (SQLException e) {
+                attempt++;
+                if (options.getMode() != TransactionExecutionMode.OPTIMISTIC || !isSerializationFailure(e)
+                    || attempt > options.getMaxRetries()) {
+                    throw e;
+                }
+                final long backoff = backoff(attempt);
+                log.debug("Retrying transaction after conflict, attempt {} in {}ms", attempt, backoff);
+                Thread.sleep(backoff);
+            }
+        }
+    }
+
+    // Exponential backoff with full jitter, capped by max retry backoff
+    private long backoff(final int attempt) {
+        final long ceiling = Math.min(options.getMaxRetryBackoffMs(),
+            options.getRetryBackoffMs() << Math.min(attempt - 1, 20));
+        return ThreadLocalRandom.current().nextLong(ceiling + 1);
+    }
+
+    private boolean isSerializationFailure(final SQLException exception) {
+        return exception.getSQLState() != null
+            && exception.getSQLState().startsWith(SERIALIZATION_FAILURE_SQL_STATE_CLASS);
+    }
+
+    private int debit(final Connection connection, final long accountId, final BigDecimal amount)
+        throws SQLException {
+        if (options.getMode() == TransactionExecutionMode.PESSIMISTIC) {
+            final BigDecimal balance = lockBalance(connection, accountId);
+            if (balance == null) {
+                return ACCOUNT_DOESNT_EXIST;
+            }
+            if (balance.compareTo(amount) < 0) {
+                return INSUFFICIENT_FUNDS;
+            }
+            update(connection, DECREASE_ACCOUNT_BALANCE_SQL, amount, accountId);
+            return OK;
+        }
+        try (PreparedStatement statement = connection.prepareStatement(DECREASE_ACCOUNT_BALANCE_IF_SUFFICIENT_SQL)) {
+            statement.setBigDecimal(1, amount);
+            statement.setLong(2, accountId);
+            statement.setBigDecimal(3, amount);
+            if (statement.executeUpdate() > 0) {
+                return OK;
+            }
+        }
+        try (PreparedStatement statement = connection.prepareStatement(ACCOUNT_EXISTS_SQL)) {
+            statement.setLong(1, accountId);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                return resultSet.next() ? INSUFFICIENT_FUNDS : ACCOUNT_DOESNT_EXIST;
+            }
+        }
+    }
+
+    // Balance of the locked account or null when it doesn't exist
+    private BigDecimal lockBalance(final Connection connection, final long accountId) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(LOCK_ACCOUNT_ID_SQL)) {
+            statement.setLong(1, accountId);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                return resultSet.next() ? resultSet.getBigDecimal(2) : null;
+            }
+        }
+    }
+
+    private int update(final Connection connection, final String sql, final BigDecimal amount, final long accountId)
+        throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(sql)) {
+            statement.setBigDecimal(1, amount);
+            statement.setLong(2, accountId);
+            return statement.executeUpdate();
+        }
+    }
+
+    private void insertTransaction(final Connection connection, final Transaction transaction) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(INSERT_TRANSACTION_SQL)) {
+            statement.setLong(1, transaction.getId());
+            statement.setLong(2, transaction.getDestinationAccountId());
+            statement.setString(3, transaction.getTransactionType().name());
+            statement.setBigDecimal(4, transaction.getAmount());
+            statement.executeUpdate();
+        }
+    }
+
+    // Routines validate accounts and funds themselves, the last parameter is one of ErrorCodes
+    private int call(final String sql, final Object... input) throws SQLException {
+        return connectionScheduler.withWriteConnection(connection -> {
+            try (CallableStatement statement = connection.prepareCall(sql)) {
+                for (int i = 0; i < input.length; i++) {
+                    statement.setObject(i + 1, input[i]);
+                }
+                statement.registerOutParameter(input.length + 1, Types.INTEGER);
+                statement.execute();
+                return statement.getInt(input.length + 1);
+            }
+        });
+    }
+
+}
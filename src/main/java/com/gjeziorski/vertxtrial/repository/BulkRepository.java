@@ -0,0 +1,243 @@
+package com.gjeziorski.vertxtrial.repository;
+
+import static java.time.format.DateTimeFormatter.ISO_OFFSET_DATE_TIME;
+
+import com.gjeziorski.vertxtrial.common.VersionRegistry;
+import com.gjeziorski.vertxtrial.domain.AccountOwner;
+import com.gjeziorski.vertxtrial.index.BalanceIndex;
+import com.gjeziorski.vertxtrial.index.MappedBalanceStore;
+import com.gjeziorski.vertxtrial.index.NamePrefixIndex;
+import io.reactivex.Observable;
+import io.reactivex.Single;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.reactivex.core.eventbus.Message;
+import io.vertx.reactivex.ext.sql.SQLClientHelper;
+import java.math.BigDecimal;
+import java.sql.SQLException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.function.LongSupplier;
+import lombok.extern.slf4j.Slf4j;
+
+// Pages of the export and chunks of the import. Imported accounts keep their balances, imported transactions are
+// history and don't move money again. Every page is read by its own query, so the export is fuzzy and importing
+// it may give balances which don't match the transaction history (see BulkService).
+@Slf4j
+public class BulkRepository {
+
+    private static final String EXPORT_ACCOUNTS_SQL = "SELECT A.ID, A.NAME, A.SURNAME, CAST(A.BALANCE + COALESCE((SELECT SUM(S.BALANCE) FROM ACCOUNT_BALANCE_SLOT S WHERE S.ACCOUNT_ID = A.ID), 0) + COALESCE((SELECT R.AMOUNT FROM NETTING_RESERVE R WHERE R.ACCOUNT_ID = A.ID), 0) AS VARCHAR(32)) FROM ACCOUNT A WHERE A.ID > ? ORDER BY A.ID LIMIT ?";
+    private static final String EXPORT_TRANSACTIONS_SQL = "SELECT ID, SOURCE_ACCOUNT_ID, DESTINATION_ACCOUNT_ID, TRANSACTION_TYPE, CAST(AMOUNT AS VARCHAR(32)), EXECUTION_TIME FROM TRANSACTION WHERE ID > ? AND ID <= ? ORDER BY ID LIMIT ?";
+    private static final String SELECT_LAST_TRANSACTION_ID_SQL = "SELECT COALESCE(MAX(ID), -1) FROM TRANSACTION";
+    private static final String INSERT_ACCOUNT_SQL = "INSERT INTO ACCOUNT(ID, NAME, SURNAME, BALANCE) VALUES (?, ?, ?, ?)";
+    private static final String INSERT_TRANSACTION_SQL = "INSERT INTO TRANSACTION(ID, SOURCE_ACCOUNT_ID, DESTINATION_ACCOUNT_ID, TRANSACTION_TYPE, AMOUNT, EXECUTION_TIME) VALUES (?, ?, ?, ?, ?, COALESCE(CAST(? AS TIMESTAMP), NOW()))";
+
+    private static final String ACCOUNT = "account";
+
+    private ConnectionScheduler connectionScheduler;
+    private IdAllocator accountIdAllocator;
+    private IdAllocator transactionIdAllocator;
+    private BalanceIndex balanceIndex;
+    private MappedBalanceStore balanceStore;
+    private NamePrefixIndex namePrefixIndex;
+    private VersionRegistry versionRegistry;
+
+    // Balance store is null when it's disabled
+    public BulkRepository(final ConnectionScheduler connectionScheduler, final IdAllocator accountIdAllocator,
+        final IdAllocator transactionIdAllocator, final BalanceIndex balanceIndex, final MappedBalanceStore balanceStore,
+        final NamePrefixIndex namePrefixIndex, final VersionRegistry versionRegistry) {
+        this.connectionScheduler = connectionScheduler;
+        this.accountIdAllocator = accountIdAllocator;
+        this.transactionIdAllocator = transactionIdAllocator;
+        this.balanceIndex = balanceIndex;
+        this.balanceStore = balanceStore;
+        this.namePrefixIndex = namePrefixIndex;
+        this.versionRegistry = versionRegistry;
+    }
+
+    // Keyset page after the given id, the first page also returns the highest transaction id, which bounds the export
+    public Single<JsonObject> exportPage(final Message<Object> message) {
+        final JsonObject request = new JsonObject(message.body().toString());
+        final long afterId = request.getLong("after_id");
+        final int limit = request.getInteger("limit");
+        final Long upToId = request.getLong("up_to_id");
+        return connectionScheduler.usingReadConnection(connection -> {
+            if ("accounts".equals(request.getString("table"))) {
+                final Single<Long> lastTransactionId = upToId != null ? Single.just(upToId)
+                    : connection.rxQuery(SELECT_LAST_TRANSACTION_ID_SQL)
+                        .map(resultSet -> resultSet.getResults().get(0).getLong(0));
+                return lastTransactionId.flatMap(last -> connection
+                    .rxQueryWithParams(EXPORT_ACCOUNTS_SQL, new JsonArray().add(afterId).add(limit))
+                    .map(resultSet -> {
+                        final JsonArray records = new JsonArray();
+                        resultSet.getResults().forEach(row -> records.add(new JsonObject()
+                            .put("type", ACCOUNT)
+                            .put("id", row.getLong(0).toString())
+                            .put("name", row.getString(1))
+                            .put("surname", row.getString(2))
+                            .put("balance", row.getString(3))));
+                        return new JsonObject().put("records", records).put("last_transaction_id", last);
+                    }));
+            }
+            return connection.rxQueryWithParams(EXPORT_TRANSACTIONS_SQL, new JsonArray().add(afterId).add(upToId)
+                .add(limit))
+                .map(resultSet -> {
+                    final JsonArray records = new JsonArray();
+                    resultSet.getResults().forEach(row -> records.add(new JsonObject()
+                        .put("type", "transaction")
+                        .put("id", row.getLong(0).toString())
+                        .put("source_account_id", row.getLong(1) == null ? null : row.getLong(1).toString())
+                        .put("destination_account_id", row.getLong(2).toString())
+                        .put("transaction_type", row.getString(3))
+                        .put("amount", row.getString(4))
+                        .put("execution_time", ISO_OFFSET_DATE_TIME.parse(row.getString(5), Instant::from).toString())));
+                    return new JsonObject().put("records", records);
+                });
+        })
+            .doOnSuccess(page -> message.reply(page.toString()))
+            .doOnError(throwable -> {
+                log.error("Failed to export page", throwable);
+                message.fail(RepositoryFailures.failureCode(throwable), "Failed to export page");
+            });
+    }
+
+    // Consecutive records of the same type go in one JDBC batch in one transaction. Missing ids come from the id
+    // allocator of the table and skip ids given in the batch. When a batch fails on a constraint, its records are
+    // retried one by one and only the failing ones are rejected.
+    public Single<JsonObject> importChunk(final Message<Object> message) {
+        final JsonArray records = new JsonObject(message.body().toString()).getJsonArray("records");
+        final List<List<JsonObject>> runs = new ArrayList<>();
+        for (int i = 0; i < records.size(); i++) {
+            final JsonObject record = records.getJsonObject(i);
+            if (runs.isEmpty()
+                || !runs.get(runs.size() - 1).get(0).getString("type").equals(record.getString("type"))) {
+                runs.add(new ArrayList<>());
+            }
+            runs.get(runs.size() - 1).add(record);
+        }
+        final JsonObject result = new JsonObject().put("accounts", 0).put("transactions", 0)
+            .put("rejected", new JsonArray());
+        return Observable.fromIterable(runs)
+            .concatMapSingle(run -> importBatch(run, result)
+                .onErrorResumeNext(throwable -> throwable instanceof SQLException ? importOneByOne(run, result)
+                    : Single.error(throwable)))
+            .toList()
+            .map(imported -> result)
+            .doOnSuccess(imported -> {
+                if (imported.getInteger("accounts") > 0) {
+                    versionRegistry.bumpAccountList();
+                }
+                message.reply(imported.toString());
+            })
+            .doOnError(throwable -> {
+                log.error("Failed to import chunk", throwable);
+                message.fail(RepositoryFailures.failureCode(throwable), "Failed to import chunk");
+            });
+    }
+
+    private Single<Integer> importBatch(final List<JsonObject> run, final JsonObject result) {
+        final Set<String> explicitIds = new HashSet<>();
+        run.forEach(record -> explicitIds.add(record.getString("id")));
+        final boolean accounts = ACCOUNT.equals(run.get(0).getString("type"));
+        // Allocated ids equal to ids given in the batch are skipped, so there's one spare id for each of them
+        final boolean withoutIds = run.stream().anyMatch(record -> record.getString("id") == null);
+        return (withoutIds ? idAllocator(accounts).nextIds(run.size()) : Single.just(new long[0]))
+            .flatMap(ids -> {
+                final Iterator<Long> allocated = Arrays.stream(ids).boxed()
+                    .filter(id -> !explicitIds.contains(id.toString())).iterator();
+                final List<JsonObject> withIds = withIds(run, allocated::next);
+                return connectionScheduler.usingWriteConnection(connection -> connection
+                    .rxBatchWithParams(accounts ? INSERT_ACCOUNT_SQL : INSERT_TRANSACTION_SQL, parameters(withIds))
+                    .map(inserted -> withIds)
+                    .compose(SQLClientHelper.txSingleTransformer(connection)));
+            })
+            .map(withIds -> imported(withIds, result));
+    }
+
+    private Single<Integer> importOneByOne(final List<JsonObject> run, final JsonObject result) {
+        return Observable.fromIterable(run)
+            .concatMapSingle(record -> {
+                final boolean account = ACCOUNT.equals(record.getString("type"));
+                final Single<JsonObject> withId = record.getString("id") != null ? Single.just(record)
+                    : idAllocator(account).nextId().map(id -> record.copy().put("id", id.toString()));
+                return withId.flatMap(toInsert -> connectionScheduler.usingWriteConnection(connection -> connection
+                    .rxUpdateWithParams(account ? INSERT_ACCOUNT_SQL : INSERT_TRANSACTION_SQL, parameters(toInsert)))
+                    .map(inserted -> {
+                        imported(toInsert, result);
+                        return 1;
+                    }))
+                    .onErrorResumeNext(throwable -> {
+                        if (!(throwable instanceof SQLException)) {
+                            return Single.error(throwable);
+                        }
+                        result.getJsonArray("rejected").add(new JsonObject().put("line", record.getLong("line"))
+                            .put("error", throwable.getMessage()));
+                        return Single.just(0);
+                    });
+            })
+            .reduce(0, Integer::sum);
+    }
+
+    private IdAllocator idAllocator(final boolean accounts) {
+        return accounts ? accountIdAllocator : transactionIdAllocator;
+    }
+
+    private int imported(final List<JsonObject> records, final JsonObject result) {
+        records.forEach(record -> imported(record, result));
+        return records.size();
+    }
+
+    private void imported(final JsonObject record, final JsonObject result) {
+        final long id = Long.parseLong(record.getString("id"));
+        if (ACCOUNT.equals(record.getString("type"))) {
+            accountIdAllocator.skipPast(id);
+            final BigDecimal balance = new BigDecimal(record.getString("balance"));
+            balanceIndex.put(id, balance);
+            if (balanceStore != null) {
+                balanceStore.put(id, balance);
+            }
+            namePrefixIndex.put(new AccountOwner(id, record.getString("name"), record.getString("surname")));
+            result.put("accounts", result.getInteger("accounts") + 1);
+            return;
+        }
+        if (record.getString("source_account_id") != null) {
+            versionRegistry.bumpAccount(Long.parseLong(record.getString("source_account_id")));
+        }
+        versionRegistry.bumpAccount(Long.parseLong(record.getString("destination_account_id")));
+        transactionIdAllocator.skipPast(id);
+        result.put("transactions", result.getInteger("transactions") + 1);
+    }
+
+    private static List<JsonObject> withIds(final List<JsonObject> run, final LongSupplier missingIds) {
+        final List<JsonObject> withIds = new ArrayList<>();
+        run.forEach(record -> withIds.add(record.getString("id") != null ? record
+            : record.copy().put("id", Long.toString(missingIds.getAsLong()))));
+        return withIds;
+    }
+
+    private static List<JsonArray> parameters(final List<JsonObject> records) {
+        final List<JsonArray> parameters = new ArrayList<>();
+        records.forEach(record -> parameters.add(parameters(record)));
+        return parameters;
+    }
+
+    private static JsonArray parameters(final JsonObject record) {
+        final JsonArray parameters = new JsonArray().add(Long.parseLong(record.getString("id")));
+        if (ACCOUNT.equals(record.getString("type"))) {
+            return parameters.add(record.getString("name")).add(record.getString("surname"))
+                .add(record.getString("balance"));
+        }
+        final String sourceAccountId = record.getString("source_account_id");
+        return parameters.add(sourceAccountId == null ? null : Long.parseLong(sourceAccountId))
+            .add(Long.parseLong(record.getString("destination_account_id")))
+            .add(record.getString("transaction_type"))
+            .add(record.getString("amount"))
+            .add(record.getString("execution_time"));
+    }
+
+}
@@ -0,0 +1,36 @@
+package com.gjeziorski.vertxtrial.repository;
+
+import io.vertx.core.json.JsonObject;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ConnectionPoolOptions {
+
+    private String name;
+
+    private int maxPoolSize;
+
+    private int queueLimit;
+
+    private long acquireTimeoutMs;
+
+    private boolean readOnly;
+
+    public static ConnectionPoolOptions fromJson(final String name, final JsonObject json,
+        final ConnectionPoolOptions defaults) {
+        return ConnectionPoolOptions.builder()
+            .name(name)
+            .maxPoolSize(json.getInteger("max_pool_size", defaults.getMaxPoolSize()))
+            .queueLimit(json.getInteger("queue_limit", defaults.getQueueLimit()))
+            .acquireTimeoutMs(json.getLong("acquire_timeout_ms", defaults.getAcquireTimeoutMs()))
+            .readOnly(json.getBoolean("read_only", defaults.isReadOnly()))
+            .build();
+    }
+
+}
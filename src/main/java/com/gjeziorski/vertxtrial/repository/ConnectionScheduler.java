@@ -0,0 +1,231 @@
+package com.gjeziorski.vertxtrial.repository;
+
+import io.reactivex.Completable;
+import io.reactivex.Single;
+import io.reactivex.SingleEmitter;
+import io.vertx.core.json.JsonObject;
+import io.vertx.reactivex.core.Vertx;
+import io.vertx.reactivex.ext.jdbc.JDBCClient;
+import io.vertx.reactivex.ext.sql.SQLConnection;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.function.Function;
+import lombok.extern.slf4j.Slf4j;
+
+// Statements are split between a write pool (transactions, account creation) and a read pool (listings),
+// so that long scans cannot starve transfers. Both pools share a global connection budget and whenever
+// a connection is returned, waiting writes are served before waiting reads.
+@Slf4j
+public class ConnectionScheduler {
+
+    private static final String READ_ONLY_SESSION_SQL = "SET SESSION CHARACTERISTICS AS TRANSACTION READ ONLY, ISOLATION LEVEL READ UNCOMMITTED";
+
+    private final Vertx vertx;
+    private final Pool writePool;
+    private final Pool readPool;
+    private final int maxConnections;
+    private int connectionsInUse;
+
+    public ConnectionScheduler(final Vertx vertx, final JDBCClient writeClient, final ConnectionPoolOptions writeOptions,
+        final JDBCClient readClient, final ConnectionPoolOptions readOptions, final int maxConnections) {
+        this.vertx = vertx;
+        this.writePool = new Pool(writeClient, writeOptions);
+        this.readPool = new Pool(readClient, readOptions);
+        this.maxConnections = maxConnections;
+    }
+
+    public <T> Single<T> usingWriteConnection(final Function<SQLConnection, Single<T>> work) {
+        return usingConnection(writePool, work);
+    }
+
+    public <T> Single<T> usingReadConnection(final Function<SQLConnection, Single<T>> work) {
+        return usingConnection(readPool, work);
+    }
+
+    // Blocking counterparts for code running on its own thread, e.g. a virtual thread, never on an event loop.
+    // Connections come from the same pools and budget, statements run on the calling thread.
+    public <T> T withWriteConnection(final JdbcWork<T> work) throws SQLException {
+        return withConnection(writePool, work);
+    }
+
+    public <T> T withReadConnection(final JdbcWork<T> work) throws SQLException {
+        return withConnection(readPool, work);
+    }
+
+    public synchronized JsonObject metrics() {
+        return new JsonObject()
+            .put("max_connections", maxConnections)
+            .put("connections_in_use", connectionsInUse)
+            .put(writePool.options.getName(), writePool.metrics())
+            .put(readPool.options.getName(), readPool.metrics());
+    }
+
+    private <T> Single<T> usingConnection(final Pool pool, final Function<SQLConnection, Single<T>> work) {
+        return reserve(pool).flatMap(permit -> pool.client.rxGetConnection()
+            .doOnError(throwable -> release(pool))
+            .flatMap(connection -> prepare(pool, connection).andThen(Single.defer(() -> work.apply(connection)))
+                .doFinally(() -> connection.rxClose().subscribe(() -> release(pool), throwable -> {
+                    log.error("Failed to close connection", throwable);
+                    release(pool);
+                }))));
+    }
+
+    private <T> T withConnection(final Pool pool, final JdbcWork<T> work) throws SQLException {
+        reserve(pool).blockingGet();
+        final SQLConnection connection;
+        try {
+            connection = pool.client.rxGetConnection().blockingGet();
+        } catch (RuntimeException e) {
+            release(pool);
+            throw e;
+        }
+        try {
+            final Connection jdbcConnection = connection.getDelegate().unwrap();
+            if (pool.options.isReadOnly()) {
+                try (Statement statement = jdbcConnection.createStatement()) {
+                    statement.execute(READ_ONLY_SESSION_SQL);
+                }
+            }
+            return work.apply(jdbcConnection);
+        } finally {
+            connection.rxClose().subscribe(() -> release(pool), throwable -> {
+                log.error("Failed to close connection", throwable);
+                release(pool);
+            });
+        }
+    }
+
+    private Completable prepare(final Pool pool, final SQLConnection connection) {
+        if (pool.options.isReadOnly()) {
+            return connection.rxExecute(READ_ONLY_SESSION_SQL);
+        }
+        return Completable.complete();
+    }
+
+    private Single<Long> reserve(final Pool pool) {
+        return Single.create(emitter -> {
+            final Waiter waiter = new Waiter(pool, emitter, System.nanoTime());
+            synchronized (this) {
+                if (pool.waiters.isEmpty() && pool.hasCapacity() && connectionsInUse < maxConnections) {
+                    grant(waiter);
+                } else if (pool.waiters.size() >= pool.options.getQueueLimit()) {
+                    pool.rejected++;
+                    emitter.onError(new ConnectionUnavailableException(
+                        "Queue of " + pool.options.getName() + " is full"));
+                    return;
+                } else {
+                    pool.waiters.add(waiter);
+                    waiter.timerId = vertx.setTimer(pool.options.getAcquireTimeoutMs(), timerId -> expire(waiter));
+                    return;
+                }
+            }
+            waiter.emitter.onSuccess(waiter.waitNanos);
+        });
+    }
+
+    private void expire(final Waiter waiter) {
+        synchronized (this) {
+            if (!waiter.pool.waiters.remove(waiter)) {
+                return;
+            }
+            waiter.pool.timeouts++;
+        }
+        waiter.emitter.onError(new ConnectionUnavailableException(
+            "Timed out waiting for connection from " + waiter.pool.options.getName()));
+    }
+
+    private void release(final Pool pool) {
+        final List<Waiter> granted = new ArrayList<>();
+        synchronized (this) {
+            pool.inUse--;
+            connectionsInUse--;
+            while (connectionsInUse < maxConnections) {
+                if (!writePool.waiters.isEmpty() && writePool.hasCapacity()) {
+                    granted.add(grant(writePool.waiters.poll()));
+                } else if (!readPool.waiters.isEmpty() && readPool.hasCapacity()) {
+                    granted.add(grant(readPool.waiters.poll()));
+                } else {
+                    break;
+                }
+            }
+        }
+        for (Waiter waiter : granted) {
+            vertx.cancelTimer(waiter.timerId);
+            waiter.emitter.onSuccess(waiter.waitNanos);
+        }
+    }
+
+    private Waiter grant(final Waiter waiter) {
+        final Pool pool = waiter.pool;
+        waiter.waitNanos = System.nanoTime() - waiter.enqueuedAt;
+        pool.inUse++;
+        connectionsInUse++;
+        pool.acquired++;
+        pool.totalWaitNanos += waiter.waitNanos;
+        pool.maxWaitNanos = Math.max(pool.maxWaitNanos, waiter.waitNanos);
+        return waiter;
+    }
+
+    public interface JdbcWork<T> {
+
+        T apply(Connection connection) throws SQLException;
+
+    }
+
+    private static class Pool {
+
+        private final JDBCClient client;
+        private final ConnectionPoolOptions options;
+        private final Deque<Waiter> waiters = new ArrayDeque<>();
+        private int inUse;
+        private long acquired;
+        private long rejected;
+        private long timeouts;
+        private long totalWaitNanos;
+        private long maxWaitNanos;
+
+        private Pool(final JDBCClient client, final ConnectionPoolOptions options) {
+            this.client = client;
+            this.options = options;
+        }
+
+        private boolean hasCapacity() {
+            return inUse < options.getMaxPoolSize();
+        }
+
+        private JsonObject metrics() {
+            return new JsonObject()
+                .put("max_pool_size", options.getMaxPoolSize())
+                .put("in_use", inUse)
+                .put("waiting", waiters.size())
+                .put("acquired", acquired)
+                .put("rejected", rejected)
+                .put("timeouts", timeouts)
+                .put("average_wait_ms", acquired == 0 ? 0.0 : totalWaitNanos / 1_000_000.0 / acquired)
+                .put("max_wait_ms", maxWaitNanos / 1_000_000.0);
+        }
+
+    }
+
+    private static class Waiter {
+
+        private final Pool pool;
+        private final SingleEmitter<Long> emitter;
+        private final long enqueuedAt;
+        private long waitNanos;
+        private long timerId;
+
+        private Waiter(final Pool pool, final SingleEmitter<Long> emitter, final long enqueuedAt) {
+            this.pool = pool;
+            this.emitter = emitter;
+            this.enqueuedAt = enqueuedAt;
+        }
+
+    }
+
+}
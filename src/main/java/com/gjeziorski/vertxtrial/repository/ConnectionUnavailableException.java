@@ -0,0 +1,9 @@
+package com.gjeziorski.vertxtrial.repository;
+
+public class ConnectionUnavailableException extends RuntimeException {
+
+    public ConnectionUnavailableException(final String message) {
+        super(message);
+    }
+
+}
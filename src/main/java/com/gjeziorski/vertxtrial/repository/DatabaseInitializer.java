@@ -0,0 +1,429 @@
+package com.gjeziorski.vertxtrial.repository;
+
+import static com.gjeziorski.vertxtrial.common.ErrorCodes.ACCOUNT_DOESNT_EXIST;
+import static com.gjeziorski.vertxtrial.common.ErrorCodes.INSUFFICIENT_FUNDS;
+import static com.gjeziorski.vertxtrial.common.ErrorCodes.OK;
+
+import io.reactivex.Completable;
+import io.reactivex.Observable;
+import io.reactivex.Single;
+import io.vertx.core.json.JsonArray;
+import io.vertx.reactivex.ext.sql.SQLConnection;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import lombok.extern.slf4j.Slf4j;
+
+// Brings the database to the latest schema version without dropping existing data. Every migration is applied
+// once and recorded in SCHEMA_VERSION, so restarting a FILE database only checks the schema and warms indexes.
+// HSQLDB commits every DDL statement on its own, so a migration can't be applied together with its version. Every
+// statement can run again instead, a migration interrupted before its version was recorded is repeated on restart.
+@Slf4j
+public class DatabaseInitializer {
+
+    private static final String DROP_SCHEMA_SQL = "DROP SCHEMA PUBLIC CASCADE";
+    private static final String CREATE_SCHEMA_VERSION_TABLE_SQL = "CREATE TABLE IF NOT EXISTS SCHEMA_VERSION(VERSION INT PRIMARY KEY NOT NULL, APPLIED_AT TIMESTAMP DEFAULT NOW() NOT NULL)";
+    private static final String SELECT_SCHEMA_VERSION_SQL = "SELECT COALESCE(MAX(VERSION), 0) FROM SCHEMA_VERSION";
+    private static final String INSERT_SCHEMA_VERSION_SQL = "INSERT INTO SCHEMA_VERSION(VERSION) VALUES (?)";
+    private static final String COUNT_TABLES_SQL = "SELECT COUNT(*) FROM INFORMATION_SCHEMA.TABLES WHERE TABLE_SCHEMA = 'PUBLIC' AND TABLE_NAME IN ";
+
+    private static final String SET_TRANSACTION_CONTROL_SQL = "SET DATABASE TRANSACTION CONTROL ";
+    private static final String SET_DEFAULT_TABLE_TYPE_SQL = "SET DATABASE DEFAULT TABLE TYPE CACHED";
+    private static final String SET_WRITE_DELAY_SQL = "SET FILES WRITE DELAY %d MILLIS";
+    private static final String SET_LOG_SIZE_SQL = "SET FILES LOG SIZE %d";
+    private static final String SET_CACHE_ROWS_SQL = "SET FILES CACHE ROWS %d";
+    private static final String SET_CACHE_SIZE_SQL = "SET FILES CACHE SIZE %d";
+    private static final String CHECKPOINT_SQL = "CHECKPOINT";
+
+    // MIN and MAX of primary key and point lookups are answered from indexes, so probes load index pages only
+    private static final String SELECT_ACCOUNT_ID_RANGE_SQL = "SELECT MIN(ID), MAX(ID) FROM ACCOUNT";
+    private static final List<String> WARM_UP_PROBES_SQL = Arrays.asList(
+        "SELECT ID FROM ACCOUNT WHERE ID = ?",
+        "SELECT ID FROM TRANSACTION WHERE SOURCE_ACCOUNT_ID = ? LIMIT 1",
+        "SELECT ID FROM TRANSACTION WHERE DESTINATION_ACCOUNT_ID = ? LIMIT 1");
+
+    private static final String CREATE_ACCOUNT_TABLE_SQL = "CREATE TABLE IF NOT EXISTS ACCOUNT(ID INT IDENTITY PRIMARY KEY NOT NULL, NAME VARCHAR(20) NOT NULL, SURNAME VARCHAR(20) NOT NULL, BALANCE DECIMAL(20,2) DEFAULT 0 NOT NULL)";
+    private static final String CREATE_TRANSACTION_TABLE_SQL = "CREATE TABLE IF NOT EXISTS TRANSACTION(ID INT IDENTITY PRIMARY KEY NOT NULL, SOURCE_ACCOUNT_ID INT, DESTINATION_ACCOUNT_ID INT NOT NULL, TRANSACTION_TYPE VARCHAR(20) NOT NULL, AMOUNT DECIMAL(20,2) NOT NULL, EXECUTION_TIME TIMESTAMP DEFAULT NOW() NOT NULL, FOREIGN KEY (SOURCE_ACCOUNT_ID) REFERENCES ACCOUNT(ID), FOREIGN KEY (DESTINATION_ACCOUNT_ID) REFERENCES ACCOUNT(ID))";
+    private static final String CREATE_SOURCE_ACCOUNT_ID_INDEX_SQL = "CREATE INDEX IF NOT EXISTS SOURCE_ACCOUNT_ID_INDEX ON TRANSACTION(SOURCE_ACCOUNT_ID)";
+    private static final String CREATE_DESTINATION_ACCOUNT_ID_INDEX_SQL = "CREATE INDEX IF NOT EXISTS DESTINATION_ACCOUNT_ID_INDEX ON TRANSACTION(DESTINATION_ACCOUNT_ID)";
+
+    // Routines used by PROCEDURE execution mode, P_RESULT is one of ErrorCodes
+    private static final String CREATE_DEPOSIT_PROCEDURE_SQL = "CREATE PROCEDURE DEPOSIT_FUNDS(IN P_ACCOUNT_ID INT, IN P_AMOUNT DECIMAL(20,2), OUT P_RESULT INT) MODIFIES SQL DATA BEGIN ATOMIC "
+        + "DECLARE V_UPDATED INT; "
+        + "UPDATE ACCOUNT SET BALANCE = BALANCE + P_AMOUNT WHERE ID = P_ACCOUNT_ID; "
+        + "GET DIAGNOSTICS V_UPDATED = ROW_COUNT; "
+        + "IF V_UPDATED = 0 THEN SET P_RESULT = " + ACCOUNT_DOESNT_EXIST + "; "
+        + "ELSE INSERT INTO TRANSACTION(DESTINATION_ACCOUNT_ID, TRANSACTION_TYPE, AMOUNT) VALUES (P_ACCOUNT_ID, 'DEPOSIT', P_AMOUNT); SET P_RESULT = " + OK + "; "
+        + "END IF; END";
+    private static final String CREATE_WITHDRAW_PROCEDURE_SQL = "CREATE PROCEDURE WITHDRAW_FUNDS(IN P_ACCOUNT_ID INT, IN P_AMOUNT DECIMAL(20,2), OUT P_RESULT INT) MODIFIES SQL DATA BEGIN ATOMIC "
+        + "DECLARE V_UPDATED INT; "
+        + "UPDATE ACCOUNT SET BALANCE = BALANCE - P_AMOUNT WHERE ID = P_ACCOUNT_ID AND BALANCE >= P_AMOUNT; "
+        + "GET DIAGNOSTICS V_UPDATED = ROW_COUNT; "
+        + "IF V_UPDATED = 0 THEN "
+        + "IF EXISTS (SELECT ID FROM ACCOUNT WHERE ID = P_ACCOUNT_ID) THEN SET P_RESULT = " + INSUFFICIENT_FUNDS + "; ELSE SET P_RESULT = " + ACCOUNT_DOESNT_EXIST + "; END IF; "
+        + "ELSE INSERT INTO TRANSACTION(DESTINATION_ACCOUNT_ID, TRANSACTION_TYPE, AMOUNT) VALUES (P_ACCOUNT_ID, 'WITHDRAW', P_AMOUNT); SET P_RESULT = " + OK + "; "
+        + "END IF; END";
+    private static final String CREATE_TRANSFER_PROCEDURE_SQL = "CREATE PROCEDURE TRANSFER_FUNDS(IN P_SOURCE_ACCOUNT_ID INT, IN P_DESTINATION_ACCOUNT_ID INT, IN P_AMOUNT DECIMAL(20,2), OUT P_RESULT INT) MODIFIES SQL DATA BEGIN ATOMIC "
+        + "DECLARE V_UPDATED INT; "
+        + "IF NOT EXISTS (SELECT ID FROM ACCOUNT WHERE ID = P_DESTINATION_ACCOUNT_ID) THEN SET P_RESULT = " + ACCOUNT_DOESNT_EXIST + "; "
+        + "ELSE "
+        + "UPDATE ACCOUNT SET BALANCE = BALANCE - P_AMOUNT WHERE ID = P_SOURCE_ACCOUNT_ID AND BALANCE >= P_AMOUNT; "
+        + "GET DIAGNOSTICS V_UPDATED = ROW_COUNT; "
+        + "IF V_UPDATED = 0 THEN "
+        + "IF EXISTS (SELECT ID FROM ACCOUNT WHERE ID = P_SOURCE_ACCOUNT_ID) THEN SET P_RESULT = " + INSUFFICIENT_FUNDS + "; ELSE SET P_RESULT = " + ACCOUNT_DOESNT_EXIST + "; END IF; "
+        + "ELSE "
+        + "UPDATE ACCOUNT SET BALANCE = BALANCE + P_AMOUNT WHERE ID = P_DESTINATION_ACCOUNT_ID; "
+        + "INSERT INTO TRANSACTION(SOURCE_ACCOUNT_ID, DESTINATION_ACCOUNT_ID, TRANSACTION_TYPE, AMOUNT) VALUES (P_SOURCE_ACCOUNT_ID, P_DESTINATION_ACCOUNT_ID, 'TRANSFER', P_AMOUNT); "
+        + "SET P_RESULT = " + OK + "; "
+        + "END IF; END IF; END";
+
+    // Replaces TRANSFER_FUNDS of migration 2, which locked the source row before the destination row, so opposing
+    // transfers could deadlock under MVLOCKS and MVCC. The row with the lower id is locked first by a no-op update,
+    // like the other executors lock accounts in ascending id order.
+    private static final String DROP_TRANSFER_PROCEDURE_SQL = "DROP PROCEDURE TRANSFER_FUNDS IF EXISTS";
+    private static final String CREATE_ORDERED_TRANSFER_PROCEDURE_SQL = "CREATE PROCEDURE TRANSFER_FUNDS(IN P_SOURCE_ACCOUNT_ID INT, IN P_DESTINATION_ACCOUNT_ID INT, IN P_AMOUNT DECIMAL(20,2), OUT P_RESULT INT) MODIFIES SQL DATA BEGIN ATOMIC "
+        + "DECLARE V_UPDATED INT; "
+        + "IF NOT EXISTS (SELECT ID FROM ACCOUNT WHERE ID = P_DESTINATION_ACCOUNT_ID) THEN SET P_RESULT = " + ACCOUNT_DOESNT_EXIST + "; "
+        + "ELSE "
+        + "UPDATE ACCOUNT SET BALANCE = BALANCE WHERE ID = LEAST(P_SOURCE_ACCOUNT_ID, P_DESTINATION_ACCOUNT_ID); "
+        + "UPDATE ACCOUNT SET BALANCE = BALANCE - P_AMOUNT WHERE ID = P_SOURCE_ACCOUNT_ID AND BALANCE >= P_AMOUNT; "
+        + "GET DIAGNOSTICS V_UPDATED = ROW_COUNT; "
+        + "IF V_UPDATED = 0 THEN "
+        + "IF EXISTS (SELECT ID FROM ACCOUNT WHERE ID = P_SOURCE_ACCOUNT_ID) THEN SET P_RESULT = " + INSUFFICIENT_FUNDS + "; ELSE SET P_RESULT = " + ACCOUNT_DOESNT_EXIST + "; END IF; "
+        + "ELSE "
+        + "UPDATE ACCOUNT SET BALANCE = BALANCE + P_AMOUNT WHERE ID = P_DESTINATION_ACCOUNT_ID; "
+        + "INSERT INTO TRANSACTION(SOURCE_ACCOUNT_ID, DESTINATION_ACCOUNT_ID, TRANSACTION_TYPE, AMOUNT) VALUES (P_SOURCE_ACCOUNT_ID, P_DESTINATION_ACCOUNT_ID, 'TRANSFER', P_AMOUNT); "
+        + "SET P_RESULT = " + OK + "; "
+        + "END IF; END IF; END";
+
+    // Daily inflow, outflow and count per account and transaction type. Maintained by a trigger, so it's updated
+    // in the same database transaction as every insert into TRANSACTION, whichever execution mode made it.
+    // Transfer is an outflow of the source and an inflow of the destination account, withdrawal an outflow.
+    private static final String CREATE_ACCOUNT_DAILY_SUMMARY_TABLE_SQL = "CREATE TABLE IF NOT EXISTS ACCOUNT_DAILY_SUMMARY(ACCOUNT_ID INT NOT NULL, SUMMARY_DATE DATE NOT NULL, TRANSACTION_TYPE VARCHAR(20) NOT NULL, INFLOW DECIMAL(20,2) NOT NULL, OUTFLOW DECIMAL(20,2) NOT NULL, TRANSACTION_COUNT INT NOT NULL, PRIMARY KEY (ACCOUNT_ID, SUMMARY_DATE, TRANSACTION_TYPE), FOREIGN KEY (ACCOUNT_ID) REFERENCES ACCOUNT(ID))";
+    private static final String BACKFILL_ACCOUNT_DAILY_SUMMARY_SQL = "INSERT INTO ACCOUNT_DAILY_SUMMARY(ACCOUNT_ID, SUMMARY_DATE, TRANSACTION_TYPE, INFLOW, OUTFLOW, TRANSACTION_COUNT) "
+        + "SELECT ACCOUNT_ID, SUMMARY_DATE, TRANSACTION_TYPE, SUM(INFLOW), SUM(OUTFLOW), COUNT(*) FROM ("
+        + "SELECT SOURCE_ACCOUNT_ID AS ACCOUNT_ID, CAST(EXECUTION_TIME AS DATE) AS SUMMARY_DATE, TRANSACTION_TYPE, 0 AS INFLOW, AMOUNT AS OUTFLOW FROM TRANSACTION WHERE SOURCE_ACCOUNT_ID IS NOT NULL "
+        + "UNION ALL "
+        + "SELECT DESTINATION_ACCOUNT_ID, CAST(EXECUTION_TIME AS DATE), TRANSACTION_TYPE, CASE WHEN TRANSACTION_TYPE = 'WITHDRAW' THEN 0 ELSE AMOUNT END, CASE WHEN TRANSACTION_TYPE = 'WITHDRAW' THEN AMOUNT ELSE 0 END FROM TRANSACTION"
+        + ") WHERE NOT EXISTS (SELECT ACCOUNT_ID FROM ACCOUNT_DAILY_SUMMARY) GROUP BY ACCOUNT_ID, SUMMARY_DATE, TRANSACTION_TYPE";
+    private static final String MERGE_ACCOUNT_DAILY_SUMMARY_SQL = "MERGE INTO ACCOUNT_DAILY_SUMMARY S USING (VALUES (%s, CAST(N.EXECUTION_TIME AS DATE), N.TRANSACTION_TYPE, %s, %s)) AS V(ACCOUNT_ID, SUMMARY_DATE, TRANSACTION_TYPE, INFLOW, OUTFLOW) "
+        + "ON S.ACCOUNT_ID = V.ACCOUNT_ID AND S.SUMMARY_DATE = V.SUMMARY_DATE AND S.TRANSACTION_TYPE = V.TRANSACTION_TYPE "
+        + "WHEN MATCHED THEN UPDATE SET S.INFLOW = S.INFLOW + V.INFLOW, S.OUTFLOW = S.OUTFLOW + V.OUTFLOW, S.TRANSACTION_COUNT = S.TRANSACTION_COUNT + 1 "
+        + "WHEN NOT MATCHED THEN INSERT VALUES (V.ACCOUNT_ID, V.SUMMARY_DATE, V.TRANSACTION_TYPE, V.INFLOW, V.OUTFLOW, 1); ";
+    private static final String CREATE_ACCOUNT_DAILY_SUMMARY_TRIGGER_SQL = "CREATE TRIGGER UPDATE_ACCOUNT_DAILY_SUMMARY AFTER INSERT ON TRANSACTION REFERENCING NEW ROW AS N FOR EACH ROW BEGIN ATOMIC "
+        + "IF N.SOURCE_ACCOUNT_ID IS NOT NULL THEN "
+        + String.format(MERGE_ACCOUNT_DAILY_SUMMARY_SQL, "N.SOURCE_ACCOUNT_ID", "CAST(0 AS DECIMAL(20,2))", "N.AMOUNT")
+        + "END IF; "
+        + String.format(MERGE_ACCOUNT_DAILY_SUMMARY_SQL, "N.DESTINATION_ACCOUNT_ID",
+        "CASE WHEN N.TRANSACTION_TYPE = 'WITHDRAW' THEN 0 ELSE N.AMOUNT END",
+        "CASE WHEN N.TRANSACTION_TYPE = 'WITHDRAW' THEN N.AMOUNT ELSE 0 END")
+        + "END";
+
+    // Part of the balance of hot accounts, total balance of an account is its BALANCE plus all of its slots
+    private static final String CREATE_ACCOUNT_BALANCE_SLOT_TABLE_SQL = "CREATE TABLE IF NOT EXISTS ACCOUNT_BALANCE_SLOT(ACCOUNT_ID INT NOT NULL, SLOT INT NOT NULL, BALANCE DECIMAL(20,2) DEFAULT 0 NOT NULL, PRIMARY KEY (ACCOUNT_ID, SLOT), FOREIGN KEY (ACCOUNT_ID) REFERENCES ACCOUNT(ID))";
+
+    // Transactions waiting for their EXECUTE_AT (epoch millis). Rows stay as history once they're EXECUTED or FAILED,
+    // pending ones are found through the STATUS index, so startup doesn't read the history.
+    private static final String CREATE_SCHEDULED_TRANSACTION_TABLE_SQL = "CREATE TABLE IF NOT EXISTS SCHEDULED_TRANSACTION(ID INT IDENTITY PRIMARY KEY NOT NULL, SOURCE_ACCOUNT_ID INT, DESTINATION_ACCOUNT_ID INT NOT NULL, TRANSACTION_TYPE VARCHAR(20) NOT NULL, AMOUNT DECIMAL(20,2) NOT NULL, EXECUTE_AT BIGINT NOT NULL, STATUS VARCHAR(10) DEFAULT 'PENDING' NOT NULL, RESULT_CODE INT, FOREIGN KEY (SOURCE_ACCOUNT_ID) REFERENCES ACCOUNT(ID), FOREIGN KEY (DESTINATION_ACCOUNT_ID) REFERENCES ACCOUNT(ID))";
+    private static final String CREATE_SCHEDULED_TRANSACTION_STATUS_INDEX_SQL = "CREATE INDEX IF NOT EXISTS SCHEDULED_TRANSACTION_STATUS_INDEX ON SCHEDULED_TRANSACTION(STATUS)";
+
+    // Reconciliation runs, LAST_TRANSACTION_ID and LAST_ACCOUNT_ID of the last finished run are the checkpoint the
+    // next incremental run starts from
+    private static final String CREATE_RECONCILIATION_RUN_TABLE_SQL = "CREATE TABLE IF NOT EXISTS RECONCILIATION_RUN(ID INT IDENTITY PRIMARY KEY NOT NULL, FULL_RUN BOOLEAN NOT NULL, STARTED_AT TIMESTAMP DEFAULT NOW() NOT NULL, FINISHED_AT TIMESTAMP, LAST_TRANSACTION_ID INT NOT NULL, LAST_ACCOUNT_ID INT NOT NULL, ACCOUNTS_CHECKED INT, MISMATCHES INT)";
+
+    // Next free id of tables whose ids are allocated in blocks by the service
+    private static final String CREATE_ID_BLOCK_TABLE_SQL = "CREATE TABLE IF NOT EXISTS ID_BLOCK(NAME VARCHAR(20) PRIMARY KEY NOT NULL, NEXT_ID BIGINT NOT NULL)";
+    private static final String INSERT_ACCOUNT_ID_BLOCK_SQL = "MERGE INTO ID_BLOCK B USING (VALUES ('ACCOUNT', 0)) AS V(NAME, NEXT_ID) ON B.NAME = V.NAME WHEN NOT MATCHED THEN INSERT VALUES (V.NAME, V.NEXT_ID)";
+
+    // Part of the balance of netted accounts held back for transfers accepted before settlement, counts to the
+    // account balance
+    private static final String CREATE_NETTING_RESERVE_TABLE_SQL = "CREATE TABLE IF NOT EXISTS NETTING_RESERVE(ACCOUNT_ID INT PRIMARY KEY NOT NULL, AMOUNT DECIMAL(20,2) DEFAULT 0 NOT NULL, FOREIGN KEY (ACCOUNT_ID) REFERENCES ACCOUNT(ID))";
+
+    // Funds reserved on an account until they're captured, released or EXPIRES_AT (epoch millis) passes. Finished
+    // holds stay as history, active ones are found through the STATUS index.
+    private static final String CREATE_FUNDS_HOLD_TABLE_SQL = "CREATE TABLE IF NOT EXISTS FUNDS_HOLD(ID INT IDENTITY PRIMARY KEY NOT NULL, ACCOUNT_ID INT NOT NULL, AMOUNT DECIMAL(20,2) NOT NULL, EXPIRES_AT BIGINT NOT NULL, STATUS VARCHAR(12) DEFAULT 'ACTIVE' NOT NULL, CAPTURED_AMOUNT DECIMAL(20,2), FOREIGN KEY (ACCOUNT_ID) REFERENCES ACCOUNT(ID))";
+    private static final String CREATE_FUNDS_HOLD_STATUS_INDEX_SQL = "CREATE INDEX IF NOT EXISTS FUNDS_HOLD_STATUS_INDEX ON FUNDS_HOLD(STATUS)";
+
+    // Account and transaction ids become BIGINT allocated by the service, transaction ids are passed to the routines.
+    // HSQLDB doesn't change the type of columns used by foreign keys, routines or triggers, so those are dropped
+    // first and created again. Foreign keys of earlier versions got generated names, the statements dropping them
+    // are read from the schema, the new ones are named.
+    private static final String DROP_ACCOUNT_DAILY_SUMMARY_TRIGGER_SQL = "DROP TRIGGER UPDATE_ACCOUNT_DAILY_SUMMARY IF EXISTS";
+    private static final String DROP_DEPOSIT_PROCEDURE_SQL = "DROP PROCEDURE DEPOSIT_FUNDS IF EXISTS";
+    private static final String DROP_WITHDRAW_PROCEDURE_SQL = "DROP PROCEDURE WITHDRAW_FUNDS IF EXISTS";
+    private static final String SELECT_DROP_ACCOUNT_FOREIGN_KEYS_SQL = "SELECT 'ALTER TABLE ' || C.TABLE_NAME || ' DROP CONSTRAINT ' || C.CONSTRAINT_NAME FROM INFORMATION_SCHEMA.TABLE_CONSTRAINTS C "
+        + "JOIN INFORMATION_SCHEMA.REFERENTIAL_CONSTRAINTS R ON R.CONSTRAINT_SCHEMA = C.CONSTRAINT_SCHEMA AND R.CONSTRAINT_NAME = C.CONSTRAINT_NAME "
+        + "JOIN INFORMATION_SCHEMA.TABLE_CONSTRAINTS K ON K.CONSTRAINT_SCHEMA = R.UNIQUE_CONSTRAINT_SCHEMA AND K.CONSTRAINT_NAME = R.UNIQUE_CONSTRAINT_NAME "
+        + "WHERE C.TABLE_SCHEMA = 'PUBLIC' AND C.CONSTRAINT_TYPE = 'FOREIGN KEY' AND K.TABLE_NAME = 'ACCOUNT'";
+    private static final List<String> WIDEN_ID_COLUMNS_SQL = Arrays.asList(
+        "ALTER TABLE ACCOUNT ALTER COLUMN ID SET DATA TYPE BIGINT",
+        "ALTER TABLE ACCOUNT ALTER COLUMN ID DROP GENERATED",
+        "ALTER TABLE TRANSACTION ALTER COLUMN ID SET DATA TYPE BIGINT",
+        "ALTER TABLE TRANSACTION ALTER COLUMN ID DROP GENERATED",
+        "ALTER TABLE TRANSACTION ALTER COLUMN SOURCE_ACCOUNT_ID SET DATA TYPE BIGINT",
+        "ALTER TABLE TRANSACTION ALTER COLUMN DESTINATION_ACCOUNT_ID SET DATA TYPE BIGINT",
+        "ALTER TABLE ACCOUNT_DAILY_SUMMARY ALTER COLUMN ACCOUNT_ID SET DATA TYPE BIGINT",
+        "ALTER TABLE ACCOUNT_BALANCE_SLOT ALTER COLUMN ACCOUNT_ID SET DATA TYPE BIGINT",
+        "ALTER TABLE SCHEDULED_TRANSACTION ALTER COLUMN SOURCE_ACCOUNT_ID SET DATA TYPE BIGINT",
+        "ALTER TABLE SCHEDULED_TRANSACTION ALTER COLUMN DESTINATION_ACCOUNT_ID SET DATA TYPE BIGINT",
+        "ALTER TABLE NETTING_RESERVE ALTER COLUMN ACCOUNT_ID SET DATA TYPE BIGINT",
+        "ALTER TABLE FUNDS_HOLD ALTER COLUMN ACCOUNT_ID SET DATA TYPE BIGINT",
+        "ALTER TABLE RECONCILIATION_RUN ALTER COLUMN LAST_TRANSACTION_ID SET DATA TYPE BIGINT",
+        "ALTER TABLE RECONCILIATION_RUN ALTER COLUMN LAST_ACCOUNT_ID SET DATA TYPE BIGINT");
+    private static final List<String> ADD_ACCOUNT_FOREIGN_KEYS_SQL = Arrays.asList(
+        "ALTER TABLE TRANSACTION ADD CONSTRAINT TRANSACTION_SOURCE_ACCOUNT_FK FOREIGN KEY (SOURCE_ACCOUNT_ID) REFERENCES ACCOUNT(ID)",
+        "ALTER TABLE TRANSACTION ADD CONSTRAINT TRANSACTION_DESTINATION_ACCOUNT_FK FOREIGN KEY (DESTINATION_ACCOUNT_ID) REFERENCES ACCOUNT(ID)",
+        "ALTER TABLE ACCOUNT_DAILY_SUMMARY ADD CONSTRAINT ACCOUNT_DAILY_SUMMARY_ACCOUNT_FK FOREIGN KEY (ACCOUNT_ID) REFERENCES ACCOUNT(ID)",
+        "ALTER TABLE ACCOUNT_BALANCE_SLOT ADD CONSTRAINT ACCOUNT_BALANCE_SLOT_ACCOUNT_FK FOREIGN KEY (ACCOUNT_ID) REFERENCES ACCOUNT(ID)",
+        "ALTER TABLE SCHEDULED_TRANSACTION ADD CONSTRAINT SCHEDULED_TRANSACTION_SOURCE_ACCOUNT_FK FOREIGN KEY (SOURCE_ACCOUNT_ID) REFERENCES ACCOUNT(ID)",
+        "ALTER TABLE SCHEDULED_TRANSACTION ADD CONSTRAINT SCHEDULED_TRANSACTION_DESTINATION_ACCOUNT_FK FOREIGN KEY (DESTINATION_ACCOUNT_ID) REFERENCES ACCOUNT(ID)",
+        "ALTER TABLE NETTING_RESERVE ADD CONSTRAINT NETTING_RESERVE_ACCOUNT_FK FOREIGN KEY (ACCOUNT_ID) REFERENCES ACCOUNT(ID)",
+        "ALTER TABLE FUNDS_HOLD ADD CONSTRAINT FUNDS_HOLD_ACCOUNT_FK FOREIGN KEY (ACCOUNT_ID) REFERENCES ACCOUNT(ID)");
+    private static final String INSERT_TRANSACTION_ID_BLOCK_SQL = "MERGE INTO ID_BLOCK B USING (VALUES ('TRANSACTION', 0)) AS V(NAME, NEXT_ID) ON B.NAME = V.NAME WHEN NOT MATCHED THEN INSERT VALUES (V.NAME, V.NEXT_ID)";
+    private static final String CREATE_DEPOSIT_WITH_ID_PROCEDURE_SQL = "CREATE PROCEDURE DEPOSIT_FUNDS(IN P_TRANSACTION_ID BIGINT, IN P_ACCOUNT_ID BIGINT, IN P_AMOUNT DECIMAL(20,2), OUT P_RESULT INT) MODIFIES SQL DATA BEGIN ATOMIC "
+        + "DECLARE V_UPDATED INT; "
+        + "UPDATE ACCOUNT SET BALANCE = BALANCE + P_AMOUNT WHERE ID = P_ACCOUNT_ID; "
+        + "GET DIAGNOSTICS V_UPDATED = ROW_COUNT; "
+        + "IF V_UPDATED = 0 THEN SET P_RESULT = " + ACCOUNT_DOESNT_EXIST + "; "
+        + "ELSE INSERT INTO TRANSACTION(ID, DESTINATION_ACCOUNT_ID, TRANSACTION_TYPE, AMOUNT) VALUES (P_TRANSACTION_ID, P_ACCOUNT_ID, 'DEPOSIT', P_AMOUNT); SET P_RESULT = " + OK + "; "
+        + "END IF; END";
+    private static final String CREATE_WITHDRAW_WITH_ID_PROCEDURE_SQL = "CREATE PROCEDURE WITHDRAW_FUNDS(IN P_TRANSACTION_ID BIGINT, IN P_ACCOUNT_ID BIGINT, IN P_AMOUNT DECIMAL(20,2), OUT P_RESULT INT) MODIFIES SQL DATA BEGIN ATOMIC "
+        + "DECLARE V_UPDATED INT; "
+        + "UPDATE ACCOUNT SET BALANCE = BALANCE - P_AMOUNT WHERE ID = P_ACCOUNT_ID AND BALANCE >= P_AMOUNT; "
+        + "GET DIAGNOSTICS V_UPDATED = ROW_COUNT; "
+        + "IF V_UPDATED = 0 THEN "
+        + "IF EXISTS (SELECT ID FROM ACCOUNT WHERE ID = P_ACCOUNT_ID) THEN SET P_RESULT = " + INSUFFICIENT_FUNDS + "; ELSE SET P_RESULT = " + ACCOUNT_DOESNT_EXIST + "; END IF; "
+        + "ELSE INSERT INTO TRANSACTION(ID, DESTINATION_ACCOUNT_ID, TRANSACTION_TYPE, AMOUNT) VALUES (P_TRANSACTION_ID, P_ACCOUNT_ID, 'WITHDRAW', P_AMOUNT); SET P_RESULT = " + OK + "; "
+        + "END IF; END";
+    private static final String CREATE_TRANSFER_WITH_ID_PROCEDURE_SQL = "CREATE PROCEDURE TRANSFER_FUNDS(IN P_TRANSACTION_ID BIGINT, IN P_SOURCE_ACCOUNT_ID BIGINT, IN P_DESTINATION_ACCOUNT_ID BIGINT, IN P_AMOUNT DECIMAL(20,2), OUT P_RESULT INT) MODIFIES SQL DATA BEGIN ATOMIC "
+        + "DECLARE V_UPDATED INT; "
+        + "IF NOT EXISTS (SELECT ID FROM ACCOUNT WHERE ID = P_DESTINATION_ACCOUNT_ID) THEN SET P_RESULT = " + ACCOUNT_DOESNT_EXIST + "; "
+        + "ELSE "
+        + "UPDATE ACCOUNT SET BALANCE = BALANCE WHERE ID = LEAST(P_SOURCE_ACCOUNT_ID, P_DESTINATION_ACCOUNT_ID); "
+        + "UPDATE ACCOUNT SET BALANCE = BALANCE - P_AMOUNT WHERE ID = P_SOURCE_ACCOUNT_ID AND BALANCE >= P_AMOUNT; "
+        + "GET DIAGNOSTICS V_UPDATED = ROW_COUNT; "
+        + "IF V_UPDATED = 0 THEN "
+        + "IF EXISTS (SELECT ID FROM ACCOUNT WHERE ID = P_SOURCE_ACCOUNT_ID) THEN SET P_RESULT = " + INSUFFICIENT_FUNDS + "; ELSE SET P_RESULT = " + ACCOUNT_DOESNT_EXIST + "; END IF; "
+        + "ELSE "
+        + "UPDATE ACCOUNT SET BALANCE = BALANCE + P_AMOUNT WHERE ID = P_DESTINATION_ACCOUNT_ID; "
+        + "INSERT INTO TRANSACTION(ID, SOURCE_ACCOUNT_ID, DESTINATION_ACCOUNT_ID, TRANSACTION_TYPE, AMOUNT) VALUES (P_TRANSACTION_ID, P_SOURCE_ACCOUNT_ID, P_DESTINATION_ACCOUNT_ID, 'TRANSFER', P_AMOUNT); "
+        + "SET P_RESULT = " + OK + "; "
+        + "END IF; END IF; END";
+
+    // Accounts changed since they were last reconciled, at most one row per account. VERSION is increased by every
+    // change, a run removes a row only if its version is still the one the run read before checking the account.
+    // Incremental reconciliation replaced the transaction and account id checkpoint of RECONCILIATION_RUN.
+    private static final String CREATE_ACCOUNT_CHANGE_TABLE_SQL = "CREATE TABLE IF NOT EXISTS ACCOUNT_CHANGE(ACCOUNT_ID BIGINT PRIMARY KEY NOT NULL, VERSION BIGINT DEFAULT 0 NOT NULL)";
+    private static final String SELECT_DROP_RECONCILIATION_RUN_CHECKPOINT_SQL = "SELECT 'ALTER TABLE RECONCILIATION_RUN DROP COLUMN ' || COLUMN_NAME FROM INFORMATION_SCHEMA.COLUMNS "
+        + "WHERE TABLE_SCHEMA = 'PUBLIC' AND TABLE_NAME = 'RECONCILIATION_RUN' AND COLUMN_NAME IN ('LAST_TRANSACTION_ID', 'LAST_ACCOUNT_ID')";
+
+    // Journal id of a scheduled transaction is stored when it's claimed, so restart can tell whether it committed
+    private static final String WIDEN_SCHEDULED_TRANSACTION_STATUS_SQL = "ALTER TABLE SCHEDULED_TRANSACTION ALTER COLUMN STATUS SET DATA TYPE VARCHAR(12)";
+    private static final String ADD_SCHEDULED_TRANSACTION_TRANSACTION_ID_SQL = "ALTER TABLE SCHEDULED_TRANSACTION ADD COLUMN IF NOT EXISTS TRANSACTION_ID BIGINT";
+
+    // Remaining identity ids become BIGINT like account and transaction ids, they stay generated by the database
+    private static final List<String> WIDEN_IDENTITY_COLUMNS_SQL = Arrays.asList(
+        "ALTER TABLE SCHEDULED_TRANSACTION ALTER COLUMN ID SET DATA TYPE BIGINT",
+        "ALTER TABLE FUNDS_HOLD ALTER COLUMN ID SET DATA TYPE BIGINT",
+        "ALTER TABLE RECONCILIATION_RUN ALTER COLUMN ID SET DATA TYPE BIGINT");
+
+    // Changes are recorded by triggers only while incremental reconciliation is enabled. Enabling it records every
+    // account once, so the first incremental run checks all of them. Hot accounts aren't recorded, a row updated by
+    // all of their transactions would serialize them again, incremental runs always check accounts with slots.
+    private static final String COUNT_ACCOUNT_CHANGE_TRIGGERS_SQL = "SELECT COUNT(*) FROM INFORMATION_SCHEMA.TRIGGERS WHERE TRIGGER_SCHEMA = 'PUBLIC' AND TRIGGER_NAME IN ('RECORD_ACCOUNT_CREATED', 'RECORD_TRANSACTION_ACCOUNTS')";
+    private static final String DROP_ACCOUNT_CREATED_TRIGGER_SQL = "DROP TRIGGER RECORD_ACCOUNT_CREATED IF EXISTS";
+    private static final String DROP_TRANSACTION_ACCOUNTS_TRIGGER_SQL = "DROP TRIGGER RECORD_TRANSACTION_ACCOUNTS IF EXISTS";
+    private static final String DELETE_ACCOUNT_CHANGES_SQL = "DELETE FROM ACCOUNT_CHANGE";
+    private static final String BACKFILL_ACCOUNT_CHANGE_SQL = "INSERT INTO ACCOUNT_CHANGE(ACCOUNT_ID) SELECT ID FROM ACCOUNT";
+    private static final String CREATE_ACCOUNT_CREATED_TRIGGER_SQL = "CREATE TRIGGER RECORD_ACCOUNT_CREATED AFTER INSERT ON ACCOUNT REFERENCING NEW ROW AS N FOR EACH ROW "
+        + "INSERT INTO ACCOUNT_CHANGE(ACCOUNT_ID) VALUES (N.ID)";
+    private static final String MERGE_ACCOUNT_CHANGE_SQL = "IF NOT EXISTS (SELECT ACCOUNT_ID FROM ACCOUNT_BALANCE_SLOT WHERE ACCOUNT_ID = %1$s) THEN "
+        + "MERGE INTO ACCOUNT_CHANGE C USING (VALUES (%1$s)) AS V(ACCOUNT_ID) ON C.ACCOUNT_ID = V.ACCOUNT_ID "
+        + "WHEN MATCHED THEN UPDATE SET C.VERSION = C.VERSION + 1 WHEN NOT MATCHED THEN INSERT VALUES (V.ACCOUNT_ID, 0); END IF; ";
+    private static final String CREATE_TRANSACTION_ACCOUNTS_TRIGGER_SQL = "CREATE TRIGGER RECORD_TRANSACTION_ACCOUNTS AFTER INSERT ON TRANSACTION REFERENCING NEW ROW AS N FOR EACH ROW BEGIN ATOMIC "
+        + "IF N.SOURCE_ACCOUNT_ID IS NOT NULL THEN "
+        + String.format(MERGE_ACCOUNT_CHANGE_SQL, "N.SOURCE_ACCOUNT_ID")
+        + "END IF; "
+        + String.format(MERGE_ACCOUNT_CHANGE_SQL, "N.DESTINATION_ACCOUNT_ID")
+        + "END";
+    private static final List<String> ENABLE_ACCOUNT_CHANGE_TRACKING_SQL = Arrays.asList(
+        DROP_ACCOUNT_CREATED_TRIGGER_SQL, DROP_TRANSACTION_ACCOUNTS_TRIGGER_SQL, DELETE_ACCOUNT_CHANGES_SQL,
+        BACKFILL_ACCOUNT_CHANGE_SQL, CREATE_ACCOUNT_CREATED_TRIGGER_SQL, CREATE_TRANSACTION_ACCOUNTS_TRIGGER_SQL);
+    private static final List<String> DISABLE_ACCOUNT_CHANGE_TRACKING_SQL = Arrays.asList(
+        DROP_ACCOUNT_CREATED_TRIGGER_SQL, DROP_TRANSACTION_ACCOUNTS_TRIGGER_SQL, DELETE_ACCOUNT_CHANGES_SQL);
+
+    // Migration at index i upgrades schema to version i + 1, new statements are only ever appended as new versions.
+    // Objects without IF NOT EXISTS are dropped before they're created and conditional statements are selected.
+    private static final List<List<String>> MIGRATIONS = Arrays.asList(
+        Arrays.asList(CREATE_ACCOUNT_TABLE_SQL, CREATE_TRANSACTION_TABLE_SQL, CREATE_SOURCE_ACCOUNT_ID_INDEX_SQL,
+            CREATE_DESTINATION_ACCOUNT_ID_INDEX_SQL),
+        Arrays.asList(DROP_DEPOSIT_PROCEDURE_SQL, CREATE_DEPOSIT_PROCEDURE_SQL, DROP_WITHDRAW_PROCEDURE_SQL,
+            CREATE_WITHDRAW_PROCEDURE_SQL, DROP_TRANSFER_PROCEDURE_SQL, CREATE_TRANSFER_PROCEDURE_SQL),
+        Arrays.asList(CREATE_ACCOUNT_DAILY_SUMMARY_TABLE_SQL, BACKFILL_ACCOUNT_DAILY_SUMMARY_SQL,
+            DROP_ACCOUNT_DAILY_SUMMARY_TRIGGER_SQL, CREATE_ACCOUNT_DAILY_SUMMARY_TRIGGER_SQL),
+        Arrays.asList(CREATE_ACCOUNT_BALANCE_SLOT_TABLE_SQL),
+        Arrays.asList(CREATE_SCHEDULED_TRANSACTION_TABLE_SQL, CREATE_SCHEDULED_TRANSACTION_STATUS_INDEX_SQL),
+        Arrays.asList(CREATE_RECONCILIATION_RUN_TABLE_SQL),
+        Arrays.asList(CREATE_ID_BLOCK_TABLE_SQL, INSERT_ACCOUNT_ID_BLOCK_SQL),
+        Arrays.asList(CREATE_NETTING_RESERVE_TABLE_SQL),
+        Arrays.asList(CREATE_FUNDS_HOLD_TABLE_SQL, CREATE_FUNDS_HOLD_STATUS_INDEX_SQL),
+        Arrays.asList(DROP_TRANSFER_PROCEDURE_SQL, CREATE_ORDERED_TRANSFER_PROCEDURE_SQL),
+        concat(Arrays.asList(DROP_ACCOUNT_DAILY_SUMMARY_TRIGGER_SQL, DROP_DEPOSIT_PROCEDURE_SQL,
+            DROP_WITHDRAW_PROCEDURE_SQL, DROP_TRANSFER_PROCEDURE_SQL, SELECT_DROP_ACCOUNT_FOREIGN_KEYS_SQL),
+            WIDEN_ID_COLUMNS_SQL, ADD_ACCOUNT_FOREIGN_KEYS_SQL,
+            Arrays.asList(CREATE_ACCOUNT_DAILY_SUMMARY_TRIGGER_SQL, CREATE_DEPOSIT_WITH_ID_PROCEDURE_SQL,
+                CREATE_WITHDRAW_WITH_ID_PROCEDURE_SQL, CREATE_TRANSFER_WITH_ID_PROCEDURE_SQL,
+                INSERT_TRANSACTION_ID_BLOCK_SQL)),
+        Arrays.asList(CREATE_ACCOUNT_CHANGE_TABLE_SQL, SELECT_DROP_RECONCILIATION_RUN_CHECKPOINT_SQL),
+        Arrays.asList(WIDEN_SCHEDULED_TRANSACTION_STATUS_SQL, ADD_SCHEDULED_TRANSACTION_TRANSACTION_ID_SQL),
+        WIDEN_IDENTITY_COLUMNS_SQL);
+
+    private static final List<String> REQUIRED_TABLES = Arrays.asList("ACCOUNT", "TRANSACTION", "ACCOUNT_DAILY_SUMMARY",
+        "ACCOUNT_BALANCE_SLOT", "SCHEDULED_TRANSACTION", "RECONCILIATION_RUN", "ID_BLOCK", "NETTING_RESERVE",
+        "FUNDS_HOLD", "ACCOUNT_CHANGE");
+
+    private final ConnectionScheduler connectionScheduler;
+    private final StorageOptions storageOptions;
+
+    public DatabaseInitializer(final ConnectionScheduler connectionScheduler, final StorageOptions storageOptions) {
+        this.connectionScheduler = connectionScheduler;
+        this.storageOptions = storageOptions;
+    }
+
+    public static int latestSchemaVersion() {
+        return MIGRATIONS.size();
+    }
+
+    public Completable initialize(final String transactionControl, final boolean trackAccountChanges) {
+        return connectionScheduler.usingWriteConnection(connection -> setTransactionControl(connection, transactionControl)
+            .andThen(prepareStorage(connection))
+            .andThen(connection.rxExecute(CREATE_SCHEMA_VERSION_TABLE_SQL))
+            .andThen(selectSchemaVersion(connection))
+            .flatMap(version -> migrate(connection, version).andThen(verifySchema(connection))
+                .andThen(setAccountChangeTracking(connection, trackAccountChanges)).toSingleDefault(version)))
+            .doOnSuccess(version -> log.info("Database schema at version {}, migrated from version {}",
+                latestSchemaVersion(), version))
+            .ignoreElement()
+            .andThen(warmUpIndexes());
+    }
+
+    public Completable checkpoint() {
+        return connectionScheduler.usingWriteConnection(connection -> connection.rxExecute(CHECKPOINT_SQL)
+            .toSingleDefault(1))
+            .ignoreElement();
+    }
+
+    // LOCKS (database default), MVLOCKS or MVCC
+    private Completable setTransactionControl(final SQLConnection connection, final String transactionControl) {
+        if (transactionControl == null) {
+            return Completable.complete();
+        }
+        return connection.rxExecute(SET_TRANSACTION_CONTROL_SQL + TransactionControl.valueOf(transactionControl));
+    }
+
+    // In-memory database lives as long as the JVM, so it's started from scratch. File database is never dropped,
+    // its tables are CACHED so only the working set has to be loaded into memory on restart. The mode is resolved
+    // from the database url, a persistent url is never dropped whatever the storage config says.
+    private Completable prepareStorage(final SQLConnection connection) {
+        if (storageOptions.getMode() == StorageMode.MEMORY) {
+            return connection.rxExecute(DROP_SCHEMA_SQL);
+        }
+        return connection.rxExecute(SET_DEFAULT_TABLE_TYPE_SQL)
+            .andThen(connection.rxExecute(String.format(SET_WRITE_DELAY_SQL, storageOptions.getWriteDelayMs())))
+            .andThen(connection.rxExecute(String.format(SET_LOG_SIZE_SQL, storageOptions.getLogSizeMb())))
+            .andThen(connection.rxExecute(String.format(SET_CACHE_ROWS_SQL, storageOptions.getCacheRows())))
+            .andThen(connection.rxExecute(String.format(SET_CACHE_SIZE_SQL, storageOptions.getCacheSizeKb())));
+    }
+
+    private Single<Integer> selectSchemaVersion(final SQLConnection connection) {
+        return connection.rxQuerySingle(SELECT_SCHEMA_VERSION_SQL).map(row -> row.getInteger(0)).toSingle(0);
+    }
+
+    private Completable migrate(final SQLConnection connection, final int currentVersion) {
+        if (currentVersion > latestSchemaVersion()) {
+            return Completable.error(new IllegalStateException("Database schema version " + currentVersion
+                + " is newer than supported version " + latestSchemaVersion()));
+        }
+        final List<Completable> steps = new ArrayList<>();
+        for (int version = currentVersion + 1; version <= latestSchemaVersion(); version++) {
+            final int appliedVersion = version;
+            MIGRATIONS.get(version - 1).forEach(sql -> steps.add(sql.startsWith("SELECT")
+                ? executeSelected(connection, sql) : connection.rxExecute(sql)));
+            steps.add(connection.rxUpdateWithParams(INSERT_SCHEMA_VERSION_SQL, new JsonArray().add(appliedVersion))
+                .doOnSuccess(result -> log.info("Applied schema migration {}", appliedVersion))
+                .ignoreElement());
+        }
+        return Completable.concat(steps);
+    }
+
+    // Nothing is done when the triggers are already in the wanted state, so changes recorded so far are kept
+    private Completable setAccountChangeTracking(final SQLConnection connection, final boolean enabled) {
+        return connection.rxQuerySingle(COUNT_ACCOUNT_CHANGE_TRIGGERS_SQL)
+            .flatMapCompletable(row -> {
+                final int triggers = row.getInteger(0);
+                if (enabled ? triggers == 2 : triggers == 0) {
+                    return Completable.complete();
+                }
+                return Observable.fromIterable(enabled ? ENABLE_ACCOUNT_CHANGE_TRACKING_SQL
+                    : DISABLE_ACCOUNT_CHANGE_TRACKING_SQL)
+                    .concatMapCompletable(connection::rxExecute)
+                    .doOnComplete(() -> log.info("Account change tracking {}", enabled ? "enabled" : "disabled"));
+            });
+    }
+
+    // Migration statement which is a query selects the statements to execute, for objects named by the database or
+    // changes which may have been made already
+    private Completable executeSelected(final SQLConnection connection, final String sql) {
+        return connection.rxQuery(sql)
+            .flatMapCompletable(resultSet -> Observable.fromIterable(resultSet.getResults())
+                .concatMapCompletable(row -> connection.rxExecute(row.getString(0))));
+    }
+
+    @SafeVarargs
+    private static List<String> concat(final List<String>... statements) {
+        final List<String> result = new ArrayList<>();
+        Arrays.stream(statements).forEach(result::addAll);
+        return result;
+    }
+
+    private Completable verifySchema(final SQLConnection connection) {
+        final StringBuilder tables = new StringBuilder("(");
+        REQUIRED_TABLES.forEach(table -> tables.append(tables.length() > 1 ? ", '" : "'").append(table).append("'"));
+        return connection.rxQuerySingle(COUNT_TABLES_SQL + tables.append(")"))
+            .flatMapCompletable(row -> row.getInteger(0) == REQUIRED_TABLES.size() ? Completable.complete()
+                : Completable.error(new IllegalStateException("Database schema is missing some of " + REQUIRED_TABLES)));
+    }
+
+    // Touches evenly spaced keys of each critical index, loading its upper levels into the cache
+    private Completable warmUpIndexes() {
+        if (storageOptions.getWarmUpProbes() <= 0) {
+            return Completable.complete();
+        }
+        final long startedAt = System.nanoTime();
+        return connectionScheduler.usingReadConnection(connection -> connection.rxQuerySingle(SELECT_ACCOUNT_ID_RANGE_SQL)
+            .flatMapSingleElement(range -> {
+                if (range.getValue(0) == null) {
+                    return Single.just(0);
+                }
+                final long minId = range.getLong(0);
+                final long step = Math.max(1, (range.getLong(1) - minId) / storageOptions.getWarmUpProbes());
+                return Observable.rangeLong(0, storageOptions.getWarmUpProbes())
+                    .map(probe -> minId + probe * step)
+                    .concatMapCompletable(id -> Observable.fromIterable(WARM_UP_PROBES_SQL)
+                        .concatMapCompletable(sql -> connection.rxQueryWithParams(sql, new JsonArray().add(id))
+                            .ignoreElement()))
+                    .toSingleDefault(storageOptions.getWarmUpProbes());
+            })
+            .toSingle(0))
+            .doOnSuccess(probes -> log.info("Warmed up indexes with {} probes in {} ms", probes,
+                (System.nanoTime() - startedAt) / 1_000_000))
+            .ignoreElement();
+    }
+
+    private enum TransactionControl {
+        LOCKS,
+        MVLOCKS,
+        MVCC
+    }
+
+}
@@ -0,0 +1,257 @@
+package com.gjeziorski.vertxtrial.repository;
+
+import static com.gjeziorski.vertxtrial.common.ErrorCodes.ACCOUNT_DOESNT_EXIST;
+import static com.gjeziorski.vertxtrial.common.ErrorCodes.HOLD_DOESNT_EXIST;
+import static com.gjeziorski.vertxtrial.common.ErrorCodes.INSUFFICIENT_FUNDS;
+import static com.gjeziorski.vertxtrial.common.ErrorCodes.OK;
+
+import com.gjeziorski.vertxtrial.common.ErrorCodesTranslator;
+import com.gjeziorski.vertxtrial.domain.Transaction;
+import com.gjeziorski.vertxtrial.domain.TransactionType;
+import com.gjeziorski.vertxtrial.holds.Hold;
+import com.gjeziorski.vertxtrial.holds.HoldOptions;
+import com.gjeziorski.vertxtrial.holds.HoldTable;
+import com.gjeziorski.vertxtrial.index.BalanceIndex;
+import io.reactivex.Completable;
+import io.reactivex.Single;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.reactivex.core.Vertx;
+import io.vertx.reactivex.core.eventbus.Message;
+import io.vertx.reactivex.ext.sql.SQLRowStream;
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+import lombok.extern.slf4j.Slf4j;
+
+// Holds reserve funds of an account in the in-memory HoldTable, available balance is the balance index minus the
+// held amount and debits in flight, so placing and releasing a hold never locks the balance row. Every hold is
+// stored in FUNDS_HOLD, so holds survive restart. Capture is a withdrawal executed like any other transaction and the
+// only step taking the balance row lock. It's claimed (ACTIVE -> CAPTURING) before the withdrawal, rows left
+// CAPTURING by a crash can't tell whether the money moved, they're marked INTERRUPTED on restart and logged.
+@Slf4j
+public class HoldsRepository {
+
+    private static final String INSERT_HOLD_SQL = "INSERT INTO FUNDS_HOLD(ACCOUNT_ID, AMOUNT, EXPIRES_AT) VALUES (?, ?, ?)";
+    private static final String INTERRUPT_CAPTURING_SQL = "UPDATE FUNDS_HOLD SET STATUS = 'INTERRUPTED' WHERE STATUS = 'CAPTURING'";
+    private static final String SELECT_ACTIVE_SQL = "SELECT ID, ACCOUNT_ID, AMOUNT, EXPIRES_AT FROM FUNDS_HOLD WHERE STATUS = 'ACTIVE'";
+    private static final String UPDATE_STATUS_SQL = "UPDATE FUNDS_HOLD SET STATUS = ? WHERE ID = ? AND STATUS = ?";
+    private static final String COMPLETE_CAPTURE_SQL = "UPDATE FUNDS_HOLD SET STATUS = 'CAPTURED', CAPTURED_AMOUNT = ? WHERE ID = ?";
+    private static final String EXPIRE_SQL = "UPDATE FUNDS_HOLD SET STATUS = 'EXPIRED' WHERE ID = ? AND STATUS = 'ACTIVE'";
+
+    private final Vertx vertx;
+    private final ConnectionScheduler connectionScheduler;
+    private final TransactionsRepository transactionsRepository;
+    private final BalanceIndex balanceIndex;
+    private final HoldTable holdTable;
+    private final HoldOptions options;
+    private final AtomicBoolean sweeping = new AtomicBoolean();
+    private final LongAdder placed = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder captured = new LongAdder();
+    private final LongAdder released = new LongAdder();
+    private final LongAdder expired = new LongAdder();
+
+    public HoldsRepository(final Vertx vertx, final ConnectionScheduler connectionScheduler,
+        final TransactionsRepository transactionsRepository, final BalanceIndex balanceIndex,
+        final HoldTable holdTable, final HoldOptions options) {
+        this.vertx = vertx;
+        this.connectionScheduler = connectionScheduler;
+        this.transactionsRepository = transactionsRepository;
+        this.balanceIndex = balanceIndex;
+        this.holdTable = holdTable;
+        this.options = options;
+    }
+
+    // The amount is reserved in memory before the row is inserted, so concurrent holds can't overdraw the account
+    public Single<JsonObject> place(final Message<Object> message) {
+        final JsonObject request = new JsonObject(message.body().toString());
+        final long accountId = request.getLong("account_id");
+        final BigDecimal amount = new BigDecimal(request.getValue("amount").toString());
+        final long expiresAtMs = System.currentTimeMillis() + Math.min(options.getMaxExpiryMs(),
+            request.getLong("expires_in_ms", options.getDefaultExpiryMs()));
+        final BigDecimal balance = balanceIndex.balance(accountId);
+        if (balance == null || !holdTable.reserve(accountId, amount, balance)) {
+            final int errorCode = balance == null ? ACCOUNT_DOESNT_EXIST : INSUFFICIENT_FUNDS;
+            rejected.increment();
+            message.fail(errorCode, ErrorCodesTranslator.translateErrorCode(errorCode));
+            return Single.just(new JsonObject());
+        }
+        return connectionScheduler.usingWriteConnection(connection -> connection
+            .rxUpdateWithParams(INSERT_HOLD_SQL, new JsonArray().add(accountId).add(amount.toString())
+                .add(expiresAtMs)))
+            .map(inserted -> {
+                final Hold hold = Hold.builder().id(inserted.getKeys().getLong(0)).accountId(accountId).amount(amount)
+                    .expiresAtMs(expiresAtMs).build();
+                holdTable.put(hold);
+                placed.increment();
+                return toJson(hold);
+            })
+            .doOnSuccess(result -> message.reply(result.toString()))
+            .doOnError(throwable -> {
+                holdTable.unreserve(accountId, amount);
+                log.error("Failed to place hold", throwable);
+                message.fail(RepositoryFailures.failureCode(throwable), "Failed to place hold");
+            });
+    }
+
+    // Captures up to the held amount, the rest of the hold is released
+    public Single<Integer> capture(final Message<Object> message) {
+        final JsonObject request = new JsonObject(message.body().toString());
+        final Hold hold = holdTable.claim(request.getLong("id"), System.currentTimeMillis());
+        if (hold == null) {
+            return fail(message, HOLD_DOESNT_EXIST);
+        }
+        final BigDecimal amount = request.getValue("amount") == null ? hold.getAmount()
+            : new BigDecimal(request.getValue("amount").toString());
+        if (amount.compareTo(hold.getAmount()) > 0) {
+            holdTable.put(hold);
+            return fail(message, INSUFFICIENT_FUNDS);
+        }
+        final Transaction withdrawal = Transaction.builder().transactionType(TransactionType.WITHDRAW)
+            .destinationAccountId(hold.getAccountId()).amount(amount).build();
+        return updateStatus(hold, "CAPTURING", "ACTIVE")
+            .flatMap(claimed -> transactionsRepository.capture(withdrawal, hold.getAmount())
+                .onErrorReturn(RepositoryFailures::failureCode)
+                .flatMap(errorCode -> errorCode == OK ? completeCapture(hold, amount)
+                    : updateStatus(hold, "ACTIVE", "CAPTURING").map(restored -> errorCode)))
+            .doOnSuccess(errorCode -> {
+                if (errorCode == OK) {
+                    holdTable.unreserve(hold.getAccountId(), hold.getAmount());
+                    captured.increment();
+                    message.reply(new JsonObject().put("id", hold.getId()).put("account_id", hold.getAccountId())
+                        .put("amount", amount.toPlainString()).toString());
+                } else {
+                    holdTable.put(hold);
+                    message.fail(errorCode, ErrorCodesTranslator.translateErrorCode(errorCode));
+                }
+            })
+            .doOnError(throwable -> completeFailed(message, hold, throwable, "Failed to capture hold"));
+    }
+
+    public Single<Integer> release(final Message<Object> message) {
+        final Hold hold = holdTable.claim(new JsonObject(message.body().toString()).getLong("id"),
+            System.currentTimeMillis());
+        if (hold == null) {
+            return fail(message, HOLD_DOESNT_EXIST);
+        }
+        return updateStatus(hold, "RELEASED", "ACTIVE")
+            .map(updated -> OK)
+            .doOnSuccess(errorCode -> {
+                holdTable.unreserve(hold.getAccountId(), hold.getAmount());
+                released.increment();
+                message.reply("");
+            })
+            .doOnError(throwable -> completeFailed(message, hold, throwable, "Failed to release hold"));
+    }
+
+    // Reads only ACTIVE rows through the status index, finished holds are never scanned
+    public Completable recover() {
+        return connectionScheduler.usingWriteConnection(connection -> connection.rxUpdate(INTERRUPT_CAPTURING_SQL)
+            .doOnSuccess(interrupted -> {
+                if (interrupted.getUpdated() > 0) {
+                    log.warn("Marked {} holds whose capture was interrupted by restart as interrupted",
+                        interrupted.getUpdated());
+                }
+            })
+            .flatMap(interrupted -> connection.rxQueryStream(SELECT_ACTIVE_SQL))
+            .flatMapPublisher(SQLRowStream::toFlowable)
+            .doOnNext(row -> holdTable.load(Hold.builder()
+                .id(row.getLong(0))
+                .accountId(row.getLong(1))
+                .amount(new BigDecimal(row.getValue(2).toString()))
+                .expiresAtMs(row.getLong(3))
+                .build()))
+            .count())
+            .doOnSuccess(count -> log.info("Loaded {} active holds", count))
+            .ignoreElement();
+    }
+
+    public void start() {
+        vertx.setPeriodic(options.getSweepIntervalMs(), timerId -> {
+            if (sweeping.compareAndSet(false, true)) {
+                sweep();
+            }
+        });
+    }
+
+    public JsonObject metrics() {
+        return new JsonObject()
+            .put("active", holdTable.size())
+            .put("accounts", holdTable.accounts())
+            .put("held", holdTable.total().toPlainString())
+            .put("placed", placed.sum())
+            .put("rejected", rejected.sum())
+            .put("captured", captured.sum())
+            .put("released", released.sum())
+            .put("expired", expired.sum());
+    }
+
+    // Holds whose expiry fails go back to the table and are swept again by the next tick
+    private void sweep() {
+        final List<Hold> batch = holdTable.claimExpired(System.currentTimeMillis(), options.getSweepBatchSize());
+        if (batch.isEmpty()) {
+            sweeping.set(false);
+            return;
+        }
+        final List<JsonArray> expiries = batch.stream().map(hold -> new JsonArray().add(hold.getId()))
+            .collect(Collectors.toList());
+        connectionScheduler.usingWriteConnection(connection -> connection.rxBatchWithParams(EXPIRE_SQL, expiries))
+            .subscribe(updated -> {
+                batch.forEach(hold -> holdTable.unreserve(hold.getAccountId(), hold.getAmount()));
+                expired.add(batch.size());
+                sweep();
+            }, throwable -> {
+                log.error("Failed to expire holds", throwable);
+                batch.forEach(holdTable::put);
+                sweeping.set(false);
+            });
+    }
+
+    // The money has moved already, a row left CAPTURING is marked INTERRUPTED on restart
+    private Single<Integer> completeCapture(final Hold hold, final BigDecimal amount) {
+        return connectionScheduler.usingWriteConnection(connection -> connection.rxUpdateWithParams(
+            COMPLETE_CAPTURE_SQL, new JsonArray().add(amount.toString()).add(hold.getId())))
+            .map(completed -> OK)
+            .doOnError(throwable -> log.error("Failed to mark hold {} captured", hold.getId(), throwable))
+            .onErrorReturnItem(OK);
+    }
+
+    // Updating nothing means the row was deleted meanwhile
+    private Single<Integer> updateStatus(final Hold hold, final String status, final String expectedStatus) {
+        return connectionScheduler.usingWriteConnection(connection -> connection.rxUpdateWithParams(UPDATE_STATUS_SQL,
+            new JsonArray().add(status).add(hold.getId()).add(expectedStatus)))
+            .flatMap(updated -> updated.getUpdated() > 0 ? Single.just(updated.getUpdated())
+                : Single.error(new TransactionAbortedException(HOLD_DOESNT_EXIST)));
+    }
+
+    private void completeFailed(final Message<Object> message, final Hold hold, final Throwable throwable,
+        final String failureMessage) {
+        if (throwable instanceof TransactionAbortedException) {
+            holdTable.unreserve(hold.getAccountId(), hold.getAmount());
+            final int errorCode = ((TransactionAbortedException) throwable).getErrorCode();
+            message.fail(errorCode, ErrorCodesTranslator.translateErrorCode(errorCode));
+            return;
+        }
+        holdTable.put(hold);
+        log.error(failureMessage, throwable);
+        message.fail(RepositoryFailures.failureCode(throwable), failureMessage);
+    }
+
+    private static Single<Integer> fail(final Message<Object> message, final int errorCode) {
+        message.fail(errorCode, ErrorCodesTranslator.translateErrorCode(errorCode));
+        return Single.just(errorCode);
+    }
+
+    private static JsonObject toJson(final Hold hold) {
+        return new JsonObject()
+            .put("id", hold.getId())
+            .put("account_id", hold.getAccountId())
+            .put("amount", hold.getAmount().toPlainString())
+            .put("expires_at", Instant.ofEpochMilli(hold.getExpiresAtMs()).toString());
+    }
+
+}
@@ -0,0 +1,166 @@
+package com.gjeziorski.vertxtrial.repository;
+
+import static com.gjeziorski.vertxtrial.common.ErrorCodes.ACCOUNT_DOESNT_EXIST;
+import static com.gjeziorski.vertxtrial.common.ErrorCodes.INSUFFICIENT_FUNDS;
+import static com.gjeziorski.vertxtrial.common.ErrorCodes.OK;
+
+import com.gjeziorski.vertxtrial.domain.Transaction;
+import io.reactivex.Observable;
+import io.reactivex.Single;
+import io.vertx.core.json.JsonArray;
+import io.vertx.reactivex.ext.sql.SQLClientHelper;
+import io.vertx.reactivex.ext.sql.SQLConnection;
+import java.math.BigDecimal;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Function;
+
+// Hot accounts keep part of their balance in ACCOUNT_BALANCE_SLOT rows. Credits go to a random slot and never touch
+// the account row, so concurrent deposits only contend when they pick the same slot. Debits charge the account row
+// and sweep slots into it only when its balance isn't enough. Every write is relative and guarded, a slot gives up
+// at most what was read from it and the account is charged only while its balance covers the amount, so deposits
+// committed in between are kept and concurrent debits can't overdraw even when FOR UPDATE doesn't block (MVCC).
+// Accounts are processed in ascending id order and account row is always locked before its slots, so the locks
+// taken here can't form a cycle with each other or with the other executors. Transactions without a hot account
+// are passed to the configured executor.
+class HotAccountTransactionExecutor implements TransactionExecutor {
+
+    private static final String LOCK_ACCOUNT_ID_SQL = "SELECT ID FROM ACCOUNT WHERE ID = ? FOR UPDATE";
+    private static final String LOCK_BALANCE_SLOTS_SQL = "SELECT SLOT, CAST(BALANCE AS VARCHAR(20)) AS BALANCE FROM ACCOUNT_BALANCE_SLOT WHERE ACCOUNT_ID = ? AND BALANCE > 0 FOR UPDATE";
+
+    private static final String INCREASE_ACCOUNT_BALANCE_SQL = "UPDATE ACCOUNT SET BALANCE = BALANCE + ? WHERE ID = ?";
+    private static final String DECREASE_ACCOUNT_BALANCE_SQL = "UPDATE ACCOUNT SET BALANCE = BALANCE - ? WHERE ID = ? AND BALANCE >= ?";
+    private static final String INCREASE_SLOT_BALANCE_SQL = "UPDATE ACCOUNT_BALANCE_SLOT SET BALANCE = BALANCE + ? WHERE ACCOUNT_ID = ? AND SLOT = ?";
+    private static final String DECREASE_SLOT_BALANCE_SQL = "UPDATE ACCOUNT_BALANCE_SLOT SET BALANCE = BALANCE - ? WHERE ACCOUNT_ID = ? AND SLOT = ? AND BALANCE >= ?";
+
+    private static final String INSERT_TRANSACTION_SQL = "INSERT INTO TRANSACTION(ID, DESTINATION_ACCOUNT_ID, TRANSACTION_TYPE, AMOUNT) VALUES (?, ?, ?, ?)";
+    private static final String INSERT_TRANSFER_TRANSACTION_SQL = "INSERT INTO TRANSACTION(ID, SOURCE_ACCOUNT_ID, DESTINATION_ACCOUNT_ID, TRANSACTION_TYPE, AMOUNT) VALUES (?, ?, ?, ?, ?)";
+
+    private final TransactionExecutor delegate;
+    private final ConnectionScheduler connectionScheduler;
+    private final HotAccounts hotAccounts;
+
+    HotAccountTransactionExecutor(final TransactionExecutor delegate, final ConnectionScheduler connectionScheduler,
+        final HotAccounts hotAccounts) {
+        this.delegate = delegate;
+        this.connectionScheduler = connectionScheduler;
+        this.hotAccounts = hotAccounts;
+    }
+
+    @Override
+    public Single<Integer> deposit(final Transaction transaction) {
+        if (!hotAccounts.isHot(transaction.getDestinationAccountId())) {
+            return delegate.deposit(transaction);
+        }
+        return execute(connection -> credit(connection, transaction.getDestinationAccountId(), transaction.getAmount())
+            .flatMap(credited -> insertTransaction(connection, transaction)));
+    }
+
+    @Override
+    public Single<Integer> withdraw(final Transaction transaction) {
+        if (!hotAccounts.isHot(transaction.getDestinationAccountId())) {
+            return delegate.withdraw(transaction);
+        }
+        return execute(connection -> debit(connection, transaction.getDestinationAccountId(), transaction.getAmount())
+            .flatMap(debited -> insertTransaction(connection, transaction)));
+    }
+
+    @Override
+    public Single<Integer> transfer(final Transaction transaction) {
+        if (!hotAccounts.isHot(transaction.getSourceAccountId())
+            && !hotAccounts.isHot(transaction.getDestinationAccountId())) {
+            return delegate.transfer(transaction);
+        }
+        return execute(connection -> {
+            final Single<Integer> debit = Single.defer(() ->
+                debit(connection, transaction.getSourceAccountId(), transaction.getAmount()));
+            final Single<Integer> credit = Single.defer(() ->
+                credit(connection, transaction.getDestinationAccountId(), transaction.getAmount()));
+            final Single<Integer> balancesUpdated =
+                transaction.getSourceAccountId() <= transaction.getDestinationAccountId()
+                    ? debit.flatMap(debited -> credit) : credit.flatMap(credited -> debit);
+            return balancesUpdated.flatMap(updated -> connection.rxUpdateWithParams(INSERT_TRANSFER_TRANSACTION_SQL,
+                new JsonArray().add(transaction.getId()).add(transaction.getSourceAccountId())
+                    .add(transaction.getDestinationAccountId())
+                    .add(transaction.getTransactionType())
+                    .add(transaction.getAmount().toString()))
+                .map(insertResult -> OK));
+        });
+    }
+
+    private Single<Integer> execute(final Function<SQLConnection, Single<Integer>> work) {
+        return connectionScheduler.usingWriteConnection(connection -> work.apply(connection)
+            .compose(SQLClientHelper.txSingleTransformer(connection)))
+            .onErrorResumeNext(throwable -> {
+                if (throwable instanceof TransactionAbortedException) {
+                    return Single.just(((TransactionAbortedException) throwable).getErrorCode());
+                }
+                return Single.error(throwable);
+            });
+    }
+
+    private Single<Integer> credit(final SQLConnection connection, final long accountId, final BigDecimal amount) {
+        final int slots = hotAccounts.slots(accountId);
+        final JsonArray parameters = new JsonArray().add(amount.toString()).add(accountId);
+        if (slots > 0) {
+            parameters.add(ThreadLocalRandom.current().nextInt(slots));
+        }
+        return connection.rxUpdateWithParams(slots > 0 ? INCREASE_SLOT_BALANCE_SQL : INCREASE_ACCOUNT_BALANCE_SQL,
+            parameters)
+            .flatMap(result -> result.getUpdated() > 0 ? Single.just(OK)
+                : Single.error(new TransactionAbortedException(ACCOUNT_DOESNT_EXIST)));
+    }
+
+    private Single<Integer> debit(final SQLConnection connection, final long accountId, final BigDecimal amount) {
+        return connection.rxQueryWithParams(LOCK_ACCOUNT_ID_SQL, new JsonArray().add(accountId))
+            .flatMap(accountRs -> {
+                if (accountRs.getNumRows() != 1) {
+                    return Single.error(new TransactionAbortedException(ACCOUNT_DOESNT_EXIST));
+                }
+                return decreaseBalance(connection, accountId, amount);
+            })
+            .flatMap(debited -> {
+                if (debited) {
+                    return Single.just(OK);
+                }
+                if (!hotAccounts.isHot(accountId)) {
+                    return Single.error(new TransactionAbortedException(INSUFFICIENT_FUNDS));
+                }
+                return sweepSlots(connection, accountId, amount);
+            });
+    }
+
+    // Moves balances of all slots to the account row and charges the amount there
+    private Single<Integer> sweepSlots(final SQLConnection connection, final long accountId,
+        final BigDecimal amount) {
+        return connection.rxQueryWithParams(LOCK_BALANCE_SLOTS_SQL, new JsonArray().add(accountId))
+            .flatMapObservable(slotsRs -> Observable.fromIterable(slotsRs.getRows()))
+            .concatMapSingle(slot -> {
+                final String balance = slot.getString("BALANCE");
+                return connection.rxUpdateWithParams(DECREASE_SLOT_BALANCE_SQL, new JsonArray().add(balance)
+                    .add(accountId).add(slot.getInteger("SLOT")).add(balance))
+                    .map(result -> result.getUpdated() > 0 ? new BigDecimal(balance) : BigDecimal.ZERO);
+            })
+            .reduce(BigDecimal.ZERO, BigDecimal::add)
+            .flatMap(swept -> connection.rxUpdateWithParams(INCREASE_ACCOUNT_BALANCE_SQL,
+                new JsonArray().add(swept.toString()).add(accountId)))
+            .flatMap(result -> decreaseBalance(connection, accountId, amount))
+            .flatMap(debited -> debited ? Single.just(OK)
+                : Single.error(new TransactionAbortedException(INSUFFICIENT_FUNDS)));
+    }
+
+    private Single<Boolean> decreaseBalance(final SQLConnection connection, final long accountId,
+        final BigDecimal amount) {
+        return connection.rxUpdateWithParams(DECREASE_ACCOUNT_BALANCE_SQL,
+            new JsonArray().add(amount.toString()).add(accountId).add(amount.toString()))
+            .map(result -> result.getUpdated() > 0);
+    }
+
+    private Single<Integer> insertTransaction(final SQLConnection connection, final Transaction transaction) {
+        return connection.rxUpdateWithParams(INSERT_TRANSACTION_SQL,
+            new JsonArray().add(transaction.getId()).add(transaction.getDestinationAccountId())
+                .add(transaction.getTransactionType())
+                .add(transaction.getAmount().toString()))
+            .map(insertResult -> OK);
+    }
+
+}
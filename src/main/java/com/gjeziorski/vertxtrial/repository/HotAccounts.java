@@ -0,0 +1,32 @@
+package com.gjeziorski.vertxtrial.repository;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Number of balance slots of every hot account, loaded at startup and updated after commit.
+// Executors consult it to decide whether an account needs slot aware statements.
+public class HotAccounts {
+
+    private final Map<Long, Integer> slots = new ConcurrentHashMap<>();
+
+    public int slots(final long accountId) {
+        return slots.getOrDefault(accountId, 0);
+    }
+
+    public boolean isHot(final Long accountId) {
+        return accountId != null && slots.containsKey(accountId);
+    }
+
+    public void put(final long accountId, final int slotCount) {
+        slots.put(accountId, slotCount);
+    }
+
+    public void remove(final long accountId) {
+        slots.remove(accountId);
+    }
+
+    public int size() {
+        return slots.size();
+    }
+
+}
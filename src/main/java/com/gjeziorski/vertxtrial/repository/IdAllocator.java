@@ -0,0 +1,115 @@
+package com.gjeziorski.vertxtrial.repository;
+
+import io.reactivex.Single;
+import io.vertx.core.json.JsonArray;
+import io.vertx.reactivex.ext.sql.SQLClientHelper;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import lombok.extern.slf4j.Slf4j;
+
+// Hi/lo ids of a table: blocks of consecutive ids are reserved in ID_BLOCK and handed out from memory, so ids are
+// known before the insert and many rows can go in one batch. Handing out ids takes no locks, only the caller which
+// finds the block exhausted reserves a new one and concurrent callers wait for that reservation. A reservation also
+// skips past the largest id in the table, which covers rows inserted with explicit ids. Ids left in the block on
+// shutdown are never used.
+@Slf4j
+public class IdAllocator {
+
+    private static final String RESERVE_BLOCK_SQL = "UPDATE ID_BLOCK SET NEXT_ID = GREATEST(NEXT_ID, (SELECT COALESCE(MAX(ID), -1) + 1 FROM %s)) + ? WHERE NAME = ?";
+    private static final String SELECT_BLOCK_END_SQL = "SELECT NEXT_ID FROM ID_BLOCK WHERE NAME = ?";
+
+    private static final Block EXHAUSTED = new Block(0, 0);
+
+    private final ConnectionScheduler connectionScheduler;
+    private final String table;
+    private final int blockSize;
+    private final AtomicReference<Block> block = new AtomicReference<>(EXHAUSTED);
+    private Single<Block> reservation;
+
+    public IdAllocator(final ConnectionScheduler connectionScheduler, final String table, final int blockSize) {
+        this.connectionScheduler = connectionScheduler;
+        this.table = table;
+        this.blockSize = blockSize;
+    }
+
+    public Single<Long> nextId() {
+        return nextIds(1).map(ids -> ids[0]);
+    }
+
+    // Ids aren't necessarily consecutive, a request bigger than the block reserves a block big enough for it
+    public Single<long[]> nextIds(final int count) {
+        return Single.defer(() -> fill(new long[count], 0));
+    }
+
+    // Called with ids inserted explicitly, the block moves past them like an identity column does
+    public void skipPast(final long id) {
+        final Block current = block.get();
+        long next = current.next.get();
+        while (next <= id && id < current.end && !current.next.compareAndSet(next, id + 1)) {
+            next = current.next.get();
+        }
+    }
+
+    private Single<long[]> fill(final long[] ids, final int filled) {
+        final Block current = block.get();
+        int taken = filled;
+        while (taken < ids.length) {
+            final long id = current.next.getAndIncrement();
+            if (id >= current.end) {
+                break;
+            }
+            ids[taken++] = id;
+        }
+        if (taken == ids.length) {
+            return Single.just(ids);
+        }
+        final int remaining = ids.length - taken;
+        final int alreadyTaken = taken;
+        return reserve(current, remaining).flatMap(reserved -> fill(ids, alreadyTaken));
+    }
+
+    private synchronized Single<Block> reserve(final Block exhausted, final int needed) {
+        if (block.get() != exhausted) {
+            return Single.just(block.get());
+        }
+        if (reservation == null) {
+            final int size = Math.max(blockSize, needed);
+            reservation = reserveInDatabase(size)
+                .doOnSuccess(reserved -> {
+                    log.debug("Reserved {} ids [{}, {})", table, reserved.next.get(), reserved.end);
+                    block.set(reserved);
+                })
+                .doFinally(this::reservationFinished)
+                .cache();
+        }
+        return reservation;
+    }
+
+    private synchronized void reservationFinished() {
+        reservation = null;
+    }
+
+    private Single<Block> reserveInDatabase(final int size) {
+        return connectionScheduler.usingWriteConnection(connection -> connection
+            .rxUpdateWithParams(String.format(RESERVE_BLOCK_SQL, table), new JsonArray().add(size).add(table))
+            .flatMap(updated -> connection.rxQueryWithParams(SELECT_BLOCK_END_SQL, new JsonArray().add(table)))
+            .map(resultSet -> {
+                final long end = resultSet.getResults().get(0).getLong(0);
+                return new Block(end - size, end);
+            })
+            .compose(SQLClientHelper.txSingleTransformer(connection)));
+    }
+
+    private static class Block {
+
+        private final AtomicLong next;
+        private final long end;
+
+        private Block(final long start, final long end) {
+            this.next = new AtomicLong(start);
+            this.end = end;
+        }
+
+    }
+
+}
@@ -0,0 +1,39 @@
+package com.gjeziorski.vertxtrial.repository;
+
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import java.util.List;
+import java.util.stream.Collectors;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class NettingOptions {
+
+    private boolean enabled;
+
+    private long settleIntervalMs;
+
+    // Transfers of a pair waiting for settlement, further ones are rejected as unavailable
+    private int maxPending;
+
+    private List<NettingPair> pairs;
+
+    public static NettingOptions fromJson(final JsonObject json, final NettingOptions defaults) {
+        final JsonArray pairs = json.getJsonArray("pairs");
+        return NettingOptions.builder()
+            .enabled(json.getBoolean("enabled", defaults.isEnabled()))
+            .settleIntervalMs(json.getLong("settle_interval_ms", defaults.getSettleIntervalMs()))
+            .maxPending(json.getInteger("max_pending", defaults.getMaxPending()))
+            .pairs(pairs == null ? defaults.getPairs() : pairs.stream()
+                .map(pair -> NettingPair.fromJson((JsonObject) pair))
+                .collect(Collectors.toList()))
+            .build();
+    }
+
+}
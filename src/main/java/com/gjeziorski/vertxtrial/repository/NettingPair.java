@@ -0,0 +1,33 @@
+package com.gjeziorski.vertxtrial.repository;
+
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import java.math.BigDecimal;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class NettingPair {
+
+    private long firstAccountId;
+
+    private long secondAccountId;
+
+    // Part of the balance of each account held back to accept transfers before they're settled
+    private BigDecimal reserve;
+
+    public static NettingPair fromJson(final JsonObject json) {
+        final JsonArray accounts = json.getJsonArray("accounts");
+        return NettingPair.builder()
+            .firstAccountId(accounts.getLong(0))
+            .secondAccountId(accounts.getLong(1))
+            .reserve(new BigDecimal(json.getValue("reserve").toString()))
+            .build();
+    }
+
+}
@@ -0,0 +1,391 @@
+package com.gjeziorski.vertxtrial.repository;
+
+import static com.gjeziorski.vertxtrial.common.ErrorCodes.ACCOUNT_DOESNT_EXIST;
+import static com.gjeziorski.vertxtrial.common.ErrorCodes.INSUFFICIENT_FUNDS;
+import static com.gjeziorski.vertxtrial.common.ErrorCodes.OK;
+import static com.gjeziorski.vertxtrial.common.ErrorCodes.SERVICE_UNAVAILABLE;
+
+import com.gjeziorski.vertxtrial.domain.Transaction;
+import io.reactivex.Completable;
+import io.reactivex.Single;
+import io.reactivex.SingleEmitter;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.reactivex.core.Vertx;
+import io.vertx.reactivex.ext.sql.SQLClientHelper;
+import io.vertx.reactivex.ext.sql.SQLConnection;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import lombok.extern.slf4j.Slf4j;
+
+// Transfers between the two accounts of a netting pair are accepted in memory against what's available of the
+// reserves held back from their balances, and settled periodically in one database transaction which moves only the
+// net amount between the balances, brings the reserves back to the configured amount and batch inserts every
+// accepted transfer. A transfer is answered once its settlement is committed. Settlement locks the account rows in
+// ascending id order like the other executors. Balances are changed by the difference to what was read and only
+// while they stay non-negative, so deposits and withdrawals committed meanwhile aren't overwritten even when
+// FOR UPDATE doesn't block them (MVCC), a settlement which finds a balance changed is retried. A pair becomes active
+// with its first settlement, until then and for all other transactions the delegate is used.
+@Slf4j
+class NettingTransactionExecutor implements TransactionExecutor {
+
+    private static final String LOCK_ACCOUNT_SQL = "SELECT CAST(BALANCE AS VARCHAR(20)) AS BALANCE FROM ACCOUNT WHERE ID = ? FOR UPDATE";
+    private static final String SELECT_RESERVE_SQL = "SELECT CAST(AMOUNT AS VARCHAR(20)) AS AMOUNT FROM NETTING_RESERVE WHERE ACCOUNT_ID = ?";
+    private static final String SELECT_RESERVES_SQL = "SELECT ACCOUNT_ID, CAST(AMOUNT AS VARCHAR(20)) AS AMOUNT FROM NETTING_RESERVE";
+
+    private static final String ADD_ACCOUNT_BALANCE_SQL = "UPDATE ACCOUNT SET BALANCE = BALANCE + ? WHERE ID = ? AND BALANCE + ? >= 0";
+    private static final String INCREASE_ACCOUNT_BALANCE_SQL = "UPDATE ACCOUNT SET BALANCE = BALANCE + ? WHERE ID = ?";
+    private static final String MERGE_RESERVE_SQL = "MERGE INTO NETTING_RESERVE R USING (VALUES (CAST(? AS DECIMAL(20,2)), CAST(? AS BIGINT))) AS V(AMOUNT, ACCOUNT_ID) "
+        + "ON R.ACCOUNT_ID = V.ACCOUNT_ID WHEN MATCHED THEN UPDATE SET R.AMOUNT = V.AMOUNT "
+        + "WHEN NOT MATCHED THEN INSERT (ACCOUNT_ID, AMOUNT) VALUES (V.ACCOUNT_ID, V.AMOUNT)";
+    private static final String DELETE_RESERVE_SQL = "DELETE FROM NETTING_RESERVE WHERE ACCOUNT_ID = ?";
+
+    private static final String INSERT_TRANSFER_TRANSACTION_SQL = "INSERT INTO TRANSACTION(ID, SOURCE_ACCOUNT_ID, DESTINATION_ACCOUNT_ID, TRANSACTION_TYPE, AMOUNT) VALUES (?, ?, ?, ?, ?)";
+
+    // Results of accepting a transfer which aren't answered with an error code
+    private static final int BUFFERED = -1;
+    private static final int NOT_ACTIVE = -2;
+
+    private static final long REFRESH_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1);
+    private static final int MAX_SETTLE_ATTEMPTS = 3;
+
+    private final TransactionExecutor delegate;
+    private final Vertx vertx;
+    private final ConnectionScheduler connectionScheduler;
+    private final NettingOptions options;
+    private final List<Pair> pairs = new ArrayList<>();
+    private final Map<Long, Pair> pairsByAccount = new HashMap<>();
+
+    NettingTransactionExecutor(final TransactionExecutor delegate, final Vertx vertx,
+        final ConnectionScheduler connectionScheduler, final NettingOptions options) {
+        this.delegate = delegate;
+        this.vertx = vertx;
+        this.connectionScheduler = connectionScheduler;
+        this.options = options;
+        if (options.isEnabled()) {
+            for (NettingPair nettingPair : options.getPairs()) {
+                final Pair pair = new Pair(nettingPair);
+                if (pair.accountIds[0] == pair.accountIds[1] || pairsByAccount.containsKey(pair.accountIds[0])
+                    || pairsByAccount.containsKey(pair.accountIds[1])) {
+                    throw new IllegalArgumentException("Account can be netted in one pair only: " + nettingPair);
+                }
+                pairs.add(pair);
+                pairsByAccount.put(pair.accountIds[0], pair);
+                pairsByAccount.put(pair.accountIds[1], pair);
+            }
+        }
+    }
+
+    // Reserves of accounts which are no longer netted are returned to their balances before settlement starts
+    Completable start() {
+        return releaseUnpairedReserves().doOnComplete(() -> {
+            if (!pairs.isEmpty()) {
+                vertx.setPeriodic(options.getSettleIntervalMs(), timerId -> pairs.forEach(this::settle));
+            }
+        });
+    }
+
+    JsonObject metrics() {
+        final JsonArray pairMetrics = new JsonArray();
+        pairs.forEach(pair -> pairMetrics.add(pair.metrics()));
+        return new JsonObject()
+            .put("enabled", options.isEnabled())
+            .put("pairs", pairMetrics);
+    }
+
+    @Override
+    public Single<Integer> deposit(final Transaction transaction) {
+        return delegate.deposit(transaction);
+    }
+
+    @Override
+    public Single<Integer> withdraw(final Transaction transaction) {
+        return delegate.withdraw(transaction);
+    }
+
+    @Override
+    public Single<Integer> transfer(final Transaction transaction) {
+        final Pair pair = pairsByAccount.get(transaction.getSourceAccountId());
+        if (pair == null || !pair.active || !pair.contains(transaction.getDestinationAccountId())
+            || transaction.getSourceAccountId().equals(transaction.getDestinationAccountId())) {
+            return delegate.transfer(transaction);
+        }
+        return Single.create(emitter -> {
+            final int result = pair.accept(transaction, emitter);
+            if (result == NOT_ACTIVE) {
+                delegate.transfer(transaction).subscribe(emitter::onSuccess, emitter::onError);
+            } else if (result != BUFFERED) {
+                emitter.onSuccess(result);
+            }
+        });
+    }
+
+    private void settle(final Pair pair) {
+        final List<Pending> batch = pair.takeBatch(System.nanoTime());
+        if (batch == null) {
+            return;
+        }
+        final BigDecimal netToSecond = pair.netToSecond(batch);
+        settleInDatabase(pair, batch, netToSecond).subscribe(reserves -> pair.settled(batch, netToSecond, reserves),
+            throwable -> {
+                if (throwable instanceof TransactionAbortedException) {
+                    log.debug("Settlement of netting pair {} aborted", pair.accountIds);
+                } else {
+                    log.error("Settlement of netting pair {} failed", pair.accountIds, throwable);
+                }
+                pair.failed(batch, netToSecond, throwable);
+            });
+    }
+
+    private Single<BigDecimal[]> settleInDatabase(final Pair pair, final List<Pending> batch,
+        final BigDecimal netToSecond) {
+        return Single.defer(() -> connectionScheduler.usingWriteConnection(connection -> lockAccount(connection,
+            pair.accountIds[0])
+            .flatMap(first -> lockAccount(connection, pair.accountIds[1])
+                .map(second -> new BigDecimal[][] {first, second}))
+            .flatMap(accounts -> {
+                final BigDecimal[] balances = {accounts[0][0], accounts[1][0]};
+                final BigDecimal[] reserves = {accounts[0][1], accounts[1][1]};
+                applyNet(balances, reserves, netToSecond, pair.reserve);
+                final List<JsonArray> balanceParameters = new ArrayList<>();
+                final List<JsonArray> reserveParameters = new ArrayList<>();
+                for (int i = 0; i < 2; i++) {
+                    final String change = balances[i].subtract(accounts[i][0]).toString();
+                    balanceParameters.add(new JsonArray().add(change).add(pair.accountIds[i]).add(change));
+                    reserveParameters.add(new JsonArray().add(reserves[i].toString()).add(pair.accountIds[i]));
+                }
+                return connection.rxBatchWithParams(ADD_ACCOUNT_BALANCE_SQL, balanceParameters)
+                    .flatMap(updated -> updated.contains(0) ? Single.error(new BalanceChangedException())
+                        : connection.rxBatchWithParams(MERGE_RESERVE_SQL, reserveParameters))
+                    .flatMap(merged -> insertTransactions(connection, batch))
+                    .map(inserted -> reserves);
+            })
+            .compose(SQLClientHelper.txSingleTransformer(connection))))
+            .retry(MAX_SETTLE_ATTEMPTS - 1, BalanceChangedException.class::isInstance);
+    }
+
+    // Balance and reserve of the account
+    private Single<BigDecimal[]> lockAccount(final SQLConnection connection, final long accountId) {
+        final JsonArray parameters = new JsonArray().add(accountId);
+        return connection.rxQueryWithParams(LOCK_ACCOUNT_SQL, parameters)
+            .flatMap(accountRs -> {
+                if (accountRs.getNumRows() != 1) {
+                    return Single.error(new TransactionAbortedException(ACCOUNT_DOESNT_EXIST));
+                }
+                final BigDecimal balance = new BigDecimal(accountRs.getRows().get(0).getString("BALANCE"));
+                return connection.rxQueryWithParams(SELECT_RESERVE_SQL, parameters)
+                    .map(reserveRs -> new BigDecimal[] {balance, reserveRs.getNumRows() == 0 ? BigDecimal.ZERO
+                        : new BigDecimal(reserveRs.getRows().get(0).getString("AMOUNT"))});
+            });
+    }
+
+    private Single<Integer> insertTransactions(final SQLConnection connection, final List<Pending> batch) {
+        if (batch.isEmpty()) {
+            return Single.just(0);
+        }
+        final List<JsonArray> parameters = new ArrayList<>(batch.size());
+        batch.forEach(pending -> parameters.add(new JsonArray().add(pending.transaction.getId())
+            .add(pending.transaction.getSourceAccountId()).add(pending.transaction.getDestinationAccountId())
+            .add(pending.transaction.getTransactionType())
+            .add(pending.transaction.getAmount().toString())));
+        return connection.rxBatchWithParams(INSERT_TRANSFER_TRANSACTION_SQL, parameters).map(List::size);
+    }
+
+    // The payer pays the net amount from its balance and only the rest from its reserve, then both reserves are
+    // brought back to the configured amount as far as the balances allow
+    private static void applyNet(final BigDecimal[] balances, final BigDecimal[] reserves,
+        final BigDecimal netToSecond, final BigDecimal target) {
+        final int payer = netToSecond.signum() >= 0 ? 0 : 1;
+        final BigDecimal amount = netToSecond.abs();
+        final BigDecimal fromBalance = amount.min(balances[payer]);
+        balances[payer] = balances[payer].subtract(fromBalance);
+        reserves[payer] = reserves[payer].subtract(amount.subtract(fromBalance));
+        if (reserves[payer].signum() < 0) {
+            throw new TransactionAbortedException(INSUFFICIENT_FUNDS);
+        }
+        balances[1 - payer] = balances[1 - payer].add(amount);
+        for (int i = 0; i < 2; i++) {
+            final BigDecimal topUp = target.subtract(reserves[i]).min(balances[i]);
+            balances[i] = balances[i].subtract(topUp);
+            reserves[i] = reserves[i].add(topUp);
+        }
+    }
+
+    private Completable releaseUnpairedReserves() {
+        return connectionScheduler.usingWriteConnection(connection -> connection.rxQuery(SELECT_RESERVES_SQL)
+            .flatMap(reservesRs -> {
+                final List<JsonArray> releaseParameters = new ArrayList<>();
+                final List<JsonArray> deleteParameters = new ArrayList<>();
+                for (JsonObject row : reservesRs.getRows()) {
+                    final long accountId = row.getLong("ACCOUNT_ID");
+                    if (!pairsByAccount.containsKey(accountId)) {
+                        releaseParameters.add(new JsonArray().add(row.getString("AMOUNT")).add(accountId));
+                        deleteParameters.add(new JsonArray().add(accountId));
+                    }
+                }
+                if (releaseParameters.isEmpty()) {
+                    return Single.just(0);
+                }
+                return connection.rxBatchWithParams(INCREASE_ACCOUNT_BALANCE_SQL, releaseParameters)
+                    .flatMap(released -> connection.rxBatchWithParams(DELETE_RESERVE_SQL, deleteParameters))
+                    .map(List::size);
+            })
+            .compose(SQLClientHelper.txSingleTransformer(connection)))
+            .doOnSuccess(released -> {
+                if (released > 0) {
+                    log.info("Released netting reserves of {} accounts", released);
+                }
+            })
+            .ignoreElement();
+    }
+
+    // A balance read by the settlement was lowered by another transaction before the settlement changed it
+    private static class BalanceChangedException extends RuntimeException {
+
+        private BalanceChangedException() {
+            super(null, null, false, false);
+        }
+
+    }
+
+    private static class Pending {
+
+        private final Transaction transaction;
+        private final SingleEmitter<Integer> emitter;
+
+        private Pending(final Transaction transaction, final SingleEmitter<Integer> emitter) {
+            this.transaction = transaction;
+            this.emitter = emitter;
+        }
+
+    }
+
+    // Available amount of an account is its reserve plus the net amount it received in transfers not settled yet,
+    // so the net amount a settlement takes from a reserve can never exceed it
+    private class Pair {
+
+        private final long[] accountIds;
+        private final BigDecimal reserve;
+        private final BigDecimal[] reserves = {BigDecimal.ZERO, BigDecimal.ZERO};
+        private final BigDecimal[] available = {BigDecimal.ZERO, BigDecimal.ZERO};
+        private List<Pending> buffer = new ArrayList<>();
+        private volatile boolean active;
+        private boolean settling;
+        private long refreshedAt = System.nanoTime() - REFRESH_INTERVAL_NANOS;
+        private long settledTransfers;
+        private long settlements;
+
+        private Pair(final NettingPair nettingPair) {
+            this.accountIds = new long[] {Math.min(nettingPair.getFirstAccountId(), nettingPair.getSecondAccountId()),
+                Math.max(nettingPair.getFirstAccountId(), nettingPair.getSecondAccountId())};
+            this.reserve = nettingPair.getReserve();
+        }
+
+        private boolean contains(final long accountId) {
+            return accountIds[0] == accountId || accountIds[1] == accountId;
+        }
+
+        private synchronized int accept(final Transaction transaction, final SingleEmitter<Integer> emitter) {
+            if (!active) {
+                return NOT_ACTIVE;
+            }
+            if (buffer.size() >= options.getMaxPending()) {
+                return SERVICE_UNAVAILABLE;
+            }
+            final int source = transaction.getSourceAccountId() == accountIds[0] ? 0 : 1;
+            if (available[source].compareTo(transaction.getAmount()) < 0) {
+                return INSUFFICIENT_FUNDS;
+            }
+            available[source] = available[source].subtract(transaction.getAmount());
+            available[1 - source] = available[1 - source].add(transaction.getAmount());
+            buffer.add(new Pending(transaction, emitter));
+            return BUFFERED;
+        }
+
+        // Null when a settlement is running or there's nothing to settle. Without transfers an inactive pair is
+        // settled to activate it and an active one to bring its reserves to the configured amount, both at most once
+        // per refresh interval.
+        private synchronized List<Pending> takeBatch(final long now) {
+            if (settling || buffer.isEmpty() && (now - refreshedAt < REFRESH_INTERVAL_NANOS || active
+                && reserves[0].compareTo(reserve) == 0 && reserves[1].compareTo(reserve) == 0)) {
+                return null;
+            }
+            if (buffer.isEmpty()) {
+                refreshedAt = now;
+            }
+            settling = true;
+            final List<Pending> batch = buffer;
+            buffer = new ArrayList<>();
+            return batch;
+        }
+
+        private BigDecimal netToSecond(final List<Pending> batch) {
+            BigDecimal netToSecond = BigDecimal.ZERO;
+            for (Pending pending : batch) {
+                netToSecond = pending.transaction.getSourceAccountId() == accountIds[0]
+                    ? netToSecond.add(pending.transaction.getAmount())
+                    : netToSecond.subtract(pending.transaction.getAmount());
+            }
+            return netToSecond;
+        }
+
+        private void settled(final List<Pending> batch, final BigDecimal netToSecond,
+            final BigDecimal[] settledReserves) {
+            synchronized (this) {
+                available[0] = available[0].add(settledReserves[0]).subtract(reserves[0]).add(netToSecond);
+                available[1] = available[1].add(settledReserves[1]).subtract(reserves[1]).subtract(netToSecond);
+                reserves[0] = settledReserves[0];
+                reserves[1] = settledReserves[1];
+                active = true;
+                settling = false;
+                settledTransfers += batch.size();
+                settlements++;
+            }
+            batch.forEach(pending -> pending.emitter.onSuccess(OK));
+        }
+
+        // A pair whose account was deleted is deactivated, otherwise the batch is taken back from available amounts
+        private void failed(final List<Pending> batch, final BigDecimal netToSecond, final Throwable throwable) {
+            final boolean aborted = throwable instanceof TransactionAbortedException;
+            synchronized (this) {
+                if (aborted && ((TransactionAbortedException) throwable).getErrorCode() == ACCOUNT_DOESNT_EXIST) {
+                    active = false;
+                    for (int i = 0; i < 2; i++) {
+                        reserves[i] = BigDecimal.ZERO;
+                        available[i] = BigDecimal.ZERO;
+                    }
+                } else {
+                    available[0] = available[0].add(netToSecond);
+                    available[1] = available[1].subtract(netToSecond);
+                }
+                settling = false;
+            }
+            batch.forEach(pending -> {
+                if (aborted) {
+                    pending.emitter.onSuccess(((TransactionAbortedException) throwable).getErrorCode());
+                } else {
+                    pending.emitter.onError(throwable);
+                }
+            });
+        }
+
+        private synchronized JsonObject metrics() {
+            return new JsonObject()
+                .put("accounts", new JsonArray().add(accountIds[0]).add(accountIds[1]))
+                .put("active", active)
+                .put("reserve", reserve.toPlainString())
+                .put("reserves", new JsonArray().add(reserves[0].toPlainString()).add(reserves[1].toPlainString()))
+                .put("available", new JsonArray().add(available[0].toPlainString())
+                    .add(available[1].toPlainString()))
+                .put("pending", buffer.size())
+                .put("settled", settledTransfers)
+                .put("settlements", settlements);
+        }
+
+    }
+
+}
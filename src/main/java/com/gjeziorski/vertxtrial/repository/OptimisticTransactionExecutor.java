@@ -0,0 +1,158 @@
+package com.gjeziorski.vertxtrial.repository;
+
+import static com.gjeziorski.vertxtrial.common.ErrorCodes.ACCOUNT_DOESNT_EXIST;
+import static com.gjeziorski.vertxtrial.common.ErrorCodes.INSUFFICIENT_FUNDS;
+import static com.gjeziorski.vertxtrial.common.ErrorCodes.OK;
+
+import com.gjeziorski.vertxtrial.domain.Transaction;
+import io.reactivex.Flowable;
+import io.reactivex.Single;
+import io.vertx.core.json.JsonArray;
+import io.vertx.ext.sql.UpdateResult;
+import io.vertx.reactivex.core.RxHelper;
+import io.vertx.reactivex.core.Vertx;
+import io.vertx.reactivex.ext.sql.SQLClientHelper;
+import io.vertx.reactivex.ext.sql.SQLConnection;
+import java.sql.SQLException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import lombok.extern.slf4j.Slf4j;
+
+// Doesn't lock accounts upfront, the funds check is a condition of the UPDATE statement and update counts
+// decide about the result. Only when nothing was updated an additional query tells apart missing account
+// from insufficient funds. Transactions rolled back by the database because of conflicts are retried.
+@Slf4j
+class OptimisticTransactionExecutor implements TransactionExecutor {
+
+    private static final String ACCOUNT_EXISTS_SQL = "SELECT ID FROM ACCOUNT WHERE ID = ?";
+
+    private static final String INCREASE_ACCOUNT_BALANCE_SQL = "UPDATE ACCOUNT SET BALANCE = BALANCE + ? WHERE ID = ?";
+    private static final String DECREASE_ACCOUNT_BALANCE_IF_SUFFICIENT_SQL = "UPDATE ACCOUNT SET BALANCE = BALANCE - ? WHERE ID = ? AND BALANCE >= ?";
+
+    private static final String INSERT_TRANSACTION_SQL = "INSERT INTO TRANSACTION(ID, DESTINATION_ACCOUNT_ID, TRANSACTION_TYPE, AMOUNT) VALUES (?, ?, ?, ?)";
+    private static final String INSERT_TRANSFER_TRANSACTION_SQL = "INSERT INTO TRANSACTION(ID, SOURCE_ACCOUNT_ID, DESTINATION_ACCOUNT_ID, TRANSACTION_TYPE, AMOUNT) VALUES (?, ?, ?, ?, ?)";
+
+    private static final String SERIALIZATION_FAILURE_SQL_STATE_CLASS = "40";
+
+    private ConnectionScheduler connectionScheduler;
+    private Vertx vertx;
+    private TransactionExecutionOptions options;
+
+    OptimisticTransactionExecutor(final ConnectionScheduler connectionScheduler, final Vertx vertx,
+        final TransactionExecutionOptions options) {
+        this.connectionScheduler = connectionScheduler;
+        this.vertx = vertx;
+        this.options = options;
+    }
+
+    @Override
+    public Single<Integer> deposit(final Transaction transaction) {
+        return execute(connection -> connection
+            .rxUpdateWithParams(INCREASE_ACCOUNT_BALANCE_SQL, new JsonArray().add(transaction.getAmount().toString())
+                .add(transaction.getDestinationAccountId()))
+            .flatMap(increaseResult -> {
+                if (!updated(increaseResult)) {
+                    return Single.just(ACCOUNT_DOESNT_EXIST);
+                }
+                return insertTransaction(connection, transaction);
+            }));
+    }
+
+    @Override
+    public Single<Integer> withdraw(final Transaction transaction) {
+        return execute(connection -> decreaseIfSufficient(connection, transaction.getDestinationAccountId(),
+            transaction)
+            .flatMap(decreaseResult -> {
+                if (decreaseResult != OK) {
+                    return Single.just(decreaseResult);
+                }
+                return insertTransaction(connection, transaction);
+            }));
+    }
+
+    @Override
+    public Single<Integer> transfer(final Transaction transaction) {
+        return execute(connection -> decreaseIfSufficient(connection, transaction.getSourceAccountId(), transaction)
+            .flatMap(decreaseResult -> {
+                if (decreaseResult != OK) {
+                    return Single.just(decreaseResult);
+                }
+                return connection.rxUpdateWithParams(INCREASE_ACCOUNT_BALANCE_SQL,
+                    new JsonArray().add(transaction.getAmount().toString()).add(transaction.getDestinationAccountId()))
+                    .flatMap(increaseResult -> {
+                        if (!updated(increaseResult)) {
+                            // source account was already charged
+                            return Single.error(new TransactionAbortedException(ACCOUNT_DOESNT_EXIST));
+                        }
+                        return connection.rxUpdateWithParams(INSERT_TRANSFER_TRANSACTION_SQL,
+                            new JsonArray().add(transaction.getId()).add(transaction.getSourceAccountId())
+                                .add(transaction.getDestinationAccountId())
+                                .add(transaction.getTransactionType())
+                                .add(transaction.getAmount().toString()))
+                            .map(insertResult -> OK);
+                    });
+            }));
+    }
+
+    private Single<Integer> execute(final Function<SQLConnection, Single<Integer>> work) {
+        final AtomicInteger attempts = new AtomicInteger();
+        return connectionScheduler.usingWriteConnection(connection -> work.apply(connection)
+            .compose(SQLClientHelper.txSingleTransformer(connection)))
+            .onErrorResumeNext(throwable -> {
+                if (throwable instanceof TransactionAbortedException) {
+                    return Single.just(((TransactionAbortedException) throwable).getErrorCode());
+                }
+                return Single.error(throwable);
+            })
+            .retryWhen(errors -> errors.flatMap(throwable -> {
+                final int attempt = attempts.incrementAndGet();
+                if (!isSerializationFailure(throwable) || attempt > options.getMaxRetries()) {
+                    return Flowable.error(throwable);
+                }
+                final long backoff = backoff(attempt);
+                log.debug("Retrying transaction after conflict, attempt {} in {}ms", attempt, backoff);
+                return Flowable.timer(backoff, TimeUnit.MILLISECONDS, RxHelper.scheduler(vertx));
+            }));
+    }
+
+    // Exponential backoff with full jitter, capped by max retry backoff
+    private long backoff(final int attempt) {
+        final long ceiling = Math.min(options.getMaxRetryBackoffMs(),
+            options.getRetryBackoffMs() << Math.min(attempt - 1, 20));
+        return ThreadLocalRandom.current().nextLong(ceiling + 1);
+    }
+
+    private boolean isSerializationFailure(final Throwable throwable) {
+        return throwable instanceof SQLException && ((SQLException) throwable).getSQLState() != null
+            && ((SQLException) throwable).getSQLState().startsWith(SERIALIZATION_FAILURE_SQL_STATE_CLASS);
+    }
+
+    private Single<Integer> decreaseIfSufficient(final SQLConnection connection, final long accountId,
+        final Transaction transaction) {
+        return connection.rxUpdateWithParams(DECREASE_ACCOUNT_BALANCE_IF_SUFFICIENT_SQL,
+            new JsonArray().add(transaction.getAmount().toString()).add(accountId)
+                .add(transaction.getAmount().toString()))
+            .flatMap(decreaseResult -> {
+                if (updated(decreaseResult)) {
+                    return Single.just(OK);
+                }
+                return connection.rxQueryWithParams(ACCOUNT_EXISTS_SQL, new JsonArray().add(accountId))
+                    .map(accountRs -> accountRs.getNumRows() == 1 ? INSUFFICIENT_FUNDS : ACCOUNT_DOESNT_EXIST);
+            });
+    }
+
+    private Single<Integer> insertTransaction(final SQLConnection connection, final Transaction transaction) {
+        return connection.rxUpdateWithParams(INSERT_TRANSACTION_SQL,
+            new JsonArray().add(transaction.getId()).add(transaction.getDestinationAccountId())
+                .add(transaction.getTransactionType())
+                .add(transaction.getAmount().toString()))
+            .map(insertResult -> OK);
+    }
+
+    private boolean updated(final UpdateResult updateResult) {
+        return updateResult.getUpdated() > 0;
+    }
+
+}
@@ -0,0 +1,147 @@
+package com.gjeziorski.vertxtrial.repository;
+
+import static com.gjeziorski.vertxtrial.common.ErrorCodes.ACCOUNT_DOESNT_EXIST;
+import static com.gjeziorski.vertxtrial.common.ErrorCodes.INSUFFICIENT_FUNDS;
+import static com.gjeziorski.vertxtrial.common.ErrorCodes.OK;
+
+import com.gjeziorski.vertxtrial.domain.Transaction;
+import io.reactivex.Single;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.sql.ResultSet;
+import io.vertx.reactivex.ext.sql.SQLClientHelper;
+import io.vertx.reactivex.ext.sql.SQLConnection;
+import java.math.BigDecimal;
+
+// Locks involved accounts with SELECT ... FOR UPDATE, checks funds in application and then updates balances
+class PessimisticTransactionExecutor implements TransactionExecutor {
+
+    private static final String LOCK_ACCOUNT_ID_SQL = "SELECT ID, CAST(BALANCE AS VARCHAR(20)) AS BALANCE FROM ACCOUNT WHERE ID = ? FOR UPDATE";
+
+    private static final String INCREASE_ACCOUNT_BALANCE_SQL = "UPDATE ACCOUNT SET BALANCE = BALANCE + ? WHERE ID = ?";
+    private static final String DECREASE_ACCOUNT_BALANCE_SQL = "UPDATE ACCOUNT SET BALANCE = BALANCE - ? WHERE ID = ?";
+
+    private static final String INSERT_TRANSACTION_SQL = "INSERT INTO TRANSACTION(ID, DESTINATION_ACCOUNT_ID, TRANSACTION_TYPE, AMOUNT) VALUES (?, ?, ?, ?)";
+    private static final String INSERT_TRANSFER_TRANSACTION_SQL = "INSERT INTO TRANSACTION(ID, SOURCE_ACCOUNT_ID, DESTINATION_ACCOUNT_ID, TRANSACTION_TYPE, AMOUNT) VALUES (?, ?, ?, ?, ?)";
+
+    private ConnectionScheduler connectionScheduler;
+
+    PessimisticTransactionExecutor(final ConnectionScheduler connectionScheduler) {
+        this.connectionScheduler = connectionScheduler;
+    }
+
+    @Override
+    public Single<Integer> transfer(final Transaction transaction) {
+        return connectionScheduler.usingWriteConnection(connection -> {
+            long firstAccountIdToLock = Math
+                .min(transaction.getSourceAccountId(), transaction.getDestinationAccountId());
+            long secondAccountIdToLock = Math
+                .max(transaction.getSourceAccountId(), transaction.getDestinationAccountId());
+            return connection
+                .rxQueryWithParams(LOCK_ACCOUNT_ID_SQL, new JsonArray().add(firstAccountIdToLock))
+                .flatMap(firstAccountRs -> {
+                    if (!accountExists(firstAccountRs)) {
+                        return Single.just(ACCOUNT_DOESNT_EXIST);
+                    } else {
+                        return connection
+                            .rxQueryWithParams(LOCK_ACCOUNT_ID_SQL, new JsonArray().add(secondAccountIdToLock))
+                            .flatMap(secondAccountRs -> {
+                                if (!accountExists(secondAccountRs)) {
+                                    return Single.just(ACCOUNT_DOESNT_EXIST);
+                                } else if (!sufficientFunds(firstAccountRs, secondAccountRs, transaction)) {
+                                    return Single.just(INSUFFICIENT_FUNDS);
+                                } else {
+                                    return updateBalances(connection, transaction);
+                                }
+                            });
+                    }
+                })
+                .compose(SQLClientHelper.txSingleTransformer(connection));
+        });
+    }
+
+    @Override
+    public Single<Integer> withdraw(final Transaction transaction) {
+        return connectionScheduler.usingWriteConnection(connection -> connection
+            .rxQueryWithParams(LOCK_ACCOUNT_ID_SQL, new JsonArray().add(transaction.getDestinationAccountId()))
+            .flatMap(accountRs -> {
+                if (!accountExists(accountRs)) {
+                    return Single.just(ACCOUNT_DOESNT_EXIST);
+                } else if (!sufficientFunds(accountRs, transaction)) {
+                    return Single.just(INSUFFICIENT_FUNDS);
+                } else {
+                    return connection
+                        .rxUpdateWithParams(DECREASE_ACCOUNT_BALANCE_SQL,
+                            new JsonArray().add(transaction.getAmount().toString())
+                                .add(transaction.getDestinationAccountId()))
+                        .flatMap(result -> connection.rxUpdateWithParams(INSERT_TRANSACTION_SQL,
+                            new JsonArray().add(transaction.getId()).add(transaction.getDestinationAccountId())
+                                .add(transaction.getTransactionType())
+                                .add(transaction.getAmount().toString())))
+                        .flatMap(result -> Single.just(OK));
+                }
+            })
+            .compose(SQLClientHelper.txSingleTransformer(connection)));
+    }
+
+    @Override
+    public Single<Integer> deposit(final Transaction transaction) {
+        return connectionScheduler.usingWriteConnection(connection -> connection
+            .rxQueryWithParams(LOCK_ACCOUNT_ID_SQL, new JsonArray().add(transaction.getDestinationAccountId()))
+            .flatMap(accountRs -> {
+                if (!accountExists(accountRs)) {
+                    return Single.just(ACCOUNT_DOESNT_EXIST);
+                } else {
+                    return connection
+                        .rxUpdateWithParams(INCREASE_ACCOUNT_BALANCE_SQL,
+                            new JsonArray().add(transaction.getAmount().toString())
+                                .add(transaction.getDestinationAccountId()))
+                        .flatMap(result -> connection.rxUpdateWithParams(INSERT_TRANSACTION_SQL,
+                            new JsonArray().add(transaction.getId()).add(transaction.getDestinationAccountId())
+                                .add(transaction.getTransactionType())
+                                .add(transaction.getAmount().toString())))
+                        .flatMap(result -> Single.just(OK));
+                }
+            })
+            .compose(SQLClientHelper.txSingleTransformer(connection)));
+    }
+
+    private boolean accountExists(ResultSet accountRs) {
+        return accountRs.getRows().size() == 1;
+    }
+
+    private boolean sufficientFunds(ResultSet accountRs, Transaction transaction) {
+        JsonObject jsonObject = accountRs.getRows().get(0);
+        BigDecimal balance = new BigDecimal(jsonObject.getString("BALANCE"));
+        return balance.compareTo(transaction.getAmount()) >= 0;
+    }
+
+    private boolean sufficientFunds(ResultSet firstAccountRs, ResultSet secondAccountRs, Transaction transaction) {
+        ResultSet sourceAccountRs = getResultSetByAccountId(firstAccountRs, secondAccountRs,
+            transaction.getSourceAccountId());
+
+        return sufficientFunds(sourceAccountRs, transaction);
+    }
+
+    private ResultSet getResultSetByAccountId(ResultSet firstAccountRs, ResultSet secondAccountRs, long accountId) {
+        if (accountId == firstAccountRs.getRows().get(0).getLong("ID")) {
+            return firstAccountRs;
+        }
+        return secondAccountRs;
+    }
+
+    private Single<Integer> updateBalances(SQLConnection connection, Transaction transaction) {
+        return connection
+            .rxUpdateWithParams(DECREASE_ACCOUNT_BALANCE_SQL, new JsonArray().add(transaction.getAmount().toString())
+                .add(transaction.getSourceAccountId()))
+            .flatMap(decreaseResult -> connection.rxUpdateWithParams(INCREASE_ACCOUNT_BALANCE_SQL,
+                new JsonArray().add(transaction.getAmount().toString()).add(transaction.getDestinationAccountId())))
+            .flatMap(increaseResult -> connection.rxUpdateWithParams(INSERT_TRANSFER_TRANSACTION_SQL,
+                new JsonArray().add(transaction.getId()).add(transaction.getSourceAccountId())
+                    .add(transaction.getDestinationAccountId())
+                    .add(transaction.getTransactionType())
+                    .add(transaction.getAmount().toString())))
+            .flatMap(insertResult -> Single.just(OK));
+    }
+
+}
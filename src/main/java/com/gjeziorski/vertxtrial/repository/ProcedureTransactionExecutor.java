@@ -0,0 +1,52 @@
+package com.gjeziorski.vertxtrial.repository;
+
+import com.gjeziorski.vertxtrial.domain.Transaction;
+import io.reactivex.Single;
+import io.vertx.core.json.JsonArray;
+
+// Every transaction is a single CALL of a routine installed by the schema migrations (see DatabaseInitializer),
+// the routine validates accounts and funds, updates balances and inserts the journal row in one round trip
+class ProcedureTransactionExecutor implements TransactionExecutor {
+
+    private static final String DEPOSIT_CALL_SQL = "{call DEPOSIT_FUNDS(?, ?, ?, ?)}";
+    private static final String WITHDRAW_CALL_SQL = "{call WITHDRAW_FUNDS(?, ?, ?, ?)}";
+    private static final String TRANSFER_CALL_SQL = "{call TRANSFER_FUNDS(?, ?, ?, ?, ?)}";
+
+    private static final JsonArray SINGLE_ACCOUNT_CALL_OUTPUT = new JsonArray().addNull().addNull().addNull()
+        .add("INTEGER");
+    private static final JsonArray TRANSFER_CALL_OUTPUT = new JsonArray().addNull().addNull().addNull().addNull()
+        .add("INTEGER");
+
+    private ConnectionScheduler connectionScheduler;
+
+    ProcedureTransactionExecutor(final ConnectionScheduler connectionScheduler) {
+        this.connectionScheduler = connectionScheduler;
+    }
+
+    @Override
+    public Single<Integer> deposit(final Transaction transaction) {
+        return call(DEPOSIT_CALL_SQL, new JsonArray().add(transaction.getId())
+            .add(transaction.getDestinationAccountId()).add(transaction.getAmount().toString()),
+            SINGLE_ACCOUNT_CALL_OUTPUT);
+    }
+
+    @Override
+    public Single<Integer> withdraw(final Transaction transaction) {
+        return call(WITHDRAW_CALL_SQL, new JsonArray().add(transaction.getId())
+            .add(transaction.getDestinationAccountId()).add(transaction.getAmount().toString()),
+            SINGLE_ACCOUNT_CALL_OUTPUT);
+    }
+
+    @Override
+    public Single<Integer> transfer(final Transaction transaction) {
+        return call(TRANSFER_CALL_SQL, new JsonArray().add(transaction.getId()).add(transaction.getSourceAccountId())
+            .add(transaction.getDestinationAccountId()).add(transaction.getAmount().toString()), TRANSFER_CALL_OUTPUT);
+    }
+
+    private Single<Integer> call(final String sql, final JsonArray input, final JsonArray output) {
+        return connectionScheduler.usingWriteConnection(connection -> connection
+            .rxCallWithParams(sql, input, output)
+            .map(resultSet -> resultSet.getOutput().getInteger(output.size() - 1)));
+    }
+
+}
@@ -0,0 +1,155 @@
+package com.gjeziorski.vertxtrial.repository;
+
+import com.gjeziorski.vertxtrial.common.VersionRegistry;
+import io.reactivex.Single;
+import io.vertx.core.eventbus.DeliveryOptions;
+import io.vertx.core.json.JsonObject;
+import io.vertx.reactivex.core.RxHelper;
+import io.vertx.reactivex.core.Vertx;
+import io.vertx.reactivex.core.eventbus.Message;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.ToLongFunction;
+import lombok.extern.slf4j.Slf4j;
+
+// In-memory copies of a listing refreshed in the background. Every copy is taken at a commit sequence of
+// VersionRegistry, read before the query, so a copy holds at least every commit up to it. A copy serves reads whose
+// min-sequence it has reached and reads of keys without newer commits, reads without min-sequence take it as it is.
+// Other reads join a refresh of the key, wait for it up to max_wait_ms and read the database when it doesn't catch
+// up in time. Copies read within idle_eviction_ms are refreshed every refresh_interval_ms once they're behind.
+@Slf4j
+class ReadReplica<K, V> {
+
+    private final Vertx vertx;
+    private final String name;
+    private final ReplicaOptions options;
+    private final VersionRegistry versionRegistry;
+    private final ToLongFunction<K> keyVersion;
+    private final Function<K, Single<V>> loader;
+    private final Map<K, Copy<V>> copies = new ConcurrentHashMap<>();
+    private final Map<K, Single<Copy<V>>> refreshes = new ConcurrentHashMap<>();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder caughtUp = new LongAdder();
+    private final LongAdder primaryReads = new LongAdder();
+    private final LongAdder refreshed = new LongAdder();
+
+    ReadReplica(final Vertx vertx, final String name, final ReplicaOptions options,
+        final VersionRegistry versionRegistry, final ToLongFunction<K> keyVersion,
+        final Function<K, Single<V>> loader) {
+        this.vertx = vertx;
+        this.name = name;
+        this.options = options;
+        this.versionRegistry = versionRegistry;
+        this.keyVersion = keyVersion;
+        this.loader = loader;
+        if (options.isEnabled()) {
+            vertx.setPeriodic(options.getRefreshIntervalMs(), timerId -> refreshStale());
+        }
+    }
+
+    Single<Copy<V>> read(final K key, final long minSequence) {
+        final Copy<V> copy = options.isEnabled() ? copies.get(key) : null;
+        if (copy == null) {
+            return load(key);
+        }
+        if (copy.sequence >= minSequence || !isBehind(key, copy)) {
+            copy.readAt = System.currentTimeMillis();
+            hits.increment();
+            return Single.just(copy);
+        }
+        return refresh(key)
+            .timeout(options.getMaxWaitMs(), TimeUnit.MILLISECONDS, RxHelper.scheduler(vertx))
+            .filter(refreshedCopy -> refreshedCopy.sequence >= minSequence || !isBehind(key, refreshedCopy))
+            .doOnSuccess(refreshedCopy -> caughtUp.increment())
+            .switchIfEmpty(Single.defer(() -> load(key)))
+            .onErrorResumeNext(throwable -> load(key));
+    }
+
+    // Without copies every read is a primary read started after the caller read its version, there's nothing to tag
+    void reply(final Message<Object> message, final Object result, final Copy<V> copy) {
+        if (options.isEnabled()) {
+            message.reply(result, new DeliveryOptions().addHeader(VersionRegistry.SEQUENCE_HEADER,
+                String.valueOf(copy.sequence)));
+        } else {
+            message.reply(result);
+        }
+    }
+
+    JsonObject metrics() {
+        return new JsonObject()
+            .put("copies", copies.size())
+            .put("hits", hits.sum())
+            .put("caught_up", caughtUp.sum())
+            .put("primary_reads", primaryReads.sum())
+            .put("refreshed", refreshed.sum());
+    }
+
+    private void refreshStale() {
+        final long now = System.currentTimeMillis();
+        copies.forEach((key, copy) -> {
+            if (now - copy.readAt > options.getIdleEvictionMs()) {
+                copies.remove(key, copy);
+            } else if (isBehind(key, copy)) {
+                refresh(key);
+            }
+        });
+    }
+
+    // Versions of keys are sequences of their last commits
+    private boolean isBehind(final K key, final Copy<V> copy) {
+        return keyVersion.applyAsLong(key) > copy.sequence;
+    }
+
+    // Concurrent readers of a key share one query
+    private Single<Copy<V>> refresh(final K key) {
+        final Single<Copy<V>> started = Single.defer(() -> query(key))
+            .doOnSuccess(copy -> refreshed.increment())
+            .cache();
+        final Single<Copy<V>> running = refreshes.putIfAbsent(key, started);
+        if (running != null) {
+            return running;
+        }
+        started.doFinally(() -> refreshes.remove(key, started)).subscribe(copy -> {
+        }, throwable -> log.warn("Failed to refresh {} replica", name, throwable));
+        return started;
+    }
+
+    private Single<Copy<V>> load(final K key) {
+        primaryReads.increment();
+        return query(key);
+    }
+
+    // A copy never replaces a newer one, reads keep it from being evicted
+    private Single<Copy<V>> query(final K key) {
+        final long sequence = versionRegistry.accountListVersion();
+        return loader.apply(key).map(value -> {
+            final Copy<V> loaded = new Copy<>(sequence, value);
+            if (options.isEnabled()) {
+                copies.merge(key, loaded, (current, candidate) -> candidate.sequence >= current.sequence
+                    ? candidate : current);
+            }
+            return loaded;
+        });
+    }
+
+    static class Copy<V> {
+
+        private final long sequence;
+        private final V value;
+        private volatile long readAt = System.currentTimeMillis();
+
+        private Copy(final long sequence, final V value) {
+            this.sequence = sequence;
+            this.value = value;
+        }
+
+        V value() {
+            return value;
+        }
+
+    }
+
+}
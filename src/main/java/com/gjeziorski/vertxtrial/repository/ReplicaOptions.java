@@ -0,0 +1,34 @@
+package com.gjeziorski.vertxtrial.repository;
+
+import io.vertx.core.json.JsonObject;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ReplicaOptions {
+
+    private boolean enabled;
+
+    private long refreshIntervalMs;
+
+    // How long a read which needs newer data than its copy waits for a refresh before it reads the database
+    private long maxWaitMs;
+
+    // Copies which weren't read for this long are dropped instead of refreshed
+    private long idleEvictionMs;
+
+    public static ReplicaOptions fromJson(final JsonObject json, final ReplicaOptions defaults) {
+        return ReplicaOptions.builder()
+            .enabled(json.getBoolean("enabled", defaults.isEnabled()))
+            .refreshIntervalMs(json.getLong("refresh_interval_ms", defaults.getRefreshIntervalMs()))
+            .maxWaitMs(json.getLong("max_wait_ms", defaults.getMaxWaitMs()))
+            .idleEvictionMs(json.getLong("idle_eviction_ms", defaults.getIdleEvictionMs()))
+            .build();
+    }
+
+}
@@ -0,0 +1,18 @@
+package com.gjeziorski.vertxtrial.repository;
+
+import static com.gjeziorski.vertxtrial.common.ErrorCodes.SERVICE_UNAVAILABLE;
+import static com.gjeziorski.vertxtrial.common.ErrorCodes.TECHNICAL_ERROR;
+
+class RepositoryFailures {
+
+    private RepositoryFailures() {
+    }
+
+    static int failureCode(final Throwable throwable) {
+        if (throwable instanceof ConnectionUnavailableException) {
+            return SERVICE_UNAVAILABLE;
+        }
+        return TECHNICAL_ERROR;
+    }
+
+}
@@ -0,0 +1,206 @@
+package com.gjeziorski.vertxtrial.repository;
+
+import static com.gjeziorski.vertxtrial.common.ErrorCodes.ACCOUNT_DOESNT_EXIST;
+import static com.gjeziorski.vertxtrial.common.ErrorCodes.OK;
+import static com.gjeziorski.vertxtrial.common.ErrorCodes.TECHNICAL_ERROR;
+
+import com.gjeziorski.vertxtrial.common.ErrorCodesTranslator;
+import com.gjeziorski.vertxtrial.domain.Transaction;
+import com.gjeziorski.vertxtrial.domain.TransactionType;
+import com.gjeziorski.vertxtrial.scheduling.TimingWheel;
+import io.reactivex.Completable;
+import io.reactivex.Observable;
+import io.reactivex.Scheduler;
+import io.reactivex.Single;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.reactivex.core.RxHelper;
+import io.vertx.reactivex.core.Vertx;
+import io.vertx.reactivex.core.eventbus.Message;
+import io.vertx.reactivex.ext.sql.SQLClientHelper;
+import io.vertx.reactivex.ext.sql.SQLRowStream;
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Objects;
+import lombok.extern.slf4j.Slf4j;
+
+// Future-dated transactions are stored as PENDING rows and kept in a timing wheel until they're due. Due transactions
+// are released in batches limited by release_rate and max_in_flight, so a burst of standing orders due at the same
+// time is spread instead of hitting the write pool at once.
+// A batch is claimed (PENDING -> RUNNING) before it's executed, so every transaction is executed at most once. The
+// claim stores the journal id the transaction is executed with, on restart a row left RUNNING by a crash is EXECUTED
+// when the journal has its transaction and PENDING again otherwise. Rows claimed before journal ids were stored
+// can't tell whether the money moved, they're marked INTERRUPTED and logged.
+@Slf4j
+public class ScheduledTransactionsRepository {
+
+    private static final String COUNT_ACCOUNTS_SQL = "SELECT COUNT(*) FROM ACCOUNT WHERE ID IN (?, ?)";
+    private static final String INSERT_SCHEDULED_TRANSACTION_SQL = "INSERT INTO SCHEDULED_TRANSACTION(SOURCE_ACCOUNT_ID, DESTINATION_ACCOUNT_ID, TRANSACTION_TYPE, AMOUNT, EXECUTE_AT) VALUES (?, ?, ?, ?, ?)";
+    private static final String COMPLETE_COMMITTED_SQL = "UPDATE SCHEDULED_TRANSACTION SET STATUS = 'EXECUTED', RESULT_CODE = ? WHERE STATUS = 'RUNNING' AND EXISTS (SELECT ID FROM TRANSACTION WHERE TRANSACTION.ID = SCHEDULED_TRANSACTION.TRANSACTION_ID)";
+    private static final String RESET_UNCOMMITTED_SQL = "UPDATE SCHEDULED_TRANSACTION SET STATUS = 'PENDING', TRANSACTION_ID = NULL WHERE STATUS = 'RUNNING' AND TRANSACTION_ID IS NOT NULL";
+    private static final String INTERRUPT_RUNNING_SQL = "UPDATE SCHEDULED_TRANSACTION SET STATUS = 'INTERRUPTED', RESULT_CODE = ? WHERE STATUS = 'RUNNING'";
+    private static final String SELECT_PENDING_SQL = "SELECT ID, SOURCE_ACCOUNT_ID, DESTINATION_ACCOUNT_ID, TRANSACTION_TYPE, AMOUNT, EXECUTE_AT FROM SCHEDULED_TRANSACTION WHERE STATUS = 'PENDING'";
+    private static final String CLAIM_SQL = "UPDATE SCHEDULED_TRANSACTION SET STATUS = 'RUNNING', TRANSACTION_ID = ? WHERE ID = ? AND STATUS = 'PENDING'";
+    private static final String COMPLETE_SQL = "UPDATE SCHEDULED_TRANSACTION SET STATUS = ?, RESULT_CODE = ? WHERE ID = ?";
+
+    // 2^32 ticks, more than thirteen years with 100 ms ticks
+    private static final int WHEEL_BITS_PER_LEVEL = 8;
+    private static final int WHEEL_LEVELS = 4;
+
+    private final Vertx vertx;
+    // The wheel, the due queue and the counters are only touched on the context which created the repository
+    private final Scheduler contextScheduler;
+    private final ConnectionScheduler connectionScheduler;
+    private final TransactionsRepository transactionsRepository;
+    private final IdAllocator transactionIdAllocator;
+    private final SchedulingOptions options;
+    private final TimingWheel<Transaction> timingWheel;
+    private final Deque<Transaction> due = new ArrayDeque<>();
+    private double releaseAllowance;
+    private int inFlight;
+
+    public ScheduledTransactionsRepository(final Vertx vertx, final ConnectionScheduler connectionScheduler,
+        final TransactionsRepository transactionsRepository, final IdAllocator transactionIdAllocator,
+        final SchedulingOptions options) {
+        this.vertx = vertx;
+        this.contextScheduler = RxHelper.scheduler(vertx.getOrCreateContext());
+        this.connectionScheduler = connectionScheduler;
+        this.transactionsRepository = transactionsRepository;
+        this.transactionIdAllocator = transactionIdAllocator;
+        this.options = options;
+        this.timingWheel = new TimingWheel<>(options.getTickMs(), WHEEL_BITS_PER_LEVEL, WHEEL_LEVELS,
+            System.currentTimeMillis());
+    }
+
+    public Single<JsonObject> schedule(Message<Object> message) {
+        final Transaction transaction = new JsonObject(message.body().toString()).mapTo(Transaction.class);
+        final long accounts = Objects.equals(transaction.getSourceAccountId(), transaction.getDestinationAccountId())
+            || transaction.getSourceAccountId() == null ? 1 : 2;
+        return connectionScheduler.usingWriteConnection(connection -> connection
+            .rxQueryWithParams(COUNT_ACCOUNTS_SQL, new JsonArray().add(transaction.getSourceAccountId())
+                .add(transaction.getDestinationAccountId()))
+            .flatMap(found -> {
+                if (found.getResults().get(0).getLong(0) < accounts) {
+                    return Single.error(new TransactionAbortedException(ACCOUNT_DOESNT_EXIST));
+                }
+                return connection.rxUpdateWithParams(INSERT_SCHEDULED_TRANSACTION_SQL, new JsonArray()
+                    .add(transaction.getSourceAccountId())
+                    .add(transaction.getDestinationAccountId())
+                    .add(transaction.getTransactionType())
+                    .add(transaction.getAmount().toString())
+                    .add(transaction.getExecuteAt().toEpochMilli()));
+            })
+            .compose(SQLClientHelper.txSingleTransformer(connection)))
+            .map(inserted -> {
+                transaction.setId(inserted.getKeys().getLong(0));
+                timingWheel.schedule(transaction, transaction.getExecuteAt().toEpochMilli());
+                return new JsonObject().put("id", transaction.getId())
+                    .put("execute_at", transaction.getExecuteAt().toString());
+            })
+            .doOnSuccess(result -> message.reply(result.toString()))
+            .doOnError(throwable -> {
+                if (throwable instanceof TransactionAbortedException) {
+                    final int errorCode = ((TransactionAbortedException) throwable).getErrorCode();
+                    message.fail(errorCode, ErrorCodesTranslator.translateErrorCode(errorCode));
+                    return;
+                }
+                log.error("Failed to schedule transaction", throwable);
+                message.fail(RepositoryFailures.failureCode(throwable), "Failed to schedule transaction");
+            });
+    }
+
+    // Reads only RUNNING and PENDING rows through the status index, executed history is never scanned. Transactions
+    // reset to PENDING never committed, the process which executed them is gone.
+    public Completable recover() {
+        return connectionScheduler.usingWriteConnection(connection -> connection
+            .rxUpdateWithParams(COMPLETE_COMMITTED_SQL, new JsonArray().add(OK))
+            .flatMap(committed -> connection.rxUpdate(RESET_UNCOMMITTED_SQL)
+                .flatMap(reset -> connection.rxUpdateWithParams(INTERRUPT_RUNNING_SQL,
+                    new JsonArray().add(TECHNICAL_ERROR)))
+                .doOnSuccess(interrupted -> {
+                    if (committed.getUpdated() > 0) {
+                        log.info("Completed {} scheduled transactions committed before restart",
+                            committed.getUpdated());
+                    }
+                    if (interrupted.getUpdated() > 0) {
+                        log.warn("Marked {} scheduled transactions with unknown outcome as interrupted",
+                            interrupted.getUpdated());
+                    }
+                }))
+            .flatMap(interrupted -> connection.rxQueryStream(SELECT_PENDING_SQL))
+            .flatMapPublisher(SQLRowStream::toFlowable)
+            .doOnNext(row -> timingWheel.schedule(Transaction.builder()
+                .id(row.getLong(0))
+                .sourceAccountId(row.getLong(1))
+                .destinationAccountId(row.getLong(2))
+                .transactionType(TransactionType.valueOf(row.getString(3)))
+                .amount(new BigDecimal(row.getValue(4).toString()))
+                .executeAt(Instant.ofEpochMilli(row.getLong(5)))
+                .build(), row.getLong(5)))
+            .count())
+            .doOnSuccess(count -> log.info("Loaded {} pending scheduled transactions", count))
+            .ignoreElement();
+    }
+
+    public void start() {
+        vertx.setPeriodic(options.getTickMs(), timerId -> tick());
+    }
+
+    // Allowance isn't saved up while idle, so at most one tick worth of transactions is released at once
+    private void tick() {
+        timingWheel.advance(System.currentTimeMillis(), due::add);
+        final double perTick = options.getReleaseRate() * options.getTickMs() / 1000.0;
+        releaseAllowance = Math.min(releaseAllowance + perTick, Math.max(1.0, perTick));
+        final List<Transaction> batch = new ArrayList<>();
+        while (!due.isEmpty() && releaseAllowance >= 1.0 && inFlight + batch.size() < options.getMaxInFlight()) {
+            batch.add(due.poll());
+            releaseAllowance--;
+        }
+        if (!batch.isEmpty()) {
+            release(batch);
+        }
+    }
+
+    // Transactions whose claim fails go back to the queue, claims that update nothing were deleted meanwhile.
+    // Execution may complete on a virtual thread, so the batch hops back to the context before it's accounted for.
+    private void release(final List<Transaction> batch) {
+        inFlight += batch.size();
+        transactionIdAllocator.nextIds(batch.size())
+            .flatMap(transactionIds -> connectionScheduler.usingWriteConnection(connection -> connection
+                .rxBatchWithParams(CLAIM_SQL, claims(batch, transactionIds)))
+                .map(claimed -> Observable.range(0, batch.size())
+                    .filter(i -> claimed.get(i) > 0)
+                    .flatMapSingle(i -> transactionsRepository.execute(batch.get(i), transactionIds[i])
+                        .onErrorReturn(RepositoryFailures::failureCode)
+                        .flatMap(errorCode -> complete(batch.get(i), errorCode)))))
+            .doOnError(throwable -> due.addAll(batch))
+            .flatMapObservable(executions -> executions)
+            .observeOn(contextScheduler)
+            .doFinally(() -> inFlight -= batch.size())
+            .subscribe(errorCode -> {
+            }, throwable -> log.error("Failed to release scheduled transactions", throwable));
+    }
+
+    private static List<JsonArray> claims(final List<Transaction> batch, final long[] transactionIds) {
+        final List<JsonArray> claims = new ArrayList<>();
+        for (int i = 0; i < batch.size(); i++) {
+            claims.add(new JsonArray().add(transactionIds[i]).add(batch.get(i).getId()));
+        }
+        return claims;
+    }
+
+    private Single<Integer> complete(final Transaction transaction, final int errorCode) {
+        if (errorCode != OK) {
+            log.info("Scheduled transaction {} failed: {}", transaction.getId(),
+                ErrorCodesTranslator.translateErrorCode(errorCode));
+        }
+        return connectionScheduler.usingWriteConnection(connection -> connection.rxUpdateWithParams(COMPLETE_SQL,
+            new JsonArray().add(errorCode == OK ? "EXECUTED" : "FAILED").add(errorCode).add(transaction.getId())))
+            .map(updated -> errorCode);
+    }
+
+}
@@ -0,0 +1,31 @@
+package com.gjeziorski.vertxtrial.repository;
+
+import io.vertx.core.json.JsonObject;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class SchedulingOptions {
+
+    // Resolution of the timing wheel, scheduled transactions fire up to one tick late
+    private long tickMs;
+
+    // Due transactions released to execution per second, the rest waits in memory
+    private double releaseRate;
+
+    private int maxInFlight;
+
+    public static SchedulingOptions fromJson(final JsonObject json, final SchedulingOptions defaults) {
+        return SchedulingOptions.builder()
+            .tickMs(json.getLong("tick_ms", defaults.getTickMs()))
+            .releaseRate(json.getDouble("release_rate", defaults.getReleaseRate()))
+            .maxInFlight(json.getInteger("max_in_flight", defaults.getMaxInFlight()))
+            .build();
+    }
+
+}
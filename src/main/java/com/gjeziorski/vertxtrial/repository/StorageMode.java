@@ -0,0 +1,13 @@
+package com.gjeziorski.vertxtrial.repository;
+
+public enum StorageMode {
+    MEMORY,
+    FILE;
+
+    private static final String MEMORY_URL_PREFIX = "jdbc:hsqldb:mem:";
+
+    // Anything but an in-memory database is persistent, e.g. file and server urls
+    public static StorageMode fromUrl(final String url) {
+        return url.startsWith(MEMORY_URL_PREFIX) ? MEMORY : FILE;
+    }
+}
@@ -0,0 +1,47 @@
+package com.gjeziorski.vertxtrial.repository;
+
+import io.vertx.core.json.JsonObject;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class StorageOptions {
+
+    private StorageMode mode;
+
+    private String path;
+
+    // 0 syncs the log on every commit, otherwise commits are synced in batches after given delay
+    private int writeDelayMs;
+
+    // Log size which triggers automatic checkpoint
+    private int logSizeMb;
+
+    // 0 disables periodic checkpoints
+    private long checkpointIntervalMs;
+
+    private int cacheRows;
+
+    private int cacheSizeKb;
+
+    private int warmUpProbes;
+
+    public static StorageOptions fromJson(final JsonObject json, final StorageOptions defaults) {
+        return StorageOptions.builder()
+            .mode(StorageMode.valueOf(json.getString("mode", defaults.getMode().name())))
+            .path(json.getString("path", defaults.getPath()))
+            .writeDelayMs(json.getInteger("write_delay_ms", defaults.getWriteDelayMs()))
+            .logSizeMb(json.getInteger("log_size_mb", defaults.getLogSizeMb()))
+            .checkpointIntervalMs(json.getLong("checkpoint_interval_ms", defaults.getCheckpointIntervalMs()))
+            .cacheRows(json.getInteger("cache_rows", defaults.getCacheRows()))
+            .cacheSizeKb(json.getInteger("cache_size_kb", defaults.getCacheSizeKb()))
+            .warmUpProbes(json.getInteger("warm_up_probes", defaults.getWarmUpProbes()))
+            .build();
+    }
+
+}
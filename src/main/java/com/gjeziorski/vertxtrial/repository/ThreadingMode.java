@@ -0,0 +1,8 @@
+package com.gjeziorski.vertxtrial.repository;
+
+public enum ThreadingMode {
+
+    REACTIVE,
+    VIRTUAL_THREADS
+
+}
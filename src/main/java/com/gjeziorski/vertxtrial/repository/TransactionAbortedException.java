@@ -0,0 +1,17 @@
+package com.gjeziorski.vertxtrial.repository;
+
+// Signals that a transaction has to be rolled back and answered with given error code
+class TransactionAbortedException extends RuntimeException {
+
+    private final int errorCode;
+
+    TransactionAbortedException(final int errorCode) {
+        super(null, null, false, false);
+        this.errorCode = errorCode;
+    }
+
+    int getErrorCode() {
+        return errorCode;
+    }
+
+}
@@ -0,0 +1,9 @@
+package com.gjeziorski.vertxtrial.repository;
+
+public enum TransactionExecutionMode {
+
+    PESSIMISTIC,
+    PROCEDURE,
+    OPTIMISTIC
+
+}
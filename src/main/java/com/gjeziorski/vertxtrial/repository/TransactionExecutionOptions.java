@@ -0,0 +1,33 @@
+package com.gjeziorski.vertxtrial.repository;
+
+import io.vertx.core.json.JsonObject;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class TransactionExecutionOptions {
+
+    private TransactionExecutionMode mode;
+
+    private int maxRetries;
+
+    private long retryBackoffMs;
+
+    private long maxRetryBackoffMs;
+
+    public static TransactionExecutionOptions fromJson(final JsonObject json,
+        final TransactionExecutionOptions defaults) {
+        return TransactionExecutionOptions.builder()
+            .mode(TransactionExecutionMode.valueOf(json.getString("mode", defaults.getMode().name())))
+            .maxRetries(json.getInteger("max_retries", defaults.getMaxRetries()))
+            .retryBackoffMs(json.getLong("retry_backoff_ms", defaults.getRetryBackoffMs()))
+            .maxRetryBackoffMs(json.getLong("max_retry_backoff_ms", defaults.getMaxRetryBackoffMs()))
+            .build();
+    }
+
+}
@@ -0,0 +1,15 @@
+package com.gjeziorski.vertxtrial.repository;
+
+import com.gjeziorski.vertxtrial.domain.Transaction;
+import io.reactivex.Single;
+
+// Executes balance changing transactions and emits one of ErrorCodes
+interface TransactionExecutor {
+
+    Single<Integer> deposit(Transaction transaction);
+
+    Single<Integer> withdraw(Transaction transaction);
+
+    Single<Integer> transfer(Transaction transaction);
+
+}
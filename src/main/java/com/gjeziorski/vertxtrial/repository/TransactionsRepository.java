@@ -1,28 +1,39 @@
 package com.gjeziorski.vertxtrial.repository;
 
-import static com.gjeziorski.vertxtrial.common.ErrorCodes.ACCOUNT_DOESNT_EXIST;
 import static com.gjeziorski.vertxtrial.common.ErrorCodes.INSUFFICIENT_FUNDS;
 import static com.gjeziorski.vertxtrial.common.ErrorCodes.OK;
-import static com.gjeziorski.vertxtrial.common.ErrorCodes.TECHNICAL_ERROR;
+import static com.gjeziorski.vertxtrial.common.ErrorCodes.VELOCITY_LIMIT_EXCEEDED;
+import static java.time.format.DateTimeFormatter.ISO_OFFSET_DATE_TIME;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
 import com.gjeziorski.vertxtrial.common.ErrorCodesTranslator;
-import com.gjeziorski.vertxtrial.common.ObjectMapperProvider;
+import com.gjeziorski.vertxtrial.common.VersionRegistry;
 import com.gjeziorski.vertxtrial.domain.FetchTransactionsRequest;
 import com.gjeziorski.vertxtrial.domain.Transaction;
+import com.gjeziorski.vertxtrial.domain.TransactionType;
+import com.gjeziorski.vertxtrial.holds.HoldTable;
+import com.gjeziorski.vertxtrial.index.BalanceIndex;
+import com.gjeziorski.vertxtrial.index.MappedBalanceStore;
+import com.gjeziorski.vertxtrial.serialization.ContentFormat;
+import com.gjeziorski.vertxtrial.serialization.Payload;
+import com.gjeziorski.vertxtrial.velocity.VelocityRules;
+import io.reactivex.Completable;
 import io.reactivex.Single;
 import io.vertx.core.json.JsonArray;
 import io.vertx.core.json.JsonObject;
 import io.vertx.ext.sql.ResultSet;
+import io.vertx.reactivex.core.Vertx;
 import io.vertx.reactivex.core.eventbus.Message;
-import io.vertx.reactivex.ext.jdbc.JDBCClient;
 import io.vertx.reactivex.ext.sql.SQLClientHelper;
-import io.vertx.reactivex.ext.sql.SQLConnection;
-import java.io.IOException;
 import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.time.Instant;
+import java.time.ZoneOffset;
 import java.util.ArrayList;
 import java.util.Comparator;
 import java.util.List;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 import lombok.extern.slf4j.Slf4j;
 
@@ -32,66 +43,117 @@ public class TransactionsRepository {
     private static final String FETCH_TRANSACTIONS_BY_SOURCE_ACCOUNT_ID_SQL = "SELECT * FROM TRANSACTION WHERE SOURCE_ACCOUNT_ID = ?";
     private static final String FETCH_TRANSACTIONS_BY_DESTINATION_ACCOUNT_ID_SQL = "SELECT * FROM TRANSACTION WHERE DESTINATION_ACCOUNT_ID = ?";
 
-    private static final String LOCK_ACCOUNT_ID_SQL = "SELECT ID, CAST(BALANCE AS VARCHAR(20)) AS BALANCE FROM ACCOUNT WHERE ID = ? FOR UPDATE";
-
-    private static final String INCREASE_ACCOUNT_BALANCE_SQL = "UPDATE ACCOUNT SET BALANCE = BALANCE + ? WHERE ID = ?";
-    private static final String DECREASE_ACCOUNT_BALANCE_SQL = "UPDATE ACCOUNT SET BALANCE = BALANCE - ? WHERE ID = ?";
+    private ConnectionScheduler connectionScheduler;
+    private NettingTransactionExecutor transactionExecutor;
+    private BalanceIndex balanceIndex;
+    private MappedBalanceStore balanceStore;
+    private VersionRegistry versionRegistry;
+    private HoldTable holdTable;
+    private VelocityRules velocityRules;
+    private IdAllocator idAllocator;
+    private VirtualThreads virtualThreads;
+    private ReadReplica<Long, List<Transaction>> transactionsReplica;
+
+    // Virtual threads are null in REACTIVE threading mode. Transactions of hot accounts stay reactive in both modes.
+    // Balance store and velocity rules are null when they're disabled. Netted transfers bypass the other executors.
+    public TransactionsRepository(final Vertx vertx, final ConnectionScheduler connectionScheduler,
+        final TransactionExecutionOptions executionOptions, final NettingOptions nettingOptions,
+        final BalanceIndex balanceIndex, final MappedBalanceStore balanceStore, final VersionRegistry versionRegistry,
+        final HoldTable holdTable, final HotAccounts hotAccounts, final VelocityRules velocityRules,
+        final IdAllocator idAllocator, final ReplicaOptions replicaOptions, final VirtualThreads virtualThreads) {
+        this.connectionScheduler = connectionScheduler;
+        this.balanceIndex = balanceIndex;
+        this.balanceStore = balanceStore;
+        this.versionRegistry = versionRegistry;
+        this.holdTable = holdTable;
+        this.velocityRules = velocityRules;
+        this.idAllocator = idAllocator;
+        this.virtualThreads = virtualThreads;
+        this.transactionsReplica = new ReadReplica<>(vertx, "transactions", replicaOptions, versionRegistry,
+            versionRegistry::accountVersion, this::loadTransactions);
+        this.transactionExecutor = new NettingTransactionExecutor(new HotAccountTransactionExecutor(
+            virtualThreads != null ? new BlockingTransactionExecutor(connectionScheduler, virtualThreads,
+                executionOptions) : createTransactionExecutor(vertx, connectionScheduler, executionOptions),
+            connectionScheduler, hotAccounts), vertx, connectionScheduler, nettingOptions);
+    }
 
-    private static final String INSERT_TRANSACTION_SQL = "INSERT INTO TRANSACTION(DESTINATION_ACCOUNT_ID, TRANSACTION_TYPE, AMOUNT) VALUES (?, ?, ?)";
-    private static final String INSERT_TRANSFER_TRANSACTION_SQL = "INSERT INTO TRANSACTION(SOURCE_ACCOUNT_ID, DESTINATION_ACCOUNT_ID, TRANSACTION_TYPE, AMOUNT) VALUES (?, ?, ?, ?)";
+    public Completable startNetting() {
+        return transactionExecutor.start();
+    }
 
-    private JDBCClient jdbcClient;
-    private ObjectMapper objectMapper;
+    public JsonObject nettingMetrics() {
+        return transactionExecutor.metrics();
+    }
 
-    public TransactionsRepository(final JDBCClient jdbcClient) {
-        this.jdbcClient = jdbcClient;
-        this.objectMapper = ObjectMapperProvider.getObjectMapper();
+    public JsonObject replicaMetrics() {
+        return transactionsReplica.metrics();
     }
 
     public Single<Integer> handleDeposit(Message<Object> message) {
-        return handleTransactionResult(executeDeposit(message), message);
+        return handleTransaction(message, transactionExecutor::deposit);
     }
 
     public Single<Integer> handleWithdraw(Message<Object> message) {
-        return handleTransactionResult(executeWithdraw(message), message);
+        return handleTransaction(message, transactionExecutor::withdraw);
     }
 
     public Single<Integer> handleTransfer(Message<Object> message) {
-        return handleTransactionResult(executeTransfer(message), message);
+        return handleTransaction(message, transactionExecutor::transfer);
     }
 
     // Time period condition should be pushed to the database and supported with index.
     // Since JDBCClient doesn't support condition builders I did in application level.
     // I considered querydsl library for this.
-    public Single<String> listTransactions(Message<Object> message) {
-        return jdbcClient.rxGetConnection().flatMap(connection -> {
-            final FetchTransactionsRequest fetchTransactionsRequest = deserializeFetchTransactionsRequest(message);
-            final JsonArray parameters = new JsonArray().add(fetchTransactionsRequest.getAccountId());
+    public Single<Payload> listTransactions(Message<Object> message) {
+        final FetchTransactionsRequest fetchTransactionsRequest = deserializeFetchTransactionsRequest(message);
+        final long minSequence = fetchTransactionsRequest.getMinSequence() == null ? 0
+            : fetchTransactionsRequest.getMinSequence();
+        return transactionsReplica.read(fetchTransactionsRequest.getAccountId(), minSequence)
+            .flatMap(copy -> Single.fromCallable(() -> Payload.write(filterAndSort(fetchTransactionsRequest,
+                copy.value()), ContentFormat.fromName(message.headers().get(ContentFormat.HEADER))))
+                .doOnSuccess(result -> {
+                    log.info("Fetched transactions");
+                    transactionsReplica.reply(message, result, copy);
+                }))
+            .doOnError(throwable -> {
+                log.error("Failed to fetch transactions", throwable);
+                message.fail(RepositoryFailures.failureCode(throwable), "Failed to fetch transactions");
+            });
+    }
+
+    // Both directions of the account unfiltered, so that one copy serves every time range
+    private Single<List<Transaction>> loadTransactions(final long accountId) {
+        if (virtualThreads != null) {
+            return virtualThreads.call(() -> connectionScheduler.withReadConnection(connection -> {
+                final List<Transaction> found = queryTransactions(connection,
+                    FETCH_TRANSACTIONS_BY_SOURCE_ACCOUNT_ID_SQL, accountId);
+                found.addAll(queryTransactions(connection, FETCH_TRANSACTIONS_BY_DESTINATION_ACCOUNT_ID_SQL,
+                    accountId));
+                return found;
+            }));
+        }
+        return connectionScheduler.usingReadConnection(connection -> {
+            final JsonArray parameters = new JsonArray().add(accountId);
             final Single<ResultSet> singleSourceAccountTransactions = connection
                 .rxQueryWithParams(FETCH_TRANSACTIONS_BY_SOURCE_ACCOUNT_ID_SQL, parameters);
             final Single<ResultSet> singleDestinationAccountTransactions =
                 connection.rxQueryWithParams(FETCH_TRANSACTIONS_BY_DESTINATION_ACCOUNT_ID_SQL, parameters);
             return singleSourceAccountTransactions
-                .zipWith(singleDestinationAccountTransactions,
-                    (outgoingTransactionsRs, incomingTransactionsRs) -> getTransactions(fetchTransactionsRequest,
-                        outgoingTransactionsRs, incomingTransactionsRs))
-                .map(transactions -> objectMapper.writeValueAsString(transactions))
-                .compose(SQLClientHelper.txSingleTransformer(connection)).doAfterTerminate(connection::close);
-        }).doOnSuccess(result -> {
-            log.info("Fetched transactions from db");
-            message.reply(result);
-        }).doOnError(throwable -> {
-            log.error("Failed to fetch transactions", throwable);
-            message.fail(TECHNICAL_ERROR, "Failed to fetch transactions");
+                .zipWith(singleDestinationAccountTransactions, this::getTransactions)
+                .compose(SQLClientHelper.txSingleTransformer(connection));
         });
     }
 
-    private List<Transaction> getTransactions(final FetchTransactionsRequest fetchTransactionsRequest,
-        final ResultSet outgoingTransactionsRs, final ResultSet incomingTransactionsRs) throws IOException {
+    private List<Transaction> getTransactions(final ResultSet outgoingTransactionsRs,
+        final ResultSet incomingTransactionsRs) {
         List<Transaction> transactions = mapTransactions(outgoingTransactionsRs);
         List<Transaction> incomingTransactions = mapTransactions(incomingTransactionsRs);
         transactions.addAll(incomingTransactions);
+        return transactions;
+    }
 
+    private List<Transaction> filterAndSort(final FetchTransactionsRequest fetchTransactionsRequest,
+        final List<Transaction> transactions) {
         return transactions.stream().filter(transaction -> isTransactionInRange(fetchTransactionsRequest, transaction))
             .sorted(
                 Comparator.comparing(Transaction::getExecutionTime)).collect(Collectors.toList());
@@ -112,134 +174,134 @@ public class TransactionsRepository {
         return true;
     }
 
-    private List<Transaction> mapTransactions(final ResultSet resultSet) throws IOException {
+    private List<Transaction> mapTransactions(final ResultSet resultSet) {
         List<Transaction> result = new ArrayList<>();
-        for (JsonObject jsonObject : resultSet.getRows()) {
-            result.add(objectMapper.readValue(jsonObject.toString(), Transaction.class));
+        for (JsonObject row : resultSet.getRows()) {
+            result.add(Transaction.builder()
+                .id(row.getLong("ID"))
+                .sourceAccountId(row.getLong("SOURCE_ACCOUNT_ID"))
+                .destinationAccountId(row.getLong("DESTINATION_ACCOUNT_ID"))
+                .amount(new BigDecimal(row.getValue("AMOUNT").toString()))
+                .transactionType(TransactionType.valueOf(row.getString("TRANSACTION_TYPE")))
+                .executionTime(ISO_OFFSET_DATE_TIME.parse(row.getString("EXECUTION_TIME"), Instant::from))
+                .build());
         }
         return result;
     }
 
-    private Single<Integer> executeTransfer(Message<Object> message) {
-        return jdbcClient.rxGetConnection().flatMap(connection -> {
-            final Transaction transaction = deserializeTransaction(message);
-            long firstAccountIdToLock = Math
-                .min(transaction.getSourceAccountId(), transaction.getDestinationAccountId());
-            long secondAccountIdToLock = Math
-                .max(transaction.getSourceAccountId(), transaction.getDestinationAccountId());
-            return connection
-                .rxQueryWithParams(LOCK_ACCOUNT_ID_SQL, new JsonArray().add(firstAccountIdToLock))
-                .flatMap(firstAccountRs -> {
-                    if (!accountExists(firstAccountRs)) {
-                        return Single.just(ACCOUNT_DOESNT_EXIST);
-                    } else {
-                        return connection
-                            .rxQueryWithParams(LOCK_ACCOUNT_ID_SQL, new JsonArray().add(secondAccountIdToLock))
-                            .flatMap(secondAccountRs -> {
-                                if (!accountExists(secondAccountRs)) {
-                                    return Single.just(ACCOUNT_DOESNT_EXIST);
-                                } else if (!sufficientFunds(firstAccountRs, secondAccountRs, transaction)) {
-                                    return Single.just(INSUFFICIENT_FUNDS);
-                                } else {
-                                    return updateBalances(connection, transaction);
-                                }
-                            });
-                    }
-                })
-                .compose(SQLClientHelper.txSingleTransformer(connection))
-                .doFinally(connection::close);
-        });
-    }
-
-    private Single<Integer> executeWithdraw(Message<Object> message) {
-        return jdbcClient.rxGetConnection().flatMap(connection -> {
-            final Transaction transaction = deserializeTransaction(message);
-            return connection
-                .rxQueryWithParams(LOCK_ACCOUNT_ID_SQL, new JsonArray().add(transaction.getDestinationAccountId()))
-                .flatMap(accountRs -> {
-                    if (!accountExists(accountRs)) {
-                        return Single.just(ACCOUNT_DOESNT_EXIST);
-                    } else if (!sufficientFunds(accountRs, transaction)) {
-                        return Single.just(INSUFFICIENT_FUNDS);
-                    } else {
-                        return connection
-                            .rxUpdateWithParams(DECREASE_ACCOUNT_BALANCE_SQL,
-                                new JsonArray().add(transaction.getAmount().toString())
-                                    .add(transaction.getDestinationAccountId()))
-                            .flatMap(result -> connection.rxUpdateWithParams(INSERT_TRANSACTION_SQL,
-                                new JsonArray().add(transaction.getDestinationAccountId())
-                                    .add(transaction.getTransactionType())
-                                    .add(transaction.getAmount().toString())))
-                            .flatMap(result -> Single.just(OK));
-                    }
-                })
-                .compose(SQLClientHelper.txSingleTransformer(connection))
-                .doFinally(connection::close);
-        });
+    // Timestamps are read as UTC like the JDBC client does
+    private List<Transaction> queryTransactions(final Connection connection, final String sql, final long accountId)
+        throws SQLException {
+        final List<Transaction> result = new ArrayList<>();
+        try (PreparedStatement statement = connection.prepareStatement(sql)) {
+            statement.setLong(1, accountId);
+            try (java.sql.ResultSet resultSet = statement.executeQuery()) {
+                while (resultSet.next()) {
+                    final long sourceAccountId = resultSet.getLong("SOURCE_ACCOUNT_ID");
+                    final boolean withoutSourceAccount = resultSet.wasNull();
+                    result.add(Transaction.builder()
+                        .id(resultSet.getLong("ID"))
+                        .sourceAccountId(withoutSourceAccount ? null : sourceAccountId)
+                        .destinationAccountId(resultSet.getLong("DESTINATION_ACCOUNT_ID"))
+                        .amount(resultSet.getBigDecimal("AMOUNT"))
+                        .transactionType(TransactionType.valueOf(resultSet.getString("TRANSACTION_TYPE")))
+                        .executionTime(resultSet.getTimestamp("EXECUTION_TIME").toLocalDateTime()
+                            .toInstant(ZoneOffset.UTC))
+                        .build());
+                }
+            }
+        }
+        return result;
     }
 
-    private boolean accountExists(ResultSet accountRs) {
-        return accountRs.getRows().size() == 1;
+    // Used by scheduled transactions, which are executed without going through the event bus. Their journal id is
+    // allocated and stored with the schedule before the execution.
+    public Single<Integer> execute(final Transaction transaction, final long transactionId) {
+        final Single<Long> id = Single.just(transactionId);
+        switch (transaction.getTransactionType()) {
+            case DEPOSIT:
+                return execute(transaction, transactionExecutor::deposit, BigDecimal.ZERO, id);
+            case WITHDRAW:
+                return execute(transaction, transactionExecutor::withdraw, BigDecimal.ZERO, id);
+            case TRANSFER:
+                return execute(transaction, transactionExecutor::transfer, BigDecimal.ZERO, id);
+            default:
+                return Single.error(new IllegalArgumentException("Unsupported transaction type "
+                    + transaction.getTransactionType()));
+        }
     }
 
-    private boolean sufficientFunds(ResultSet accountRs, Transaction transaction) {
-        JsonObject jsonObject = accountRs.getRows().get(0);
-        BigDecimal balance = new BigDecimal(jsonObject.getString("BALANCE"));
-        return balance.compareTo(transaction.getAmount()) >= 0;
+    // Withdrawal capturing a hold, the held amount doesn't count against the balance it's withdrawn from
+    public Single<Integer> capture(final Transaction withdrawal, final BigDecimal heldAmount) {
+        return execute(withdrawal, transactionExecutor::withdraw, heldAmount, idAllocator.nextId());
     }
 
-    private boolean sufficientFunds(ResultSet firstAccountRs, ResultSet secondAccountRs, Transaction transaction) {
-        ResultSet sourceAccountRs = getResultSetByAccountId(firstAccountRs, secondAccountRs,
-            transaction.getSourceAccountId());
-
-        return sufficientFunds(sourceAccountRs, transaction);
+    private Single<Integer> handleTransaction(final Message<Object> message,
+        final Function<Transaction, Single<Integer>> execution) {
+        return handleTransactionResult(Single.defer(() -> execute(deserializeTransaction(message), execution,
+            BigDecimal.ZERO, idAllocator.nextId())), message);
     }
 
-    private ResultSet getResultSetByAccountId(ResultSet firstAccountRs, ResultSet secondAccountRs, long accountId) {
-        if (accountId == firstAccountRs.getRows().get(0).getLong("ID")) {
-            return firstAccountRs;
+    // Balance index, store and versions are updated only after the transaction is committed. The store can only
+    // reject a debit early, every accepted transaction is still checked by the database under locks.
+    // Velocity limits are reserved before the write and released when it isn't committed.
+    // Funds held by holds are checked against the balance index minus debits in flight, which stay reserved in the
+    // hold table until the balance index is updated, so concurrent debits and holds can't take the same funds.
+    // Transaction id is allocated before the write, executors insert the journal row with it.
+    private Single<Integer> execute(final Transaction transaction,
+        final Function<Transaction, Single<Integer>> execution, final BigDecimal capturedHold,
+        final Single<Long> transactionId) {
+        if (balanceStore != null && balanceStore.lacksFunds(transaction)) {
+            return Single.just(INSUFFICIENT_FUNDS);
+        }
+        final BigDecimal debitedBalance = debitedBalance(transaction);
+        if (!holdTable.reserveDebit(transaction, debitedBalance, capturedHold)) {
+            return Single.just(INSUFFICIENT_FUNDS);
         }
-        return secondAccountRs;
+        final VelocityRules.Reservation reservation = velocityRules == null ? null
+            : velocityRules.reserve(transaction);
+        if (velocityRules != null && reservation == null) {
+            holdTable.releaseDebit(transaction, debitedBalance, capturedHold);
+            return Single.just(VELOCITY_LIMIT_EXCEEDED);
+        }
+        return transactionId.flatMap(id -> execution.apply(withId(transaction, id))).doOnSuccess(errorCode -> {
+            if (errorCode == OK) {
+                balanceIndex.apply(transaction);
+                if (balanceStore != null) {
+                    balanceStore.apply(transaction);
+                }
+                bumpVersions(transaction);
+            } else if (reservation != null) {
+                velocityRules.release(reservation);
+            }
+            holdTable.releaseDebit(transaction, debitedBalance, capturedHold);
+        }).doOnError(throwable -> {
+            if (reservation != null) {
+                velocityRules.release(reservation);
+            }
+            holdTable.releaseDebit(transaction, debitedBalance, capturedHold);
+        });
     }
 
-    private Single<Integer> updateBalances(SQLConnection connection, Transaction transaction) {
-        return connection
-            .rxUpdateWithParams(DECREASE_ACCOUNT_BALANCE_SQL, new JsonArray().add(transaction.getAmount().toString())
-                .add(transaction.getSourceAccountId()))
-            .flatMap(decreaseResult -> connection.rxUpdateWithParams(INCREASE_ACCOUNT_BALANCE_SQL,
-                new JsonArray().add(transaction.getAmount().toString()).add(transaction.getDestinationAccountId())))
-            .flatMap(increaseResult -> connection.rxUpdateWithParams(INSERT_TRANSFER_TRANSACTION_SQL,
-                new JsonArray().add(transaction.getSourceAccountId())
-                    .add(transaction.getDestinationAccountId())
-                    .add(transaction.getTransactionType())
-                    .add(transaction.getAmount().toString())))
-            .flatMap(insertResult -> Single.just(OK));
+    // Callers keep their own id, scheduled transactions are completed by the id of the schedule
+    private static Transaction withId(final Transaction transaction, final long id) {
+        return Transaction.builder().id(id).sourceAccountId(transaction.getSourceAccountId())
+            .destinationAccountId(transaction.getDestinationAccountId()).amount(transaction.getAmount())
+            .transactionType(transaction.getTransactionType()).build();
     }
 
-    private Single<Integer> executeDeposit(Message<Object> message) {
-        final Transaction transaction = deserializeTransaction(message);
-        return jdbcClient.rxGetConnection().flatMap(connection ->
-            connection
-                .rxQueryWithParams(LOCK_ACCOUNT_ID_SQL, new JsonArray().add(transaction.getDestinationAccountId()))
-                .flatMap(accountRs -> {
-                    if (!accountExists(accountRs)) {
-                        return Single.just(ACCOUNT_DOESNT_EXIST);
-                    } else {
-                        return connection
-                            .rxUpdateWithParams(INCREASE_ACCOUNT_BALANCE_SQL,
-                                new JsonArray().add(transaction.getAmount().toString())
-                                    .add(transaction.getDestinationAccountId()))
-                            .flatMap(result -> connection.rxUpdateWithParams(INSERT_TRANSACTION_SQL,
-                                new JsonArray().add(transaction.getDestinationAccountId())
-                                    .add(transaction.getTransactionType())
-                                    .add(transaction.getAmount().toString())))
-                            .flatMap(result -> Single.just(OK));
-                    }
-                })
-                .compose(SQLClientHelper.txSingleTransformer(connection))
-                .doFinally(connection::close));
+    private BigDecimal debitedBalance(final Transaction transaction) {
+        final Long accountId = transaction.getTransactionType() == TransactionType.TRANSFER
+            ? transaction.getSourceAccountId() : transaction.getDestinationAccountId();
+        return accountId == null ? null : balanceIndex.balance(accountId);
     }
 
+    private void bumpVersions(final Transaction transaction) {
+        if (transaction.getSourceAccountId() != null) {
+            versionRegistry.bumpAccount(transaction.getSourceAccountId());
+        }
+        versionRegistry.bumpAccount(transaction.getDestinationAccountId());
+    }
 
     private Single<Integer> handleTransactionResult(Single<Integer> input, Message<Object> message) {
         return input
@@ -252,10 +314,24 @@ public class TransactionsRepository {
             })
             .doOnError(throwable -> {
                 log.error("Technical error", throwable);
-                message.fail(TECHNICAL_ERROR, "Technical error");
+                final int errorCode = RepositoryFailures.failureCode(throwable);
+                message.fail(errorCode, ErrorCodesTranslator.translateErrorCode(errorCode));
             });
     }
 
+    private static TransactionExecutor createTransactionExecutor(final Vertx vertx,
+        final ConnectionScheduler connectionScheduler, final TransactionExecutionOptions executionOptions) {
+        switch (executionOptions.getMode()) {
+            case PROCEDURE:
+                return new ProcedureTransactionExecutor(connectionScheduler);
+            case OPTIMISTIC:
+                return new OptimisticTransactionExecutor(connectionScheduler, vertx, executionOptions);
+            case PESSIMISTIC:
+            default:
+                return new PessimisticTransactionExecutor(connectionScheduler);
+        }
+    }
+
     private Transaction deserializeTransaction(Message<Object> message) {
         JsonObject jsonObject = new JsonObject(message.body().toString());
         return jsonObject.mapTo(Transaction.class);
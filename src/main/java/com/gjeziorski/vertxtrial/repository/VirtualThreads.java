@@ -0,0 +1,49 @@
+package com.gjeziorski.vertxtrial.repository;
+
+import io.reactivex.Scheduler;
+import io.reactivex.Single;
+import io.reactivex.schedulers.Schedulers;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import lombok.extern.slf4j.Slf4j;
+
+// Runs blocking repository work, every call on its own virtual thread. The code is compiled for Java 8, so the
+// executor is looked up reflectively and the mode only starts on JDK 21 or later.
+// HSQLDB executes statements in synchronized methods, a virtual thread waiting there for a row lock pins its carrier.
+// Carriers should cover the connection budget, so sessions waiting for locks can't take every carrier away from the
+// session holding them. The JDK reads their number once, so it's left to -Djdk.virtualThreadScheduler.parallelism
+// and only checked here.
+@Slf4j
+public class VirtualThreads {
+
+    private static final String PARALLELISM_PROPERTY = "jdk.virtualThreadScheduler.parallelism";
+
+    private final Scheduler scheduler;
+
+    private VirtualThreads(final ExecutorService executor) {
+        this.scheduler = Schedulers.from(executor);
+    }
+
+    public static VirtualThreads create(final int maxConnections) {
+        final int parallelism = Integer.getInteger(PARALLELISM_PROPERTY, Runtime.getRuntime().availableProcessors());
+        if (parallelism < maxConnections) {
+            log.warn("{} virtual thread carriers for {} connections, sessions waiting for row locks may pin all of "
+                + "them, start the JVM with -D{}={}", parallelism, maxConnections, PARALLELISM_PROPERTY,
+                maxConnections);
+        }
+        try {
+            return new VirtualThreads((ExecutorService) Executors.class
+                .getMethod("newVirtualThreadPerTaskExecutor").invoke(null));
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Virtual threads require JDK 21 or later, running on "
+                + System.getProperty("java.version"), e);
+        }
+    }
+
+    // Subscribers are called on the virtual thread, so replies are sent from there
+    <T> Single<T> call(final Callable<T> work) {
+        return Single.fromCallable(work).subscribeOn(scheduler);
+    }
+
+}
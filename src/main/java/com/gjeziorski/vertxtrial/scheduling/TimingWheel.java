@@ -0,0 +1,109 @@
+package com.gjeziorski.vertxtrial.scheduling;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+// Hashed hierarchical timing wheel. Deadlines are rounded up to ticks, every level has 2^bitsPerLevel buckets and
+// a bucket of level L covers 2^(L * bitsPerLevel) ticks. An item is put on the level of the highest digit in which
+// its deadline differs from the current tick, so scheduling is O(1). When lower digits of the current tick wrap to
+// zero, the matching bucket of the higher level is cascaded down, so every item moves at most once per level before
+// it expires. Deadlines beyond the top level wait in an overflow list that is redistributed when the top level wraps.
+// Not thread safe, meant to be used from a single event loop.
+public class TimingWheel<T> {
+
+    private final long tickMs;
+    private final int bitsPerLevel;
+    private final int mask;
+    private final List<Entry<T>>[][] buckets;
+    private final List<Entry<T>> overflow = new ArrayList<>();
+    private long currentTick;
+    private int size;
+
+    @SuppressWarnings("unchecked")
+    public TimingWheel(final long tickMs, final int bitsPerLevel, final int levels, final long startMs) {
+        if (tickMs <= 0 || bitsPerLevel <= 0 || levels <= 0 || bitsPerLevel * levels >= 63) {
+            throw new IllegalArgumentException("Invalid timing wheel dimensions");
+        }
+        this.tickMs = tickMs;
+        this.bitsPerLevel = bitsPerLevel;
+        this.mask = (1 << bitsPerLevel) - 1;
+        this.buckets = new List[levels][1 << bitsPerLevel];
+        this.currentTick = startMs / tickMs;
+    }
+
+    // Items due at or before the current tick expire on the next advance
+    public void schedule(final T item, final long deadlineMs) {
+        final long deadlineTick = (deadlineMs + tickMs - 1) / tickMs;
+        place(new Entry<>(item, Math.max(deadlineTick, currentTick + 1)));
+        size++;
+    }
+
+    // Expires all items with deadline up to nowMs, in tick order
+    public void advance(final long nowMs, final Consumer<T> onExpired) {
+        final long targetTick = nowMs / tickMs;
+        while (currentTick < targetTick) {
+            currentTick++;
+            cascade(1);
+            final List<Entry<T>> expired = takeBucket(0, (int) (currentTick & mask));
+            if (expired != null) {
+                size -= expired.size();
+                expired.forEach(entry -> onExpired.accept(entry.item));
+            }
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    private void cascade(final int level) {
+        if ((currentTick & ((1L << (level * bitsPerLevel)) - 1)) != 0) {
+            return;
+        }
+        if (level == buckets.length) {
+            final List<Entry<T>> waiting = new ArrayList<>(overflow);
+            overflow.clear();
+            waiting.forEach(this::place);
+            return;
+        }
+        cascade(level + 1);
+        final List<Entry<T>> bucket = takeBucket(level, (int) ((currentTick >>> (level * bitsPerLevel)) & mask));
+        if (bucket != null) {
+            bucket.forEach(this::place);
+        }
+    }
+
+    private void place(final Entry<T> entry) {
+        final long difference = entry.deadlineTick ^ currentTick;
+        final int level = difference == 0 ? 0 : (63 - Long.numberOfLeadingZeros(difference)) / bitsPerLevel;
+        if (level >= buckets.length) {
+            overflow.add(entry);
+            return;
+        }
+        final int index = (int) ((entry.deadlineTick >>> (level * bitsPerLevel)) & mask);
+        if (buckets[level][index] == null) {
+            buckets[level][index] = new ArrayList<>();
+        }
+        buckets[level][index].add(entry);
+    }
+
+    private List<Entry<T>> takeBucket(final int level, final int index) {
+        final List<Entry<T>> bucket = buckets[level][index];
+        buckets[level][index] = null;
+        return bucket;
+    }
+
+    private static class Entry<T> {
+
+        private final T item;
+        private final long deadlineTick;
+
+        private Entry(final T item, final long deadlineTick) {
+            this.item = item;
+            this.deadlineTick = deadlineTick;
+        }
+
+    }
+
+}
@@ -0,0 +1,90 @@
+package com.gjeziorski.vertxtrial.serialization;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.gjeziorski.vertxtrial.common.ObjectMapperProvider;
+import java.util.function.Supplier;
+
+// Wire formats of the API, JSON is the default whenever the client doesn't ask for anything else
+public enum ContentFormat {
+
+    JSON("application/json", ObjectMapperProvider::getObjectMapper),
+    CBOR("application/cbor", ObjectMapperProvider::getCborObjectMapper);
+
+    // Event bus header telling the repository in which format the reply should be written
+    public static final String HEADER = "content-format";
+
+    private final String contentType;
+    private final Supplier<ObjectMapper> objectMapper;
+
+    ContentFormat(final String contentType, final Supplier<ObjectMapper> objectMapper) {
+        this.contentType = contentType;
+        this.objectMapper = objectMapper;
+    }
+
+    public String contentType() {
+        return contentType;
+    }
+
+    public ObjectMapper objectMapper() {
+        return objectMapper.get();
+    }
+
+    public static ContentFormat fromName(final String name) {
+        return name == null ? JSON : valueOf(name);
+    }
+
+    // Returns null for media types which aren't supported
+    public static ContentFormat fromContentType(final String contentType) {
+        if (contentType == null) {
+            return null;
+        }
+        final String mediaType = mediaType(contentType);
+        for (ContentFormat format : values()) {
+            if (format.contentType.equals(mediaType)) {
+                return format;
+            }
+        }
+        return null;
+    }
+
+    // Picks the supported media type with the highest quality, wildcards and unsupported types fall back to JSON
+    public static ContentFormat negotiate(final String accept) {
+        if (accept == null) {
+            return JSON;
+        }
+        ContentFormat best = JSON;
+        double bestQuality = -1;
+        for (String mediaRange : accept.split(",")) {
+            final ContentFormat format = fromContentType(mediaRange);
+            final double quality = quality(mediaRange);
+            if (format != null && quality > 0 && quality > bestQuality) {
+                best = format;
+                bestQuality = quality;
+            } else if (format == null && quality > bestQuality && mediaType(mediaRange).endsWith("*")) {
+                best = JSON;
+                bestQuality = quality;
+            }
+        }
+        return best;
+    }
+
+    private static String mediaType(final String mediaRange) {
+        final int parametersStart = mediaRange.indexOf(';');
+        return (parametersStart < 0 ? mediaRange : mediaRange.substring(0, parametersStart)).trim().toLowerCase();
+    }
+
+    private static double quality(final String mediaRange) {
+        for (String parameter : mediaRange.split(";")) {
+            final String trimmed = parameter.trim();
+            if (trimmed.startsWith("q=")) {
+                try {
+                    return Double.parseDouble(trimmed.substring(2));
+                } catch (NumberFormatException e) {
+                    return 0;
+                }
+            }
+        }
+        return 1;
+    }
+
+}
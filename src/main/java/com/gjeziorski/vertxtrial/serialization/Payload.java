@@ -0,0 +1,63 @@
+package com.gjeziorski.vertxtrial.serialization;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufOutputStream;
+import io.netty.buffer.Unpooled;
+import io.vertx.core.buffer.Buffer;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+// Document written by a streaming generator straight into a buffer, without an intermediate String.
+// The payload is passed over the event bus without copying (see PayloadCodec). The buffer is not pooled, because
+// a reply the requester no longer waits for is dropped without being released, so it has to be left to the GC.
+public class Payload {
+
+    private final ContentFormat format;
+    private final ByteBuf byteBuf;
+
+    private Payload(final ContentFormat format, final ByteBuf byteBuf) {
+        this.format = format;
+        this.byteBuf = byteBuf;
+    }
+
+    public static Payload write(final Object value, final ContentFormat format) throws IOException {
+        final ByteBuf byteBuf = Unpooled.buffer();
+        try {
+            format.objectMapper().writeValue((OutputStream) new ByteBufOutputStream(byteBuf), value);
+        } catch (IOException | RuntimeException e) {
+            byteBuf.release();
+            throw e;
+        }
+        return new Payload(format, byteBuf);
+    }
+
+    static Payload wrap(final ContentFormat format, final ByteBuf byteBuf) {
+        return new Payload(format, byteBuf);
+    }
+
+    public ContentFormat format() {
+        return format;
+    }
+
+    // Buffer shares memory with the payload, it's valid until the payload is released
+    public Buffer buffer() {
+        return Buffer.buffer(byteBuf);
+    }
+
+    public int length() {
+        return byteBuf.readableBytes();
+    }
+
+    public void release() {
+        if (byteBuf.refCnt() > 0) {
+            byteBuf.release();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return byteBuf.toString(StandardCharsets.UTF_8);
+    }
+
+}
@@ -0,0 +1,50 @@
+package com.gjeziorski.vertxtrial.serialization;
+
+import io.netty.buffer.Unpooled;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.eventbus.EventBus;
+import io.vertx.core.eventbus.MessageCodec;
+
+// Local delivery passes the payload as is, instead of copying it like the default Buffer codec does
+public class PayloadCodec implements MessageCodec<Payload, Payload> {
+
+    private static final String NAME = "payload";
+
+    // Codec is registered once per event bus, every verticle which sends payloads calls it
+    public static void register(final EventBus eventBus) {
+        try {
+            eventBus.registerDefaultCodec(Payload.class, new PayloadCodec());
+        } catch (IllegalStateException e) {
+            // Already registered
+        }
+    }
+
+    @Override
+    public void encodeToWire(final Buffer buffer, final Payload payload) {
+        buffer.appendByte((byte) payload.format().ordinal()).appendInt(payload.length()).appendBuffer(payload.buffer());
+        payload.release();
+    }
+
+    @Override
+    public Payload decodeFromWire(final int position, final Buffer buffer) {
+        final ContentFormat format = ContentFormat.values()[buffer.getByte(position)];
+        final int length = buffer.getInt(position + 1);
+        return Payload.wrap(format, Unpooled.wrappedBuffer(buffer.getBytes(position + 5, position + 5 + length)));
+    }
+
+    @Override
+    public Payload transform(final Payload payload) {
+        return payload;
+    }
+
+    @Override
+    public String name() {
+        return NAME;
+    }
+
+    @Override
+    public byte systemCodecID() {
+        return -1;
+    }
+
+}
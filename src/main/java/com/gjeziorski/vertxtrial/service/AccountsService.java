@@ -1,51 +1,196 @@
 package com.gjeziorski.vertxtrial.service;
 
+import static com.gjeziorski.vertxtrial.common.EventBusAddresses.DATABASE_ACCOUNT_BALANCE;
 import static com.gjeziorski.vertxtrial.common.EventBusAddresses.DATABASE_ACCOUNT_CREATE;
 import static com.gjeziorski.vertxtrial.common.EventBusAddresses.DATABASE_ACCOUNT_LIST;
+import static com.gjeziorski.vertxtrial.common.EventBusAddresses.DATABASE_ACCOUNT_SUMMARY;
+import static com.gjeziorski.vertxtrial.common.EventBusAddresses.INDEX_ACCOUNT_BALANCE_RANGE;
+import static com.gjeziorski.vertxtrial.common.EventBusAddresses.INDEX_ACCOUNT_SEARCH;
+import static com.gjeziorski.vertxtrial.common.EventBusAddresses.INDEX_ACCOUNT_TOP;
 
 import com.gjeziorski.vertxtrial.common.ErrorCodesTranslator;
+import com.gjeziorski.vertxtrial.common.ObjectMapperProvider;
+import com.gjeziorski.vertxtrial.common.VersionRegistry;
+import com.gjeziorski.vertxtrial.domain.FetchAccountSummaryRequest;
 import io.vertx.core.AsyncResult;
+import io.vertx.core.MultiMap;
 import io.vertx.core.Vertx;
 import io.vertx.core.eventbus.Message;
 import io.vertx.core.eventbus.ReplyException;
+import io.vertx.core.json.JsonObject;
 import io.vertx.ext.web.RoutingContext;
 import io.vertx.ext.web.api.validation.HTTPRequestValidationHandler;
+import io.vertx.ext.web.api.validation.ParameterType;
+import io.vertx.ext.web.api.validation.ParameterTypeValidator;
+import java.time.LocalDate;
 
 public class AccountsService {
 
     private static final String ACCOUNT_JSON_SCHEMA = "{\"type\": \"object\", \"properties\": {\"name\": {\"type\": \"string\"}, \"surname\": {\"type\": \"string\"}}, \"required\": [\"name\", \"surname\"]}";
 
+    private static final int DEFAULT_LIMIT = 100;
+    private static final int MAX_LIMIT = 10000;
+    private static final int DEFAULT_SEARCH_LIMIT = 20;
+    private static final int MAX_SEARCH_LIMIT = 100;
+
     private Vertx vertx;
+    private VersionRegistry versionRegistry;
     private HTTPRequestValidationHandler accountCreationRequestValidationHandler;
+    private HTTPRequestValidationHandler accountListRequestValidationHandler;
+    private HTTPRequestValidationHandler accountSummaryRequestValidationHandler;
+    private HTTPRequestValidationHandler accountBalanceRequestValidationHandler;
+    private HTTPRequestValidationHandler topAccountsRequestValidationHandler;
+    private HTTPRequestValidationHandler accountsByBalanceRequestValidationHandler;
+    private HTTPRequestValidationHandler accountSearchRequestValidationHandler;
 
-    public AccountsService(final Vertx vertx) {
+    public AccountsService(final Vertx vertx, final VersionRegistry versionRegistry) {
         this.vertx = vertx;
+        this.versionRegistry = versionRegistry;
         accountCreationRequestValidationHandler = HTTPRequestValidationHandler.create()
             .addJsonBodySchema(ACCOUNT_JSON_SCHEMA);
+        accountListRequestValidationHandler = HTTPRequestValidationHandler.create()
+            .addQueryParamWithCustomTypeValidator(CommitSequences.MIN_SEQUENCE_PARAM,
+                CommitSequences.minSequenceValidator(), false, false);
+        accountSummaryRequestValidationHandler = HTTPRequestValidationHandler.create()
+            .addPathParamWithCustomTypeValidator("id", ParameterTypeValidator.createLongTypeValidator(null), false)
+            .addQueryParam("from", ParameterType.DATE, false)
+            .addQueryParam("to", ParameterType.DATE, false);
+        accountBalanceRequestValidationHandler = HTTPRequestValidationHandler.create()
+            .addPathParamWithCustomTypeValidator("id", ParameterTypeValidator.createLongTypeValidator(null), false);
+        topAccountsRequestValidationHandler = HTTPRequestValidationHandler.create()
+            .addQueryParamWithCustomTypeValidator("limit", limitValidator(MAX_LIMIT, DEFAULT_LIMIT), false, false);
+        accountsByBalanceRequestValidationHandler = HTTPRequestValidationHandler.create()
+            .addQueryParam("min", ParameterType.DOUBLE, false)
+            .addQueryParam("max", ParameterType.DOUBLE, false)
+            .addQueryParamWithCustomTypeValidator("limit", limitValidator(MAX_LIMIT, DEFAULT_LIMIT), false, false);
+        accountSearchRequestValidationHandler = HTTPRequestValidationHandler.create()
+            .addQueryParamWithCustomTypeValidator("q",
+                ParameterTypeValidator.createStringTypeValidator(null, 1, 20, null), true, false)
+            .addQueryParamWithCustomTypeValidator("limit",
+                limitValidator(MAX_SEARCH_LIMIT, DEFAULT_SEARCH_LIMIT), false, false)
+            .addQueryParam("cursor", ParameterType.GENERIC_STRING, false);
     }
 
     public void handleNewAccount(RoutingContext routingContext) {
         vertx.eventBus()
-            .request(DATABASE_ACCOUNT_CREATE, routingContext.getBodyAsString(),
-                reply -> handleResponseMessage(reply, routingContext, 201));
+            .request(DATABASE_ACCOUNT_CREATE, routingContext.getBodyAsString(), reply -> {
+                if (reply.succeeded()) {
+                    CommitSequences.put(routingContext,
+                        versionRegistry.accountVersion(Long.parseLong(reply.result().body().toString())));
+                }
+                handleResponseMessage(reply, routingContext, 201);
+            });
     }
 
     public void handleGetAccounts(RoutingContext routingContext) {
-        vertx.eventBus().request(DATABASE_ACCOUNT_LIST, "", reply -> handleResponseMessage(reply, routingContext, 200));
+        long version = versionRegistry.accountListVersion();
+        String etag = ConditionalRequests.etag(versionRegistry, version, routingContext);
+        if (ConditionalRequests.notModified(routingContext, etag)) {
+            return;
+        }
+        Long minSequence = CommitSequences.minSequence(routingContext);
+        String query = minSequence == null ? "" : new JsonObject().put("min_sequence", minSequence).toString();
+        vertx.eventBus().request(DATABASE_ACCOUNT_LIST, query, ContentNegotiation.deliveryOptions(routingContext),
+            reply -> {
+                if (reply.succeeded()) {
+                    ConditionalRequests.tag(routingContext, ConditionalRequests.etag(versionRegistry,
+                        CommitSequences.servedVersion(version, reply.result()), routingContext));
+                }
+                handleResponseMessage(reply, routingContext, 200);
+            });
+    }
+
+    public void handleGetAccountSummary(RoutingContext routingContext) {
+        vertx.eventBus().request(DATABASE_ACCOUNT_SUMMARY,
+            ObjectMapperProvider.getObjectMapper().valueToTree(getAccountSummaryRequestFromRoutingContext(routingContext))
+                .toString(),
+            reply -> handleResponseMessage(reply, routingContext, 200));
+    }
+
+    public void handleGetAccountBalance(RoutingContext routingContext) {
+        vertx.eventBus().request(DATABASE_ACCOUNT_BALANCE, routingContext.pathParam("id"),
+            reply -> handleResponseMessage(reply, routingContext, 200));
+    }
+
+    public void handleGetTopAccounts(RoutingContext routingContext) {
+        JsonObject query = new JsonObject().put("limit", getLimit(routingContext, DEFAULT_LIMIT));
+        vertx.eventBus().request(INDEX_ACCOUNT_TOP, query.toString(),
+            reply -> handleResponseMessage(reply, routingContext, 200));
+    }
+
+    public void handleGetAccountsByBalance(RoutingContext routingContext) {
+        MultiMap params = routingContext.request().params();
+        JsonObject query = new JsonObject().put("limit", getLimit(routingContext, DEFAULT_LIMIT))
+            .put("min", params.get("min")).put("max", params.get("max"));
+        vertx.eventBus().request(INDEX_ACCOUNT_BALANCE_RANGE, query.toString(),
+            reply -> handleResponseMessage(reply, routingContext, 200));
+    }
+
+    public void handleSearchAccounts(RoutingContext routingContext) {
+        MultiMap params = routingContext.request().params();
+        JsonObject query = new JsonObject().put("q", params.get("q"))
+            .put("limit", getLimit(routingContext, DEFAULT_SEARCH_LIMIT)).put("cursor", params.get("cursor"));
+        vertx.eventBus().request(INDEX_ACCOUNT_SEARCH, query.toString(),
+            reply -> handleResponseMessage(reply, routingContext, 200));
+    }
+
+    public HTTPRequestValidationHandler getAccountSearchRequestValidationHandler() {
+        return accountSearchRequestValidationHandler;
+    }
+
+    public HTTPRequestValidationHandler getTopAccountsRequestValidationHandler() {
+        return topAccountsRequestValidationHandler;
+    }
+
+    public HTTPRequestValidationHandler getAccountsByBalanceRequestValidationHandler() {
+        return accountsByBalanceRequestValidationHandler;
+    }
+
+    public HTTPRequestValidationHandler getAccountSummaryRequestValidationHandler() {
+        return accountSummaryRequestValidationHandler;
+    }
+
+    public HTTPRequestValidationHandler getAccountBalanceRequestValidationHandler() {
+        return accountBalanceRequestValidationHandler;
     }
 
     public HTTPRequestValidationHandler getAccountCreationRequestValidationHandler() {
         return accountCreationRequestValidationHandler;
     }
 
+    public HTTPRequestValidationHandler getAccountListRequestValidationHandler() {
+        return accountListRequestValidationHandler;
+    }
+
+    private static ParameterTypeValidator limitValidator(int maxLimit, int defaultLimit) {
+        return ParameterTypeValidator.createIntegerTypeValidator((double) maxLimit, 1.0, null, defaultLimit);
+    }
+
+    private int getLimit(RoutingContext routingContext, int defaultLimit) {
+        String limit = routingContext.request().getParam("limit");
+        return limit == null ? defaultLimit : Integer.parseInt(limit);
+    }
+
+    private FetchAccountSummaryRequest getAccountSummaryRequestFromRoutingContext(RoutingContext routingContext) {
+        FetchAccountSummaryRequest.FetchAccountSummaryRequestBuilder builder = FetchAccountSummaryRequest.builder()
+            .accountId(Long.parseLong(routingContext.pathParam("id")));
+        MultiMap params = routingContext.request().params();
+        if (params.contains("from")) {
+            builder.from(LocalDate.parse(params.get("from")));
+        }
+        if (params.contains("to")) {
+            builder.to(LocalDate.parse(params.get("to")));
+        }
+        return builder.build();
+    }
+
     private void handleResponseMessage(AsyncResult<Message<Object>> reply, RoutingContext routingContext,
         int statusCode) {
         if (reply.failed()) {
             ReplyException cause = (ReplyException) reply.cause();
             ErrorCodesTranslator.translateErrorCode(cause.failureCode(), routingContext);
         } else {
-            routingContext.response().putHeader("content-type", "application/json").setStatusCode(statusCode)
-                .end(reply.result().body().toString());
+            ContentNegotiation.end(routingContext, statusCode, reply.result().body());
         }
     }
 
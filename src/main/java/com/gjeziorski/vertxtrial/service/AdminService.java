@@ -0,0 +1,113 @@
+package com.gjeziorski.vertxtrial.service;
+
+import static com.gjeziorski.vertxtrial.common.EventBusAddresses.DATABASE_ACCOUNT_HOT;
+import static com.gjeziorski.vertxtrial.common.EventBusAddresses.DATABASE_METRICS_NETTING;
+import static com.gjeziorski.vertxtrial.common.EventBusAddresses.DATABASE_METRICS_POOLS;
+import static com.gjeziorski.vertxtrial.common.EventBusAddresses.DATABASE_METRICS_REPLICA;
+import static com.gjeziorski.vertxtrial.common.EventBusAddresses.DATABASE_METRICS_VELOCITY;
+import static com.gjeziorski.vertxtrial.common.EventBusAddresses.DATABASE_RECONCILIATION_START;
+import static com.gjeziorski.vertxtrial.common.EventBusAddresses.DATABASE_RECONCILIATION_STATUS;
+
+import com.gjeziorski.vertxtrial.common.ErrorCodesTranslator;
+import com.gjeziorski.vertxtrial.monitoring.EventLoopMonitor;
+import com.gjeziorski.vertxtrial.ratelimit.RateLimiter;
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Vertx;
+import io.vertx.core.eventbus.Message;
+import io.vertx.core.eventbus.ReplyException;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.web.RoutingContext;
+import io.vertx.ext.web.api.validation.HTTPRequestValidationHandler;
+import io.vertx.ext.web.api.validation.ParameterType;
+import io.vertx.ext.web.api.validation.ParameterTypeValidator;
+
+public class AdminService {
+
+    private static final String HOT_ACCOUNT_JSON_SCHEMA = "{\"type\": \"object\", \"properties\": {\"slots\": {\"type\": \"integer\", \"minimum\": 1, \"maximum\": 64}}, \"required\": [\"slots\"]}";
+
+    private Vertx vertx;
+    private RateLimiter rateLimiter;
+    private EventLoopMonitor eventLoopMonitor;
+    private HTTPRequestValidationHandler hotAccountRequestValidationHandler;
+    private HTTPRequestValidationHandler startReconciliationRequestValidationHandler;
+
+    public AdminService(final Vertx vertx, final RateLimiter rateLimiter, final EventLoopMonitor eventLoopMonitor) {
+        this.vertx = vertx;
+        this.rateLimiter = rateLimiter;
+        this.eventLoopMonitor = eventLoopMonitor;
+        hotAccountRequestValidationHandler = HTTPRequestValidationHandler.create()
+            .addPathParamWithCustomTypeValidator("id", ParameterTypeValidator.createLongTypeValidator(null), false)
+            .addJsonBodySchema(HOT_ACCOUNT_JSON_SCHEMA);
+        startReconciliationRequestValidationHandler = HTTPRequestValidationHandler.create()
+            .addQueryParam("full", ParameterType.BOOL, false);
+    }
+
+    public void handleMarkAccountHot(RoutingContext routingContext) {
+        JsonObject request = new JsonObject().put("id", Long.valueOf(routingContext.pathParam("id")))
+            .put("slots", routingContext.getBodyAsJson().getInteger("slots"));
+        vertx.eventBus().request(DATABASE_ACCOUNT_HOT, request.toString(),
+            reply -> handleResponseMessage(reply, routingContext));
+    }
+
+    public HTTPRequestValidationHandler getHotAccountRequestValidationHandler() {
+        return hotAccountRequestValidationHandler;
+    }
+
+    public void handleStartReconciliation(RoutingContext routingContext) {
+        JsonObject request = new JsonObject()
+            .put("full", Boolean.parseBoolean(routingContext.request().getParam("full")));
+        vertx.eventBus().request(DATABASE_RECONCILIATION_START, request.toString(),
+            reply -> handleResponseMessage(reply, routingContext, 202));
+    }
+
+    public HTTPRequestValidationHandler getStartReconciliationRequestValidationHandler() {
+        return startReconciliationRequestValidationHandler;
+    }
+
+    public void handleGetReconciliationStatus(RoutingContext routingContext) {
+        vertx.eventBus().request(DATABASE_RECONCILIATION_STATUS, "",
+            reply -> handleResponseMessage(reply, routingContext));
+    }
+
+    public void handleGetPoolMetrics(RoutingContext routingContext) {
+        vertx.eventBus().request(DATABASE_METRICS_POOLS, "", reply -> handleResponseMessage(reply, routingContext));
+    }
+
+    public void handleGetVelocityMetrics(RoutingContext routingContext) {
+        vertx.eventBus().request(DATABASE_METRICS_VELOCITY, "", reply -> handleResponseMessage(reply, routingContext));
+    }
+
+    public void handleGetNettingMetrics(RoutingContext routingContext) {
+        vertx.eventBus().request(DATABASE_METRICS_NETTING, "", reply -> handleResponseMessage(reply, routingContext));
+    }
+
+    public void handleGetReplicaMetrics(RoutingContext routingContext) {
+        vertx.eventBus().request(DATABASE_METRICS_REPLICA, "", reply -> handleResponseMessage(reply, routingContext));
+    }
+
+    public void handleGetRateLimitMetrics(RoutingContext routingContext) {
+        routingContext.response().putHeader("content-type", "application/json").setStatusCode(200)
+            .end(rateLimiter.metrics().toString());
+    }
+
+    public void handleGetEventLoopMetrics(RoutingContext routingContext) {
+        routingContext.response().putHeader("content-type", "application/json").setStatusCode(200)
+            .end(eventLoopMonitor.metrics().toString());
+    }
+
+    private void handleResponseMessage(AsyncResult<Message<Object>> reply, RoutingContext routingContext) {
+        handleResponseMessage(reply, routingContext, 200);
+    }
+
+    private void handleResponseMessage(AsyncResult<Message<Object>> reply, RoutingContext routingContext,
+        int statusCode) {
+        if (reply.failed()) {
+            ReplyException cause = (ReplyException) reply.cause();
+            ErrorCodesTranslator.translateErrorCode(cause.failureCode(), routingContext);
+        } else {
+            routingContext.response().putHeader("content-type", "application/json").setStatusCode(statusCode)
+                .end(reply.result().body().toString());
+        }
+    }
+
+}
@@ -0,0 +1,211 @@
+package com.gjeziorski.vertxtrial.service;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.gjeziorski.vertxtrial.common.ObjectMapperProvider;
+import io.vertx.core.json.JsonObject;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+// Line formats of bulk export and import. Every line is one account or transaction record, told apart by its type.
+// Records travel over the event bus as JSON objects with all values as strings, so amounts keep their precision.
+enum BulkFormat {
+
+    NDJSON("application/x-ndjson") {
+        @Override
+        String header() {
+            return "";
+        }
+
+        // Ids are written as numbers and amounts as exact decimals
+        @Override
+        String format(final JsonObject record) {
+            final ObjectNode node = ObjectMapperProvider.getObjectMapper().createObjectNode();
+            for (String column : COLUMNS) {
+                final String value = record.getString(column);
+                if (value == null) {
+                    continue;
+                }
+                if (NUMERIC_COLUMNS.contains(column)) {
+                    node.put(column, new BigDecimal(value));
+                } else {
+                    node.put(column, value);
+                }
+            }
+            return node.toString() + "\n";
+        }
+
+        @Override
+        List<String> parseHeader(final String line) {
+            return COLUMNS;
+        }
+
+        @Override
+        JsonObject parse(final String line, final List<String> header) {
+            final JsonNode node;
+            try {
+                node = READER.readTree(line);
+            } catch (IOException e) {
+                throw new IllegalArgumentException("Malformed JSON", e);
+            }
+            if (node == null || !node.isObject()) {
+                throw new IllegalArgumentException("Record should be a JSON object");
+            }
+            final JsonObject record = new JsonObject();
+            final Iterator<Map.Entry<String, JsonNode>> fields = node.fields();
+            while (fields.hasNext()) {
+                final Map.Entry<String, JsonNode> field = fields.next();
+                if (!field.getValue().isNull()) {
+                    record.put(field.getKey(), field.getValue().isValueNode() ? field.getValue().asText()
+                        : field.getValue().toString());
+                }
+            }
+            return record;
+        }
+    },
+
+    CSV("text/csv") {
+        @Override
+        String header() {
+            return String.join(",", COLUMNS) + "\n";
+        }
+
+        @Override
+        String format(final JsonObject record) {
+            final StringBuilder line = new StringBuilder();
+            for (int i = 0; i < COLUMNS.size(); i++) {
+                if (i > 0) {
+                    line.append(',');
+                }
+                final String value = record.getString(COLUMNS.get(i));
+                if (value != null) {
+                    line.append(quote(value));
+                }
+            }
+            return line.append('\n').toString();
+        }
+
+        // Columns may come in any order, unknown ones are ignored
+        @Override
+        List<String> parseHeader(final String line) {
+            final List<String> header = split(line);
+            if (!header.contains("type")) {
+                throw new IllegalArgumentException("CSV header should name the columns, including type");
+            }
+            return header;
+        }
+
+        @Override
+        JsonObject parse(final String line, final List<String> header) {
+            final List<String> values = split(line);
+            if (values.size() != header.size()) {
+                throw new IllegalArgumentException("Expected " + header.size() + " columns, found " + values.size());
+            }
+            final JsonObject record = new JsonObject();
+            for (int i = 0; i < values.size(); i++) {
+                if (!values.get(i).isEmpty()) {
+                    record.put(header.get(i), values.get(i));
+                }
+            }
+            return record;
+        }
+    };
+
+    static final List<String> COLUMNS = Arrays.asList("type", "id", "name", "surname", "balance",
+        "source_account_id", "destination_account_id", "transaction_type", "amount", "execution_time");
+    private static final List<String> NUMERIC_COLUMNS = Arrays.asList("id", "balance", "source_account_id",
+        "destination_account_id", "amount");
+    private static final ObjectReader READER = ObjectMapperProvider.getObjectMapper()
+        .reader(DeserializationFeature.USE_BIG_DECIMAL_FOR_FLOATS);
+
+    private final String contentType;
+
+    BulkFormat(final String contentType) {
+        this.contentType = contentType;
+    }
+
+    String contentType() {
+        return contentType;
+    }
+
+    // First line of the export, and the line import expects first
+    abstract String header();
+
+    abstract String format(JsonObject record);
+
+    abstract List<String> parseHeader(String line);
+
+    // Throws IllegalArgumentException when the line can't be read as a record
+    abstract JsonObject parse(String line, List<String> header);
+
+    boolean hasHeader() {
+        return !header().isEmpty();
+    }
+
+    static BulkFormat fromName(final String name) {
+        return name == null ? NDJSON : valueOf(name.toUpperCase());
+    }
+
+    // Returns null for media types which aren't supported
+    static BulkFormat fromContentType(final String contentType) {
+        if (contentType == null) {
+            return null;
+        }
+        final int parametersStart = contentType.indexOf(';');
+        final String mediaType = (parametersStart < 0 ? contentType : contentType.substring(0, parametersStart))
+            .trim().toLowerCase();
+        for (BulkFormat format : values()) {
+            if (format.contentType.equals(mediaType)) {
+                return format;
+            }
+        }
+        return null;
+    }
+
+    private static String quote(final String value) {
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+            return value;
+        }
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
+
+    // RFC 4180 fields, quoted ones may contain commas and doubled quotes
+    private static List<String> split(final String line) {
+        final List<String> values = new ArrayList<>();
+        final StringBuilder value = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            final char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    value.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    value.append(c);
+                }
+            } else if (c == '"' && value.length() == 0) {
+                quoted = true;
+            } else if (c == ',') {
+                values.add(value.toString());
+                value.setLength(0);
+            } else {
+                value.append(c);
+            }
+        }
+        if (quoted) {
+            throw new IllegalArgumentException("Unterminated quoted field");
+        }
+        values.add(value.toString());
+        return values;
+    }
+
+}
@@ -0,0 +1,295 @@
+package com.gjeziorski.vertxtrial.service;
+
+import static com.gjeziorski.vertxtrial.common.ErrorCodesTranslator.INVALID_BALANCE_MESSAGE;
+import static com.gjeziorski.vertxtrial.common.ErrorCodesTranslator.INVALID_EXECUTION_TIME_MESSAGE;
+import static com.gjeziorski.vertxtrial.common.ErrorCodesTranslator.INVALID_ID_MESSAGE;
+import static com.gjeziorski.vertxtrial.common.ErrorCodesTranslator.INVALID_OWNER_MESSAGE;
+import static com.gjeziorski.vertxtrial.common.ErrorCodesTranslator.INVALID_RECORD_TYPE_MESSAGE;
+import static com.gjeziorski.vertxtrial.common.ErrorCodesTranslator.INVALID_TRANSACTION_AMOUNT_MESSAGE;
+import static com.gjeziorski.vertxtrial.common.ErrorCodesTranslator.INVALID_TRANSACTION_TYPE_MESSAGE;
+import static com.gjeziorski.vertxtrial.common.ErrorCodesTranslator.NOT_NULLABLE_ACCOUNT_ID_MESSAGE;
+import static com.gjeziorski.vertxtrial.common.EventBusAddresses.DATABASE_BULK_IMPORT;
+
+import com.gjeziorski.vertxtrial.common.ErrorCodesTranslator;
+import com.gjeziorski.vertxtrial.domain.TransactionType;
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.eventbus.ReplyException;
+import io.vertx.core.http.HttpServerRequest;
+import io.vertx.core.http.HttpServerResponse;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.parsetools.RecordParser;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.List;
+import lombok.extern.slf4j.Slf4j;
+
+// Reads one upload line by line and validates every record as soon as it's read. Valid records are sent to the
+// repository in chunks, reading is paused while a chunk is written, so memory stays bounded by one chunk whatever
+// the size of the upload. The response is NDJSON written while the upload is still read: a line for every rejected
+// record, a progress line after every chunk and a summary line at the end.
+@Slf4j
+class BulkImport {
+
+    private static final int MAX_OWNER_LENGTH = 20;
+
+    private final Vertx vertx;
+    private final BulkFormat format;
+    private final int chunkSize;
+    private final HttpServerResponse response;
+    private final RecordParser parser;
+    private List<String> header;
+    private JsonArray chunk = new JsonArray();
+    private long lines;
+    private long accounts;
+    private long transactions;
+    private long rejected;
+    private boolean inFlight;
+    private boolean ended;
+    private boolean finished;
+
+    BulkImport(final Vertx vertx, final BulkFormat format, final int chunkSize, final HttpServerRequest request,
+        final HttpServerResponse response) {
+        this.vertx = vertx;
+        this.format = format;
+        this.chunkSize = chunkSize;
+        this.response = response;
+        this.parser = RecordParser.newDelimited("\n", request);
+        if (!format.hasHeader()) {
+            header = format.parseHeader(null);
+        }
+    }
+
+    void start() {
+        response.setChunked(true).setStatusCode(200)
+            .putHeader("content-type", BulkFormat.NDJSON.contentType());
+        parser.exceptionHandler(throwable -> finish(throwable.getMessage()));
+        parser.endHandler(end -> {
+            ended = true;
+            if (!inFlight) {
+                flush();
+            }
+        });
+        parser.handler(this::handleLine);
+    }
+
+    private void handleLine(final Buffer buffer) {
+        if (finished) {
+            return;
+        }
+        lines++;
+        final String line = stripCarriageReturn(buffer.toString(StandardCharsets.UTF_8));
+        if (line.trim().isEmpty()) {
+            return;
+        }
+        if (header == null) {
+            try {
+                header = format.parseHeader(line);
+            } catch (IllegalArgumentException e) {
+                finish(e.getMessage());
+            }
+            return;
+        }
+        try {
+            chunk.add(normalize(format.parse(line, header)).put("line", lines));
+        } catch (IllegalArgumentException e) {
+            reject(lines, e.getMessage(), line);
+            return;
+        }
+        if (chunk.size() >= chunkSize) {
+            send();
+        } else if (response.writeQueueFull()) {
+            pauseUntilDrained();
+        }
+    }
+
+    private void send() {
+        final JsonArray records = chunk;
+        chunk = new JsonArray();
+        inFlight = true;
+        parser.pause();
+        vertx.eventBus().request(DATABASE_BULK_IMPORT, new JsonObject().put("records", records).toString(),
+            reply -> {
+                inFlight = false;
+                if (reply.failed()) {
+                    final ReplyException cause = (ReplyException) reply.cause();
+                    finish(ErrorCodesTranslator.translateErrorCode(cause.failureCode()));
+                    return;
+                }
+                final JsonObject result = new JsonObject(reply.result().body().toString());
+                accounts += result.getLong("accounts");
+                transactions += result.getLong("transactions");
+                result.getJsonArray("rejected").forEach(rejection -> {
+                    final long line = ((JsonObject) rejection).getLong("line");
+                    reject(line, ((JsonObject) rejection).getString("error"), findRecord(records, line).toString());
+                });
+                response.write(progress("progress").encode() + "\n");
+                if (ended) {
+                    flush();
+                } else if (response.writeQueueFull()) {
+                    pauseUntilDrained();
+                } else {
+                    parser.resume();
+                }
+            });
+    }
+
+    private void flush() {
+        if (!chunk.isEmpty()) {
+            send();
+        } else {
+            finish(null);
+        }
+    }
+
+    private void finish(final String error) {
+        if (finished) {
+            return;
+        }
+        finished = true;
+        final JsonObject summary = progress("summary");
+        if (error != null) {
+            summary.put("error", error);
+            log.warn("Import stopped after {} lines: {}", lines, error);
+        } else {
+            log.info("Imported {} accounts and {} transactions, rejected {} records", accounts, transactions,
+                rejected);
+        }
+        response.end(summary.encode() + "\n");
+    }
+
+    private void reject(final long line, final String error, final String record) {
+        rejected++;
+        response.write(new JsonObject().put("type", "rejected").put("line", line).put("error", error)
+            .put("record", record).encode() + "\n");
+    }
+
+    private void pauseUntilDrained() {
+        parser.pause();
+        response.drainHandler(drained -> {
+            if (!inFlight && !finished) {
+                parser.resume();
+            }
+        });
+    }
+
+    private JsonObject progress(final String type) {
+        return new JsonObject().put("type", type).put("lines", lines).put("accounts", accounts)
+            .put("transactions", transactions).put("rejected", rejected);
+    }
+
+    private static JsonObject findRecord(final JsonArray records, final long line) {
+        for (int i = 0; i < records.size(); i++) {
+            if (records.getJsonObject(i).getLong("line") == line) {
+                final JsonObject record = records.getJsonObject(i).copy();
+                record.remove("line");
+                return record;
+            }
+        }
+        return new JsonObject();
+    }
+
+    private static String stripCarriageReturn(final String line) {
+        return line.endsWith("\r") ? line.substring(0, line.length() - 1) : line;
+    }
+
+    // Checks a record the same way the API checks single requests and returns it with canonical values,
+    // ids are optional and generated when missing
+    static JsonObject normalize(final JsonObject record) {
+        final String type = record.getString("type");
+        final JsonObject normalized = new JsonObject().put("type", type);
+        if (record.getString("id") != null) {
+            normalized.put("id", id(record.getString("id")));
+        }
+        if ("account".equals(type)) {
+            return normalized
+                .put("name", owner(record.getString("name")))
+                .put("surname", owner(record.getString("surname")))
+                .put("balance", balance(record.getString("balance", "0")));
+        }
+        if ("transaction".equals(type)) {
+            final TransactionType transactionType = transactionType(record.getString("transaction_type"));
+            final String sourceAccountId = record.getString("source_account_id");
+            if (transactionType == TransactionType.TRANSFER && sourceAccountId == null) {
+                throw new IllegalArgumentException(NOT_NULLABLE_ACCOUNT_ID_MESSAGE);
+            }
+            if (record.getString("destination_account_id") == null) {
+                throw new IllegalArgumentException(INVALID_ID_MESSAGE);
+            }
+            normalized.put("transaction_type", transactionType.name())
+                .put("destination_account_id", id(record.getString("destination_account_id")))
+                .put("amount", amount(record.getString("amount")));
+            if (sourceAccountId != null) {
+                normalized.put("source_account_id", id(sourceAccountId));
+            }
+            if (record.getString("execution_time") != null) {
+                normalized.put("execution_time", instant(record.getString("execution_time")));
+            }
+            return normalized;
+        }
+        throw new IllegalArgumentException(INVALID_RECORD_TYPE_MESSAGE);
+    }
+
+    private static String id(final String value) {
+        try {
+            final long id = new BigDecimal(value).longValueExact();
+            if (id < 0) {
+                throw new IllegalArgumentException(INVALID_ID_MESSAGE);
+            }
+            return Long.toString(id);
+        } catch (ArithmeticException | NumberFormatException e) {
+            throw new IllegalArgumentException(INVALID_ID_MESSAGE);
+        }
+    }
+
+    private static String owner(final String value) {
+        if (value == null || value.isEmpty() || value.length() > MAX_OWNER_LENGTH) {
+            throw new IllegalArgumentException(INVALID_OWNER_MESSAGE);
+        }
+        return value;
+    }
+
+    private static String balance(final String value) {
+        try {
+            final BigDecimal balance = new BigDecimal(value);
+            if (balance.signum() < 0) {
+                throw new IllegalArgumentException(INVALID_BALANCE_MESSAGE);
+            }
+            return balance.toPlainString();
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(INVALID_BALANCE_MESSAGE);
+        }
+    }
+
+    private static String amount(final String value) {
+        try {
+            final BigDecimal amount = new BigDecimal(value == null ? "0" : value);
+            if (amount.signum() <= 0) {
+                throw new IllegalArgumentException(INVALID_TRANSACTION_AMOUNT_MESSAGE);
+            }
+            return amount.toPlainString();
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(INVALID_TRANSACTION_AMOUNT_MESSAGE);
+        }
+    }
+
+    private static TransactionType transactionType(final String value) {
+        try {
+            return TransactionType.valueOf(value == null ? "" : value);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException(INVALID_TRANSACTION_TYPE_MESSAGE);
+        }
+    }
+
+    private static String instant(final String value) {
+        try {
+            return Instant.parse(value).toString();
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException(INVALID_EXECUTION_TIME_MESSAGE);
+        }
+    }
+
+}
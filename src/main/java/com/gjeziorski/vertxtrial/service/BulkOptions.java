@@ -0,0 +1,28 @@
+package com.gjeziorski.vertxtrial.service;
+
+import io.vertx.core.json.JsonObject;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class BulkOptions {
+
+    // Rows read by a single query of the export
+    private int exportPageSize;
+
+    // Valid records written by a single JDBC batch of the import
+    private int importChunkSize;
+
+    public static BulkOptions fromJson(final JsonObject json, final BulkOptions defaults) {
+        return BulkOptions.builder()
+            .exportPageSize(json.getInteger("export_page_size", defaults.getExportPageSize()))
+            .importChunkSize(json.getInteger("import_chunk_size", defaults.getImportChunkSize()))
+            .build();
+    }
+
+}
@@ -0,0 +1,111 @@
+package com.gjeziorski.vertxtrial.service;
+
+import static com.gjeziorski.vertxtrial.common.EventBusAddresses.DATABASE_BULK_EXPORT;
+
+import com.gjeziorski.vertxtrial.common.ErrorCodesTranslator;
+import io.vertx.core.Vertx;
+import io.vertx.core.eventbus.ReplyException;
+import io.vertx.core.http.HttpServerResponse;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.web.RoutingContext;
+import io.vertx.ext.web.api.validation.HTTPRequestValidationHandler;
+import io.vertx.ext.web.api.validation.ParameterTypeValidator;
+import java.util.Arrays;
+import lombok.extern.slf4j.Slf4j;
+
+// Export reads accounts and then transactions page by page with keyset queries and writes every page before asking
+// for the next one, waiting for the response to drain when the client reads slower than the database, so memory
+// stays bounded by one page. The export is fuzzy, not a snapshot of a single moment: every page is read by its own
+// query while writes go on. Transactions are exported up to the highest id present when the export started, but
+// ids are allocated before commit, so a transaction with a lower id committed later is left out. Balances are
+// read page by page, so they may not match the exported transactions and a transaction may refer to an account
+// created after its page was exported. Holding one snapshot for the whole export would keep a connection (and
+// under LOCKS shared table locks) for as long as the client takes to read it.
+@Slf4j
+public class BulkService {
+
+    private static final String ACCOUNTS = "accounts";
+    private static final String TRANSACTIONS = "transactions";
+
+    private Vertx vertx;
+    private BulkOptions options;
+    private HTTPRequestValidationHandler exportRequestValidationHandler;
+
+    public BulkService(final Vertx vertx, final BulkOptions options) {
+        this.vertx = vertx;
+        this.options = options;
+        exportRequestValidationHandler = HTTPRequestValidationHandler.create()
+            .addQueryParamWithCustomTypeValidator("format",
+                ParameterTypeValidator.createEnumTypeValidatorWithInnerValidator(Arrays.asList("ndjson", "csv"),
+                    ParameterTypeValidator.createStringTypeValidator(null)), false, false);
+    }
+
+    public void handleExport(RoutingContext routingContext) {
+        BulkFormat format = BulkFormat.fromName(routingContext.request().getParam("format"));
+        HttpServerResponse response = routingContext.response();
+        response.setChunked(true).putHeader("content-type", format.contentType());
+        exportPage(routingContext, format, ACCOUNTS, -1, null);
+    }
+
+    public HTTPRequestValidationHandler getExportRequestValidationHandler() {
+        return exportRequestValidationHandler;
+    }
+
+    // Must be routed before the body handler, the upload is read as a stream
+    public void handleImport(RoutingContext routingContext) {
+        BulkFormat format = BulkFormat.fromContentType(routingContext.request().getHeader("content-type"));
+        if (format == null) {
+            routingContext.response().setStatusCode(415).putHeader("content-type", "application/text")
+                .end("Import accepts " + BulkFormat.NDJSON.contentType() + " or " + BulkFormat.CSV.contentType());
+            return;
+        }
+        new BulkImport(vertx, format, options.getImportChunkSize(), routingContext.request(),
+            routingContext.response()).start();
+    }
+
+    private void exportPage(RoutingContext routingContext, BulkFormat format, String table, long afterId,
+        Long upToId) {
+        JsonObject request = new JsonObject().put("table", table).put("after_id", afterId)
+            .put("limit", options.getExportPageSize()).put("up_to_id", upToId);
+        vertx.eventBus().request(DATABASE_BULK_EXPORT, request.toString(), reply -> {
+            HttpServerResponse response = routingContext.response();
+            if (reply.failed()) {
+                ReplyException cause = (ReplyException) reply.cause();
+                if (response.headWritten()) {
+                    // Status is already sent, closing the connection is the only way to tell the client
+                    log.error("Export failed after it started: {}", cause.getMessage());
+                    routingContext.request().connection().close();
+                } else {
+                    response.setChunked(false);
+                    ErrorCodesTranslator.translateErrorCode(cause.failureCode(), routingContext);
+                }
+                return;
+            }
+            if (!response.headWritten()) {
+                response.setStatusCode(200).write(format.header());
+            }
+            JsonObject page = new JsonObject(reply.result().body().toString());
+            JsonArray records = page.getJsonArray("records");
+            records.forEach(record -> response.write(format.format((JsonObject) record)));
+            Long lastTransactionId = upToId == null ? page.getLong("last_transaction_id") : upToId;
+
+            Runnable next;
+            if (records.size() == options.getExportPageSize()) {
+                long lastId = Long.parseLong(records.getJsonObject(records.size() - 1).getString("id"));
+                next = () -> exportPage(routingContext, format, table, lastId, lastTransactionId);
+            } else if (ACCOUNTS.equals(table)) {
+                next = () -> exportPage(routingContext, format, TRANSACTIONS, -1, lastTransactionId);
+            } else {
+                response.end();
+                return;
+            }
+            if (response.writeQueueFull()) {
+                response.drainHandler(drained -> next.run());
+            } else {
+                next.run();
+            }
+        });
+    }
+
+}
@@ -0,0 +1,38 @@
+package com.gjeziorski.vertxtrial.service;
+
+import com.gjeziorski.vertxtrial.common.VersionRegistry;
+import io.vertx.core.eventbus.Message;
+import io.vertx.ext.web.RoutingContext;
+import io.vertx.ext.web.api.validation.ParameterTypeValidator;
+
+// Write responses carry the commit sequence of the written accounts, listings accept it back as min-sequence and
+// include at least that commit, even when they're served from replica copies. Sequences are read after the write
+// was committed, so they can be newer than the write itself but never older.
+class CommitSequences {
+
+    static final String HEADER = "X-Commit-Sequence";
+    static final String MIN_SEQUENCE_PARAM = "min-sequence";
+
+    private CommitSequences() {
+    }
+
+    static ParameterTypeValidator minSequenceValidator() {
+        return ParameterTypeValidator.createLongTypeValidator(null, 0.0, null, null);
+    }
+
+    static Long minSequence(final RoutingContext routingContext) {
+        final String minSequence = routingContext.request().getParam(MIN_SEQUENCE_PARAM);
+        return minSequence == null ? null : Long.valueOf(minSequence);
+    }
+
+    static void put(final RoutingContext routingContext, final long sequence) {
+        routingContext.response().putHeader(HEADER, String.valueOf(sequence));
+    }
+
+    // Copies can be older than the version read before the request, the tag has to describe what was served
+    static long servedVersion(final long version, final Message<Object> reply) {
+        final String sequence = reply.headers().get(VersionRegistry.SEQUENCE_HEADER);
+        return sequence == null ? version : Math.min(version, Long.parseLong(sequence));
+    }
+
+}
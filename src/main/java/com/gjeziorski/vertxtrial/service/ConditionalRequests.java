@@ -0,0 +1,53 @@
+package com.gjeziorski.vertxtrial.service;
+
+import com.gjeziorski.vertxtrial.common.VersionRegistry;
+import com.gjeziorski.vertxtrial.serialization.ContentFormat;
+import io.vertx.core.http.HttpHeaders;
+import io.vertx.ext.web.RoutingContext;
+
+// Tags are taken before the query is sent, so a response is never tagged with a version newer than its data.
+// At worst the data is newer than the tag and the next poll downloads it once more.
+class ConditionalRequests {
+
+    private static final String WEAK_PREFIX = "W/";
+    private static final CharSequence VARY = HttpHeaders.createOptimized("Vary");
+
+    private ConditionalRequests() {
+    }
+
+    static String etag(final VersionRegistry versionRegistry, final long version, final RoutingContext routingContext) {
+        return "\"" + versionRegistry.epoch() + "-" + version + "-"
+            + ContentNegotiation.responseFormat(routingContext).name().toLowerCase() + "\"";
+    }
+
+    // Answers 304 when the client already has the current version
+    static boolean notModified(final RoutingContext routingContext, final String etag) {
+        if (!matches(routingContext.request().getHeader(HttpHeaders.IF_NONE_MATCH), etag)) {
+            return false;
+        }
+        tag(routingContext, etag);
+        routingContext.response().setStatusCode(304).end();
+        return true;
+    }
+
+    static void tag(final RoutingContext routingContext, final String etag) {
+        routingContext.response().putHeader(HttpHeaders.ETAG, etag).putHeader(VARY, HttpHeaders.ACCEPT);
+    }
+
+    private static boolean matches(final String ifNoneMatch, final String etag) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        for (String candidate : ifNoneMatch.split(",")) {
+            String trimmed = candidate.trim();
+            if (trimmed.startsWith(WEAK_PREFIX)) {
+                trimmed = trimmed.substring(WEAK_PREFIX.length());
+            }
+            if (trimmed.equals("*") || trimmed.equals(etag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+}
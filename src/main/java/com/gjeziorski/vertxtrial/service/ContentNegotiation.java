@@ -0,0 +1,72 @@
+package com.gjeziorski.vertxtrial.service;
+
+import com.gjeziorski.vertxtrial.serialization.ContentFormat;
+import com.gjeziorski.vertxtrial.serialization.Payload;
+import io.vertx.core.Handler;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.eventbus.DeliveryOptions;
+import io.vertx.core.http.HttpHeaders;
+import io.vertx.core.http.HttpServerResponse;
+import io.vertx.ext.web.RoutingContext;
+import io.vertx.ext.web.api.validation.ValidationException;
+import java.io.IOException;
+
+// Binary request bodies are transcoded to JSON before validation, so that both formats go through the same
+// schemas and custom validators. Response format is picked from the Accept header and kept in the context.
+public class ContentNegotiation implements Handler<RoutingContext> {
+
+    private static final String RESPONSE_FORMAT_KEY = "responseFormat";
+
+    @Override
+    public void handle(final RoutingContext routingContext) {
+        routingContext.put(RESPONSE_FORMAT_KEY,
+            ContentFormat.negotiate(routingContext.request().getHeader(HttpHeaders.ACCEPT)));
+        final ContentFormat requestFormat = ContentFormat.fromContentType(
+            routingContext.request().getHeader(HttpHeaders.CONTENT_TYPE));
+        if (requestFormat != null && requestFormat != ContentFormat.JSON && routingContext.getBody() != null
+            && routingContext.getBody().length() > 0) {
+            try {
+                routingContext.setBody(Buffer.buffer(ContentFormat.JSON.objectMapper().writeValueAsBytes(
+                    requestFormat.objectMapper().readTree(routingContext.getBody().getBytes()))));
+            } catch (IOException e) {
+                routingContext.fail(new ValidationException("Malformed " + requestFormat.contentType() + " body"));
+                return;
+            }
+            routingContext.request().headers().set(HttpHeaders.CONTENT_TYPE, ContentFormat.JSON.contentType());
+        }
+        routingContext.next();
+    }
+
+    static ContentFormat responseFormat(final RoutingContext routingContext) {
+        final ContentFormat format = routingContext.get(RESPONSE_FORMAT_KEY);
+        return format == null ? ContentFormat.JSON : format;
+    }
+
+    // Tells the repository to write the reply directly in the negotiated format
+    static DeliveryOptions deliveryOptions(final RoutingContext routingContext) {
+        return new DeliveryOptions().addHeader(ContentFormat.HEADER, responseFormat(routingContext).name());
+    }
+
+    // Payloads are written as they are and released once the write completes, other replies are JSON text
+    // and get transcoded when the client asked for another format
+    static void end(final RoutingContext routingContext, final int statusCode, final Object body) {
+        final ContentFormat format = responseFormat(routingContext);
+        final HttpServerResponse response = routingContext.response().setStatusCode(statusCode);
+        if (body instanceof Payload) {
+            final Payload payload = (Payload) body;
+            response.putHeader(HttpHeaders.CONTENT_TYPE, payload.format().contentType())
+                .end(payload.buffer(), result -> payload.release());
+        } else if (format == ContentFormat.JSON) {
+            response.putHeader(HttpHeaders.CONTENT_TYPE, format.contentType()).end(body.toString());
+        } else {
+            try {
+                final byte[] encoded = format.objectMapper().writeValueAsBytes(
+                    ContentFormat.JSON.objectMapper().readTree(body.toString()));
+                response.putHeader(HttpHeaders.CONTENT_TYPE, format.contentType()).end(Buffer.buffer(encoded));
+            } catch (IOException e) {
+                routingContext.fail(e);
+            }
+        }
+    }
+
+}
@@ -1,5 +1,6 @@
 package com.gjeziorski.vertxtrial.service;
 
+import static com.gjeziorski.vertxtrial.common.ErrorCodesTranslator.INVALID_EXECUTE_AT_MESSAGE;
 import static com.gjeziorski.vertxtrial.common.ErrorCodesTranslator.INVALID_TRANSACTION_AMOUNT_MESSAGE;
 import static com.gjeziorski.vertxtrial.common.ErrorCodesTranslator.INVALID_TRANSACTION_TYPE_MESSAGE;
 import static com.gjeziorski.vertxtrial.common.ErrorCodesTranslator.NOT_NULLABLE_ACCOUNT_ID_MESSAGE;
@@ -11,6 +12,8 @@ import io.vertx.ext.web.RoutingContext;
 import io.vertx.ext.web.api.validation.CustomValidator;
 import io.vertx.ext.web.api.validation.ValidationException;
 import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
 import java.util.Arrays;
 import java.util.stream.Collectors;
 
@@ -26,6 +29,11 @@ public class CreateTransactionValidator implements CustomValidator {
             throw new ValidationException(INVALID_TRANSACTION_TYPE_MESSAGE);
         }
 
+        final String executeAt = jsonObject.getString("execute_at");
+        if (executeAt != null && !isInstantValid(executeAt)) {
+            throw new ValidationException(INVALID_EXECUTE_AT_MESSAGE);
+        }
+
         Transaction transaction = jsonObject.mapTo(Transaction.class);
         if (transaction.getAmount().compareTo(new BigDecimal(0)) <= 0) {
             throw new ValidationException(INVALID_TRANSACTION_AMOUNT_MESSAGE);
@@ -37,6 +45,15 @@ public class CreateTransactionValidator implements CustomValidator {
         }
     }
 
+    private boolean isInstantValid(String instant) {
+        try {
+            Instant.parse(instant);
+            return true;
+        } catch (DateTimeParseException e) {
+            return false;
+        }
+    }
+
     private boolean isTransactionTypeValid(String transactionType) {
         return Arrays.stream(TransactionType.values()).map(TransactionType::toString)
             .collect(Collectors.toSet()).contains(transactionType);
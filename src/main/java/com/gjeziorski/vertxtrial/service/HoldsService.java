@@ -0,0 +1,123 @@
+package com.gjeziorski.vertxtrial.service;
+
+import static com.gjeziorski.vertxtrial.common.ErrorCodesTranslator.INVALID_HOLD_AMOUNT_MESSAGE;
+import static com.gjeziorski.vertxtrial.common.EventBusAddresses.DATABASE_HOLD_CAPTURE;
+import static com.gjeziorski.vertxtrial.common.EventBusAddresses.DATABASE_HOLD_PLACE;
+import static com.gjeziorski.vertxtrial.common.EventBusAddresses.DATABASE_HOLD_RELEASE;
+import static com.gjeziorski.vertxtrial.common.EventBusAddresses.DATABASE_METRICS_HOLDS;
+
+import com.gjeziorski.vertxtrial.common.ErrorCodesTranslator;
+import com.gjeziorski.vertxtrial.common.VersionRegistry;
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Vertx;
+import io.vertx.core.eventbus.Message;
+import io.vertx.core.eventbus.ReplyException;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.web.RoutingContext;
+import io.vertx.ext.web.api.validation.CustomValidator;
+import io.vertx.ext.web.api.validation.HTTPRequestValidationHandler;
+import io.vertx.ext.web.api.validation.ParameterTypeValidator;
+import io.vertx.ext.web.api.validation.ValidationException;
+import java.math.BigDecimal;
+
+public class HoldsService {
+
+    private static final String PLACE_HOLD_JSON_SCHEMA = "{\"type\": \"object\", \"properties\": {\"account_id\": {\"type\": \"integer\", \"minimum\": 0}, \"amount\": {\"type\": \"number\"}, \"expires_in_ms\": {\"type\": \"integer\", \"minimum\": 1}}, \"required\": [\"account_id\", \"amount\"]}";
+
+    private Vertx vertx;
+    private VersionRegistry versionRegistry;
+    private HTTPRequestValidationHandler placeHoldRequestValidationHandler;
+    private HTTPRequestValidationHandler captureHoldRequestValidationHandler;
+    private HTTPRequestValidationHandler releaseHoldRequestValidationHandler;
+
+    public HoldsService(final Vertx vertx, final VersionRegistry versionRegistry) {
+        this.vertx = vertx;
+        this.versionRegistry = versionRegistry;
+        placeHoldRequestValidationHandler = HTTPRequestValidationHandler.create()
+            .addJsonBodySchema(PLACE_HOLD_JSON_SCHEMA)
+            .addCustomValidatorFunction(amountValidator(true));
+        captureHoldRequestValidationHandler = HTTPRequestValidationHandler.create()
+            .addPathParamWithCustomTypeValidator("id", ParameterTypeValidator.createLongTypeValidator(null), false)
+            .addCustomValidatorFunction(amountValidator(false));
+        releaseHoldRequestValidationHandler = HTTPRequestValidationHandler.create()
+            .addPathParamWithCustomTypeValidator("id", ParameterTypeValidator.createLongTypeValidator(null), false);
+    }
+
+    public void handlePlaceHold(RoutingContext routingContext) {
+        vertx.eventBus().request(DATABASE_HOLD_PLACE, routingContext.getBodyAsString(),
+            reply -> handleResponseMessage(reply, routingContext, 201));
+    }
+
+    // Capturing without amount withdraws the whole hold
+    public void handleCaptureHold(RoutingContext routingContext) {
+        JsonObject request = new JsonObject().put("id", Long.valueOf(routingContext.pathParam("id")))
+            .put("amount", bodyAmount(routingContext));
+        vertx.eventBus().request(DATABASE_HOLD_CAPTURE, request.toString(), reply -> {
+            if (reply.succeeded()) {
+                CommitSequences.put(routingContext, versionRegistry.accountVersion(
+                    new JsonObject(reply.result().body().toString()).getLong("account_id")));
+            }
+            handleResponseMessage(reply, routingContext, 201);
+        });
+    }
+
+    public void handleReleaseHold(RoutingContext routingContext) {
+        JsonObject request = new JsonObject().put("id", Long.valueOf(routingContext.pathParam("id")));
+        vertx.eventBus().request(DATABASE_HOLD_RELEASE, request.toString(), reply -> {
+            if (reply.failed()) {
+                ReplyException cause = (ReplyException) reply.cause();
+                ErrorCodesTranslator.translateErrorCode(cause.failureCode(), routingContext);
+            } else {
+                routingContext.response().setStatusCode(204).end();
+            }
+        });
+    }
+
+    public void handleGetHoldMetrics(RoutingContext routingContext) {
+        vertx.eventBus().request(DATABASE_METRICS_HOLDS, "", reply -> handleResponseMessage(reply, routingContext, 200));
+    }
+
+    public HTTPRequestValidationHandler getPlaceHoldRequestValidationHandler() {
+        return placeHoldRequestValidationHandler;
+    }
+
+    public HTTPRequestValidationHandler getCaptureHoldRequestValidationHandler() {
+        return captureHoldRequestValidationHandler;
+    }
+
+    public HTTPRequestValidationHandler getReleaseHoldRequestValidationHandler() {
+        return releaseHoldRequestValidationHandler;
+    }
+
+    private CustomValidator amountValidator(final boolean required) {
+        return routingContext -> {
+            Object amount = bodyAmount(routingContext);
+            if (amount == null && !required) {
+                return;
+            }
+            if (!(amount instanceof Number) || new BigDecimal(amount.toString()).signum() <= 0) {
+                throw new ValidationException(INVALID_HOLD_AMOUNT_MESSAGE);
+            }
+        };
+    }
+
+    // Capture can be requested without body
+    private Object bodyAmount(RoutingContext routingContext) {
+        if (routingContext.getBody() == null || routingContext.getBody().length() == 0) {
+            return null;
+        }
+        return routingContext.getBodyAsJson().getValue("amount");
+    }
+
+    private void handleResponseMessage(AsyncResult<Message<Object>> reply, RoutingContext routingContext,
+        int statusCode) {
+        if (reply.failed()) {
+            ReplyException cause = (ReplyException) reply.cause();
+            ErrorCodesTranslator.translateErrorCode(cause.failureCode(), routingContext);
+        } else {
+            routingContext.response().putHeader("content-type", "application/json").setStatusCode(statusCode)
+                .end(reply.result().body().toString());
+        }
+    }
+
+}
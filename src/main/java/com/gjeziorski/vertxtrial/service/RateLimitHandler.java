@@ -0,0 +1,73 @@
+package com.gjeziorski.vertxtrial.service;
+
+import com.gjeziorski.vertxtrial.ratelimit.RateLimiter;
+import io.vertx.core.http.HttpHeaders;
+import io.vertx.core.json.DecodeException;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.web.RoutingContext;
+import java.util.concurrent.TimeUnit;
+
+// Limits are checked before the request is validated and sent over the event bus, so rejected requests
+// never reach the database
+public class RateLimitHandler {
+
+    private static final String RETRY_AFTER_MS_HEADER = "X-Retry-After-Ms";
+    private static final String TOO_MANY_REQUESTS_MESSAGE = "Too many requests";
+
+    private final RateLimiter rateLimiter;
+
+    public RateLimitHandler(final RateLimiter rateLimiter) {
+        this.rateLimiter = rateLimiter;
+    }
+
+    public void limitClient(final RoutingContext routingContext) {
+        final long waitNanos = rateLimiter.acquireForClient(clientId(routingContext));
+        if (waitNanos > 0) {
+            reject(routingContext, waitNanos);
+        } else {
+            routingContext.next();
+        }
+    }
+
+    // Malformed bodies are let through, validation rejects them anyway
+    public void limitAccounts(final RoutingContext routingContext) {
+        final JsonObject transaction;
+        try {
+            transaction = new JsonObject(routingContext.getBodyAsString());
+        } catch (DecodeException | ClassCastException e) {
+            routingContext.next();
+            return;
+        }
+        final long waitNanos = rateLimiter.acquireForAccounts(accountId(transaction.getValue("source_account_id")),
+            accountId(transaction.getValue("destination_account_id")));
+        if (waitNanos > 0) {
+            reject(routingContext, waitNanos);
+        } else {
+            routingContext.next();
+        }
+    }
+
+    private Long accountId(final Object accountId) {
+        return accountId instanceof Number ? ((Number) accountId).longValue() : null;
+    }
+
+    private String clientId(final RoutingContext routingContext) {
+        final String header = rateLimiter.options().getClientIdHeader();
+        if (header != null) {
+            final String clientId = routingContext.request().getHeader(header);
+            if (clientId != null) {
+                return clientId;
+            }
+        }
+        return routingContext.request().remoteAddress().host();
+    }
+
+    private void reject(final RoutingContext routingContext, final long waitNanos) {
+        final long waitMs = TimeUnit.NANOSECONDS.toMillis(waitNanos) + 1;
+        routingContext.response().setStatusCode(429)
+            .putHeader(HttpHeaders.RETRY_AFTER, String.valueOf(TimeUnit.MILLISECONDS.toSeconds(waitMs + 999)))
+            .putHeader(RETRY_AFTER_MS_HEADER, String.valueOf(waitMs))
+            .end(TOO_MANY_REQUESTS_MESSAGE);
+    }
+
+}
@@ -2,10 +2,12 @@ package com.gjeziorski.vertxtrial.service;
 
 import static com.gjeziorski.vertxtrial.common.EventBusAddresses.DATABASE_TRANSACTION_DEPOSIT;
 import static com.gjeziorski.vertxtrial.common.EventBusAddresses.DATABASE_TRANSACTION_LIST;
+import static com.gjeziorski.vertxtrial.common.EventBusAddresses.DATABASE_TRANSACTION_SCHEDULE;
 import static com.gjeziorski.vertxtrial.common.EventBusAddresses.DATABASE_TRANSACTION_TRANSFER;
 import static com.gjeziorski.vertxtrial.common.EventBusAddresses.DATABASE_TRANSACTION_WITHDRAW;
 
 import com.gjeziorski.vertxtrial.common.ErrorCodesTranslator;
+import com.gjeziorski.vertxtrial.common.VersionRegistry;
 import com.gjeziorski.vertxtrial.domain.FetchTransactionsRequest;
 import com.gjeziorski.vertxtrial.domain.Transaction;
 import com.gjeziorski.vertxtrial.domain.TransactionType;
@@ -19,37 +21,51 @@ import io.vertx.core.json.JsonObject;
 import io.vertx.ext.web.RoutingContext;
 import io.vertx.ext.web.api.validation.HTTPRequestValidationHandler;
 import io.vertx.ext.web.api.validation.ParameterType;
+import io.vertx.ext.web.api.validation.ParameterTypeValidator;
 import java.time.Instant;
 import java.util.Map;
 
 public class TransactionsService {
 
-    private static final String TRANSACTION_JSON_SCHEMA = "{\"type\": \"object\", \"properties\": {\"source_account_id\": {\"type\": \"number\"}, \"destination_account_id\": {\"type\": \"number\"}, \"amount\": {\"type\": \"number\"}, \"transaction_type\": {\"type\": \"string\"}}, \"required\": [\"destination_account_id\", \"amount\", \"transaction_type\"]}";
+    private static final String TRANSACTION_JSON_SCHEMA = "{\"type\": \"object\", \"properties\": {\"source_account_id\": {\"type\": \"number\"}, \"destination_account_id\": {\"type\": \"number\"}, \"amount\": {\"type\": \"number\"}, \"transaction_type\": {\"type\": \"string\"}, \"execute_at\": {\"type\": \"string\"}}, \"required\": [\"destination_account_id\", \"amount\", \"transaction_type\"]}";
     private static final Map<TransactionType, String> TRANSACTION_TYPE_TO_ADDRESS_MAP = ImmutableMap
         .of(TransactionType.DEPOSIT, DATABASE_TRANSACTION_DEPOSIT, TransactionType.WITHDRAW,
             DATABASE_TRANSACTION_WITHDRAW, TransactionType.TRANSFER, DATABASE_TRANSACTION_TRANSFER);
 
     private Vertx vertx;
+    private VersionRegistry versionRegistry;
     private HTTPRequestValidationHandler createTransactionRequestValidationHandler;
     private HTTPRequestValidationHandler listTransactionsRequestValidationHandler;
 
-    public TransactionsService(final Vertx vertx) {
+    public TransactionsService(final Vertx vertx, final VersionRegistry versionRegistry) {
         this.vertx = vertx;
+        this.versionRegistry = versionRegistry;
         this.createTransactionRequestValidationHandler = prepareCreateTransactionRequestValidationHandler();
         this.listTransactionsRequestValidationHandler = prepareListTransactionsRequestValidationHandler();
     }
 
     public void handleGetTransactionsList(RoutingContext routingContext) {
+        FetchTransactionsRequest fetchTransactionsRequest = getTransactionRequestFromRoutingContext(routingContext);
+        long version = versionRegistry.accountVersion(fetchTransactionsRequest.getAccountId());
+        String etag = ConditionalRequests.etag(versionRegistry, version, routingContext);
+        if (ConditionalRequests.notModified(routingContext, etag)) {
+            return;
+        }
         vertx.eventBus()
-            .request(DATABASE_TRANSACTION_LIST,
-                serializeFetchTransactionsRequest(getTransactionRequestFromRoutingContext(routingContext)),
-                reply -> handleGetListResponseMessage(reply, routingContext));
+            .request(DATABASE_TRANSACTION_LIST, serializeFetchTransactionsRequest(fetchTransactionsRequest),
+                ContentNegotiation.deliveryOptions(routingContext),
+                reply -> handleGetListResponseMessage(reply, routingContext, version));
     }
 
     public void handleCreateTransaction(RoutingContext routingContext) {
         JsonObject jsonObject = new JsonObject(routingContext.getBodyAsString());
         Transaction transaction = jsonObject.mapTo(Transaction.class);
-        handleTransaction(routingContext, TRANSACTION_TYPE_TO_ADDRESS_MAP.get(transaction.getTransactionType()));
+        if (transaction.getExecuteAt() != null) {
+            vertx.eventBus().request(DATABASE_TRANSACTION_SCHEDULE, routingContext.getBodyAsString(),
+                reply -> handleScheduleTransactionResponseMessage(reply, routingContext));
+            return;
+        }
+        handleTransaction(routingContext, transaction);
     }
 
     public HTTPRequestValidationHandler getCreateTransactionRequestValidationHandler() {
@@ -60,10 +76,11 @@ public class TransactionsService {
         return listTransactionsRequestValidationHandler;
     }
 
-    private void handleTransaction(RoutingContext routingContext, String address) {
+    private void handleTransaction(RoutingContext routingContext, Transaction transaction) {
         vertx.eventBus()
-            .request(address, routingContext.getBodyAsString(),
-                reply -> handleCreateTransactionResponseMessage(reply, routingContext));
+            .request(TRANSACTION_TYPE_TO_ADDRESS_MAP.get(transaction.getTransactionType()),
+                routingContext.getBodyAsString(),
+                reply -> handleCreateTransactionResponseMessage(reply, routingContext, transaction));
     }
 
     private FetchTransactionsRequest getTransactionRequestFromRoutingContext(RoutingContext routingContext) {
@@ -78,6 +95,7 @@ public class TransactionsService {
         if (routingContext.request().params().contains("to")) {
             builder.from(Instant.parse(params.get("to")));
         }
+        builder.minSequence(CommitSequences.minSequence(routingContext));
         return builder.build();
     }
 
@@ -91,27 +109,50 @@ public class TransactionsService {
     }
 
     private HTTPRequestValidationHandler prepareListTransactionsRequestValidationHandler() {
-        return HTTPRequestValidationHandler.create().addQueryParam("account-id", ParameterType.INT, true)
-            .addQueryParam("from", ParameterType.DATETIME, false).addQueryParam("to", ParameterType.DATETIME, false);
+        return HTTPRequestValidationHandler.create()
+            .addQueryParamWithCustomTypeValidator("account-id", ParameterTypeValidator.createLongTypeValidator(null),
+                true, false)
+            .addQueryParam("from", ParameterType.DATETIME, false).addQueryParam("to", ParameterType.DATETIME, false)
+            .addQueryParamWithCustomTypeValidator(CommitSequences.MIN_SEQUENCE_PARAM,
+                CommitSequences.minSequenceValidator(), false, false);
     }
 
-    private void handleCreateTransactionResponseMessage(AsyncResult<Message<Object>> reply, RoutingContext routingContext) {
+    // Both accounts of a transfer are at the returned sequence or newer
+    private void handleCreateTransactionResponseMessage(AsyncResult<Message<Object>> reply,
+        RoutingContext routingContext, Transaction transaction) {
         if (reply.failed()) {
             ReplyException cause = (ReplyException) reply.cause();
             ErrorCodesTranslator.translateErrorCode(cause.failureCode(), routingContext);
         } else {
+            long sequence = versionRegistry.accountVersion(transaction.getDestinationAccountId());
+            if (transaction.getSourceAccountId() != null) {
+                sequence = Math.max(sequence, versionRegistry.accountVersion(transaction.getSourceAccountId()));
+            }
+            CommitSequences.put(routingContext, sequence);
             routingContext.response().putHeader("content-type", "application/json").setStatusCode(201)
                 .end();
         }
     }
 
-    private void handleGetListResponseMessage(AsyncResult<Message<Object>> reply, RoutingContext routingContext) {
+    private void handleScheduleTransactionResponseMessage(AsyncResult<Message<Object>> reply,
+        RoutingContext routingContext) {
+        if (reply.failed()) {
+            ReplyException cause = (ReplyException) reply.cause();
+            ErrorCodesTranslator.translateErrorCode(cause.failureCode(), routingContext);
+        } else {
+            ContentNegotiation.end(routingContext, 202, reply.result().body());
+        }
+    }
+
+    private void handleGetListResponseMessage(AsyncResult<Message<Object>> reply, RoutingContext routingContext,
+        long version) {
         if (reply.failed()) {
             ReplyException cause = (ReplyException) reply.cause();
             ErrorCodesTranslator.translateErrorCode(cause.failureCode(), routingContext);
         } else {
-            routingContext.response().putHeader("content-type", "application/json").setStatusCode(200)
-                .end(reply.result().body().toString());
+            ConditionalRequests.tag(routingContext, ConditionalRequests.etag(versionRegistry,
+                CommitSequences.servedVersion(version, reply.result()), routingContext));
+            ContentNegotiation.end(routingContext, 200, reply.result().body());
         }
     }
 
@@ -0,0 +1,96 @@
+package com.gjeziorski.vertxtrial.velocity;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+// Count and amount of transactions within a window split into buckets, a bucket is replaced with compare-and-set
+// once the window slid past it. Adds land in the bucket of their time, so they never wait for each other.
+class SlidingWindow {
+
+    private final long bucketNanos;
+    private final AtomicReferenceArray<Bucket> buckets;
+
+    SlidingWindow(final long windowNanos, final int bucketCount) {
+        this.bucketNanos = Math.max(windowNanos / bucketCount, 1);
+        this.buckets = new AtomicReferenceArray<>(bucketCount);
+    }
+
+    Bucket add(final long nowNanos, final long amount) {
+        final Bucket bucket = bucket(Math.floorDiv(nowNanos, bucketNanos));
+        bucket.count.incrementAndGet();
+        bucket.amount.addAndGet(amount);
+        return bucket;
+    }
+
+    long count(final long nowNanos) {
+        final long oldestEpoch = oldestEpoch(nowNanos);
+        long count = 0;
+        for (int i = 0; i < buckets.length(); i++) {
+            final Bucket bucket = buckets.get(i);
+            if (bucket != null && bucket.epoch >= oldestEpoch) {
+                count += bucket.count.get();
+            }
+        }
+        return count;
+    }
+
+    long amount(final long nowNanos) {
+        final long oldestEpoch = oldestEpoch(nowNanos);
+        long amount = 0;
+        for (int i = 0; i < buckets.length(); i++) {
+            final Bucket bucket = buckets.get(i);
+            if (bucket != null && bucket.epoch >= oldestEpoch) {
+                amount += bucket.amount.get();
+            }
+        }
+        return amount;
+    }
+
+    boolean isEmpty(final long nowNanos) {
+        final long oldestEpoch = oldestEpoch(nowNanos);
+        for (int i = 0; i < buckets.length(); i++) {
+            final Bucket bucket = buckets.get(i);
+            if (bucket != null && bucket.epoch >= oldestEpoch && bucket.count.get() > 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private long oldestEpoch(final long nowNanos) {
+        return Math.floorDiv(nowNanos, bucketNanos) - buckets.length() + 1;
+    }
+
+    // A caller late with its time adds to a newer bucket rather than bring back an expired one
+    private Bucket bucket(final long epoch) {
+        final int index = (int) Math.floorMod(epoch, (long) buckets.length());
+        while (true) {
+            final Bucket current = buckets.get(index);
+            if (current != null && current.epoch >= epoch) {
+                return current;
+            }
+            final Bucket fresh = new Bucket(epoch);
+            if (buckets.compareAndSet(index, current, fresh)) {
+                return fresh;
+            }
+        }
+    }
+
+    static class Bucket {
+
+        private final long epoch;
+        private final AtomicLong count = new AtomicLong();
+        private final AtomicLong amount = new AtomicLong();
+
+        private Bucket(final long epoch) {
+            this.epoch = epoch;
+        }
+
+        void remove(final long removedAmount) {
+            count.decrementAndGet();
+            amount.addAndGet(-removedAmount);
+        }
+
+    }
+
+}
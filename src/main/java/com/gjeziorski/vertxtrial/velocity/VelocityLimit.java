@@ -0,0 +1,40 @@
+package com.gjeziorski.vertxtrial.velocity;
+
+import io.vertx.core.json.JsonObject;
+import java.math.BigDecimal;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class VelocityLimit {
+
+    private String name;
+
+    private long windowMs;
+
+    // Window slides by windowMs / buckets
+    private int buckets;
+
+    // Zero means the number of transactions isn't limited
+    private int maxCount;
+
+    // Null means the amount isn't limited
+    private BigDecimal maxAmount;
+
+    public static VelocityLimit fromJson(final JsonObject json) {
+        final Number maxAmount = (Number) json.getValue("max_amount");
+        return VelocityLimit.builder()
+            .name(json.getString("name"))
+            .windowMs(json.getLong("window_ms"))
+            .buckets(json.getInteger("buckets"))
+            .maxCount(json.getInteger("max_count", 0))
+            .maxAmount(maxAmount == null ? null : new BigDecimal(maxAmount.toString()))
+            .build();
+    }
+
+}
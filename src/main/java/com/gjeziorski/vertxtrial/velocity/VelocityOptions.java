@@ -0,0 +1,36 @@
+package com.gjeziorski.vertxtrial.velocity;
+
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import java.util.List;
+import java.util.stream.Collectors;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class VelocityOptions {
+
+    private boolean enabled;
+
+    private long evictionIntervalMs;
+
+    // Limits given in the configuration replace all default limits
+    private List<VelocityLimit> limits;
+
+    public static VelocityOptions fromJson(final JsonObject json, final VelocityOptions defaults) {
+        final JsonArray limits = json.getJsonArray("limits");
+        return VelocityOptions.builder()
+            .enabled(json.getBoolean("enabled", defaults.isEnabled()))
+            .evictionIntervalMs(json.getLong("eviction_interval_ms", defaults.getEvictionIntervalMs()))
+            .limits(limits == null ? defaults.getLimits() : limits.stream()
+                .map(limit -> VelocityLimit.fromJson((JsonObject) limit))
+                .collect(Collectors.toList()))
+            .build();
+    }
+
+}
@@ -0,0 +1,212 @@
+package com.gjeziorski.vertxtrial.velocity;
+
+import com.gjeziorski.vertxtrial.domain.Transaction;
+import io.vertx.core.json.JsonObject;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+// Velocity limits of the debited account (source of a transfer, account of a withdrawal), evaluated in memory
+// before the transaction reaches the database. A transaction is added to every window of the account first and
+// taken back when it exceeds a limit or isn't committed, so concurrent transactions can't get over a limit
+// together, at worst both are rejected. Accounts without transactions in any window are evicted.
+public class VelocityRules {
+
+    // Amounts are kept in hundredths, larger ones are capped so that sums of a window can't overflow
+    private static final BigDecimal MAX_AMOUNT = BigDecimal.valueOf(Long.MAX_VALUE >> 16);
+    private static final Reservation NOTHING_RESERVED = new Reservation(new SlidingWindow.Bucket[0], 0);
+
+    private final VelocityOptions options;
+    private final List<VelocityLimit> limits;
+    private final long[] windowNanos;
+    private final long[] maxAmounts;
+    private final LongAdder[] rejectedByLimit;
+    private final Map<Long, Account> accounts = new ConcurrentHashMap<>();
+    private final LongAdder allowed = new LongAdder();
+    private final LongAdder released = new LongAdder();
+
+    public VelocityRules(final VelocityOptions options) {
+        this.options = options;
+        this.limits = options.getLimits();
+        this.windowNanos = new long[limits.size()];
+        this.maxAmounts = new long[limits.size()];
+        this.rejectedByLimit = new LongAdder[limits.size()];
+        for (int i = 0; i < limits.size(); i++) {
+            windowNanos[i] = TimeUnit.MILLISECONDS.toNanos(limits.get(i).getWindowMs());
+            maxAmounts[i] = limits.get(i).getMaxAmount() == null ? Long.MAX_VALUE
+                : hundredths(limits.get(i).getMaxAmount());
+            rejectedByLimit[i] = new LongAdder();
+        }
+    }
+
+    public VelocityOptions options() {
+        return options;
+    }
+
+    // Null when the transaction exceeds a limit, otherwise a reservation to release if it isn't committed
+    public Reservation reserve(final Transaction transaction) {
+        final Long accountId = debitedAccountId(transaction);
+        if (accountId == null) {
+            return NOTHING_RESERVED;
+        }
+        final long amount = hundredths(transaction.getAmount());
+        final long now = System.nanoTime();
+        Account account = accounts.computeIfAbsent(accountId, id -> new Account());
+        while (!account.enter()) {
+            accounts.remove(accountId, account);
+            account = accounts.computeIfAbsent(accountId, id -> new Account());
+        }
+        final SlidingWindow.Bucket[] buckets = new SlidingWindow.Bucket[limits.size()];
+        try {
+            for (int i = 0; i < buckets.length; i++) {
+                buckets[i] = account.windows[i].add(now, amount);
+            }
+        } finally {
+            account.leave();
+        }
+        final Reservation reservation = new Reservation(buckets, amount);
+        for (int i = 0; i < buckets.length; i++) {
+            final VelocityLimit limit = limits.get(i);
+            if (limit.getMaxCount() > 0 && account.windows[i].count(now) > limit.getMaxCount()
+                || account.windows[i].amount(now) > maxAmounts[i]) {
+                reservation.release();
+                rejectedByLimit[i].increment();
+                return null;
+            }
+        }
+        allowed.increment();
+        return reservation;
+    }
+
+    public void release(final Reservation reservation) {
+        if (reservation != NOTHING_RESERVED) {
+            reservation.release();
+            released.increment();
+        }
+    }
+
+    // Drops the windows of a deleted account, a transaction in flight still releases into the removed windows
+    public void evict(final long accountId) {
+        accounts.remove(accountId);
+    }
+
+    public void evictIdle() {
+        final long now = System.nanoTime();
+        accounts.forEach((accountId, account) -> {
+            if (account.isEmpty(now) && account.close(now)) {
+                accounts.remove(accountId, account);
+            }
+        });
+    }
+
+    public JsonObject metrics() {
+        final JsonObject limitMetrics = new JsonObject();
+        long rejected = 0;
+        for (int i = 0; i < limits.size(); i++) {
+            final VelocityLimit limit = limits.get(i);
+            rejected += rejectedByLimit[i].sum();
+            limitMetrics.put(limit.getName(), new JsonObject()
+                .put("window_ms", limit.getWindowMs())
+                .put("max_count", limit.getMaxCount())
+                .put("max_amount", limit.getMaxAmount() == null ? null : limit.getMaxAmount().toPlainString())
+                .put("rejected", rejectedByLimit[i].sum()));
+        }
+        return new JsonObject()
+            .put("enabled", options.isEnabled())
+            .put("accounts", accounts.size())
+            .put("allowed", allowed.sum())
+            .put("released", released.sum())
+            .put("rejected", rejected)
+            .put("limits", limitMetrics);
+    }
+
+    private static Long debitedAccountId(final Transaction transaction) {
+        switch (transaction.getTransactionType()) {
+            case WITHDRAW:
+                return transaction.getDestinationAccountId();
+            case TRANSFER:
+                return transaction.getSourceAccountId();
+            default:
+                return null;
+        }
+    }
+
+    private static long hundredths(final BigDecimal amount) {
+        final BigDecimal hundredths = amount.movePointRight(2).setScale(0, RoundingMode.CEILING);
+        return hundredths.compareTo(MAX_AMOUNT) > 0 ? MAX_AMOUNT.longValue() : hundredths.longValue();
+    }
+
+    private class Account {
+
+        private final SlidingWindow[] windows = new SlidingWindow[limits.size()];
+        // Callers adding to the windows, -1 once the account is evicted
+        private final AtomicInteger callers = new AtomicInteger();
+
+        private Account() {
+            for (int i = 0; i < windows.length; i++) {
+                windows[i] = new SlidingWindow(windowNanos[i], limits.get(i).getBuckets());
+            }
+        }
+
+        private boolean enter() {
+            int current = callers.get();
+            while (current >= 0) {
+                if (callers.compareAndSet(current, current + 1)) {
+                    return true;
+                }
+                current = callers.get();
+            }
+            return false;
+        }
+
+        private void leave() {
+            callers.decrementAndGet();
+        }
+
+        // A caller could have added right before the account was closed, so it's checked again once nobody can
+        private boolean close(final long now) {
+            if (!callers.compareAndSet(0, -1)) {
+                return false;
+            }
+            if (!isEmpty(now)) {
+                callers.set(0);
+                return false;
+            }
+            return true;
+        }
+
+        private boolean isEmpty(final long now) {
+            for (SlidingWindow window : windows) {
+                if (!window.isEmpty(now)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+    }
+
+    public static class Reservation {
+
+        private final SlidingWindow.Bucket[] buckets;
+        private final long amount;
+
+        private Reservation(final SlidingWindow.Bucket[] buckets, final long amount) {
+            this.buckets = buckets;
+            this.amount = amount;
+        }
+
+        private void release() {
+            for (SlidingWindow.Bucket bucket : buckets) {
+                bucket.remove(amount);
+            }
+        }
+
+    }
+
+}
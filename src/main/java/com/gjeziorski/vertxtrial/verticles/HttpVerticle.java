@@ -1,10 +1,25 @@
 package com.gjeziorski.vertxtrial.verticles;
 
+import com.gjeziorski.vertxtrial.common.VersionRegistry;
+import com.gjeziorski.vertxtrial.monitoring.EventLoopMonitor;
+import com.gjeziorski.vertxtrial.monitoring.EventLoopMonitorOptions;
+import com.gjeziorski.vertxtrial.ratelimit.RateLimitOptions;
+import com.gjeziorski.vertxtrial.ratelimit.RateLimiter;
 import com.gjeziorski.vertxtrial.service.AccountsService;
+import com.gjeziorski.vertxtrial.service.AdminService;
+import com.gjeziorski.vertxtrial.service.BulkOptions;
+import com.gjeziorski.vertxtrial.service.BulkService;
+import com.gjeziorski.vertxtrial.service.ContentNegotiation;
+import com.gjeziorski.vertxtrial.service.HoldsService;
+import com.gjeziorski.vertxtrial.service.RateLimitHandler;
 import com.gjeziorski.vertxtrial.service.TransactionsService;
 import io.vertx.core.AbstractVerticle;
+import io.vertx.core.DeploymentOptions;
+import io.vertx.core.Future;
 import io.vertx.core.Promise;
 import io.vertx.core.http.HttpMethod;
+import io.vertx.core.http.HttpServer;
+import io.vertx.core.json.JsonObject;
 import io.vertx.ext.web.Router;
 import io.vertx.ext.web.RoutingContext;
 import io.vertx.ext.web.api.validation.ValidationException;
@@ -16,25 +31,96 @@ public class HttpVerticle extends AbstractVerticle {
 
     private AccountsService accountsService;
     private TransactionsService transactionsService;
+    private AdminService adminService;
+    private BulkService bulkService;
+    private HoldsService holdsService;
+    private RateLimitHandler rateLimitHandler;
+    private EventLoopMonitor eventLoopMonitor;
+
+    private static final WarmUpOptions DEFAULT_WARM_UP_OPTIONS = WarmUpOptions.builder().enabled(false).requests(5000)
+        .concurrency(8).accounts(8).windowSize(250).steadyStateTolerance(0.1).build();
+    private static final RateLimitOptions DEFAULT_RATE_LIMIT_OPTIONS = RateLimitOptions.builder().enabled(false)
+        .clientRate(1000).clientBurst(2000).accountRate(100).accountBurst(200).idleEvictionMs(60000).build();
+    private static final BulkOptions DEFAULT_BULK_OPTIONS = BulkOptions.builder().exportPageSize(1000)
+        .importChunkSize(500).build();
+    private static final EventLoopMonitorOptions DEFAULT_EVENT_LOOP_MONITOR_OPTIONS = EventLoopMonitorOptions.builder()
+        .enabled(false).probeIntervalMs(100).thresholdMs(20).checkIntervalMs(10).stackDepth(16).maxStacks(10)
+        .build();
 
     @Override
     public void start(final Promise<Void> startPromise) {
-        accountsService = new AccountsService(vertx);
-        transactionsService = new TransactionsService(vertx);
+        // Started first, so the repository's consumers are tracked from the beginning
+        eventLoopMonitor = new EventLoopMonitor(vertx, EventLoopMonitorOptions.fromJson(
+            config().getJsonObject("event_loop_monitor", new JsonObject()), DEFAULT_EVENT_LOOP_MONITOR_OPTIONS));
+        if (eventLoopMonitor.options().isEnabled()) {
+            eventLoopMonitor.start();
+        }
+        final Promise<String> repositoryDeployment = Promise.promise();
+        vertx.deployVerticle(new RepositoryVerticle(), new DeploymentOptions().setConfig(config()),
+            repositoryDeployment);
+
+        // Services and routes don't depend on the database, so they are built while the repository is starting
+        final VersionRegistry versionRegistry = new VersionRegistry(vertx.sharedData());
+        accountsService = new AccountsService(vertx, versionRegistry);
+        transactionsService = new TransactionsService(vertx, versionRegistry);
+        final RateLimiter rateLimiter = RateLimiter.shared(vertx.sharedData(), RateLimitOptions.fromJson(
+            config().getJsonObject("rate_limit", new JsonObject()), DEFAULT_RATE_LIMIT_OPTIONS));
+        adminService = new AdminService(vertx, rateLimiter, eventLoopMonitor);
+        holdsService = new HoldsService(vertx, versionRegistry);
+        bulkService = new BulkService(vertx, BulkOptions.fromJson(config().getJsonObject("bulk", new JsonObject()),
+            DEFAULT_BULK_OPTIONS));
+        if (rateLimiter.options().isEnabled()) {
+            rateLimitHandler = new RateLimitHandler(rateLimiter);
+            vertx.setPeriodic(rateLimiter.options().getIdleEvictionMs(), timerId -> rateLimiter.evictIdle());
+        }
+        final Router router = createRouter();
 
-        vertx.deployVerticle(
-            new RepositoryVerticle(), event -> {
-                createRouter(startPromise);
-            });
+        repositoryDeployment.future()
+            .compose(deploymentId -> warmUp(router, rateLimiter))
+            .compose(warmedUp -> listen(router))
+            .setHandler(startPromise);
     }
 
-    private void createRouter(final Promise<Void> startPromise) {
+    @Override
+    public void stop() {
+        eventLoopMonitor.close();
+    }
+
+    private Router createRouter() {
         final Router router = Router.router(vertx);
 
+        // Import reads the upload as a stream, so it's routed before the body handler buffers it
+        router.route("/admin/import").method(HttpMethod.POST).handler(bulkService::handleImport);
         router.route().handler(BodyHandler.create());
+        // Handlers run in the loop task in which the body was buffered, so tracking starts there
+        if (eventLoopMonitor.options().isEnabled()) {
+            router.route().handler(eventLoopMonitor::trackRoute);
+        }
+        router.route().handler(new ContentNegotiation());
+        if (rateLimitHandler != null) {
+            router.route("/api/*").handler(rateLimitHandler::limitClient);
+            router.route("/api/transactions").method(HttpMethod.POST).handler(rateLimitHandler::limitAccounts);
+        }
         router.route("/api/accounts").method(HttpMethod.POST).handler(accountsService.getAccountCreationRequestValidationHandler())
             .handler(accountsService::handleNewAccount).failureHandler(this::handleValidationFailure);
-        router.route("/api/accounts").method(HttpMethod.GET).handler(accountsService::handleGetAccounts);
+        router.route("/api/accounts").method(HttpMethod.GET)
+            .handler(accountsService.getAccountListRequestValidationHandler())
+            .handler(accountsService::handleGetAccounts).failureHandler(this::handleValidationFailure);
+        router.route("/api/accounts/search").method(HttpMethod.GET)
+            .handler(accountsService.getAccountSearchRequestValidationHandler())
+            .handler(accountsService::handleSearchAccounts).failureHandler(this::handleValidationFailure);
+        router.route("/api/accounts/top").method(HttpMethod.GET)
+            .handler(accountsService.getTopAccountsRequestValidationHandler())
+            .handler(accountsService::handleGetTopAccounts).failureHandler(this::handleValidationFailure);
+        router.route("/api/accounts/by-balance").method(HttpMethod.GET)
+            .handler(accountsService.getAccountsByBalanceRequestValidationHandler())
+            .handler(accountsService::handleGetAccountsByBalance).failureHandler(this::handleValidationFailure);
+        router.route("/api/accounts/:id/summary").method(HttpMethod.GET)
+            .handler(accountsService.getAccountSummaryRequestValidationHandler())
+            .handler(accountsService::handleGetAccountSummary).failureHandler(this::handleValidationFailure);
+        router.route("/api/accounts/:id/balance").method(HttpMethod.GET)
+            .handler(accountsService.getAccountBalanceRequestValidationHandler())
+            .handler(accountsService::handleGetAccountBalance).failureHandler(this::handleValidationFailure);
 
         router.route("/api/transactions").method(HttpMethod.GET)
             .handler(transactionsService.getListTransactionsRequestValidationHandler())
@@ -44,15 +130,61 @@ public class HttpVerticle extends AbstractVerticle {
             .handler(transactionsService::handleCreateTransaction)
             .failureHandler(this::handleValidationFailure);
 
-        vertx.createHttpServer().requestHandler(router).listen(8080, result -> {
-            if (result.succeeded()) {
-                startPromise.complete();
-            } else {
-                startPromise.fail(result.cause());
-            }
+        router.route("/api/holds").method(HttpMethod.POST)
+            .handler(holdsService.getPlaceHoldRequestValidationHandler())
+            .handler(holdsService::handlePlaceHold).failureHandler(this::handleValidationFailure);
+        router.route("/api/holds/:id/capture").method(HttpMethod.POST)
+            .handler(holdsService.getCaptureHoldRequestValidationHandler())
+            .handler(holdsService::handleCaptureHold).failureHandler(this::handleValidationFailure);
+        router.route("/api/holds/:id").method(HttpMethod.DELETE)
+            .handler(holdsService.getReleaseHoldRequestValidationHandler())
+            .handler(holdsService::handleReleaseHold).failureHandler(this::handleValidationFailure);
+
+        router.route("/admin/accounts/:id/hot").method(HttpMethod.PUT)
+            .handler(adminService.getHotAccountRequestValidationHandler())
+            .handler(adminService::handleMarkAccountHot).failureHandler(this::handleValidationFailure);
+        router.route("/admin/reconciliation").method(HttpMethod.POST)
+            .handler(adminService.getStartReconciliationRequestValidationHandler())
+            .handler(adminService::handleStartReconciliation).failureHandler(this::handleValidationFailure);
+        router.route("/admin/reconciliation").method(HttpMethod.GET)
+            .handler(adminService::handleGetReconciliationStatus);
+        router.route("/admin/export").method(HttpMethod.GET)
+            .handler(bulkService.getExportRequestValidationHandler())
+            .handler(bulkService::handleExport).failureHandler(this::handleValidationFailure);
+        router.route("/admin/metrics/pools").method(HttpMethod.GET).handler(adminService::handleGetPoolMetrics);
+        router.route("/admin/metrics/rate-limits").method(HttpMethod.GET)
+            .handler(adminService::handleGetRateLimitMetrics);
+        router.route("/admin/metrics/velocity").method(HttpMethod.GET)
+            .handler(adminService::handleGetVelocityMetrics);
+        router.route("/admin/metrics/netting").method(HttpMethod.GET)
+            .handler(adminService::handleGetNettingMetrics);
+        router.route("/admin/metrics/replica").method(HttpMethod.GET)
+            .handler(adminService::handleGetReplicaMetrics);
+        router.route("/admin/metrics/holds").method(HttpMethod.GET).handler(holdsService::handleGetHoldMetrics);
+        router.route("/admin/metrics/event-loops").method(HttpMethod.GET)
+            .handler(adminService::handleGetEventLoopMetrics);
+        return router;
+    }
+
+    // Warm-up is best effort, service starts even if it fails
+    private Future<Void> warmUp(final Router router, final RateLimiter rateLimiter) {
+        final WarmUpOptions warmUpOptions = WarmUpOptions.fromJson(config().getJsonObject("warmup", new JsonObject()),
+            DEFAULT_WARM_UP_OPTIONS);
+        if (!warmUpOptions.isEnabled()) {
+            return Future.succeededFuture();
+        }
+        return new WarmUp(vertx, warmUpOptions, rateLimiter).run(router).recover(throwable -> {
+            log.error("Warm-up failed", throwable);
+            return Future.succeededFuture();
         });
     }
 
+    private Future<Void> listen(final Router router) {
+        final Promise<HttpServer> listening = Promise.promise();
+        vertx.createHttpServer().requestHandler(router).listen(8080, listening);
+        return listening.future().mapEmpty();
+    }
+
     private void handleValidationFailure(RoutingContext routingContext) {
         Throwable failure = routingContext.failure();
         if (failure instanceof ValidationException) {
@@ -1,15 +1,67 @@
 package com.gjeziorski.vertxtrial.verticles;
 
+import static com.gjeziorski.vertxtrial.common.ErrorCodes.RECONCILIATION_RUNNING;
+import static com.gjeziorski.vertxtrial.common.EventBusAddresses.DATABASE_ACCOUNT_BALANCE;
 import static com.gjeziorski.vertxtrial.common.EventBusAddresses.DATABASE_ACCOUNT_CREATE;
+import static com.gjeziorski.vertxtrial.common.EventBusAddresses.DATABASE_ACCOUNT_DELETE;
+import static com.gjeziorski.vertxtrial.common.EventBusAddresses.DATABASE_ACCOUNT_HOT;
 import static com.gjeziorski.vertxtrial.common.EventBusAddresses.DATABASE_ACCOUNT_LIST;
+import static com.gjeziorski.vertxtrial.common.EventBusAddresses.DATABASE_ACCOUNT_SUMMARY;
+import static com.gjeziorski.vertxtrial.common.EventBusAddresses.DATABASE_BULK_EXPORT;
+import static com.gjeziorski.vertxtrial.common.EventBusAddresses.DATABASE_BULK_IMPORT;
+import static com.gjeziorski.vertxtrial.common.EventBusAddresses.DATABASE_HOLD_CAPTURE;
+import static com.gjeziorski.vertxtrial.common.EventBusAddresses.DATABASE_HOLD_PLACE;
+import static com.gjeziorski.vertxtrial.common.EventBusAddresses.DATABASE_HOLD_RELEASE;
+import static com.gjeziorski.vertxtrial.common.EventBusAddresses.DATABASE_METRICS_HOLDS;
+import static com.gjeziorski.vertxtrial.common.EventBusAddresses.DATABASE_METRICS_NETTING;
+import static com.gjeziorski.vertxtrial.common.EventBusAddresses.DATABASE_METRICS_POOLS;
+import static com.gjeziorski.vertxtrial.common.EventBusAddresses.DATABASE_METRICS_REPLICA;
+import static com.gjeziorski.vertxtrial.common.EventBusAddresses.DATABASE_METRICS_VELOCITY;
+import static com.gjeziorski.vertxtrial.common.EventBusAddresses.DATABASE_RECONCILIATION_START;
+import static com.gjeziorski.vertxtrial.common.EventBusAddresses.DATABASE_RECONCILIATION_STATUS;
 import static com.gjeziorski.vertxtrial.common.EventBusAddresses.DATABASE_TRANSACTION_DEPOSIT;
 import static com.gjeziorski.vertxtrial.common.EventBusAddresses.DATABASE_TRANSACTION_LIST;
+import static com.gjeziorski.vertxtrial.common.EventBusAddresses.DATABASE_TRANSACTION_SCHEDULE;
 import static com.gjeziorski.vertxtrial.common.EventBusAddresses.DATABASE_TRANSACTION_TRANSFER;
 import static com.gjeziorski.vertxtrial.common.EventBusAddresses.DATABASE_TRANSACTION_WITHDRAW;
+import static com.gjeziorski.vertxtrial.common.EventBusAddresses.INDEX_ACCOUNT_BALANCE_RANGE;
+import static com.gjeziorski.vertxtrial.common.EventBusAddresses.INDEX_ACCOUNT_SEARCH;
+import static com.gjeziorski.vertxtrial.common.EventBusAddresses.INDEX_ACCOUNT_TOP;
 
+import com.gjeziorski.vertxtrial.common.ErrorCodesTranslator;
+import com.gjeziorski.vertxtrial.common.VersionRegistry;
+import com.gjeziorski.vertxtrial.holds.HoldOptions;
+import com.gjeziorski.vertxtrial.holds.HoldTable;
+import com.gjeziorski.vertxtrial.index.BalanceIndex;
+import com.gjeziorski.vertxtrial.index.BalanceStoreOptions;
+import com.gjeziorski.vertxtrial.index.MappedBalanceStore;
+import com.gjeziorski.vertxtrial.index.NamePrefixIndex;
+import com.gjeziorski.vertxtrial.reconciliation.ReconciliationEngine;
+import com.gjeziorski.vertxtrial.reconciliation.ReconciliationOptions;
 import com.gjeziorski.vertxtrial.repository.AccountsRepository;
+import com.gjeziorski.vertxtrial.repository.BulkRepository;
+import com.gjeziorski.vertxtrial.repository.ConnectionPoolOptions;
+import com.gjeziorski.vertxtrial.repository.ConnectionScheduler;
+import com.gjeziorski.vertxtrial.repository.DatabaseInitializer;
+import com.gjeziorski.vertxtrial.repository.HoldsRepository;
+import com.gjeziorski.vertxtrial.repository.HotAccounts;
+import com.gjeziorski.vertxtrial.repository.IdAllocator;
+import com.gjeziorski.vertxtrial.repository.NettingOptions;
+import com.gjeziorski.vertxtrial.repository.ReplicaOptions;
+import com.gjeziorski.vertxtrial.repository.ScheduledTransactionsRepository;
+import com.gjeziorski.vertxtrial.repository.SchedulingOptions;
+import com.gjeziorski.vertxtrial.repository.StorageMode;
+import com.gjeziorski.vertxtrial.repository.StorageOptions;
+import com.gjeziorski.vertxtrial.repository.ThreadingMode;
+import com.gjeziorski.vertxtrial.repository.TransactionExecutionMode;
+import com.gjeziorski.vertxtrial.repository.TransactionExecutionOptions;
 import com.gjeziorski.vertxtrial.repository.TransactionsRepository;
-import io.reactivex.Completable;
+import com.gjeziorski.vertxtrial.repository.VirtualThreads;
+import com.gjeziorski.vertxtrial.serialization.Payload;
+import com.gjeziorski.vertxtrial.serialization.PayloadCodec;
+import com.gjeziorski.vertxtrial.velocity.VelocityLimit;
+import com.gjeziorski.vertxtrial.velocity.VelocityOptions;
+import com.gjeziorski.vertxtrial.velocity.VelocityRules;
 import io.reactivex.Single;
 import io.vertx.core.Promise;
 import io.vertx.core.json.JsonObject;
@@ -18,39 +70,168 @@ import io.vertx.reactivex.core.AbstractVerticle;
 import io.vertx.reactivex.core.eventbus.EventBus;
 import io.vertx.reactivex.core.eventbus.Message;
 import io.vertx.reactivex.ext.jdbc.JDBCClient;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Collections;
 import lombok.extern.slf4j.Slf4j;
 
 @Slf4j
 public class RepositoryVerticle extends AbstractVerticle {
 
-    private static final String DROP_TRANSACTION_TABLE_SQL = "DROP TABLE TRANSACTION IF EXISTS";
-    private static final String DROP_ACCOUNT_TABLE_SQL = "DROP TABLE ACCOUNT IF EXISTS";
-    private static final String CREATE_ACCOUNT_TABLE_SQL = "CREATE TABLE IF NOT EXISTS ACCOUNT(ID INT IDENTITY PRIMARY KEY NOT NULL, NAME VARCHAR(20) NOT NULL, SURNAME VARCHAR(20) NOT NULL, BALANCE DECIMAL(20,2) DEFAULT 0 NOT NULL)";
-    private static final String CREATE_TRANSACTION_TABLE_SQL = "CREATE TABLE IF NOT EXISTS TRANSACTION(ID INT IDENTITY PRIMARY KEY NOT NULL, SOURCE_ACCOUNT_ID INT, DESTINATION_ACCOUNT_ID INT NOT NULL, TRANSACTION_TYPE VARCHAR(20) NOT NULL, AMOUNT DECIMAL(20,2) NOT NULL, EXECUTION_TIME TIMESTAMP DEFAULT NOW() NOT NULL, FOREIGN KEY (SOURCE_ACCOUNT_ID) REFERENCES ACCOUNT(ID), FOREIGN KEY (DESTINATION_ACCOUNT_ID) REFERENCES ACCOUNT(ID))";
-    private static final String CREATE_SOURCE_ACCOUNT_ID_INDEX_SQL = "CREATE INDEX IF NOT EXISTS SOURCE_ACCOUNT_ID_INDEX ON TRANSACTION(SOURCE_ACCOUNT_ID)";
-    private static final String CREATE_DESTINATION_ACCOUNT_ID_INDEX_SQL = "CREATE INDEX IF NOT EXISTS DESTINATION_ACCOUNT_ID_INDEX ON TRANSACTION(DESTINATION_ACCOUNT_ID)";
+    private static final String DEFAULT_URL = "jdbc:hsqldb:mem:test?shutdown=true";
+    private static final String FILE_URL_PREFIX = "jdbc:hsqldb:file:";
+    private static final String FILE_URL_PROPERTIES = ";shutdown=true";
+    private static final String DRIVER_CLASS = "org.hsqldb.jdbcDriver";
+    private static final int DEFAULT_MAX_CONNECTIONS = 30;
+    private static final int DEFAULT_ID_BLOCK_SIZE = 100;
+    private static final ConnectionPoolOptions DEFAULT_WRITE_POOL_OPTIONS = ConnectionPoolOptions.builder()
+        .maxPoolSize(20).queueLimit(1000).acquireTimeoutMs(10000).readOnly(false).build();
+    private static final ConnectionPoolOptions DEFAULT_READ_POOL_OPTIONS = ConnectionPoolOptions.builder()
+        .maxPoolSize(10).queueLimit(1000).acquireTimeoutMs(10000).readOnly(false).build();
+    private static final TransactionExecutionOptions DEFAULT_TRANSACTION_EXECUTION_OPTIONS = TransactionExecutionOptions
+        .builder().mode(TransactionExecutionMode.PESSIMISTIC).maxRetries(5).retryBackoffMs(5).maxRetryBackoffMs(200)
+        .build();
+    private static final StorageOptions DEFAULT_STORAGE_OPTIONS = StorageOptions.builder().mode(StorageMode.MEMORY)
+        .path("data/vertxtrial").writeDelayMs(500).logSizeMb(50).checkpointIntervalMs(0).cacheRows(50000)
+        .cacheSizeKb(10000).warmUpProbes(64).build();
+    private static final SchedulingOptions DEFAULT_SCHEDULING_OPTIONS = SchedulingOptions.builder().tickMs(100)
+        .releaseRate(500).maxInFlight(16).build();
+    private static final ReconciliationOptions DEFAULT_RECONCILIATION_OPTIONS = ReconciliationOptions.builder()
+        .intervalMs(0).incremental(false).parallelism(2).partitionSize(256).accountsPerSecond(50000).pageSize(10000)
+        .build();
+    private static final BalanceStoreOptions DEFAULT_BALANCE_STORE_OPTIONS = BalanceStoreOptions.builder()
+        .enabled(false).path("data/balances").segmentRecords(65536).build();
+    private static final VelocityOptions DEFAULT_VELOCITY_OPTIONS = VelocityOptions.builder().enabled(false)
+        .evictionIntervalMs(60000).limits(Arrays.asList(
+            VelocityLimit.builder().name("minute").windowMs(60_000).buckets(60).maxCount(20)
+                .maxAmount(new BigDecimal("10000")).build(),
+            VelocityLimit.builder().name("hour").windowMs(3_600_000).buckets(60).maxCount(200)
+                .maxAmount(new BigDecimal("50000")).build(),
+            VelocityLimit.builder().name("day").windowMs(86_400_000).buckets(24).maxCount(1000)
+                .maxAmount(new BigDecimal("200000")).build()))
+        .build();
+    private static final NettingOptions DEFAULT_NETTING_OPTIONS = NettingOptions.builder().enabled(false)
+        .settleIntervalMs(10).maxPending(100000).pairs(Collections.emptyList()).build();
+    private static final ReplicaOptions DEFAULT_REPLICA_OPTIONS = ReplicaOptions.builder().enabled(false)
+        .refreshIntervalMs(100).maxWaitMs(50).idleEvictionMs(60000).build();
+    private static final HoldOptions DEFAULT_HOLD_OPTIONS = HoldOptions.builder().defaultExpiryMs(604_800_000)
+        .maxExpiryMs(2_592_000_000L).sweepIntervalMs(1000).sweepBatchSize(500).build();
 
-    private JDBCClient jdbcClient;
+    private ConnectionScheduler connectionScheduler;
     private AccountsRepository accountsRepository;
     private TransactionsRepository transactionsRepository;
+    private ScheduledTransactionsRepository scheduledTransactionsRepository;
+    private HoldsRepository holdsRepository;
+    private BulkRepository bulkRepository;
+    private ReconciliationEngine reconciliationEngine;
+    private ReconciliationOptions reconciliationOptions;
+    private MappedBalanceStore balanceStore;
+    private VelocityRules velocityRules;
 
     @Override
     public void start(final Promise<Void> startPromise) {
-        JsonObject config = new JsonObject()
-            .put("url", "jdbc:hsqldb:mem:test?shutdown=true")
-            .put("driver_class", "org.hsqldb.jdbcDriver")
-            .put("max_pool_size", 30);
+        final JsonObject databaseConfig = config().getJsonObject("database", new JsonObject());
+        final JsonObject storageConfig = databaseConfig.getJsonObject("storage", new JsonObject());
+        final StorageOptions storageOptions = StorageOptions.fromJson(storageConfig, DEFAULT_STORAGE_OPTIONS);
+        final String url = databaseConfig.getString("url", defaultUrl(storageOptions));
+        // The url decides what's dropped on start, an explicit mode only has to agree with it
+        if (storageConfig.containsKey("mode") && storageOptions.getMode() != StorageMode.fromUrl(url)) {
+            final IllegalArgumentException e = new IllegalArgumentException("Storage mode "
+                + storageOptions.getMode() + " doesn't match database url " + url);
+            log.error("Repository can't start", e);
+            startPromise.fail(e);
+            return;
+        }
+        storageOptions.setMode(StorageMode.fromUrl(url));
+        final ConnectionPoolOptions writePoolOptions = ConnectionPoolOptions.fromJson("write_pool",
+            databaseConfig.getJsonObject("write_pool", new JsonObject()), DEFAULT_WRITE_POOL_OPTIONS);
+        final ConnectionPoolOptions readPoolOptions = ConnectionPoolOptions.fromJson("read_pool",
+            databaseConfig.getJsonObject("read_pool", new JsonObject()), DEFAULT_READ_POOL_OPTIONS);
 
-        jdbcClient = JDBCClient.createShared(vertx, config);
-        accountsRepository = new AccountsRepository(jdbcClient);
-        transactionsRepository = new TransactionsRepository(jdbcClient);
-        initDatabase(startPromise);
+        final int maxConnections = databaseConfig.getInteger("max_connections", DEFAULT_MAX_CONNECTIONS);
+        final VirtualThreads virtualThreads;
+        try {
+            virtualThreads = ThreadingMode.valueOf(databaseConfig.getString("threading",
+                ThreadingMode.REACTIVE.name())) == ThreadingMode.VIRTUAL_THREADS
+                ? VirtualThreads.create(maxConnections) : null;
+        } catch (IllegalStateException e) {
+            log.error("Repository can't start", e);
+            startPromise.fail(e);
+            return;
+        }
+        final BalanceStoreOptions balanceStoreOptions = BalanceStoreOptions.fromJson(
+            databaseConfig.getJsonObject("balance_store", new JsonObject()), DEFAULT_BALANCE_STORE_OPTIONS);
+        try {
+            balanceStore = balanceStoreOptions.isEnabled() ? MappedBalanceStore.open(
+                Paths.get(balanceStoreOptions.getPath()), balanceStoreOptions.getSegmentRecords()) : null;
+        } catch (IOException e) {
+            log.error("Failed to open balance store", e);
+            startPromise.fail(e);
+            return;
+        }
+
+        connectionScheduler = new ConnectionScheduler(vertx,
+            createJdbcClient(url, writePoolOptions), writePoolOptions,
+            createJdbcClient(url, readPoolOptions), readPoolOptions, maxConnections);
+        final BalanceIndex balanceIndex = new BalanceIndex();
+        final NamePrefixIndex namePrefixIndex = new NamePrefixIndex();
+        final VersionRegistry versionRegistry = new VersionRegistry(vertx.getDelegate().sharedData());
+        final HotAccounts hotAccounts = new HotAccounts();
+        final HoldTable holdTable = new HoldTable();
+        final VelocityOptions velocityOptions = VelocityOptions.fromJson(config().getJsonObject("velocity",
+            new JsonObject()), DEFAULT_VELOCITY_OPTIONS);
+        if (velocityOptions.isEnabled()) {
+            velocityRules = new VelocityRules(velocityOptions);
+            vertx.setPeriodic(velocityOptions.getEvictionIntervalMs(), timerId -> velocityRules.evictIdle());
+        }
+        final int idBlockSize = databaseConfig.getInteger("id_block_size", DEFAULT_ID_BLOCK_SIZE);
+        final IdAllocator accountIdAllocator = new IdAllocator(connectionScheduler, "ACCOUNT", idBlockSize);
+        final IdAllocator transactionIdAllocator = new IdAllocator(connectionScheduler, "TRANSACTION", idBlockSize);
+        final ReplicaOptions replicaOptions = ReplicaOptions.fromJson(databaseConfig.getJsonObject("replica",
+            new JsonObject()), DEFAULT_REPLICA_OPTIONS);
+        accountsRepository = new AccountsRepository(vertx, connectionScheduler, accountIdAllocator, balanceIndex,
+            balanceStore, namePrefixIndex, versionRegistry, hotAccounts, velocityRules, replicaOptions, virtualThreads);
+        final NettingOptions nettingOptions = NettingOptions.fromJson(databaseConfig.getJsonObject("netting",
+            new JsonObject()), DEFAULT_NETTING_OPTIONS);
+        transactionsRepository = new TransactionsRepository(vertx, connectionScheduler, TransactionExecutionOptions
+            .fromJson(databaseConfig.getJsonObject("transaction_execution", new JsonObject()),
+                DEFAULT_TRANSACTION_EXECUTION_OPTIONS), nettingOptions, balanceIndex, balanceStore, versionRegistry,
+            holdTable, hotAccounts, velocityRules, transactionIdAllocator, replicaOptions, virtualThreads);
+        scheduledTransactionsRepository = new ScheduledTransactionsRepository(vertx, connectionScheduler,
+            transactionsRepository, transactionIdAllocator, SchedulingOptions.fromJson(config()
+            .getJsonObject("scheduling", new JsonObject()), DEFAULT_SCHEDULING_OPTIONS));
+        holdsRepository = new HoldsRepository(vertx, connectionScheduler, transactionsRepository, balanceIndex,
+            holdTable, HoldOptions.fromJson(config().getJsonObject("holds", new JsonObject()), DEFAULT_HOLD_OPTIONS));
+        bulkRepository = new BulkRepository(connectionScheduler, accountIdAllocator, transactionIdAllocator,
+            balanceIndex, balanceStore, namePrefixIndex, versionRegistry);
+        reconciliationOptions = ReconciliationOptions.fromJson(config().getJsonObject("reconciliation",
+            new JsonObject()), DEFAULT_RECONCILIATION_OPTIONS);
+        reconciliationEngine = new ReconciliationEngine(url, reconciliationOptions);
+        initDatabase(new DatabaseInitializer(connectionScheduler, storageOptions),
+            databaseConfig.getString("transaction_control"), storageOptions, startPromise);
 
         EventBus eventBus = vertx.eventBus();
+        PayloadCodec.register(eventBus.getDelegate());
         eventBus.consumer(DATABASE_ACCOUNT_CREATE).toFlowable()
             .subscribe(message -> createAccount(message).subscribe());
         eventBus.consumer(DATABASE_ACCOUNT_LIST).toFlowable()
             .subscribe(message -> listAccounts(message).subscribe());
+        eventBus.consumer(DATABASE_ACCOUNT_SUMMARY).toFlowable()
+            .subscribe(message -> accountsRepository.getAccountSummary(message).subscribe());
+        eventBus.consumer(DATABASE_ACCOUNT_BALANCE).toFlowable()
+            .subscribe(message -> accountsRepository.getAccountBalance(message).subscribe());
+        eventBus.consumer(INDEX_ACCOUNT_TOP).toFlowable()
+            .subscribe(accountsRepository::getTopAccounts);
+        eventBus.consumer(INDEX_ACCOUNT_BALANCE_RANGE).toFlowable()
+            .subscribe(accountsRepository::getAccountsInBalanceRange);
+        eventBus.consumer(INDEX_ACCOUNT_SEARCH).toFlowable()
+            .subscribe(accountsRepository::searchAccounts);
+        eventBus.consumer(DATABASE_ACCOUNT_DELETE).toFlowable()
+            .subscribe(message -> accountsRepository.deleteAccounts(message).subscribe());
+        eventBus.consumer(DATABASE_ACCOUNT_HOT).toFlowable()
+            .subscribe(message -> accountsRepository.markHot(message).subscribe());
         eventBus.consumer(DATABASE_TRANSACTION_WITHDRAW).toFlowable()
             .subscribe(message -> handleWithdraw(message).subscribe());
         eventBus.consumer(DATABASE_TRANSACTION_DEPOSIT).toFlowable()
@@ -59,32 +240,100 @@ public class RepositoryVerticle extends AbstractVerticle {
             .subscribe(message -> handleTransfer(message).subscribe());
         eventBus.consumer(DATABASE_TRANSACTION_LIST).toFlowable()
             .subscribe(message -> listTransactions(message).subscribe());
+        eventBus.consumer(DATABASE_TRANSACTION_SCHEDULE).toFlowable()
+            .subscribe(message -> scheduledTransactionsRepository.schedule(message).subscribe());
+        eventBus.consumer(DATABASE_HOLD_PLACE).toFlowable()
+            .subscribe(message -> holdsRepository.place(message).subscribe());
+        eventBus.consumer(DATABASE_HOLD_CAPTURE).toFlowable()
+            .subscribe(message -> holdsRepository.capture(message).subscribe());
+        eventBus.consumer(DATABASE_HOLD_RELEASE).toFlowable()
+            .subscribe(message -> holdsRepository.release(message).subscribe());
+        eventBus.consumer(DATABASE_BULK_EXPORT).toFlowable()
+            .subscribe(message -> bulkRepository.exportPage(message).subscribe());
+        eventBus.consumer(DATABASE_BULK_IMPORT).toFlowable()
+            .subscribe(message -> bulkRepository.importChunk(message).subscribe());
+        eventBus.consumer(DATABASE_METRICS_POOLS).toFlowable()
+            .subscribe(message -> message.reply(connectionScheduler.metrics()));
+        eventBus.consumer(DATABASE_METRICS_NETTING).toFlowable()
+            .subscribe(message -> message.reply(transactionsRepository.nettingMetrics()));
+        eventBus.consumer(DATABASE_METRICS_REPLICA).toFlowable()
+            .subscribe(message -> message.reply(new JsonObject().put("enabled", replicaOptions.isEnabled())
+                .put("accounts", accountsRepository.replicaMetrics())
+                .put("transactions", transactionsRepository.replicaMetrics())));
+        eventBus.consumer(DATABASE_METRICS_HOLDS).toFlowable()
+            .subscribe(message -> message.reply(holdsRepository.metrics()));
+        eventBus.consumer(DATABASE_METRICS_VELOCITY).toFlowable()
+            .subscribe(message -> message.reply(velocityRules != null ? velocityRules.metrics()
+                : new JsonObject().put("enabled", false)));
+        eventBus.consumer(DATABASE_RECONCILIATION_START).toFlowable()
+            .subscribe(this::startReconciliation);
+        eventBus.consumer(DATABASE_RECONCILIATION_STATUS).toFlowable()
+            .subscribe(message -> message.reply(reconciliationEngine.status().toString()));
+    }
+
+    @Override
+    public void stop() throws Exception {
+        if (balanceStore != null) {
+            balanceStore.close();
+        }
+    }
+
+    private JDBCClient createJdbcClient(final String url, final ConnectionPoolOptions poolOptions) {
+        final JsonObject config = new JsonObject()
+            .put("url", url)
+            .put("driver_class", DRIVER_CLASS)
+            .put("max_pool_size", poolOptions.getMaxPoolSize());
+        return JDBCClient.createShared(vertx, config, poolOptions.getName());
+    }
+
+    private static String defaultUrl(final StorageOptions storageOptions) {
+        if (storageOptions.getMode() == StorageMode.FILE) {
+            return FILE_URL_PREFIX + storageOptions.getPath() + FILE_URL_PROPERTIES;
+        }
+        return DEFAULT_URL;
+    }
+
+    private void initDatabase(final DatabaseInitializer databaseInitializer, final String transactionControl,
+        final StorageOptions storageOptions, final Promise<Void> startPromise) {
+        databaseInitializer.initialize(transactionControl, reconciliationOptions.isIncremental())
+            .andThen(accountsRepository.loadIndexes())
+            .andThen(transactionsRepository.startNetting())
+            .andThen(scheduledTransactionsRepository.recover())
+            .andThen(holdsRepository.recover())
+            .subscribe(() -> {
+                log.info("Database init succeeded");
+                scheduledTransactionsRepository.start();
+                holdsRepository.start();
+                if (reconciliationOptions.getIntervalMs() > 0) {
+                    vertx.setPeriodic(reconciliationOptions.getIntervalMs(),
+                        timerId -> reconciliationEngine.start(false));
+                }
+                if (storageOptions.getMode() == StorageMode.FILE && storageOptions.getCheckpointIntervalMs() > 0) {
+                    vertx.setPeriodic(storageOptions.getCheckpointIntervalMs(),
+                        timerId -> databaseInitializer.checkpoint().subscribe(() -> log.debug("Checkpoint completed"),
+                            throwable -> log.error("Checkpoint failed", throwable)));
+                }
+                startPromise.complete();
+            }, throwable -> {
+                log.error("Database init failed", throwable);
+                startPromise.fail(throwable);
+            });
     }
 
-    private void initDatabase(final Promise<Void> startPromise) {
-        jdbcClient.rxGetConnection().flatMap(connection -> {
-            final Completable completable = connection
-                .rxExecute(DROP_TRANSACTION_TABLE_SQL)
-                .andThen(connection.rxExecute(DROP_ACCOUNT_TABLE_SQL))
-                .andThen(connection.rxExecute(CREATE_ACCOUNT_TABLE_SQL))
-                .andThen(connection.rxExecute(CREATE_TRANSACTION_TABLE_SQL))
-                .andThen(connection.rxExecute(CREATE_SOURCE_ACCOUNT_ID_INDEX_SQL))
-                .andThen(connection.rxExecute(CREATE_DESTINATION_ACCOUNT_ID_INDEX_SQL));
-            return completable.doFinally(connection::close).toSingleDefault(1);
-        }).subscribe(result -> {
-            log.info("Database init succeeded");
-            startPromise.complete();
-        }, throwable -> {
-            log.error("Database init failed", throwable);
-            startPromise.fail(throwable);
-        });
+    private void startReconciliation(final Message<Object> message) {
+        final boolean full = new JsonObject(message.body().toString()).getBoolean("full", false);
+        if (reconciliationEngine.start(full)) {
+            message.reply(reconciliationEngine.status().toString());
+        } else {
+            message.fail(RECONCILIATION_RUNNING, ErrorCodesTranslator.translateErrorCode(RECONCILIATION_RUNNING));
+        }
     }
 
     Single<UpdateResult> createAccount(final Message<Object> message) {
         return accountsRepository.createAccount(message);
     }
 
-    Single<String> listAccounts(final Message<Object> message) {
+    Single<Payload> listAccounts(final Message<Object> message) {
         return accountsRepository.listAccounts(message);
     }
 
@@ -100,7 +349,7 @@ public class RepositoryVerticle extends AbstractVerticle {
         return transactionsRepository.handleTransfer(message);
     }
 
-    Single<String> listTransactions(final Message<Object> message) {
+    Single<Payload> listTransactions(final Message<Object> message) {
         return transactionsRepository.listTransactions(message);
     }
 
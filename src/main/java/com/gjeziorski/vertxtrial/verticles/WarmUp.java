@@ -0,0 +1,249 @@
+package com.gjeziorski.vertxtrial.verticles;
+
+import static com.gjeziorski.vertxtrial.common.EventBusAddresses.DATABASE_ACCOUNT_DELETE;
+
+import com.gjeziorski.vertxtrial.ratelimit.RateLimiter;
+import io.vertx.core.CompositeFuture;
+import io.vertx.core.Future;
+import io.vertx.core.Promise;
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.http.HttpClient;
+import io.vertx.core.http.HttpClientOptions;
+import io.vertx.core.http.HttpClientRequest;
+import io.vertx.core.http.HttpMethod;
+import io.vertx.core.http.HttpServer;
+import io.vertx.core.http.RequestOptions;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.net.SocketAddress;
+import io.vertx.ext.web.Router;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import lombok.extern.slf4j.Slf4j;
+
+// Sends synthetic traffic through the real router, served on an ephemeral local port, so that validation,
+// event bus, repository and serialization code is compiled and caches are filled before production traffic arrives.
+// Requests only touch scratch accounts which are deleted together with their transactions afterwards.
+@Slf4j
+class WarmUp {
+
+    private static final String ACCOUNTS_URI = "/api/accounts";
+    private static final String TRANSACTIONS_URI = "/api/transactions";
+    private static final String SCRATCH_ACCOUNT = new JsonObject().put("name", "warmup").put("surname", "warmup")
+        .toString();
+    private static final double INITIAL_DEPOSIT = 1_000_000;
+    // Scratch accounts are listed through the name index, listing all accounts would be expensive on a populated
+    // database. Still a small part of the workload.
+    private static final String SCRATCH_ACCOUNTS_URI = ACCOUNTS_URI + "/search?q=warmup&limit=";
+    private static final int MAX_SEARCH_LIMIT = 100;
+    private static final int ACCOUNTS_LISTING_INTERVAL = 100;
+
+    private final Vertx vertx;
+    private final WarmUpOptions options;
+    private final RateLimiter rateLimiter;
+    private final long[] window;
+    private SocketAddress serverAddress;
+    private int windowPosition;
+    private double previousWindowMedianMs = -1;
+    private double lastWindowMedianMs;
+    private long steadyStateNanos = -1;
+    private int sent;
+    private int completed;
+    private int failed;
+    private long startedAt;
+
+    WarmUp(final Vertx vertx, final WarmUpOptions options, final RateLimiter rateLimiter) {
+        this.vertx = vertx;
+        this.options = options;
+        this.rateLimiter = rateLimiter;
+        this.window = new long[options.getWindowSize()];
+    }
+
+    Future<Void> run(final Router router) {
+        startedAt = System.nanoTime();
+        final Promise<HttpServer> listening = Promise.promise();
+        vertx.createHttpServer().requestHandler(router).listen(0, "localhost", listening);
+        return listening.future().compose(server -> {
+            serverAddress = SocketAddress.inetSocketAddress(server.actualPort(), "localhost");
+            final HttpClient client = vertx.createHttpClient(new HttpClientOptions().setDefaultHost("localhost")
+                .setDefaultPort(server.actualPort()).setMaxPoolSize(options.getConcurrency()));
+            final Promise<Void> finished = Promise.promise();
+            createScratchAccounts(client).setHandler(accounts -> {
+                if (accounts.failed()) {
+                    close(server, client).setHandler(closed -> finished.fail(accounts.cause()));
+                    return;
+                }
+                final List<Long> accountIds = accounts.result();
+                runWorkload(client, accountIds)
+                    .setHandler(workload -> deleteScratchAccounts(accountIds)
+                        .setHandler(deleted -> close(server, client).setHandler(closed -> {
+                            if (workload.failed()) {
+                                finished.fail(workload.cause());
+                            } else if (deleted.failed()) {
+                                finished.fail(deleted.cause());
+                            } else {
+                                report();
+                                finished.complete();
+                            }
+                        })));
+            });
+            return finished.future();
+        });
+    }
+
+    private Future<List<Long>> createScratchAccounts(final HttpClient client) {
+        final List<Future> created = new ArrayList<>();
+        for (int i = 0; i < options.getAccounts(); i++) {
+            created.add(send(client, HttpMethod.POST, ACCOUNTS_URI, SCRATCH_ACCOUNT)
+                .map(body -> Long.valueOf(body.toString())));
+        }
+        return CompositeFuture.join(created).<List<Long>>map(CompositeFuture::list).recover(failure -> {
+            // Accounts which were created before the failure still have to be removed
+            final List<Long> accountIds = new ArrayList<>();
+            created.stream().filter(Future::succeeded).forEach(future -> accountIds.add((Long) future.result()));
+            return deleteScratchAccounts(accountIds).compose(deleted -> Future.failedFuture(failure));
+        });
+    }
+
+    private Future<Void> runWorkload(final HttpClient client, final List<Long> accountIds) {
+        final List<Future> deposits = new ArrayList<>();
+        accountIds.forEach(accountId -> deposits.add(send(client, HttpMethod.POST, TRANSACTIONS_URI,
+            deposit(accountId, INITIAL_DEPOSIT))));
+        return CompositeFuture.join(deposits).compose(deposited -> {
+            final Promise<Void> finished = Promise.promise();
+            for (int i = 0; i < options.getConcurrency(); i++) {
+                sendNext(client, accountIds, finished);
+            }
+            return finished.future();
+        });
+    }
+
+    private void sendNext(final HttpClient client, final List<Long> accountIds, final Promise<Void> finished) {
+        if (sent >= options.getRequests()) {
+            if (completed == options.getRequests()) {
+                finished.tryComplete();
+            }
+            return;
+        }
+        final int request = sent++;
+        final long requestStartedAt = System.nanoTime();
+        nextRequest(client, accountIds, request).setHandler(result -> {
+            completed++;
+            if (result.failed()) {
+                failed++;
+            }
+            record(System.nanoTime() - requestStartedAt);
+            sendNext(client, accountIds, finished);
+        });
+    }
+
+    private Future<Buffer> nextRequest(final HttpClient client, final List<Long> accountIds, final int request) {
+        if (request % ACCOUNTS_LISTING_INTERVAL == ACCOUNTS_LISTING_INTERVAL - 1) {
+            return send(client, HttpMethod.GET, SCRATCH_ACCOUNTS_URI + Math.min(accountIds.size(), MAX_SEARCH_LIMIT),
+                null);
+        }
+        final long accountId = accountIds.get(ThreadLocalRandom.current().nextInt(accountIds.size()));
+        switch (request % 4) {
+            case 0:
+                return send(client, HttpMethod.POST, TRANSACTIONS_URI, deposit(accountId, 1));
+            case 1:
+                return send(client, HttpMethod.POST, TRANSACTIONS_URI, new JsonObject()
+                    .put("destination_account_id", accountId).put("transaction_type", "WITHDRAW").put("amount", 1)
+                    .toString());
+            case 2:
+                final long destinationAccountId = accountIds.get((accountIds.indexOf(accountId) + 1) % accountIds.size());
+                return send(client, HttpMethod.POST, TRANSACTIONS_URI, new JsonObject()
+                    .put("source_account_id", accountId).put("destination_account_id", destinationAccountId)
+                    .put("transaction_type", "TRANSFER").put("amount", 1).toString());
+            default:
+                return send(client, HttpMethod.GET, TRANSACTIONS_URI + "?account-id=" + accountId, null);
+        }
+    }
+
+    private static String deposit(final long accountId, final double amount) {
+        return new JsonObject().put("destination_account_id", accountId).put("transaction_type", "DEPOSIT")
+            .put("amount", amount).toString();
+    }
+
+    private Future<Buffer> send(final HttpClient client, final HttpMethod method, final String uri,
+        final String body) {
+        final Promise<Buffer> promise = Promise.promise();
+        final RequestOptions requestOptions = new RequestOptions().setHost(serverAddress.host())
+            .setPort(serverAddress.port()).setURI(uri);
+        final HttpClientRequest request = client.request(method, serverAddress, requestOptions,
+            response -> response.bodyHandler(buffer -> {
+                if (response.statusCode() < 300) {
+                    promise.tryComplete(buffer);
+                } else {
+                    promise.tryFail(method + " " + uri + " failed with status " + response.statusCode());
+                }
+            }));
+        request.exceptionHandler(promise::tryFail);
+        if (body == null) {
+            request.end();
+        } else {
+            request.putHeader("content-type", "application/json").end(body);
+        }
+        return promise.future();
+    }
+
+    private Future<Void> deleteScratchAccounts(final List<Long> accountIds) {
+        final Promise<Void> promise = Promise.promise();
+        if (accountIds.isEmpty()) {
+            promise.complete();
+            return promise.future();
+        }
+        vertx.eventBus().request(DATABASE_ACCOUNT_DELETE, new JsonArray(accountIds).toString(), reply -> {
+            if (reply.succeeded()) {
+                rateLimiter.evictAccounts(accountIds);
+                promise.complete();
+            } else {
+                promise.fail(reply.cause());
+            }
+        });
+        return promise.future();
+    }
+
+    private Future<Void> close(final HttpServer server, final HttpClient client) {
+        client.close();
+        final Promise<Void> promise = Promise.promise();
+        server.close(promise);
+        return promise.future();
+    }
+
+    // Steady state time is reset whenever a window deviates, so it's the point after which latency stayed stable
+    private void record(final long latencyNanos) {
+        window[windowPosition++] = latencyNanos;
+        if (windowPosition < window.length) {
+            return;
+        }
+        windowPosition = 0;
+        final long[] sorted = window.clone();
+        Arrays.sort(sorted);
+        lastWindowMedianMs = sorted[sorted.length / 2] / 1_000_000.0;
+        final boolean stable = previousWindowMedianMs > 0 && Math.abs(lastWindowMedianMs - previousWindowMedianMs)
+            <= previousWindowMedianMs * options.getSteadyStateTolerance();
+        if (!stable) {
+            steadyStateNanos = -1;
+        } else if (steadyStateNanos < 0) {
+            steadyStateNanos = System.nanoTime() - startedAt;
+        }
+        previousWindowMedianMs = lastWindowMedianMs;
+    }
+
+    private void report() {
+        final long elapsedMs = (System.nanoTime() - startedAt) / 1_000_000;
+        if (steadyStateNanos < 0) {
+            log.warn("Warm-up finished in {} ms, {} requests, {} failed, steady state latency not reached, "
+                + "last window median {} ms", elapsedMs, completed, failed, lastWindowMedianMs);
+        } else {
+            log.info("Warm-up finished in {} ms, {} requests, {} failed, steady state latency after {} ms, "
+                + "window median {} ms", elapsedMs, completed, failed, steadyStateNanos / 1_000_000,
+                lastWindowMedianMs);
+        }
+    }
+
+}
@@ -0,0 +1,39 @@
+package com.gjeziorski.vertxtrial.verticles;
+
+import io.vertx.core.json.JsonObject;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class WarmUpOptions {
+
+    private boolean enabled;
+
+    private int requests;
+
+    private int concurrency;
+
+    private int accounts;
+
+    // Steady state is reached when median latency of a window differs from previous window by less than tolerance
+    private int windowSize;
+
+    private double steadyStateTolerance;
+
+    public static WarmUpOptions fromJson(final JsonObject json, final WarmUpOptions defaults) {
+        return WarmUpOptions.builder()
+            .enabled(json.getBoolean("enabled", defaults.isEnabled()))
+            .requests(json.getInteger("requests", defaults.getRequests()))
+            .concurrency(json.getInteger("concurrency", defaults.getConcurrency()))
+            .accounts(json.getInteger("accounts", defaults.getAccounts()))
+            .windowSize(json.getInteger("window_size", defaults.getWindowSize()))
+            .steadyStateTolerance(json.getDouble("steady_state_tolerance", defaults.getSteadyStateTolerance()))
+            .build();
+    }
+
+}
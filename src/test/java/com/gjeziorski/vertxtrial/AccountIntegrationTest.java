@@ -3,12 +3,16 @@ package com.gjeziorski.vertxtrial;
 import static org.assertj.core.api.Assertions.assertThat;
 
 import com.gjeziorski.vertxtrial.verticles.HttpVerticle;
+import io.reactivex.Observable;
 import io.vertx.core.json.JsonObject;
 import io.vertx.junit5.VertxExtension;
 import io.vertx.junit5.VertxTestContext;
 import io.vertx.reactivex.core.Vertx;
 import io.vertx.reactivex.ext.web.client.WebClient;
 import io.vertx.reactivex.ext.web.codec.BodyCodec;
+import java.time.LocalDate;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -42,6 +46,21 @@ public class AccountIntegrationTest {
             })));
     }
 
+    @Test
+    void testShouldAssignConsecutiveIdsAcrossIdBlocks(Vertx vertx, VertxTestContext vertxTestContext) {
+        WebClient client = WebClient.create(vertx);
+        JsonObject account = new JsonObject().put("name", "John").put("surname", "Doe");
+        Observable.range(0, 250)
+            .flatMapSingle(i -> client.post(8080, "localhost", "/api/accounts").rxSendJson(account))
+            .map(response -> Long.parseLong(response.bodyAsString()))
+            .sorted()
+            .toList()
+            .subscribe(ids -> vertxTestContext.verify(() -> {
+                assertThat(ids).isEqualTo(LongStream.range(0, 250).boxed().collect(Collectors.toList()));
+                vertxTestContext.completeNow();
+            }), vertxTestContext::failNow);
+    }
+
     @Test
     void testShouldReturn400OnMissingInputField(Vertx vertx, VertxTestContext vertxTestContext) {
         WebClient client = WebClient.create(vertx);
@@ -53,4 +72,180 @@ public class AccountIntegrationTest {
             })));
     }
 
+    @Test
+    void testShouldReturn304UntilAccountListChanges(Vertx vertx, VertxTestContext vertxTestContext) {
+        WebClient client = WebClient.create(vertx);
+        JsonObject account = new JsonObject().put("name", "John").put("surname", "Doe");
+
+        client.post(8080, "localhost", "/api/accounts").rxSendJson(account)
+            .flatMap(result -> client.get(8080, "localhost", "/api/accounts").rxSend())
+            .flatMap(first -> client.get(8080, "localhost", "/api/accounts")
+                .putHeader("If-None-Match", first.getHeader("ETag")).rxSend()
+                .flatMap(notModified -> {
+                    vertxTestContext.verify(() -> {
+                        assertThat(notModified.statusCode()).isEqualTo(304);
+                        assertThat(notModified.getHeader("ETag")).isEqualTo(first.getHeader("ETag"));
+                    });
+                    return client.post(8080, "localhost", "/api/accounts").rxSendJson(account);
+                })
+                .flatMap(result -> client.get(8080, "localhost", "/api/accounts")
+                    .putHeader("If-None-Match", first.getHeader("ETag")).as(BodyCodec.jsonArray()).rxSend()))
+            .subscribe(response -> vertxTestContext.verify(() -> {
+                assertThat(response.statusCode()).isEqualTo(200);
+                assertThat(response.body().size()).isEqualTo(2);
+                vertxTestContext.completeNow();
+            }), vertxTestContext::failNow);
+    }
+
+    @Test
+    void testShouldReturnDailySummaryOfAccount(Vertx vertx, VertxTestContext vertxTestContext) {
+        WebClient client = WebClient.create(vertx);
+        JsonObject firstAccount = new JsonObject().put("name", "John").put("surname", "Doe");
+        JsonObject secondAccount = new JsonObject().put("name", "Jane").put("surname", "Doe");
+        JsonObject deposit = new JsonObject().put("amount", 100).put("destination_account_id", 0)
+            .put("transaction_type", "DEPOSIT");
+        JsonObject transfer = new JsonObject().put("amount", 30).put("source_account_id", 0)
+            .put("destination_account_id", 1).put("transaction_type", "TRANSFER");
+        String today = LocalDate.now().toString();
+
+        client.post(8080, "localhost", "/api/accounts").rxSendJson(firstAccount)
+            .flatMap(result -> client.post(8080, "localhost", "/api/accounts").rxSendJson(secondAccount))
+            .flatMap(result -> client.post(8080, "localhost", "/api/transactions").rxSendJson(deposit))
+            .flatMap(result -> client.post(8080, "localhost", "/api/transactions").rxSendJson(deposit))
+            .flatMap(result -> client.post(8080, "localhost", "/api/transactions").rxSendJson(transfer))
+            .flatMap(result -> client.get(8080, "localhost", "/api/accounts/0/summary?from=" + today + "&to=" + today)
+                .as(BodyCodec.jsonArray()).rxSend())
+            .subscribe(response -> vertxTestContext.verify(() -> {
+                assertThat(response.statusCode()).isEqualTo(200);
+                assertThat(response.body().size()).isEqualTo(2);
+                JsonObject deposits = response.body().getJsonObject(0);
+                assertThat(deposits.getString("summary_date")).isEqualTo(today);
+                assertThat(deposits.getString("transaction_type")).isEqualTo("DEPOSIT");
+                assertThat(deposits.getDouble("inflow")).isEqualTo(200.0);
+                assertThat(deposits.getInteger("transaction_count")).isEqualTo(2);
+                JsonObject transfers = response.body().getJsonObject(1);
+                assertThat(transfers.getString("transaction_type")).isEqualTo("TRANSFER");
+                assertThat(transfers.getDouble("outflow")).isEqualTo(30.0);
+                vertxTestContext.completeNow();
+            }), vertxTestContext::failNow);
+    }
+
+    @Test
+    void testShouldReturn400OnSummaryOfNotExistingAccount(Vertx vertx, VertxTestContext vertxTestContext) {
+        WebClient client = WebClient.create(vertx);
+        client.get(8080, "localhost", "/api/accounts/7/summary")
+            .send(vertxTestContext.succeeding(response -> vertxTestContext.verify(() -> {
+                assertThat(response.statusCode()).isEqualTo(400);
+                vertxTestContext.completeNow();
+            })));
+    }
+
+    @Test
+    void testShouldReturnAccountsOrderedByBalance(Vertx vertx, VertxTestContext vertxTestContext) {
+        WebClient client = WebClient.create(vertx);
+        JsonObject account = new JsonObject().put("name", "John").put("surname", "Doe");
+        JsonObject firstDeposit = new JsonObject().put("amount", 10).put("destination_account_id", 0)
+            .put("transaction_type", "DEPOSIT");
+        JsonObject secondDeposit = new JsonObject().put("amount", 50).put("destination_account_id", 1)
+            .put("transaction_type", "DEPOSIT");
+        JsonObject transfer = new JsonObject().put("amount", 20).put("source_account_id", 1)
+            .put("destination_account_id", 2).put("transaction_type", "TRANSFER");
+
+        client.post(8080, "localhost", "/api/accounts").rxSendJson(account)
+            .flatMap(result -> client.post(8080, "localhost", "/api/accounts").rxSendJson(account))
+            .flatMap(result -> client.post(8080, "localhost", "/api/accounts").rxSendJson(account))
+            .flatMap(result -> client.post(8080, "localhost", "/api/transactions").rxSendJson(firstDeposit))
+            .flatMap(result -> client.post(8080, "localhost", "/api/transactions").rxSendJson(secondDeposit))
+            .flatMap(result -> client.post(8080, "localhost", "/api/transactions").rxSendJson(transfer))
+            .flatMap(result -> client.get(8080, "localhost", "/api/accounts/top?limit=2")
+                .as(BodyCodec.jsonArray()).rxSend())
+            .flatMap(top -> {
+                vertxTestContext.verify(() -> {
+                    assertThat(top.statusCode()).isEqualTo(200);
+                    assertThat(top.body().size()).isEqualTo(2);
+                    assertThat(top.body().getJsonObject(0).getLong("id")).isEqualTo(1);
+                    assertThat(top.body().getJsonObject(0).getDouble("balance")).isEqualTo(30.0);
+                    assertThat(top.body().getJsonObject(1).getLong("id")).isEqualTo(2);
+                });
+                return client.get(8080, "localhost", "/api/accounts/by-balance?min=5&max=20")
+                    .as(BodyCodec.jsonArray()).rxSend();
+            })
+            .subscribe(range -> vertxTestContext.verify(() -> {
+                assertThat(range.statusCode()).isEqualTo(200);
+                assertThat(range.body().size()).isEqualTo(1);
+                assertThat(range.body().getJsonObject(0).getLong("id")).isEqualTo(0);
+                vertxTestContext.completeNow();
+            }), vertxTestContext::failNow);
+    }
+
+    @Test
+    void testShouldSearchAccountsByNamePrefixWithPagination(Vertx vertx, VertxTestContext vertxTestContext) {
+        WebClient client = WebClient.create(vertx);
+        JsonObject john = new JsonObject().put("name", "John").put("surname", "Doe");
+        JsonObject jane = new JsonObject().put("name", "Jane").put("surname", "Doe");
+        JsonObject johnny = new JsonObject().put("name", "Johnny").put("surname", "Smith");
+
+        client.post(8080, "localhost", "/api/accounts").rxSendJson(john)
+            .flatMap(result -> client.post(8080, "localhost", "/api/accounts").rxSendJson(jane))
+            .flatMap(result -> client.post(8080, "localhost", "/api/accounts").rxSendJson(johnny))
+            .flatMap(result -> client.get(8080, "localhost", "/api/accounts/search?q=JO&limit=1")
+                .as(BodyCodec.jsonObject()).rxSend())
+            .flatMap(firstPage -> {
+                vertxTestContext.verify(() -> {
+                    assertThat(firstPage.statusCode()).isEqualTo(200);
+                    assertThat(firstPage.body().getJsonArray("accounts").size()).isEqualTo(1);
+                    assertThat(firstPage.body().getJsonArray("accounts").getJsonObject(0).getString("name"))
+                        .isEqualTo("John");
+                    assertThat(firstPage.body().getString("next_cursor")).isNotNull();
+                });
+                return client.get(8080, "localhost", "/api/accounts/search?q=jo&limit=1&cursor="
+                    + firstPage.body().getString("next_cursor")).as(BodyCodec.jsonObject()).rxSend();
+            })
+            .flatMap(secondPage -> {
+                vertxTestContext.verify(() -> {
+                    assertThat(secondPage.body().getJsonArray("accounts").getJsonObject(0).getString("name"))
+                        .isEqualTo("Johnny");
+                    assertThat(secondPage.body().getString("next_cursor")).isNull();
+                });
+                return client.get(8080, "localhost", "/api/accounts/search?q=doe").as(BodyCodec.jsonObject())
+                    .rxSend();
+            })
+            .subscribe(bySurname -> vertxTestContext.verify(() -> {
+                assertThat(bySurname.body().getJsonArray("accounts").size()).isEqualTo(2);
+                vertxTestContext.completeNow();
+            }), vertxTestContext::failNow);
+    }
+
+    @Test
+    void testShouldReturn400OnCursorOfDifferentQuery(Vertx vertx, VertxTestContext vertxTestContext) {
+        WebClient client = WebClient.create(vertx);
+        client.get(8080, "localhost", "/api/accounts/search?q=xy&cursor=YWIAMQ")
+            .send(vertxTestContext.succeeding(response -> vertxTestContext.verify(() -> {
+                assertThat(response.statusCode()).isEqualTo(400);
+                vertxTestContext.completeNow();
+            })));
+    }
+
+    @Test
+    void testShouldReturn400OnInvalidTopAccountsLimit(Vertx vertx, VertxTestContext vertxTestContext) {
+        WebClient client = WebClient.create(vertx);
+        client.get(8080, "localhost", "/api/accounts/top?limit=0")
+            .send(vertxTestContext.succeeding(response -> vertxTestContext.verify(() -> {
+                assertThat(response.statusCode()).isEqualTo(400);
+                vertxTestContext.completeNow();
+            })));
+    }
+
+    @Test
+    void testShouldExposeConnectionPoolMetrics(Vertx vertx, VertxTestContext vertxTestContext) {
+        WebClient client = WebClient.create(vertx);
+        client.get(8080, "localhost", "/admin/metrics/pools").as(BodyCodec.jsonObject())
+            .send(vertxTestContext.succeeding(response -> vertxTestContext.verify(() -> {
+                assertThat(response.statusCode()).isEqualTo(200);
+                assertThat(response.body().getJsonObject("write_pool").getLong("acquired")).isPositive();
+                assertThat(response.body().containsKey("read_pool")).isTrue();
+                vertxTestContext.completeNow();
+            })));
+    }
+
 }
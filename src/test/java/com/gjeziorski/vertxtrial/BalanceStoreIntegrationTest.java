@@ -0,0 +1,145 @@
+package com.gjeziorski.vertxtrial;
+
+import static com.gjeziorski.vertxtrial.common.ErrorCodesTranslator.INSUFFICIENT_FUNDS_MESSAGE;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.gjeziorski.vertxtrial.index.MappedBalanceStore;
+import com.gjeziorski.vertxtrial.verticles.HttpVerticle;
+import io.reactivex.Single;
+import io.vertx.core.DeploymentOptions;
+import io.vertx.core.json.JsonObject;
+import io.vertx.junit5.VertxExtension;
+import io.vertx.junit5.VertxTestContext;
+import io.vertx.reactivex.core.Vertx;
+import io.vertx.reactivex.core.buffer.Buffer;
+import io.vertx.reactivex.ext.web.client.HttpResponse;
+import io.vertx.reactivex.ext.web.client.WebClient;
+import java.io.File;
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+
+@ExtendWith(VertxExtension.class)
+public class BalanceStoreIntegrationTest {
+
+    private static final int SEGMENT_RECORDS = 16;
+    private static final String DATABASE_DIRECTORY = "target/balance-store-db";
+    private static final String DATABASE_NAME = "reconciliation";
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void testShouldServeBalancesAndRejectDebitsFromStore(Vertx vertx, VertxTestContext vertxTestContext) {
+        WebClient client = WebClient.create(vertx);
+        JsonObject deposit = new JsonObject().put("amount", 100).put("destination_account_id", 0)
+            .put("transaction_type", "DEPOSIT");
+        JsonObject transfer = new JsonObject().put("amount", 30).put("source_account_id", 0)
+            .put("destination_account_id", 1).put("transaction_type", "TRANSFER");
+        JsonObject withdraw = new JsonObject().put("amount", 31).put("destination_account_id", 1)
+            .put("transaction_type", "WITHDRAW");
+
+        vertx.rxDeployVerticle(new HttpVerticle(), new DeploymentOptions().setConfig(config(new JsonObject())))
+            .flatMap(id -> createAccount(client, "John"))
+            .flatMap(result -> createAccount(client, "Jane"))
+            .flatMap(result -> client.post(8080, "localhost", "/api/transactions").rxSendJson(deposit))
+            .flatMap(result -> client.post(8080, "localhost", "/api/transactions").rxSendJson(transfer))
+            .flatMap(result -> client.post(8080, "localhost", "/api/transactions").rxSendJson(withdraw))
+            .flatMap(result -> {
+                vertxTestContext.verify(() -> {
+                    assertThat(result.statusCode()).isEqualTo(400);
+                    assertThat(result.bodyAsString()).isEqualTo(INSUFFICIENT_FUNDS_MESSAGE);
+                });
+                return client.get(8080, "localhost", "/api/accounts/0/balance").rxSend();
+            })
+            .flatMap(result -> {
+                vertxTestContext.verify(() -> {
+                    assertThat(result.statusCode()).isEqualTo(200);
+                    assertThat(result.bodyAsJsonObject().getLong("id")).isEqualTo(0);
+                    assertThat(result.bodyAsJsonObject().getDouble("balance")).isEqualTo(70.0);
+                });
+                return client.get(8080, "localhost", "/api/accounts/1/balance").rxSend();
+            })
+            .flatMap(result -> {
+                vertxTestContext.verify(() -> assertThat(result.bodyAsJsonObject().getDouble("balance"))
+                    .isEqualTo(30.0));
+                return client.get(8080, "localhost", "/api/accounts/5/balance").rxSend();
+            })
+            .subscribe(result -> vertxTestContext.verify(() -> {
+                assertThat(result.statusCode()).isEqualTo(400);
+                MappedBalanceStore store = MappedBalanceStore.open(storePath(), SEGMENT_RECORDS);
+                assertThat(store.get(0).getBalance()).isEqualByComparingTo(new BigDecimal("70"));
+                assertThat(store.get(1).getBalance()).isEqualByComparingTo(new BigDecimal("30"));
+                assertThat(store.get(5)).isNull();
+                store.close();
+                vertxTestContext.completeNow();
+            }), vertxTestContext::failNow);
+    }
+
+    @Test
+    void testShouldReconcileStoreWithDatabaseOnStart(Vertx vertx, VertxTestContext vertxTestContext) {
+        deleteDatabaseFiles();
+        WebClient client = WebClient.create(vertx);
+        JsonObject database = new JsonObject().put("storage", new JsonObject().put("mode", "FILE")
+            .put("path", DATABASE_DIRECTORY + "/" + DATABASE_NAME));
+        JsonObject deposit = new JsonObject().put("amount", 100).put("destination_account_id", 1)
+            .put("transaction_type", "DEPOSIT");
+
+        vertx.rxDeployVerticle(new HttpVerticle(), new DeploymentOptions().setConfig(config(database)))
+            .flatMap(id -> createAccount(client, "John")
+                .flatMap(result -> createAccount(client, "Jane"))
+                .flatMap(result -> client.post(8080, "localhost", "/api/transactions").rxSendJson(deposit))
+                .flatMap(result -> vertx.rxUndeploy(id).toSingleDefault(id)))
+            .flatMap(id -> {
+                // Records left behind by a crash before the store was updated, or by another database
+                MappedBalanceStore store = MappedBalanceStore.open(storePath(), SEGMENT_RECORDS);
+                store.put(0, new BigDecimal("999"));
+                store.remove(1);
+                store.put(40, BigDecimal.ONE);
+                store.close();
+                return vertx.rxDeployVerticle(new HttpVerticle(), new DeploymentOptions().setConfig(config(database)));
+            })
+            .flatMap(id -> client.get(8080, "localhost", "/api/accounts/0/balance").rxSend())
+            .flatMap(result -> {
+                vertxTestContext.verify(() -> assertThat(result.bodyAsJsonObject().getDouble("balance"))
+                    .isEqualTo(0.0));
+                return client.get(8080, "localhost", "/api/accounts/1/balance").rxSend();
+            })
+            .subscribe(result -> vertxTestContext.verify(() -> {
+                assertThat(result.bodyAsJsonObject().getDouble("balance")).isEqualTo(100.0);
+                MappedBalanceStore store = MappedBalanceStore.open(storePath(), SEGMENT_RECORDS);
+                assertThat(store.get(0).getBalance()).isEqualByComparingTo(BigDecimal.ZERO);
+                assertThat(store.get(1).getBalance()).isEqualByComparingTo(new BigDecimal("100"));
+                assertThat(store.get(40)).isNull();
+                store.close();
+                vertxTestContext.completeNow();
+            }), vertxTestContext::failNow);
+    }
+
+    private Single<HttpResponse<Buffer>> createAccount(WebClient client, String name) {
+        return client.post(8080, "localhost", "/api/accounts")
+            .rxSendJson(new JsonObject().put("name", name).put("surname", "Doe"));
+    }
+
+    private JsonObject config(JsonObject database) {
+        return new JsonObject().put("database", database.put("balance_store", new JsonObject()
+            .put("enabled", true).put("path", storePath().toString()).put("segment_records", SEGMENT_RECORDS)));
+    }
+
+    // Database stays open until Vert.x is closed, so it's kept out of the temporary directory
+    private void deleteDatabaseFiles() {
+        File[] files = new File(DATABASE_DIRECTORY).listFiles((parent, file) -> file.startsWith(DATABASE_NAME + "."));
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+    }
+
+    private Path storePath() {
+        return directory.resolve("balances");
+    }
+
+}
@@ -0,0 +1,231 @@
+package com.gjeziorski.vertxtrial;
+
+import static com.gjeziorski.vertxtrial.common.ErrorCodesTranslator.INVALID_OWNER_MESSAGE;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.gjeziorski.vertxtrial.verticles.HttpVerticle;
+import io.reactivex.Single;
+import io.vertx.core.DeploymentOptions;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.junit5.VertxExtension;
+import io.vertx.junit5.VertxTestContext;
+import io.vertx.reactivex.core.Vertx;
+import io.vertx.reactivex.core.buffer.Buffer;
+import io.vertx.reactivex.ext.web.client.HttpResponse;
+import io.vertx.reactivex.ext.web.client.WebClient;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+@ExtendWith(VertxExtension.class)
+public class BulkIntegrationTest {
+
+    @BeforeEach
+    void setUp(Vertx vertx, VertxTestContext vertxTestContext) {
+        JsonObject config = new JsonObject().put("bulk", new JsonObject()
+            .put("export_page_size", 2).put("import_chunk_size", 2));
+        vertx.deployVerticle(new HttpVerticle(), new DeploymentOptions().setConfig(config),
+            vertxTestContext.completing());
+    }
+
+    @Test
+    void testShouldExportAccountsAndTransactionsAsNdjson(Vertx vertx, VertxTestContext vertxTestContext) {
+        WebClient client = WebClient.create(vertx);
+
+        createAccountsWithTransactions(client)
+            .flatMap(created -> client.get(8080, "localhost", "/admin/export").rxSend())
+            .subscribe(result -> vertxTestContext.verify(() -> {
+                assertThat(result.statusCode()).isEqualTo(200);
+                assertThat(result.getHeader("content-type")).isEqualTo("application/x-ndjson");
+                List<JsonObject> records = lines(result).stream().map(JsonObject::new).collect(Collectors.toList());
+                assertThat(records).extracting(record -> record.getString("type"))
+                    .containsExactly("account", "account", "account", "transaction", "transaction");
+                assertThat(records.get(0).getLong("id")).isEqualTo(0);
+                assertThat(records.get(0).getDouble("balance")).isEqualTo(70.0);
+                assertThat(records.get(2).getString("surname")).isEqualTo("Smith, Jr");
+                assertThat(records.get(4).getString("transaction_type")).isEqualTo("TRANSFER");
+                assertThat(records.get(4).getLong("source_account_id")).isEqualTo(0);
+                assertThat(records.get(4).getLong("destination_account_id")).isEqualTo(1);
+                assertThat(records.get(4).getString("execution_time")).isNotNull();
+                vertxTestContext.completeNow();
+            }), vertxTestContext::failNow);
+    }
+
+    @Test
+    void testShouldExportCsvWithHeader(Vertx vertx, VertxTestContext vertxTestContext) {
+        WebClient client = WebClient.create(vertx);
+
+        createAccountsWithTransactions(client)
+            .flatMap(created -> client.get(8080, "localhost", "/admin/export?format=csv").rxSend())
+            .subscribe(result -> vertxTestContext.verify(() -> {
+                assertThat(result.getHeader("content-type")).isEqualTo("text/csv");
+                List<String> lines = lines(result);
+                assertThat(lines).hasSize(6);
+                assertThat(lines.get(0)).isEqualTo("type,id,name,surname,balance,source_account_id,"
+                    + "destination_account_id,transaction_type,amount,execution_time");
+                assertThat(lines.get(1)).isEqualTo("account,0,John,Doe,70.00,,,,,");
+                assertThat(lines.get(3)).isEqualTo("account,2,Joe,\"Smith, Jr\",0.00,,,,,");
+                assertThat(lines.get(5)).startsWith("transaction,1,,,,0,1,TRANSFER,30.00,");
+                vertxTestContext.completeNow();
+            }), vertxTestContext::failNow);
+    }
+
+    @Test
+    void testShouldReturn400OnUnsupportedExportFormat(Vertx vertx, VertxTestContext vertxTestContext) {
+        WebClient client = WebClient.create(vertx);
+
+        client.get(8080, "localhost", "/admin/export?format=xml").rxSend()
+            .subscribe(result -> vertxTestContext.verify(() -> {
+                assertThat(result.statusCode()).isEqualTo(400);
+                vertxTestContext.completeNow();
+            }), vertxTestContext::failNow);
+    }
+
+    @Test
+    void testShouldImportValidRecordsAndReturnRejectedOnes(Vertx vertx, VertxTestContext vertxTestContext) {
+        WebClient client = WebClient.create(vertx);
+        String upload = Stream.of(
+            "{\"type\": \"account\", \"name\": \"John\", \"surname\": \"Doe\", \"balance\": 100}",
+            "{\"type\": \"account\", \"name\": \"\", \"surname\": \"Doe\"}",
+            "{\"type\": \"account\", \"id\": 5, \"name\": \"Jane\", \"surname\": \"Doe\", \"balance\": \"20.50\"}",
+            "not a record",
+            "{\"type\": \"transaction\", \"transaction_type\": \"DEPOSIT\", \"amount\": 100, "
+                + "\"destination_account_id\": 0, \"execution_time\": \"2020-01-29T17:29:50Z\"}",
+            "{\"type\": \"transaction\", \"transaction_type\": \"TRANSFER\", \"amount\": 5, "
+                + "\"source_account_id\": 0, \"destination_account_id\": 42}",
+            "{\"type\": \"account\", \"name\": \"Jim\", \"surname\": \"Beam\"}")
+            .collect(Collectors.joining("\n"));
+
+        client.post(8080, "localhost", "/admin/import").putHeader("content-type", "application/x-ndjson")
+            .rxSendBuffer(Buffer.buffer(upload))
+            .flatMap(imported -> {
+                vertxTestContext.verify(() -> {
+                    assertThat(imported.statusCode()).isEqualTo(200);
+                    List<JsonObject> lines = lines(imported).stream().map(JsonObject::new)
+                        .collect(Collectors.toList());
+                    List<JsonObject> rejected = lines.stream().filter(line -> "rejected".equals(line.getString("type")))
+                        .collect(Collectors.toList());
+                    assertThat(rejected).extracting(line -> line.getLong("line")).containsExactlyInAnyOrder(2L, 4L, 6L);
+                    assertThat(rejected.get(0).getString("error")).isEqualTo(INVALID_OWNER_MESSAGE);
+                    assertThat(lines).filteredOn(line -> "progress".equals(line.getString("type"))).isNotEmpty();
+                    JsonObject summary = lines.get(lines.size() - 1);
+                    assertThat(summary.getString("type")).isEqualTo("summary");
+                    assertThat(summary.getLong("lines")).isEqualTo(7);
+                    assertThat(summary.getLong("accounts")).isEqualTo(3);
+                    assertThat(summary.getLong("transactions")).isEqualTo(1);
+                    assertThat(summary.getLong("rejected")).isEqualTo(3);
+                    assertThat(summary.containsKey("error")).isFalse();
+                });
+                return client.get(8080, "localhost", "/api/accounts").rxSend();
+            })
+            .flatMap(accounts -> {
+                vertxTestContext.verify(() -> {
+                    JsonArray body = accounts.bodyAsJsonArray();
+                    assertThat(body.size()).isEqualTo(3);
+                    assertThat(body.getJsonObject(1).getLong("id")).isEqualTo(5);
+                    assertThat(body.getJsonObject(1).getDouble("balance")).isEqualTo(20.5);
+                    assertThat(body.getJsonObject(2).getLong("id")).isEqualTo(6);
+                });
+                return client.get(8080, "localhost", "/api/transactions?account-id=0").rxSend();
+            })
+            .subscribe(transactions -> vertxTestContext.verify(() -> {
+                assertThat(transactions.bodyAsJsonArray().size()).isEqualTo(1);
+                assertThat(transactions.bodyAsJsonArray().getJsonObject(0).getString("execution_time"))
+                    .isEqualTo("2020-01-29T17:29:50Z");
+                vertxTestContext.completeNow();
+            }), vertxTestContext::failNow);
+    }
+
+    @Test
+    void testShouldImportCsvWithColumnsInAnyOrder(Vertx vertx, VertxTestContext vertxTestContext) {
+        WebClient client = WebClient.create(vertx);
+        String upload = "surname,name,type,balance\r\n\"Smith, Jr\",Joe,account,10\r\nDoe,account\r\n";
+
+        client.post(8080, "localhost", "/admin/import").putHeader("content-type", "text/csv")
+            .rxSendBuffer(Buffer.buffer(upload))
+            .flatMap(imported -> {
+                vertxTestContext.verify(() -> {
+                    List<String> lines = lines(imported);
+                    JsonObject summary = new JsonObject(lines.get(lines.size() - 1));
+                    assertThat(summary.getLong("accounts")).isEqualTo(1);
+                    assertThat(summary.getLong("rejected")).isEqualTo(1);
+                });
+                return client.get(8080, "localhost", "/api/accounts/search?q=Smi").rxSend();
+            })
+            .subscribe(found -> vertxTestContext.verify(() -> {
+                assertThat(found.bodyAsJsonObject().getJsonArray("accounts").getJsonObject(0).getString("surname"))
+                    .isEqualTo("Smith, Jr");
+                vertxTestContext.completeNow();
+            }), vertxTestContext::failNow);
+    }
+
+    @Test
+    void testShouldAllocateIdsAfterImportedIdsBeyondIntegerRange(Vertx vertx, VertxTestContext vertxTestContext) {
+        WebClient client = WebClient.create(vertx);
+        String upload = Stream.of(
+            "{\"type\": \"account\", \"id\": 5000000000, \"name\": \"John\", \"surname\": \"Doe\", \"balance\": 10}",
+            "{\"type\": \"transaction\", \"id\": 3000000000, \"transaction_type\": \"DEPOSIT\", \"amount\": 10, "
+                + "\"destination_account_id\": 5000000000}")
+            .collect(Collectors.joining("\n"));
+        JsonObject deposit = new JsonObject().put("amount", 5).put("destination_account_id", 5000000000L)
+            .put("transaction_type", "DEPOSIT");
+
+        client.post(8080, "localhost", "/admin/import").putHeader("content-type", "application/x-ndjson")
+            .rxSendBuffer(Buffer.buffer(upload))
+            .flatMap(imported -> client.post(8080, "localhost", "/api/transactions").rxSendJson(deposit))
+            .flatMap(deposited -> {
+                vertxTestContext.verify(() -> assertThat(deposited.statusCode()).isEqualTo(201));
+                return client.post(8080, "localhost", "/api/accounts")
+                    .rxSendJson(new JsonObject().put("name", "Jane").put("surname", "Doe"));
+            })
+            .flatMap(created -> {
+                vertxTestContext.verify(() -> assertThat(Long.parseLong(created.bodyAsString()))
+                    .isEqualTo(5000000001L));
+                return client.get(8080, "localhost", "/api/transactions?account-id=5000000000").rxSend();
+            })
+            .subscribe(transactions -> vertxTestContext.verify(() -> {
+                assertThat(transactions.bodyAsJsonArray().stream().map(transaction -> ((JsonObject) transaction)
+                    .getLong("id"))).containsExactlyInAnyOrder(3000000000L, 3000000001L);
+                vertxTestContext.completeNow();
+            }), vertxTestContext::failNow);
+    }
+
+    @Test
+    void testShouldReturn415OnUnsupportedImportContentType(Vertx vertx, VertxTestContext vertxTestContext) {
+        WebClient client = WebClient.create(vertx);
+
+        client.post(8080, "localhost", "/admin/import").putHeader("content-type", "application/xml")
+            .rxSendBuffer(Buffer.buffer("<accounts/>"))
+            .subscribe(result -> vertxTestContext.verify(() -> {
+                assertThat(result.statusCode()).isEqualTo(415);
+                vertxTestContext.completeNow();
+            }), vertxTestContext::failNow);
+    }
+
+    // Account 0 ends with 70 and account 1 with 30, account 2 has a comma in its surname
+    private Single<?> createAccountsWithTransactions(WebClient client) {
+        JsonObject deposit = new JsonObject().put("amount", 100).put("destination_account_id", 0)
+            .put("transaction_type", "DEPOSIT");
+        JsonObject transfer = new JsonObject().put("amount", 30).put("source_account_id", 0)
+            .put("destination_account_id", 1).put("transaction_type", "TRANSFER");
+
+        return client.post(8080, "localhost", "/api/accounts")
+            .rxSendJson(new JsonObject().put("name", "John").put("surname", "Doe"))
+            .flatMap(result -> client.post(8080, "localhost", "/api/accounts")
+                .rxSendJson(new JsonObject().put("name", "Jane").put("surname", "Doe")))
+            .flatMap(result -> client.post(8080, "localhost", "/api/accounts")
+                .rxSendJson(new JsonObject().put("name", "Joe").put("surname", "Smith, Jr")))
+            .flatMap(result -> client.post(8080, "localhost", "/api/transactions").rxSendJson(deposit))
+            .flatMap(result -> client.post(8080, "localhost", "/api/transactions").rxSendJson(transfer));
+    }
+
+    private List<String> lines(HttpResponse<Buffer> response) {
+        return Stream.of(response.bodyAsString().split("\n")).filter(line -> !line.isEmpty())
+            .collect(Collectors.toList());
+    }
+
+}
@@ -0,0 +1,100 @@
+package com.gjeziorski.vertxtrial;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.gjeziorski.vertxtrial.repository.DatabaseInitializer;
+import com.gjeziorski.vertxtrial.verticles.HttpVerticle;
+import io.vertx.core.DeploymentOptions;
+import io.vertx.core.json.JsonObject;
+import io.vertx.junit5.VertxExtension;
+import io.vertx.junit5.VertxTestContext;
+import io.vertx.reactivex.core.Vertx;
+import io.vertx.reactivex.ext.web.client.WebClient;
+import java.io.File;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+@ExtendWith(VertxExtension.class)
+public class DatabaseMigrationIntegrationTest {
+
+    private static final String DATABASE_DIRECTORY = "target/migration-db";
+    private static final String DATABASE_NAME = "migration";
+    private static final String URL = "jdbc:hsqldb:file:" + DATABASE_DIRECTORY + "/" + DATABASE_NAME + ";shutdown=true";
+
+    @Test
+    void testShouldRepeatMigrationsInterruptedBeforeTheirVersionWasRecorded(Vertx vertx,
+        VertxTestContext vertxTestContext) {
+        deleteDatabaseFiles();
+        WebClient client = WebClient.create(vertx);
+        JsonObject config = new JsonObject().put("database", new JsonObject().put("storage", new JsonObject()
+            .put("mode", "FILE").put("path", DATABASE_DIRECTORY + "/" + DATABASE_NAME)));
+        JsonObject deposit = new JsonObject().put("amount", 100).put("destination_account_id", 0)
+            .put("transaction_type", "DEPOSIT");
+
+        vertx.rxDeployVerticle(new HttpVerticle(), new DeploymentOptions().setConfig(config))
+            .flatMap(id -> client.post(8080, "localhost", "/api/accounts")
+                .rxSendJson(new JsonObject().put("name", "John").put("surname", "Doe"))
+                .flatMap(result -> client.post(8080, "localhost", "/api/transactions").rxSendJson(deposit))
+                .flatMap(result -> {
+                    interruptMigration11();
+                    return vertx.rxUndeploy(id).toSingleDefault(id);
+                }))
+            .flatMap(id -> vertx.rxDeployVerticle(new HttpVerticle(), new DeploymentOptions().setConfig(config)))
+            .flatMap(id -> client.post(8080, "localhost", "/api/transactions").rxSendJson(deposit))
+            .flatMap(result -> {
+                vertxTestContext.verify(() -> assertThat(result.statusCode()).isEqualTo(201));
+                return client.get(8080, "localhost", "/api/accounts/0/balance").rxSend();
+            })
+            .subscribe(result -> vertxTestContext.verify(() -> {
+                assertThat(result.bodyAsJsonObject().getDouble("balance")).isEqualTo(200.0);
+                assertThat(query("SELECT COUNT(*) FROM SCHEMA_VERSION"))
+                    .containsExactly(String.valueOf(DatabaseInitializer.latestSchemaVersion()));
+                assertThat(query("SELECT COLUMN_NAME FROM INFORMATION_SCHEMA.COLUMNS "
+                    + "WHERE TABLE_NAME = 'RECONCILIATION_RUN' AND COLUMN_NAME LIKE 'LAST_%'")).isEmpty();
+                assertThat(query("SELECT COUNT(*) FROM ID_BLOCK")).containsExactly("2");
+                vertxTestContext.completeNow();
+            }), vertxTestContext::failNow);
+    }
+
+    // Leaves the schema as if migration 11 failed after its last statement, before its version was recorded.
+    // What later migrations changed is undone where migration 11 depends on it.
+    private void interruptMigration11() throws Exception {
+        try (Connection connection = DriverManager.getConnection(URL);
+            Statement statement = connection.createStatement()) {
+            statement.executeUpdate("DELETE FROM SCHEMA_VERSION WHERE VERSION >= 11");
+            statement.execute("ALTER TABLE SCHEDULED_TRANSACTION DROP COLUMN TRANSACTION_ID");
+            statement.execute("DROP TABLE ACCOUNT_CHANGE");
+            statement.execute("ALTER TABLE RECONCILIATION_RUN ADD COLUMN LAST_TRANSACTION_ID BIGINT");
+            statement.execute("ALTER TABLE RECONCILIATION_RUN ADD COLUMN LAST_ACCOUNT_ID BIGINT");
+        }
+    }
+
+    private List<String> query(String sql) throws Exception {
+        List<String> values = new ArrayList<>();
+        try (Connection connection = DriverManager.getConnection(URL);
+            Statement statement = connection.createStatement();
+            ResultSet resultSet = statement.executeQuery(sql)) {
+            while (resultSet.next()) {
+                values.add(resultSet.getString(1));
+            }
+        }
+        return values;
+    }
+
+    // Database stays open until Vert.x is closed, so it's kept out of the temporary directory
+    private void deleteDatabaseFiles() {
+        File[] files = new File(DATABASE_DIRECTORY).listFiles((parent, file) -> file.startsWith(DATABASE_NAME + "."));
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+    }
+
+}
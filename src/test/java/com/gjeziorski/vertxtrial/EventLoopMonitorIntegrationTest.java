@@ -0,0 +1,80 @@
+package com.gjeziorski.vertxtrial;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.gjeziorski.vertxtrial.verticles.HttpVerticle;
+import io.vertx.core.DeploymentOptions;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.junit5.VertxExtension;
+import io.vertx.junit5.VertxTestContext;
+import io.vertx.reactivex.core.Vertx;
+import io.vertx.reactivex.ext.web.client.WebClient;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+@ExtendWith(VertxExtension.class)
+public class EventLoopMonitorIntegrationTest {
+
+    private static final String BLOCKING_ADDRESS = "test.blocking";
+
+    @Test
+    void testShouldSampleHandlerBlockingEventLoop(Vertx vertx, VertxTestContext vertxTestContext) {
+        WebClient client = WebClient.create(vertx);
+        vertx.eventBus().consumer(BLOCKING_ADDRESS, message -> {
+            try {
+                Thread.sleep(300);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            message.reply("done");
+        });
+
+        vertx.rxDeployVerticle(new HttpVerticle(), new DeploymentOptions().setConfig(config(50)))
+            .flatMap(id -> vertx.eventBus().rxRequest(BLOCKING_ADDRESS, ""))
+            .flatMap(reply -> client.get(8080, "localhost", "/admin/metrics/event-loops").rxSend())
+            .subscribe(result -> vertxTestContext.verify(() -> {
+                assertThat(result.statusCode()).isEqualTo(200);
+                JsonObject metrics = result.bodyAsJsonObject();
+                JsonObject blocking = metrics.getJsonObject("addresses").getJsonObject(BLOCKING_ADDRESS);
+                assertThat(blocking.getLong("blocked")).isEqualTo(1);
+                assertThat(blocking.getLong("max_ms")).isGreaterThanOrEqualTo(300);
+                assertThat(blocking.getLong("samples")).isPositive();
+                JsonArray frames = blocking.getJsonArray("stacks").getJsonObject(0).getJsonArray("frames");
+                assertThat(frames.getString(0)).startsWith("java.lang.Thread.sleep");
+                assertThat(frames.encode()).contains(EventLoopMonitorIntegrationTest.class.getName());
+                assertThat(metrics.getJsonArray("event_loops").stream()
+                    .mapToLong(loop -> ((JsonObject) loop).getLong("max_lag_ms")).max().getAsLong())
+                    .isGreaterThanOrEqualTo(100);
+                vertxTestContext.completeNow();
+            }), vertxTestContext::failNow);
+    }
+
+    @Test
+    void testShouldGroupHandlersByRouteAndAddress(Vertx vertx, VertxTestContext vertxTestContext) {
+        WebClient client = WebClient.create(vertx);
+
+        vertx.rxDeployVerticle(new HttpVerticle(), new DeploymentOptions().setConfig(config(0)))
+            .flatMap(id -> client.post(8080, "localhost", "/api/accounts")
+                .rxSendJson(new JsonObject().put("name", "John").put("surname", "Doe")))
+            .flatMap(result -> client.get(8080, "localhost", "/api/accounts/0/balance").rxSend())
+            .flatMap(result -> client.get(8080, "localhost", "/admin/metrics/event-loops").rxSend())
+            .subscribe(result -> vertxTestContext.verify(() -> {
+                JsonObject metrics = result.bodyAsJsonObject();
+                assertThat(metrics.getLong("threshold_ms")).isEqualTo(0);
+                assertThat(metrics.getJsonObject("routes").fieldNames())
+                    .contains("POST /api/accounts", "GET /api/accounts/:id/balance");
+                assertThat(metrics.getJsonObject("addresses").fieldNames())
+                    .contains("database.account.create", "database.account.balance", "reply");
+                assertThat(metrics.getJsonObject("routes").getJsonObject("POST /api/accounts").getLong("blocked"))
+                    .isEqualTo(1);
+                vertxTestContext.completeNow();
+            }), vertxTestContext::failNow);
+    }
+
+    private JsonObject config(long thresholdMs) {
+        return new JsonObject().put("event_loop_monitor", new JsonObject().put("enabled", true)
+            .put("threshold_ms", thresholdMs).put("check_interval_ms", 5));
+    }
+
+}
@@ -0,0 +1,176 @@
+package com.gjeziorski.vertxtrial;
+
+import static com.gjeziorski.vertxtrial.common.ErrorCodesTranslator.HOLD_DOESNT_EXIST_MESSAGE;
+import static com.gjeziorski.vertxtrial.common.ErrorCodesTranslator.INSUFFICIENT_FUNDS_MESSAGE;
+import static com.gjeziorski.vertxtrial.common.ErrorCodesTranslator.INVALID_HOLD_AMOUNT_MESSAGE;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.gjeziorski.vertxtrial.verticles.HttpVerticle;
+import io.reactivex.Observable;
+import io.vertx.core.DeploymentOptions;
+import io.vertx.core.json.JsonObject;
+import io.vertx.junit5.VertxExtension;
+import io.vertx.junit5.VertxTestContext;
+import io.vertx.reactivex.core.Vertx;
+import io.vertx.reactivex.ext.web.client.WebClient;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+@ExtendWith(VertxExtension.class)
+public class HoldsIntegrationTest {
+
+    @BeforeEach
+    void setUp(Vertx vertx, VertxTestContext vertxTestContext) {
+        JsonObject config = new JsonObject().put("holds", new JsonObject().put("sweep_interval_ms", 20));
+        vertx.deployVerticle(new HttpVerticle(), new DeploymentOptions().setConfig(config),
+            vertxTestContext.completing());
+    }
+
+    @Test
+    void testShouldReserveFundsUntilHoldIsCaptured(Vertx vertx, VertxTestContext vertxTestContext) {
+        WebClient client = WebClient.create(vertx);
+        JsonObject account = new JsonObject().put("name", "John").put("surname", "Doe");
+
+        client.post(8080, "localhost", "/api/accounts").rxSendJson(account)
+            .flatMap(created -> client.post(8080, "localhost", "/api/transactions").rxSendJson(deposit(100)))
+            .flatMap(deposited -> client.post(8080, "localhost", "/api/holds").rxSendJson(hold(60)))
+            .flatMap(placed -> {
+                vertxTestContext.verify(() -> {
+                    assertThat(placed.statusCode()).isEqualTo(201);
+                    assertThat(placed.bodyAsJsonObject().getLong("account_id")).isEqualTo(0);
+                    assertThat(placed.bodyAsJsonObject().getString("amount")).isEqualTo("60");
+                });
+                return client.post(8080, "localhost", "/api/holds").rxSendJson(hold(50))
+                    .flatMap(overHeld -> {
+                        vertxTestContext.verify(() -> {
+                            assertThat(overHeld.statusCode()).isEqualTo(400);
+                            assertThat(overHeld.bodyAsString()).isEqualTo(INSUFFICIENT_FUNDS_MESSAGE);
+                        });
+                        return client.post(8080, "localhost", "/api/transactions").rxSendJson(withdrawal(50));
+                    })
+                    .flatMap(overAvailable -> {
+                        // Only 40 of the balance is available while 60 is held
+                        vertxTestContext.verify(() -> {
+                            assertThat(overAvailable.statusCode()).isEqualTo(400);
+                            assertThat(overAvailable.bodyAsString()).isEqualTo(INSUFFICIENT_FUNDS_MESSAGE);
+                        });
+                        return client.post(8080, "localhost", capturePath(placed.bodyAsJsonObject()))
+                            .rxSendJson(new JsonObject().put("amount", 30));
+                    })
+                    .flatMap(captured -> {
+                        vertxTestContext.verify(() -> {
+                            assertThat(captured.statusCode()).isEqualTo(201);
+                            assertThat(captured.bodyAsJsonObject().getString("amount")).isEqualTo("30");
+                        });
+                        return client.post(8080, "localhost", capturePath(placed.bodyAsJsonObject())).rxSend();
+                    });
+            })
+            .flatMap(capturedAgain -> {
+                vertxTestContext.verify(() -> {
+                    assertThat(capturedAgain.statusCode()).isEqualTo(404);
+                    assertThat(capturedAgain.bodyAsString()).isEqualTo(HOLD_DOESNT_EXIST_MESSAGE);
+                });
+                return client.get(8080, "localhost", "/api/accounts/0/balance").rxSend();
+            })
+            .flatMap(balance -> {
+                // The rest of the captured hold is released
+                vertxTestContext.verify(() -> assertThat(balance.bodyAsJsonObject().getDouble("balance"))
+                    .isEqualTo(70.0));
+                return client.post(8080, "localhost", "/api/transactions").rxSendJson(withdrawal(70));
+            })
+            .subscribe(withdrawn -> vertxTestContext.verify(() -> {
+                assertThat(withdrawn.statusCode()).isEqualTo(201);
+                vertxTestContext.completeNow();
+            }), vertxTestContext::failNow);
+    }
+
+    @Test
+    void testShouldReleaseAndExpireHolds(Vertx vertx, VertxTestContext vertxTestContext) {
+        WebClient client = WebClient.create(vertx);
+        JsonObject account = new JsonObject().put("name", "John").put("surname", "Doe");
+
+        client.post(8080, "localhost", "/api/accounts").rxSendJson(account)
+            .flatMap(created -> client.post(8080, "localhost", "/api/transactions").rxSendJson(deposit(100)))
+            .flatMap(deposited -> client.post(8080, "localhost", "/api/holds").rxSendJson(hold(0)))
+            .flatMap(invalid -> {
+                vertxTestContext.verify(() -> {
+                    assertThat(invalid.statusCode()).isEqualTo(400);
+                    assertThat(invalid.bodyAsString()).isEqualTo(INVALID_HOLD_AMOUNT_MESSAGE);
+                });
+                return client.post(8080, "localhost", "/api/holds").rxSendJson(hold(70).put("expires_in_ms", 100));
+            })
+            .flatMap(expiring -> client.post(8080, "localhost", "/api/holds").rxSendJson(hold(30)))
+            .flatMap(placed -> client.delete(8080, "localhost", "/api/holds/" + placed.bodyAsJsonObject()
+                .getLong("id")).rxSend()
+                .flatMap(released -> {
+                    vertxTestContext.verify(() -> assertThat(released.statusCode()).isEqualTo(204));
+                    return client.delete(8080, "localhost", "/api/holds/" + placed.bodyAsJsonObject()
+                        .getLong("id")).rxSend();
+                }))
+            .flatMap(releasedAgain -> {
+                vertxTestContext.verify(() -> assertThat(releasedAgain.statusCode()).isEqualTo(404));
+                return Observable.interval(50, TimeUnit.MILLISECONDS)
+                    .concatMapSingle(tick -> client.get(8080, "localhost", "/admin/metrics/holds").rxSend())
+                    .map(metrics -> metrics.bodyAsJsonObject())
+                    .filter(metrics -> metrics.getLong("expired") == 1)
+                    .firstOrError();
+            })
+            .flatMap(metrics -> {
+                vertxTestContext.verify(() -> {
+                    assertThat(metrics.getInteger("active")).isEqualTo(0);
+                    assertThat(metrics.getLong("placed")).isEqualTo(2);
+                    assertThat(metrics.getLong("released")).isEqualTo(1);
+                    assertThat(Double.valueOf(metrics.getString("held"))).isEqualTo(0.0);
+                });
+                return client.post(8080, "localhost", "/api/transactions").rxSendJson(withdrawal(100));
+            })
+            .subscribe(withdrawn -> vertxTestContext.verify(() -> {
+                assertThat(withdrawn.statusCode()).isEqualTo(201);
+                vertxTestContext.completeNow();
+            }), vertxTestContext::failNow);
+    }
+
+    @Test
+    void testShouldKeepHeldFundsFromConcurrentWithdrawals(Vertx vertx, VertxTestContext vertxTestContext) {
+        WebClient client = WebClient.create(vertx);
+        JsonObject account = new JsonObject().put("name", "John").put("surname", "Doe");
+
+        client.post(8080, "localhost", "/api/accounts").rxSendJson(account)
+            .flatMap(created -> client.post(8080, "localhost", "/api/transactions").rxSendJson(deposit(100)))
+            .flatMap(deposited -> client.post(8080, "localhost", "/api/holds").rxSendJson(hold(60)))
+            .flatMap(placed -> Observable.range(0, 10)
+                .flatMapSingle(i -> client.post(8080, "localhost", "/api/transactions").rxSendJson(withdrawal(10)))
+                .filter(withdrawn -> withdrawn.statusCode() == 201)
+                .count()
+                .flatMap(withdrawals -> {
+                    // Withdrawals in flight count against the available balance, only 40 of it isn't held
+                    vertxTestContext.verify(() -> assertThat(withdrawals).isEqualTo(4));
+                    return client.post(8080, "localhost", capturePath(placed.bodyAsJsonObject())).rxSend();
+                }))
+            .subscribe(captured -> vertxTestContext.verify(() -> {
+                assertThat(captured.statusCode()).isEqualTo(201);
+                vertxTestContext.completeNow();
+            }), vertxTestContext::failNow);
+    }
+
+    private String capturePath(JsonObject hold) {
+        return "/api/holds/" + hold.getLong("id") + "/capture";
+    }
+
+    private JsonObject hold(int amount) {
+        return new JsonObject().put("account_id", 0).put("amount", amount);
+    }
+
+    private JsonObject deposit(int amount) {
+        return new JsonObject().put("amount", amount).put("destination_account_id", 0)
+            .put("transaction_type", "DEPOSIT");
+    }
+
+    private JsonObject withdrawal(int amount) {
+        return new JsonObject().put("amount", amount).put("destination_account_id", 0)
+            .put("transaction_type", "WITHDRAW");
+    }
+
+}
@@ -0,0 +1,64 @@
+package com.gjeziorski.vertxtrial;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.gjeziorski.vertxtrial.verticles.HttpVerticle;
+import io.reactivex.Observable;
+import io.vertx.core.DeploymentOptions;
+import io.vertx.core.json.JsonObject;
+import io.vertx.junit5.VertxExtension;
+import io.vertx.junit5.VertxTestContext;
+import io.vertx.reactivex.core.Vertx;
+import io.vertx.reactivex.ext.web.client.WebClient;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+@ExtendWith(VertxExtension.class)
+public class HotAccountIntegrationTest {
+
+    private static final int DEPOSITS = 80;
+    private static final int WITHDRAWALS = 120;
+
+    @BeforeEach
+    void setUp(Vertx vertx, VertxTestContext vertxTestContext) {
+        // FOR UPDATE doesn't block writers under MVCC, sweeps must not lose deposits committed meanwhile
+        JsonObject config = new JsonObject().put("database", new JsonObject().put("transaction_control", "MVCC"));
+        vertx.deployVerticle(new HttpVerticle(), new DeploymentOptions().setConfig(config),
+            vertxTestContext.completing());
+    }
+
+    @Test
+    void testShouldKeepDepositsCommittedDuringSweeps(Vertx vertx, VertxTestContext vertxTestContext) {
+        WebClient client = WebClient.create(vertx);
+        JsonObject account = new JsonObject().put("name", "John").put("surname", "Doe");
+        JsonObject deposit = new JsonObject().put("amount", 3).put("destination_account_id", 0)
+            .put("transaction_type", "DEPOSIT");
+        JsonObject withdraw = new JsonObject().put("amount", 2).put("destination_account_id", 0)
+            .put("transaction_type", "WITHDRAW");
+
+        client.post(8080, "localhost", "/api/accounts").rxSendJson(account)
+            .flatMap(created -> client.put(8080, "localhost", "/admin/accounts/0/hot")
+                .rxSendJson(new JsonObject().put("slots", 8)))
+            .flatMap(hot -> Observable.range(0, DEPOSITS + WITHDRAWALS)
+                .flatMapSingle(i -> client.post(8080, "localhost", "/api/transactions")
+                    .rxSendJson(i % 5 < 2 ? deposit : withdraw))
+                .toList())
+            .flatMap(responses -> client.get(8080, "localhost", "/api/transactions?account-id=0").rxSend())
+            .flatMap(transactions -> client.get(8080, "localhost", "/api/accounts").rxSend()
+                .map(accounts -> {
+                    double expected = transactions.bodyAsJsonArray().stream()
+                        .map(transaction -> (JsonObject) transaction)
+                        .mapToDouble(transaction -> "DEPOSIT".equals(transaction.getString("transaction_type"))
+                            ? transaction.getDouble("amount") : -transaction.getDouble("amount"))
+                        .sum();
+                    return new double[]{expected, accounts.bodyAsJsonArray().getJsonObject(0).getDouble("balance")};
+                }))
+            .subscribe(balances -> vertxTestContext.verify(() -> {
+                assertThat(balances[1]).isEqualTo(balances[0]);
+                assertThat(balances[1]).isGreaterThanOrEqualTo(0.0);
+                vertxTestContext.completeNow();
+            }), vertxTestContext::failNow);
+    }
+
+}
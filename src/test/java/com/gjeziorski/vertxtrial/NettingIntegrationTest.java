@@ -0,0 +1,111 @@
+package com.gjeziorski.vertxtrial;
+
+import static com.gjeziorski.vertxtrial.common.ErrorCodesTranslator.INSUFFICIENT_FUNDS_MESSAGE;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.gjeziorski.vertxtrial.verticles.HttpVerticle;
+import io.reactivex.Observable;
+import io.vertx.core.DeploymentOptions;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.junit5.VertxExtension;
+import io.vertx.junit5.VertxTestContext;
+import io.vertx.reactivex.core.Vertx;
+import io.vertx.reactivex.ext.web.client.HttpResponse;
+import io.vertx.reactivex.ext.web.client.WebClient;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+@ExtendWith(VertxExtension.class)
+public class NettingIntegrationTest {
+
+    @BeforeEach
+    void setUp(Vertx vertx, VertxTestContext vertxTestContext) {
+        JsonObject config = new JsonObject().put("database", new JsonObject().put("netting", new JsonObject()
+            .put("enabled", true)
+            .put("settle_interval_ms", 20)
+            .put("pairs", new JsonArray().add(new JsonObject().put("accounts", new JsonArray().add(0).add(1))
+                .put("reserve", 100)))));
+        vertx.deployVerticle(new HttpVerticle(), new DeploymentOptions().setConfig(config),
+            vertxTestContext.completing());
+    }
+
+    @Test
+    void testShouldSettleNetAmountOfTransfersBetweenPairedAccounts(Vertx vertx, VertxTestContext vertxTestContext) {
+        WebClient client = WebClient.create(vertx);
+        JsonObject account = new JsonObject().put("name", "John").put("surname", "Doe");
+
+        client.post(8080, "localhost", "/api/accounts").rxSendJson(account)
+            .flatMap(created -> client.post(8080, "localhost", "/api/accounts").rxSendJson(account))
+            .flatMap(created -> client.post(8080, "localhost", "/api/transactions").rxSendJson(deposit(0, 300)))
+            .flatMap(deposited -> client.post(8080, "localhost", "/api/transactions").rxSendJson(deposit(1, 300)))
+            // Reserves are held back from the balances once the pair is activated
+            .flatMap(deposited -> Observable.interval(50, TimeUnit.MILLISECONDS)
+                .concatMapSingle(tick -> client.get(8080, "localhost", "/admin/metrics/netting").rxSend())
+                .map(metrics -> metrics.bodyAsJsonObject().getJsonArray("pairs").getJsonObject(0))
+                .filter(pair -> reserves(pair).equals(Arrays.asList(100.0, 100.0)))
+                .firstOrError())
+            .flatMap(pair -> client.post(8080, "localhost", "/api/transactions").rxSendJson(transfer(0, 1, 250)))
+            .flatMap(overReserve -> {
+                vertxTestContext.verify(() -> {
+                    assertThat(overReserve.statusCode()).isEqualTo(400);
+                    assertThat(overReserve.bodyAsString()).isEqualTo(INSUFFICIENT_FUNDS_MESSAGE);
+                });
+                return client.post(8080, "localhost", "/api/transactions").rxSendJson(transfer(0, 1, 80));
+            })
+            .flatMap(transferred -> Observable.range(0, 200)
+                .flatMapSingle(i -> client.post(8080, "localhost", "/api/transactions")
+                    .rxSendJson(i % 2 == 0 ? transfer(0, 1, 1) : transfer(1, 0, 1)))
+                .toList()
+                .map(responses -> {
+                    vertxTestContext.verify(() -> {
+                        assertThat(transferred.statusCode()).isEqualTo(201);
+                        assertThat(responses).extracting(HttpResponse::statusCode).containsOnly(201);
+                    });
+                    return responses;
+                }))
+            .flatMap(responses -> client.get(8080, "localhost", "/api/accounts").rxSend())
+            .flatMap(accounts -> {
+                vertxTestContext.verify(() -> {
+                    assertThat(accounts.bodyAsJsonArray().getJsonObject(0).getDouble("balance")).isEqualTo(220.0);
+                    assertThat(accounts.bodyAsJsonArray().getJsonObject(1).getDouble("balance")).isEqualTo(380.0);
+                });
+                return client.get(8080, "localhost", "/api/transactions?account-id=0").rxSend();
+            })
+            .flatMap(transactions -> {
+                // Every accepted transfer is recorded, the deposit and 201 transfers
+                vertxTestContext.verify(() -> assertThat(transactions.bodyAsJsonArray()).hasSize(202));
+                return client.get(8080, "localhost", "/admin/metrics/netting").rxSend();
+            })
+            .subscribe(metrics -> vertxTestContext.verify(() -> {
+                JsonObject pair = metrics.bodyAsJsonObject().getJsonArray("pairs").getJsonObject(0);
+                assertThat(pair.getBoolean("active")).isTrue();
+                assertThat(pair.getLong("settled")).isEqualTo(201);
+                assertThat(pair.getLong("settlements")).isLessThan(201);
+                assertThat(pair.getLong("pending")).isEqualTo(0);
+                assertThat(reserves(pair)).containsExactly(100.0, 100.0);
+                vertxTestContext.completeNow();
+            }), vertxTestContext::failNow);
+    }
+
+    private List<Double> reserves(JsonObject pair) {
+        return pair.getJsonArray("reserves").stream().map(reserve -> Double.valueOf((String) reserve))
+            .collect(Collectors.toList());
+    }
+
+    private JsonObject deposit(int accountId, int amount) {
+        return new JsonObject().put("amount", amount).put("destination_account_id", accountId)
+            .put("transaction_type", "DEPOSIT");
+    }
+
+    private JsonObject transfer(int sourceAccountId, int destinationAccountId, int amount) {
+        return new JsonObject().put("amount", amount).put("source_account_id", sourceAccountId)
+            .put("destination_account_id", destinationAccountId).put("transaction_type", "TRANSFER");
+    }
+
+}
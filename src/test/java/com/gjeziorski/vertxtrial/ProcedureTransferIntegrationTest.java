@@ -0,0 +1,64 @@
+package com.gjeziorski.vertxtrial;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.gjeziorski.vertxtrial.verticles.HttpVerticle;
+import io.reactivex.Observable;
+import io.vertx.core.DeploymentOptions;
+import io.vertx.core.json.JsonObject;
+import io.vertx.junit5.VertxExtension;
+import io.vertx.junit5.VertxTestContext;
+import io.vertx.reactivex.core.Vertx;
+import io.vertx.reactivex.ext.web.client.HttpResponse;
+import io.vertx.reactivex.ext.web.client.WebClient;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+@ExtendWith(VertxExtension.class)
+public class ProcedureTransferIntegrationTest {
+
+    @BeforeEach
+    void setUp(Vertx vertx, VertxTestContext vertxTestContext) {
+        JsonObject config = new JsonObject().put("database", new JsonObject().put("transaction_control", "MVLOCKS")
+            .put("transaction_execution", new JsonObject().put("mode", "PROCEDURE")));
+        vertx.deployVerticle(new HttpVerticle(), new DeploymentOptions().setConfig(config),
+            vertxTestContext.completing());
+    }
+
+    @Test
+    void testShouldExecuteOpposingTransfers(Vertx vertx, VertxTestContext vertxTestContext) {
+        WebClient client = WebClient.create(vertx);
+        JsonObject account = new JsonObject().put("name", "John").put("surname", "Doe");
+
+        client.post(8080, "localhost", "/api/accounts").rxSendJson(account)
+            .flatMap(created -> client.post(8080, "localhost", "/api/accounts").rxSendJson(account))
+            .flatMap(created -> client.post(8080, "localhost", "/api/transactions").rxSendJson(deposit(0)))
+            .flatMap(deposited -> client.post(8080, "localhost", "/api/transactions").rxSendJson(deposit(1)))
+            .flatMap(deposited -> Observable.range(0, 400)
+                .flatMapSingle(i -> client.post(8080, "localhost", "/api/transactions")
+                    .rxSendJson(transfer(i % 2, 1 - i % 2)))
+                .map(HttpResponse::statusCode)
+                .toList())
+            .flatMap(statuses -> {
+                vertxTestContext.verify(() -> assertThat(statuses).containsOnly(201));
+                return client.get(8080, "localhost", "/api/accounts").rxSend();
+            })
+            .subscribe(accounts -> vertxTestContext.verify(() -> {
+                assertThat(accounts.bodyAsJsonArray().getJsonObject(0).getDouble("balance")).isEqualTo(1000.0);
+                assertThat(accounts.bodyAsJsonArray().getJsonObject(1).getDouble("balance")).isEqualTo(1000.0);
+                vertxTestContext.completeNow();
+            }), vertxTestContext::failNow);
+    }
+
+    private JsonObject deposit(int accountId) {
+        return new JsonObject().put("amount", 1000).put("destination_account_id", accountId)
+            .put("transaction_type", "DEPOSIT");
+    }
+
+    private JsonObject transfer(int sourceAccountId, int destinationAccountId) {
+        return new JsonObject().put("amount", 1).put("source_account_id", sourceAccountId)
+            .put("destination_account_id", destinationAccountId).put("transaction_type", "TRANSFER");
+    }
+
+}
@@ -0,0 +1,107 @@
+package com.gjeziorski.vertxtrial;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.gjeziorski.vertxtrial.verticles.HttpVerticle;
+import io.reactivex.Observable;
+import io.vertx.core.DeploymentOptions;
+import io.vertx.core.json.JsonObject;
+import io.vertx.junit5.VertxExtension;
+import io.vertx.junit5.VertxTestContext;
+import io.vertx.reactivex.core.Vertx;
+import io.vertx.reactivex.ext.web.client.HttpResponse;
+import io.vertx.reactivex.ext.web.client.WebClient;
+import io.vertx.reactivex.ext.web.codec.BodyCodec;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+@ExtendWith(VertxExtension.class)
+public class RateLimitIntegrationTest {
+
+    @BeforeEach
+    void setUp(Vertx vertx, VertxTestContext vertxTestContext) {
+        JsonObject config = new JsonObject().put("rate_limit", new JsonObject()
+            .put("enabled", true).put("account_rate", 0.1).put("account_burst", 2));
+        vertx.deployVerticle(new HttpVerticle(), new DeploymentOptions().setConfig(config),
+            vertxTestContext.completing());
+    }
+
+    @Test
+    void testShouldReturn429WhenAccountLimitIsExceeded(Vertx vertx, VertxTestContext vertxTestContext) {
+        WebClient client = WebClient.create(vertx);
+        JsonObject account = new JsonObject().put("name", "John").put("surname", "Doe");
+        JsonObject deposit = new JsonObject().put("amount", 100).put("destination_account_id", 0)
+            .put("transaction_type", "DEPOSIT");
+
+        client.post(8080, "localhost", "/api/accounts").rxSendJson(account)
+            .flatMap(created -> Observable.range(0, 3)
+                .concatMapSingle(i -> client.post(8080, "localhost", "/api/transactions").rxSendJson(deposit))
+                .toList())
+            .flatMap(responses -> {
+                vertxTestContext.verify(() -> {
+                    assertThat(responses).extracting(HttpResponse::statusCode).containsExactly(201, 201, 429);
+                    HttpResponse<?> rejected = responses.get(2);
+                    assertThat(Long.parseLong(rejected.getHeader("Retry-After"))).isBetween(1L, 10L);
+                    assertThat(Long.parseLong(rejected.getHeader("X-Retry-After-Ms"))).isBetween(1L, 10000L);
+                });
+                return client.get(8080, "localhost", "/admin/metrics/rate-limits").as(BodyCodec.jsonObject())
+                    .rxSend();
+            })
+            .subscribe(metrics -> vertxTestContext.verify(() -> {
+                assertThat(metrics.body().getJsonObject("account").getLong("allowed")).isEqualTo(2);
+                assertThat(metrics.body().getJsonObject("account").getLong("throttled")).isEqualTo(1);
+                assertThat(metrics.body().getJsonObject("client").getLong("throttled")).isEqualTo(0);
+                vertxTestContext.completeNow();
+            }), vertxTestContext::failNow);
+    }
+
+    @Test
+    void testShouldNotTakeSourceTokenWhenDestinationIsLimited(Vertx vertx, VertxTestContext vertxTestContext) {
+        WebClient client = WebClient.create(vertx);
+        JsonObject account = new JsonObject().put("name", "John").put("surname", "Doe");
+        JsonObject depositToSource = new JsonObject().put("amount", 100).put("destination_account_id", 0)
+            .put("transaction_type", "DEPOSIT");
+        JsonObject depositToDestination = new JsonObject().put("amount", 100).put("destination_account_id", 1)
+            .put("transaction_type", "DEPOSIT");
+        JsonObject transfer = new JsonObject().put("amount", 10).put("source_account_id", 0)
+            .put("destination_account_id", 1).put("transaction_type", "TRANSFER");
+
+        client.post(8080, "localhost", "/api/accounts").rxSendJson(account)
+            .flatMap(created -> client.post(8080, "localhost", "/api/accounts").rxSendJson(account))
+            .flatMap(created -> Observable.just(depositToDestination, depositToDestination, transfer,
+                depositToSource, depositToSource)
+                .concatMapSingle(body -> client.post(8080, "localhost", "/api/transactions").rxSendJson(body))
+                .toList())
+            .subscribe(responses -> vertxTestContext.verify(() -> {
+                assertThat(responses).extracting(HttpResponse::statusCode).containsExactly(201, 201, 429, 201, 201);
+                vertxTestContext.completeNow();
+            }), vertxTestContext::failNow);
+    }
+
+    @Test
+    void testShouldTakeOneTokenForSelfTransfer(Vertx vertx, VertxTestContext vertxTestContext) {
+        WebClient client = WebClient.create(vertx);
+        JsonObject account = new JsonObject().put("name", "John").put("surname", "Doe");
+        JsonObject deposit = new JsonObject().put("amount", 100).put("destination_account_id", 0)
+            .put("transaction_type", "DEPOSIT");
+        JsonObject selfTransfer = new JsonObject().put("amount", 10).put("source_account_id", 0)
+            .put("destination_account_id", 0).put("transaction_type", "TRANSFER");
+
+        client.post(8080, "localhost", "/api/accounts").rxSendJson(account)
+            .flatMap(created -> Observable.just(deposit, selfTransfer, deposit)
+                .concatMapSingle(body -> client.post(8080, "localhost", "/api/transactions").rxSendJson(body))
+                .toList())
+            .flatMap(responses -> {
+                vertxTestContext.verify(() -> assertThat(responses).extracting(HttpResponse::statusCode)
+                    .containsExactly(201, 201, 429));
+                return client.get(8080, "localhost", "/admin/metrics/rate-limits").as(BodyCodec.jsonObject())
+                    .rxSend();
+            })
+            .subscribe(metrics -> vertxTestContext.verify(() -> {
+                assertThat(metrics.body().getJsonObject("account").getLong("allowed")).isEqualTo(2);
+                vertxTestContext.completeNow();
+            }), vertxTestContext::failNow);
+    }
+
+}
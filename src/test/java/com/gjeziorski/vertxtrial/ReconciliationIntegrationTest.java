@@ -0,0 +1,176 @@
+package com.gjeziorski.vertxtrial;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.gjeziorski.vertxtrial.verticles.HttpVerticle;
+import io.reactivex.Single;
+import io.vertx.core.DeploymentOptions;
+import io.vertx.core.json.JsonObject;
+import io.vertx.junit5.VertxExtension;
+import io.vertx.junit5.VertxTestContext;
+import io.vertx.reactivex.core.RxHelper;
+import io.vertx.reactivex.core.Vertx;
+import io.vertx.reactivex.ext.web.client.WebClient;
+import io.vertx.reactivex.ext.web.codec.BodyCodec;
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.Statement;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+@ExtendWith(VertxExtension.class)
+public class ReconciliationIntegrationTest {
+
+    private static final String URL = "jdbc:hsqldb:mem:test?shutdown=true";
+
+    @BeforeEach
+    void setUp(Vertx vertx, VertxTestContext vertxTestContext) {
+        // Single account pages, so incremental runs go through several of them
+        JsonObject config = new JsonObject().put("reconciliation", new JsonObject()
+            .put("incremental", true).put("page_size", 1));
+        vertx.deployVerticle(new HttpVerticle(), new DeploymentOptions().setConfig(config),
+            vertxTestContext.completing());
+    }
+
+    @Test
+    void testShouldFindNoMismatchesInConsistentAccounts(Vertx vertx, VertxTestContext vertxTestContext) {
+        WebClient client = WebClient.create(vertx);
+
+        createAccountsWithTransactions(client)
+            .flatMap(created -> client.post(8080, "localhost", "/admin/reconciliation?full=true").rxSend())
+            .flatMap(started -> {
+                vertxTestContext.verify(() -> assertThat(started.statusCode()).isEqualTo(202));
+                return awaitFinished(vertx, client);
+            })
+            .subscribe(status -> vertxTestContext.verify(() -> {
+                assertThat(status.getString("error")).isNull();
+                assertThat(status.getBoolean("full")).isTrue();
+                assertThat(status.getLong("checked")).isEqualTo(2);
+                assertThat(status.getJsonArray("mismatches")).isEmpty();
+                vertxTestContext.completeNow();
+            }), vertxTestContext::failNow);
+    }
+
+    @Test
+    void testShouldCheckOnlyChangedAccountsIncrementallyAndFindMismatchInFullRun(Vertx vertx,
+        VertxTestContext vertxTestContext) {
+        WebClient client = WebClient.create(vertx);
+        JsonObject deposit = new JsonObject().put("amount", 10).put("destination_account_id", 1)
+            .put("transaction_type", "DEPOSIT");
+
+        createAccountsWithTransactions(client)
+            .flatMap(created -> client.post(8080, "localhost", "/admin/reconciliation").rxSend())
+            .flatMap(started -> awaitFinished(vertx, client))
+            .flatMap(first -> {
+                corruptBalance();
+                return client.post(8080, "localhost", "/api/transactions").rxSendJson(deposit);
+            })
+            .flatMap(deposited -> client.post(8080, "localhost", "/admin/reconciliation").rxSend())
+            .flatMap(started -> awaitFinished(vertx, client))
+            .flatMap(incremental -> {
+                vertxTestContext.verify(() -> {
+                    assertThat(incremental.getBoolean("full")).isFalse();
+                    assertThat(incremental.getLong("checked")).isEqualTo(1);
+                    assertThat(incremental.getJsonArray("mismatches")).isEmpty();
+                });
+                return client.post(8080, "localhost", "/admin/reconciliation?full=true").rxSend();
+            })
+            .flatMap(started -> awaitFinished(vertx, client))
+            .subscribe(status -> vertxTestContext.verify(() -> {
+                assertThat(status.getLong("checked")).isEqualTo(2);
+                assertThat(status.getJsonArray("mismatches").size()).isEqualTo(1);
+                JsonObject mismatch = status.getJsonArray("mismatches").getJsonObject(0);
+                assertThat(mismatch.getLong("account_id")).isEqualTo(0);
+                assertThat(new BigDecimal(mismatch.getValue("balance").toString()))
+                    .isEqualByComparingTo(new BigDecimal(51));
+                assertThat(new BigDecimal(mismatch.getValue("expected").toString()))
+                    .isEqualByComparingTo(new BigDecimal(50));
+                vertxTestContext.completeNow();
+            }), vertxTestContext::failNow);
+    }
+
+    @Test
+    void testShouldCheckAccountsOfTransactionsCommittedAfterRunWithLowerIds(Vertx vertx,
+        VertxTestContext vertxTestContext) {
+        WebClient client = WebClient.create(vertx);
+
+        createAccountsWithTransactions(client)
+            .flatMap(created -> client.post(8080, "localhost", "/admin/reconciliation").rxSend())
+            .flatMap(started -> awaitFinished(vertx, client))
+            .flatMap(first -> {
+                commitLateDeposit();
+                return client.post(8080, "localhost", "/admin/reconciliation").rxSend();
+            })
+            .flatMap(started -> awaitFinished(vertx, client))
+            .subscribe(status -> vertxTestContext.verify(() -> {
+                assertThat(status.getLong("checked")).isEqualTo(1);
+                assertThat(status.getJsonArray("mismatches")).isEmpty();
+                vertxTestContext.completeNow();
+            }), vertxTestContext::failNow);
+    }
+
+    @Test
+    void testShouldReturn409WhenReconciliationIsRunning(Vertx vertx, VertxTestContext vertxTestContext) {
+        WebClient client = WebClient.create(vertx);
+
+        createAccountsWithTransactions(client)
+            .flatMap(created -> client.post(8080, "localhost", "/admin/reconciliation?full=true").rxSend())
+            .flatMap(first -> client.post(8080, "localhost", "/admin/reconciliation?full=true").rxSend())
+            .flatMap(second -> {
+                vertxTestContext.verify(() -> assertThat(second.statusCode()).isIn(202, 409));
+                return client.post(8080, "localhost", "/admin/reconciliation?full=yes").rxSend();
+            })
+            .subscribe(invalid -> vertxTestContext.verify(() -> {
+                assertThat(invalid.statusCode()).isEqualTo(400);
+                vertxTestContext.completeNow();
+            }), vertxTestContext::failNow);
+    }
+
+    // Account 0 ends with 50 after the transfer, account 1 with 50
+    private Single<?> createAccountsWithTransactions(WebClient client) {
+        JsonObject firstAccount = new JsonObject().put("name", "John").put("surname", "Doe");
+        JsonObject secondAccount = new JsonObject().put("name", "Jane").put("surname", "Doe");
+        JsonObject deposit = new JsonObject().put("amount", 100).put("destination_account_id", 0)
+            .put("transaction_type", "DEPOSIT");
+        JsonObject transfer = new JsonObject().put("amount", 50).put("source_account_id", 0)
+            .put("destination_account_id", 1).put("transaction_type", "TRANSFER");
+
+        return client.post(8080, "localhost", "/api/accounts").rxSendJson(firstAccount)
+            .flatMap(result -> client.post(8080, "localhost", "/api/accounts").rxSendJson(secondAccount))
+            .flatMap(result -> client.post(8080, "localhost", "/api/transactions").rxSendJson(deposit))
+            .flatMap(result -> client.post(8080, "localhost", "/api/transactions").rxSendJson(transfer));
+    }
+
+    private Single<JsonObject> awaitFinished(Vertx vertx, WebClient client) {
+        return client.get(8080, "localhost", "/admin/reconciliation").as(BodyCodec.jsonObject()).rxSend()
+            .flatMap(status -> status.body().getBoolean("running")
+                ? Single.timer(50, TimeUnit.MILLISECONDS, RxHelper.scheduler(vertx))
+                .flatMap(waited -> awaitFinished(vertx, client))
+                : Single.just(status.body()));
+    }
+
+    // Deposit whose id is lower than every id the previous run saw, like a transaction allocated its id earlier
+    // but committed only after the run
+    private void commitLateDeposit() throws Exception {
+        try (Connection connection = DriverManager.getConnection(URL);
+            Statement statement = connection.createStatement()) {
+            connection.setAutoCommit(false);
+            statement.executeUpdate("UPDATE ACCOUNT SET BALANCE = BALANCE + 1 WHERE ID = 0");
+            statement.executeUpdate("INSERT INTO TRANSACTION(ID, DESTINATION_ACCOUNT_ID, TRANSACTION_TYPE, AMOUNT) "
+                + "VALUES (-1, 0, 'DEPOSIT', 1)");
+            connection.commit();
+        }
+    }
+
+    // Changes balance behind the application's back, without a transaction row
+    private void corruptBalance() throws Exception {
+        try (Connection connection = DriverManager.getConnection(URL);
+            Statement statement = connection.createStatement()) {
+            statement.executeUpdate("UPDATE ACCOUNT SET BALANCE = BALANCE + 1 WHERE ID = 0");
+        }
+    }
+
+}
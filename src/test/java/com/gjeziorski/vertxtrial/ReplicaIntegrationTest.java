@@ -0,0 +1,87 @@
+package com.gjeziorski.vertxtrial;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.gjeziorski.vertxtrial.verticles.HttpVerticle;
+import io.vertx.core.DeploymentOptions;
+import io.vertx.core.json.JsonObject;
+import io.vertx.junit5.VertxExtension;
+import io.vertx.junit5.VertxTestContext;
+import io.vertx.reactivex.core.Vertx;
+import io.vertx.reactivex.ext.web.client.WebClient;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+@ExtendWith(VertxExtension.class)
+public class ReplicaIntegrationTest {
+
+    @BeforeEach
+    void setUp(Vertx vertx, VertxTestContext vertxTestContext) {
+        // Copies are never refreshed in the background, so only min-sequence makes them catch up
+        JsonObject config = new JsonObject().put("database", new JsonObject().put("replica", new JsonObject()
+            .put("enabled", true)
+            .put("refresh_interval_ms", 3_600_000)));
+        vertx.deployVerticle(new HttpVerticle(), new DeploymentOptions().setConfig(config),
+            vertxTestContext.completing());
+    }
+
+    @Test
+    void testShouldServeOwnWritesWithMinSequence(Vertx vertx, VertxTestContext vertxTestContext) {
+        WebClient client = WebClient.create(vertx);
+        JsonObject account = new JsonObject().put("name", "John").put("surname", "Doe");
+
+        client.post(8080, "localhost", "/api/accounts").rxSendJson(account)
+            .flatMap(created -> {
+                vertxTestContext.verify(() -> assertThat(created.getHeader("X-Commit-Sequence")).isNotNull());
+                return client.post(8080, "localhost", "/api/transactions").rxSendJson(deposit(100));
+            })
+            .flatMap(deposited -> client.get(8080, "localhost", "/api/transactions?account-id=0").rxSend())
+            .flatMap(copied -> client.post(8080, "localhost", "/api/transactions").rxSendJson(deposit(50)))
+            .flatMap(deposited -> client.get(8080, "localhost", "/api/transactions?account-id=0").rxSend()
+                .flatMap(stale -> {
+                    vertxTestContext.verify(() -> assertThat(stale.bodyAsJsonArray()).hasSize(1));
+                    return client.get(8080, "localhost", "/api/transactions?account-id=0&min-sequence="
+                        + deposited.getHeader("X-Commit-Sequence")).rxSend()
+                        .map(fresh -> {
+                            vertxTestContext.verify(() -> {
+                                assertThat(fresh.statusCode()).isEqualTo(200);
+                                assertThat(fresh.bodyAsJsonArray()).hasSize(2);
+                                assertThat(fresh.getHeader("ETag")).isNotEqualTo(stale.getHeader("ETag"));
+                            });
+                            return fresh;
+                        });
+                }))
+            .flatMap(fresh -> client.get(8080, "localhost", "/api/accounts").rxSend())
+            .flatMap(copied -> client.post(8080, "localhost", "/api/transactions").rxSendJson(deposit(25)))
+            .flatMap(deposited -> client.get(8080, "localhost", "/api/accounts").rxSend()
+                .flatMap(stale -> {
+                    vertxTestContext.verify(() -> assertThat(stale.bodyAsJsonArray().getJsonObject(0)
+                        .getDouble("balance")).isEqualTo(150.0));
+                    return client.get(8080, "localhost", "/api/accounts?min-sequence="
+                        + deposited.getHeader("X-Commit-Sequence")).rxSend();
+                }))
+            .flatMap(fresh -> {
+                vertxTestContext.verify(() -> assertThat(fresh.bodyAsJsonArray().getJsonObject(0)
+                    .getDouble("balance")).isEqualTo(175.0));
+                return client.get(8080, "localhost", "/api/accounts?min-sequence=-1").rxSend();
+            })
+            .flatMap(invalid -> {
+                vertxTestContext.verify(() -> assertThat(invalid.statusCode()).isEqualTo(400));
+                return client.get(8080, "localhost", "/admin/metrics/replica").rxSend();
+            })
+            .subscribe(metrics -> vertxTestContext.verify(() -> {
+                JsonObject replica = metrics.bodyAsJsonObject();
+                assertThat(replica.getBoolean("enabled")).isTrue();
+                assertThat(replica.getJsonObject("transactions").getLong("hits")).isEqualTo(1);
+                assertThat(replica.getJsonObject("accounts").getLong("hits")).isEqualTo(1);
+                vertxTestContext.completeNow();
+            }), vertxTestContext::failNow);
+    }
+
+    private JsonObject deposit(int amount) {
+        return new JsonObject().put("amount", amount).put("destination_account_id", 0)
+            .put("transaction_type", "DEPOSIT");
+    }
+
+}
@@ -0,0 +1,98 @@
+package com.gjeziorski.vertxtrial;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.gjeziorski.vertxtrial.verticles.HttpVerticle;
+import io.reactivex.Single;
+import io.vertx.core.DeploymentOptions;
+import io.vertx.core.json.JsonObject;
+import io.vertx.junit5.VertxExtension;
+import io.vertx.junit5.VertxTestContext;
+import io.vertx.reactivex.core.RxHelper;
+import io.vertx.reactivex.core.Vertx;
+import io.vertx.reactivex.ext.web.client.WebClient;
+import java.io.File;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+@ExtendWith(VertxExtension.class)
+public class ScheduledTransactionRecoveryIntegrationTest {
+
+    private static final String DATABASE_DIRECTORY = "target/scheduled-transaction-db";
+    private static final String DATABASE_NAME = "recovery";
+    private static final String URL = "jdbc:hsqldb:file:" + DATABASE_DIRECTORY + "/" + DATABASE_NAME + ";shutdown=true";
+    private static final long UNCOMMITTED_TRANSACTION_ID = 1_000_000;
+
+    @Test
+    void testShouldCompleteCommittedAndRetryUncommittedTransactionsLeftRunning(Vertx vertx,
+        VertxTestContext vertxTestContext) {
+        deleteDatabaseFiles();
+        WebClient client = WebClient.create(vertx);
+        JsonObject config = new JsonObject().put("database", new JsonObject().put("storage", new JsonObject()
+            .put("mode", "FILE").put("path", DATABASE_DIRECTORY + "/" + DATABASE_NAME)));
+        JsonObject deposit = new JsonObject().put("amount", 100).put("destination_account_id", 0)
+            .put("transaction_type", "DEPOSIT");
+
+        vertx.rxDeployVerticle(new HttpVerticle(), new DeploymentOptions().setConfig(config))
+            .flatMap(id -> client.post(8080, "localhost", "/api/accounts")
+                .rxSendJson(new JsonObject().put("name", "John").put("surname", "Doe"))
+                .flatMap(result -> client.post(8080, "localhost", "/api/transactions").rxSendJson(deposit))
+                .flatMap(result -> {
+                    leaveRunningTransactions();
+                    return vertx.rxUndeploy(id).toSingleDefault(id);
+                }))
+            .flatMap(id -> vertx.rxDeployVerticle(new HttpVerticle(), new DeploymentOptions().setConfig(config)))
+            .flatMap(id -> Single.timer(1000, TimeUnit.MILLISECONDS, RxHelper.scheduler(vertx)))
+            .flatMap(waited -> client.get(8080, "localhost", "/api/accounts/0/balance").rxSend())
+            .subscribe(result -> vertxTestContext.verify(() -> {
+                // Only the uncommitted transaction is executed again, the committed one isn't repeated
+                assertThat(result.bodyAsJsonObject().getDouble("balance")).isEqualTo(105.0);
+                Map<Long, String> statuses = new HashMap<>();
+                try (Connection connection = DriverManager.getConnection(URL);
+                    Statement statement = connection.createStatement();
+                    ResultSet resultSet = statement.executeQuery("SELECT AMOUNT, STATUS, TRANSACTION_ID "
+                        + "FROM SCHEDULED_TRANSACTION")) {
+                    while (resultSet.next()) {
+                        statuses.put(resultSet.getLong(1), resultSet.getString(2));
+                        if (resultSet.getLong(1) == 5) {
+                            assertThat(resultSet.getLong(3)).isNotEqualTo(UNCOMMITTED_TRANSACTION_ID);
+                        }
+                    }
+                }
+                assertThat(statuses).containsEntry(100L, "EXECUTED").containsEntry(5L, "EXECUTED")
+                    .containsEntry(7L, "INTERRUPTED");
+                vertxTestContext.completeNow();
+            }), vertxTestContext::failNow);
+    }
+
+    // Rows a crash leaves behind, the running application doesn't touch them: the deposit already in the journal,
+    // a deposit whose transaction never committed and a row claimed before journal ids were stored
+    private void leaveRunningTransactions() throws Exception {
+        try (Connection connection = DriverManager.getConnection(URL);
+            Statement statement = connection.createStatement()) {
+            String insert = "INSERT INTO SCHEDULED_TRANSACTION(DESTINATION_ACCOUNT_ID, TRANSACTION_TYPE, AMOUNT, "
+                + "EXECUTE_AT, STATUS, TRANSACTION_ID) VALUES (0, 'DEPOSIT', %d, 0, 'RUNNING', %s)";
+            statement.executeUpdate(String.format(insert, 100, "(SELECT MAX(ID) FROM TRANSACTION)"));
+            statement.executeUpdate(String.format(insert, 5, UNCOMMITTED_TRANSACTION_ID));
+            statement.executeUpdate(String.format(insert, 7, "NULL"));
+        }
+    }
+
+    // Database stays open until Vert.x is closed, so it's kept out of the temporary directory
+    private void deleteDatabaseFiles() {
+        File[] files = new File(DATABASE_DIRECTORY).listFiles((parent, file) -> file.startsWith(DATABASE_NAME + "."));
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+    }
+
+}
@@ -2,16 +2,29 @@ package com.gjeziorski.vertxtrial;
 
 
 import static com.gjeziorski.vertxtrial.common.ErrorCodesTranslator.ACCOUNT_DOESNT_EXIST_MESSAGE;
+import static com.gjeziorski.vertxtrial.common.ErrorCodesTranslator.INVALID_EXECUTE_AT_MESSAGE;
 import static com.gjeziorski.vertxtrial.common.ErrorCodesTranslator.INVALID_TRANSACTION_AMOUNT_MESSAGE;
 import static com.gjeziorski.vertxtrial.common.ErrorCodesTranslator.INVALID_TRANSACTION_TYPE_MESSAGE;
 import static org.assertj.core.api.Assertions.assertThat;
 
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.gjeziorski.vertxtrial.common.ObjectMapperProvider;
+import com.gjeziorski.vertxtrial.domain.Transaction;
 import com.gjeziorski.vertxtrial.verticles.HttpVerticle;
+import io.reactivex.Observable;
+import io.reactivex.Single;
 import io.vertx.core.json.JsonObject;
 import io.vertx.junit5.VertxExtension;
 import io.vertx.junit5.VertxTestContext;
+import io.vertx.reactivex.core.RxHelper;
 import io.vertx.reactivex.core.Vertx;
+import io.vertx.reactivex.core.buffer.Buffer;
 import io.vertx.reactivex.ext.web.client.WebClient;
+import java.io.IOException;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -21,6 +34,8 @@ import org.junit.jupiter.params.provider.MethodSource;
 @ExtendWith(VertxExtension.class)
 public class TransactionIntegrationTest {
 
+    private static final String CBOR_CONTENT_TYPE = "application/cbor";
+
     @BeforeEach
     void setUp(Vertx vertx, VertxTestContext vertxTestContext) {
         vertx.deployVerticle(new HttpVerticle(), vertxTestContext.completing());
@@ -91,6 +106,184 @@ public class TransactionIntegrationTest {
             ));
     }
 
+    @Test
+    void testShouldKeepBalanceOfHotAccount(Vertx vertx, VertxTestContext vertxTestContext) {
+        WebClient client = WebClient.create(vertx);
+
+        JsonObject firstAccount = new JsonObject().put("name", "John").put("surname", "Doe");
+        JsonObject secondAccount = new JsonObject().put("name", "Jane").put("surname", "Doe");
+        JsonObject deposit = new JsonObject().put("amount", 100).put("destination_account_id", 0)
+            .put("transaction_type", "DEPOSIT");
+        JsonObject sweepingWithdraw = new JsonObject().put("amount", 350).put("destination_account_id", 0)
+            .put("transaction_type", "WITHDRAW");
+        JsonObject overdraw = new JsonObject().put("amount", 100).put("destination_account_id", 0)
+            .put("transaction_type", "WITHDRAW");
+        JsonObject transferOut = new JsonObject().put("amount", 40).put("source_account_id", 0)
+            .put("destination_account_id", 1).put("transaction_type", "TRANSFER");
+        JsonObject transferIn = new JsonObject().put("amount", 15).put("source_account_id", 1)
+            .put("destination_account_id", 0).put("transaction_type", "TRANSFER");
+
+        client.post(8080, "localhost", "/api/accounts").rxSendJson(firstAccount)
+            .flatMap(result -> client.post(8080, "localhost", "/api/accounts").rxSendJson(secondAccount))
+            .flatMap(result -> client.put(8080, "localhost", "/admin/accounts/0/hot")
+                .rxSendJson(new JsonObject().put("slots", 4)))
+            .flatMap(hot -> {
+                vertxTestContext.verify(() -> {
+                    assertThat(hot.statusCode()).isEqualTo(200);
+                    assertThat(hot.bodyAsJsonObject().getInteger("slots")).isEqualTo(4);
+                });
+                return Observable.range(0, 4)
+                    .concatMapSingle(i -> client.post(8080, "localhost", "/api/transactions").rxSendJson(deposit))
+                    .toList();
+            })
+            .flatMap(deposits -> client.post(8080, "localhost", "/api/transactions").rxSendJson(sweepingWithdraw))
+            .flatMap(withdraw -> {
+                vertxTestContext.verify(() -> assertThat(withdraw.statusCode()).isEqualTo(201));
+                return client.post(8080, "localhost", "/api/transactions").rxSendJson(overdraw);
+            })
+            .flatMap(rejected -> {
+                vertxTestContext.verify(() -> assertThat(rejected.statusCode()).isEqualTo(400));
+                return client.post(8080, "localhost", "/api/transactions").rxSendJson(transferOut);
+            })
+            .flatMap(result -> client.post(8080, "localhost", "/api/transactions").rxSendJson(transferIn))
+            .flatMap(result -> client.get(8080, "localhost", "/api/accounts").rxSend())
+            .subscribe(result -> vertxTestContext.verify(
+                () -> {
+                    assertThat(result.bodyAsJsonArray().getJsonObject(0).getDouble("balance")).isEqualTo(25.0);
+                    assertThat(result.bodyAsJsonArray().getJsonObject(1).getDouble("balance")).isEqualTo(25.0);
+                    vertxTestContext.completeNow();
+                }
+            ), vertxTestContext::failNow);
+    }
+
+    @Test
+    void testShouldReturn400WhenAccountCannotBeMarkedHot(Vertx vertx, VertxTestContext vertxTestContext) {
+        WebClient client = WebClient.create(vertx);
+
+        client.put(8080, "localhost", "/admin/accounts/7/hot").rxSendJson(new JsonObject().put("slots", 4))
+            .flatMap(missing -> {
+                vertxTestContext.verify(() -> assertThat(missing.statusCode()).isEqualTo(400));
+                return client.put(8080, "localhost", "/admin/accounts/7/hot")
+                    .rxSendJson(new JsonObject().put("slots", 1000));
+            })
+            .subscribe(result -> vertxTestContext.verify(
+                () -> {
+                    assertThat(result.statusCode()).isEqualTo(400);
+                    vertxTestContext.completeNow();
+                }
+            ), vertxTestContext::failNow);
+    }
+
+    @Test
+    void testShouldExecuteScheduledTransactionWhenDue(Vertx vertx, VertxTestContext vertxTestContext) {
+        WebClient client = WebClient.create(vertx);
+
+        JsonObject account = new JsonObject().put("name", "John").put("surname", "Doe");
+        JsonObject scheduledDeposit = new JsonObject().put("amount", 100).put("destination_account_id", 0)
+            .put("transaction_type", "DEPOSIT").put("execute_at", Instant.now().plusMillis(500).toString());
+
+        client.post(8080, "localhost", "/api/accounts").rxSendJson(account)
+            .flatMap(result -> client.post(8080, "localhost", "/api/transactions").rxSendJson(scheduledDeposit))
+            .flatMap(scheduled -> {
+                vertxTestContext.verify(() -> {
+                    assertThat(scheduled.statusCode()).isEqualTo(202);
+                    assertThat(scheduled.bodyAsJsonObject().getLong("id")).isEqualTo(0);
+                });
+                return client.get(8080, "localhost", "/api/transactions?account-id=0").rxSend();
+            })
+            .flatMap(pending -> {
+                vertxTestContext.verify(() -> assertThat(pending.bodyAsJsonArray()).isEmpty());
+                return Single.timer(1500, TimeUnit.MILLISECONDS, RxHelper.scheduler(vertx));
+            })
+            .flatMap(waited -> client.get(8080, "localhost", "/api/transactions?account-id=0").rxSend())
+            .subscribe(result -> vertxTestContext.verify(
+                () -> {
+                    assertThat(result.bodyAsJsonArray().size()).isEqualTo(1);
+                    assertThat(result.bodyAsJsonArray().getJsonObject(0).containsKey("execute_at")).isFalse();
+                    vertxTestContext.completeNow();
+                }
+            ), vertxTestContext::failNow);
+    }
+
+    @Test
+    void testShouldReturn304UntilAccountTransactionsChange(Vertx vertx, VertxTestContext vertxTestContext) {
+        WebClient client = WebClient.create(vertx);
+
+        JsonObject account = new JsonObject().put("name", "John").put("surname", "Doe");
+        JsonObject deposit = new JsonObject().put("amount", 100).put("destination_account_id", 0)
+            .put("transaction_type", "DEPOSIT");
+
+        client.post(8080, "localhost", "/api/accounts").rxSendJson(account)
+            .flatMap(result -> client.post(8080, "localhost", "/api/transactions").rxSendJson(deposit))
+            .flatMap(result -> client.get(8080, "localhost", "/api/transactions?account-id=0").rxSend())
+            .flatMap(first -> client.get(8080, "localhost", "/api/transactions?account-id=0")
+                .putHeader("If-None-Match", first.getHeader("ETag")).rxSend()
+                .flatMap(notModified -> {
+                    vertxTestContext.verify(() -> assertThat(notModified.statusCode()).isEqualTo(304));
+                    return client.post(8080, "localhost", "/api/transactions").rxSendJson(deposit);
+                })
+                .flatMap(result -> client.get(8080, "localhost", "/api/transactions?account-id=0")
+                    .putHeader("If-None-Match", first.getHeader("ETag")).rxSend()))
+            .subscribe(result -> vertxTestContext.verify(
+                () -> {
+                    assertThat(result.statusCode()).isEqualTo(200);
+                    assertThat(result.getHeader("ETag")).isNotNull();
+                    assertThat(result.bodyAsJsonArray().size()).isEqualTo(2);
+                    vertxTestContext.completeNow();
+                }
+            ), vertxTestContext::failNow);
+    }
+
+    @Test
+    void testShouldAcceptAndReturnCbor(Vertx vertx, VertxTestContext vertxTestContext) throws IOException {
+        WebClient client = WebClient.create(vertx);
+        ObjectMapper cborObjectMapper = ObjectMapperProvider.getCborObjectMapper();
+
+        Buffer account = Buffer.buffer(cborObjectMapper.writeValueAsBytes(
+            new JsonObject().put("name", "John").put("surname", "Doe").getMap()));
+        Buffer transaction = Buffer.buffer(cborObjectMapper.writeValueAsBytes(
+            new JsonObject().put("amount", 100).put("destination_account_id", 0).put("transaction_type", "DEPOSIT")
+                .getMap()));
+
+        client.post(8080, "localhost", "/api/accounts").putHeader("Content-Type", CBOR_CONTENT_TYPE)
+            .rxSendBuffer(account)
+            .flatMap(result -> client.post(8080, "localhost", "/api/transactions")
+                .putHeader("Content-Type", CBOR_CONTENT_TYPE).rxSendBuffer(transaction))
+            .flatMap(result -> client.get(8080, "localhost", "/api/transactions?account-id=0")
+                .putHeader("Accept", CBOR_CONTENT_TYPE).rxSend())
+            .subscribe(result -> vertxTestContext.verify(
+                () -> {
+                    assertThat(result.statusCode()).isEqualTo(200);
+                    assertThat(result.getHeader("Content-Type")).isEqualTo(CBOR_CONTENT_TYPE);
+                    List<Transaction> transactions = cborObjectMapper.readValue(result.body().getBytes(),
+                        new TypeReference<List<Transaction>>() {
+                        });
+                    assertThat(transactions).hasSize(1);
+                    assertThat(transactions.get(0).getAmount()).isEqualByComparingTo("100");
+                    vertxTestContext.completeNow();
+                }
+            ));
+    }
+
+    @Test
+    void testBadRequestOnInvalidCborRequest(Vertx vertx, VertxTestContext vertxTestContext) throws IOException {
+        WebClient client = WebClient.create(vertx);
+
+        Buffer transaction = Buffer.buffer(ObjectMapperProvider.getCborObjectMapper().writeValueAsBytes(
+            new JsonObject().put("amount", -100).put("destination_account_id", 0).put("transaction_type", "DEPOSIT")
+                .getMap()));
+
+        client.post(8080, "localhost", "/api/transactions").putHeader("Content-Type", CBOR_CONTENT_TYPE)
+            .rxSendBuffer(transaction)
+            .subscribe(result -> vertxTestContext.verify(
+                () -> {
+                    assertThat(result.statusCode()).isEqualTo(400);
+                    assertThat(result.body().toString()).isEqualTo(INVALID_TRANSACTION_AMOUNT_MESSAGE);
+                    vertxTestContext.completeNow();
+                }
+            ));
+    }
+
     @ParameterizedTest
     @MethodSource("invalidRequests")
     void testBadRequestOnInvalidPostRequest(JsonObject request, String errorMessage, Vertx vertx,
@@ -150,8 +343,20 @@ public class TransactionIntegrationTest {
             .put("destination_account_id", 0)
             .put("transaction_type", "TOPUP");
 
+        final JsonObject invalidExecuteAtRequest = new JsonObject().put("amount", 100)
+            .put("destination_account_id", 0)
+            .put("transaction_type", "DEPOSIT")
+            .put("execute_at", "tomorrow");
+
+        final JsonObject scheduledForNonExistentAccountRequest = new JsonObject().put("amount", 100)
+            .put("destination_account_id", 100)
+            .put("transaction_type", "DEPOSIT")
+            .put("execute_at", "2020-01-29T17:29:50Z");
+
         return new Object[]{
             new Object[]{nonExistentSourceAccountIdRequest, ACCOUNT_DOESNT_EXIST_MESSAGE},
+            new Object[]{invalidExecuteAtRequest, INVALID_EXECUTE_AT_MESSAGE},
+            new Object[]{scheduledForNonExistentAccountRequest, ACCOUNT_DOESNT_EXIST_MESSAGE},
             new Object[]{nonExistentDestinationAccountIdRequest, ACCOUNT_DOESNT_EXIST_MESSAGE},
             new Object[]{negativeAmountRequest, INVALID_TRANSACTION_AMOUNT_MESSAGE},
             new Object[]{nonExistentTransactionTypeRequest, INVALID_TRANSACTION_TYPE_MESSAGE}
@@ -0,0 +1,91 @@
+package com.gjeziorski.vertxtrial;
+
+import static com.gjeziorski.vertxtrial.common.ErrorCodesTranslator.VELOCITY_LIMIT_EXCEEDED_MESSAGE;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.gjeziorski.vertxtrial.verticles.HttpVerticle;
+import io.reactivex.Observable;
+import io.vertx.core.DeploymentOptions;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.junit5.VertxExtension;
+import io.vertx.junit5.VertxTestContext;
+import io.vertx.reactivex.core.Vertx;
+import io.vertx.reactivex.ext.web.client.HttpResponse;
+import io.vertx.reactivex.ext.web.client.WebClient;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+@ExtendWith(VertxExtension.class)
+public class VelocityIntegrationTest {
+
+    @BeforeEach
+    void setUp(Vertx vertx, VertxTestContext vertxTestContext) {
+        JsonObject config = new JsonObject().put("velocity", new JsonObject().put("enabled", true)
+            .put("limits", new JsonArray()
+                .add(new JsonObject().put("name", "minute").put("window_ms", 60000).put("buckets", 60)
+                    .put("max_count", 2))
+                .add(new JsonObject().put("name", "day").put("window_ms", 86400000).put("buckets", 24)
+                    .put("max_amount", 200))));
+        vertx.deployVerticle(new HttpVerticle(), new DeploymentOptions().setConfig(config),
+            vertxTestContext.completing());
+    }
+
+    @Test
+    void testShouldRejectDebitsOverVelocityLimits(Vertx vertx, VertxTestContext vertxTestContext) {
+        WebClient client = WebClient.create(vertx);
+        JsonObject account = new JsonObject().put("name", "John").put("surname", "Doe");
+
+        client.post(8080, "localhost", "/api/accounts").rxSendJson(account)
+            .flatMap(created -> client.post(8080, "localhost", "/api/accounts").rxSendJson(account))
+            .flatMap(created -> Observable.just(
+                deposit(100), withdraw(120), deposit(200), withdraw(100), transfer(150), withdraw(50), transfer(1),
+                deposit(10))
+                .concatMapSingle(transaction -> client.post(8080, "localhost", "/api/transactions")
+                    .rxSendJson(transaction))
+                .toList())
+            .flatMap(responses -> {
+                vertxTestContext.verify(() -> {
+                    // Withdrawal failing on insufficient funds doesn't count, deposits aren't limited
+                    assertThat(responses).extracting(HttpResponse::statusCode)
+                        .containsExactly(201, 400, 201, 201, 403, 201, 403, 201);
+                    assertThat(responses.get(4).bodyAsString()).isEqualTo(VELOCITY_LIMIT_EXCEEDED_MESSAGE);
+                });
+                return client.get(8080, "localhost", "/api/accounts").rxSend();
+            })
+            .flatMap(result -> {
+                vertxTestContext.verify(() -> assertThat(result.bodyAsJsonArray().getJsonObject(0)
+                    .getDouble("balance")).isEqualTo(160.0));
+                return client.get(8080, "localhost", "/admin/metrics/velocity").rxSend();
+            })
+            .subscribe(result -> vertxTestContext.verify(() -> {
+                JsonObject metrics = result.bodyAsJsonObject();
+                assertThat(metrics.getLong("accounts")).isEqualTo(1);
+                assertThat(metrics.getLong("allowed")).isEqualTo(3);
+                assertThat(metrics.getLong("released")).isEqualTo(1);
+                assertThat(metrics.getLong("rejected")).isEqualTo(2);
+                assertThat(metrics.getJsonObject("limits").getJsonObject("minute").getLong("rejected"))
+                    .isEqualTo(1);
+                assertThat(metrics.getJsonObject("limits").getJsonObject("day").getLong("rejected"))
+                    .isEqualTo(1);
+                vertxTestContext.completeNow();
+            }), vertxTestContext::failNow);
+    }
+
+    private JsonObject deposit(int amount) {
+        return new JsonObject().put("amount", amount).put("destination_account_id", 0)
+            .put("transaction_type", "DEPOSIT");
+    }
+
+    private JsonObject withdraw(int amount) {
+        return new JsonObject().put("amount", amount).put("destination_account_id", 0)
+            .put("transaction_type", "WITHDRAW");
+    }
+
+    private JsonObject transfer(int amount) {
+        return new JsonObject().put("amount", amount).put("source_account_id", 0).put("destination_account_id", 1)
+            .put("transaction_type", "TRANSFER");
+    }
+
+}
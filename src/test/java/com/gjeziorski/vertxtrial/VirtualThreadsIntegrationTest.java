@@ -0,0 +1,115 @@
+package com.gjeziorski.vertxtrial;
+
+import static com.gjeziorski.vertxtrial.common.ErrorCodesTranslator.INSUFFICIENT_FUNDS_MESSAGE;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assumptions.assumeFalse;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import com.gjeziorski.vertxtrial.repository.TransactionExecutionMode;
+import com.gjeziorski.vertxtrial.verticles.HttpVerticle;
+import io.vertx.core.DeploymentOptions;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.junit5.VertxExtension;
+import io.vertx.junit5.VertxTestContext;
+import io.vertx.reactivex.core.Vertx;
+import io.vertx.reactivex.ext.web.client.WebClient;
+import java.time.LocalDate;
+import java.util.concurrent.Executors;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+// Virtual threads need JDK 21, on older JDKs only the failed start is checked
+@ExtendWith(VertxExtension.class)
+public class VirtualThreadsIntegrationTest {
+
+    @ParameterizedTest
+    @EnumSource(TransactionExecutionMode.class)
+    void testShouldExecuteTransactionsOnVirtualThreads(TransactionExecutionMode mode, Vertx vertx,
+        VertxTestContext vertxTestContext) {
+        assumeTrue(virtualThreadsAvailable());
+        WebClient client = WebClient.create(vertx);
+        JsonObject deposit = new JsonObject().put("amount", 100).put("destination_account_id", 0)
+            .put("transaction_type", "DEPOSIT");
+        JsonObject transfer = new JsonObject().put("amount", 30).put("source_account_id", 0)
+            .put("destination_account_id", 1).put("transaction_type", "TRANSFER");
+        JsonObject withdraw = new JsonObject().put("amount", 31).put("destination_account_id", 1)
+            .put("transaction_type", "WITHDRAW");
+        String today = LocalDate.now().toString();
+
+        vertx.rxDeployVerticle(new HttpVerticle(), new DeploymentOptions().setConfig(config(mode)))
+            .flatMap(id -> client.post(8080, "localhost", "/api/accounts")
+                .rxSendJson(new JsonObject().put("name", "John").put("surname", "Doe")))
+            .flatMap(result -> client.post(8080, "localhost", "/api/accounts")
+                .rxSendJson(new JsonObject().put("name", "Jane").put("surname", "Doe")))
+            .flatMap(result -> client.post(8080, "localhost", "/api/transactions").rxSendJson(deposit))
+            .flatMap(result -> client.post(8080, "localhost", "/api/transactions").rxSendJson(transfer))
+            .flatMap(result -> {
+                vertxTestContext.verify(() -> assertThat(result.statusCode()).isEqualTo(201));
+                return client.post(8080, "localhost", "/api/transactions").rxSendJson(withdraw);
+            })
+            .flatMap(result -> {
+                vertxTestContext.verify(() -> {
+                    assertThat(result.statusCode()).isEqualTo(400);
+                    assertThat(result.bodyAsString()).isEqualTo(INSUFFICIENT_FUNDS_MESSAGE);
+                });
+                return client.get(8080, "localhost", "/api/accounts").rxSend();
+            })
+            .flatMap(result -> {
+                vertxTestContext.verify(() -> {
+                    JsonArray accounts = result.bodyAsJsonArray();
+                    assertThat(accounts.getJsonObject(0).getDouble("balance")).isEqualTo(70.0);
+                    assertThat(accounts.getJsonObject(1).getDouble("balance")).isEqualTo(30.0);
+                });
+                return client.get(8080, "localhost", "/api/transactions?account-id=0").rxSend();
+            })
+            .flatMap(result -> {
+                vertxTestContext.verify(() -> {
+                    JsonArray transactions = result.bodyAsJsonArray();
+                    assertThat(transactions.size()).isEqualTo(2);
+                    assertThat(transactions.getJsonObject(0).getString("source_account_id")).isNull();
+                    assertThat(transactions.getJsonObject(1).getLong("source_account_id")).isEqualTo(0);
+                });
+                return client.get(8080, "localhost", "/api/accounts/0/summary?from=" + today + "&to=" + today)
+                    .rxSend();
+            })
+            .subscribe(result -> vertxTestContext.verify(() -> {
+                JsonArray summaries = result.bodyAsJsonArray();
+                assertThat(summaries.size()).isEqualTo(2);
+                assertThat(summaries.getJsonObject(0).getString("summary_date")).isEqualTo(today);
+                assertThat(summaries.getJsonObject(0).getDouble("inflow")).isEqualTo(100.0);
+                assertThat(summaries.getJsonObject(1).getDouble("outflow")).isEqualTo(30.0);
+                vertxTestContext.completeNow();
+            }), vertxTestContext::failNow);
+    }
+
+    @Test
+    void testShouldNotStartWithoutVirtualThreads(Vertx vertx, VertxTestContext vertxTestContext) {
+        assumeFalse(virtualThreadsAvailable());
+
+        vertx.rxDeployVerticle(new HttpVerticle(),
+            new DeploymentOptions().setConfig(config(TransactionExecutionMode.PESSIMISTIC)))
+            .subscribe(id -> vertxTestContext.failNow(new AssertionError("Deployed without virtual threads")),
+                throwable -> vertxTestContext.verify(() -> {
+                    assertThat(throwable).hasMessageStartingWith("Virtual threads require JDK 21");
+                    vertxTestContext.completeNow();
+                }));
+    }
+
+    private JsonObject config(TransactionExecutionMode mode) {
+        return new JsonObject().put("database", new JsonObject().put("threading", "VIRTUAL_THREADS")
+            .put("transaction_execution", new JsonObject().put("mode", mode.name())));
+    }
+
+    private static boolean virtualThreadsAvailable() {
+        try {
+            Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return true;
+        } catch (NoSuchMethodException e) {
+            return false;
+        }
+    }
+
+}
@@ -0,0 +1,65 @@
+package com.gjeziorski.vertxtrial;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.gjeziorski.vertxtrial.verticles.HttpVerticle;
+import io.vertx.core.DeploymentOptions;
+import io.vertx.core.json.JsonObject;
+import io.vertx.junit5.VertxExtension;
+import io.vertx.junit5.VertxTestContext;
+import io.vertx.reactivex.core.Vertx;
+import io.vertx.reactivex.ext.web.client.WebClient;
+import io.vertx.reactivex.ext.web.codec.BodyCodec;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+@ExtendWith(VertxExtension.class)
+public class WarmUpIntegrationTest {
+
+    @BeforeEach
+    void setUp(Vertx vertx, VertxTestContext vertxTestContext) {
+        JsonObject config = new JsonObject().put("warmup", new JsonObject()
+            .put("enabled", true).put("requests", 400).put("accounts", 3).put("window_size", 50))
+            .put("rate_limit", new JsonObject()
+                .put("enabled", true).put("account_rate", 10_000).put("account_burst", 1000));
+        vertx.deployVerticle(new HttpVerticle(), new DeploymentOptions().setConfig(config),
+            vertxTestContext.completing());
+    }
+
+    @Test
+    void testShouldRemoveScratchAccountsAfterWarmUp(Vertx vertx, VertxTestContext vertxTestContext) {
+        WebClient client = WebClient.create(vertx);
+        client.get(8080, "localhost", "/api/accounts").as(BodyCodec.jsonArray())
+            .send(vertxTestContext.succeeding(response -> vertxTestContext.verify(() -> {
+                assertThat(response.statusCode()).isEqualTo(200);
+                assertThat(response.body()).isEmpty();
+                vertxTestContext.completeNow();
+            })));
+    }
+
+    @Test
+    void testShouldExecuteWarmUpWorkloadBeforeListening(Vertx vertx, VertxTestContext vertxTestContext) {
+        WebClient client = WebClient.create(vertx);
+        client.get(8080, "localhost", "/admin/metrics/pools").as(BodyCodec.jsonObject())
+            .send(vertxTestContext.succeeding(response -> vertxTestContext.verify(() -> {
+                assertThat(response.statusCode()).isEqualTo(200);
+                assertThat(response.body().getJsonObject("write_pool").getLong("acquired")).isGreaterThan(300);
+                vertxTestContext.completeNow();
+            })));
+    }
+
+    @Test
+    void testShouldEvictRateLimitBucketsOfScratchAccounts(Vertx vertx, VertxTestContext vertxTestContext) {
+        WebClient client = WebClient.create(vertx);
+        client.get(8080, "localhost", "/admin/metrics/rate-limits").as(BodyCodec.jsonObject())
+            .send(vertxTestContext.succeeding(response -> vertxTestContext.verify(() -> {
+                assertThat(response.statusCode()).isEqualTo(200);
+                JsonObject account = response.body().getJsonObject("account");
+                assertThat(account.getLong("allowed")).isGreaterThan(0);
+                assertThat(account.getInteger("buckets")).isZero();
+                vertxTestContext.completeNow();
+            })));
+    }
+
+}
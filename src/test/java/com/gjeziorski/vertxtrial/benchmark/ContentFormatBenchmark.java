@@ -0,0 +1,112 @@
+package com.gjeziorski.vertxtrial.benchmark;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.gjeziorski.vertxtrial.domain.Transaction;
+import com.gjeziorski.vertxtrial.domain.TransactionType;
+import com.gjeziorski.vertxtrial.serialization.ContentFormat;
+import com.gjeziorski.vertxtrial.serialization.Payload;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+// Compares payload size and CPU time per request of JSON and CBOR, for transaction listings (written straight
+// into pooled buffers) and for create requests (CBOR bodies are transcoded to JSON before validation)
+// Run with: mvn test -Pbenchmark -Dtest=ContentFormatBenchmark
+@Tag("benchmark")
+class ContentFormatBenchmark {
+
+    private static final int WARM_UP_ITERATIONS = 5_000;
+    private static final int ITERATIONS = 20_000;
+    private static final int[] LISTING_SIZES = {10, 100, 1000};
+
+    private final ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+
+    @Test
+    void benchmarkListingSerialization() throws IOException {
+        Random random = new Random(42);
+        for (int size : LISTING_SIZES) {
+            List<Transaction> transactions = randomTransactions(random, size);
+            int iterations = Math.max(100, ITERATIONS / size * 10);
+            for (ContentFormat format : ContentFormat.values()) {
+                Payload sample = Payload.write(transactions, format);
+                int bytes = sample.length();
+                sample.release();
+
+                for (int i = 0; i < WARM_UP_ITERATIONS / 10; i++) {
+                    Payload.write(transactions, format).release();
+                }
+                LatencyRecorder recorder = new LatencyRecorder(iterations);
+                long cpuStartedAt = threadMXBean.getCurrentThreadCpuTime();
+                recorder.start();
+                for (int i = 0; i < iterations; i++) {
+                    long startedAt = System.nanoTime();
+                    Payload.write(transactions, format).release();
+                    recorder.record(System.nanoTime() - startedAt);
+                }
+                recorder.finish();
+                report(format + " listing of " + size, recorder, bytes,
+                    threadMXBean.getCurrentThreadCpuTime() - cpuStartedAt, iterations);
+            }
+        }
+    }
+
+    @Test
+    void benchmarkCreateRequestDecoding() throws IOException {
+        Transaction transaction = randomTransactions(new Random(42), 1).get(0);
+        for (ContentFormat format : ContentFormat.values()) {
+            byte[] body = format.objectMapper().writeValueAsBytes(transaction);
+            for (int i = 0; i < WARM_UP_ITERATIONS; i++) {
+                decode(format, body);
+            }
+            LatencyRecorder recorder = new LatencyRecorder(ITERATIONS);
+            long cpuStartedAt = threadMXBean.getCurrentThreadCpuTime();
+            recorder.start();
+            for (int i = 0; i < ITERATIONS; i++) {
+                long startedAt = System.nanoTime();
+                decode(format, body);
+                recorder.record(System.nanoTime() - startedAt);
+            }
+            recorder.finish();
+            report(format + " create request", recorder, body.length,
+                threadMXBean.getCurrentThreadCpuTime() - cpuStartedAt, ITERATIONS);
+        }
+    }
+
+    // Mirrors the request path: binary bodies are transcoded to JSON text, which is then parsed for validation
+    private JsonNode decode(ContentFormat format, byte[] body) throws IOException {
+        byte[] json = body;
+        if (format != ContentFormat.JSON) {
+            json = ContentFormat.JSON.objectMapper().writeValueAsBytes(format.objectMapper().readTree(body));
+        }
+        return ContentFormat.JSON.objectMapper().readTree(json);
+    }
+
+    private void report(String name, LatencyRecorder recorder, int bytes, long cpuNanos, int iterations) {
+        System.out.println(recorder.summary(name) + String.format(" bytes=%7d cpu=%8.1fus/op", bytes,
+            cpuNanos / 1000.0 / iterations));
+    }
+
+    private List<Transaction> randomTransactions(Random random, int size) {
+        List<Transaction> transactions = new ArrayList<>();
+        Instant executionTime = Instant.parse("2020-01-29T17:29:50Z");
+        for (long id = 0; id < size; id++) {
+            transactions.add(Transaction.builder()
+                .id(id)
+                .sourceAccountId((long) random.nextInt(1_000_000))
+                .destinationAccountId((long) random.nextInt(1_000_000))
+                .amount(BigDecimal.valueOf(random.nextInt(10_000_000), 2))
+                .transactionType(TransactionType.TRANSFER)
+                .executionTime(executionTime.plusMillis(random.nextInt(86_400_000)))
+                .build());
+        }
+        return transactions;
+    }
+
+}
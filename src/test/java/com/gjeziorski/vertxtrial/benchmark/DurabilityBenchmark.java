@@ -0,0 +1,162 @@
+package com.gjeziorski.vertxtrial.benchmark;
+
+import static com.gjeziorski.vertxtrial.common.EventBusAddresses.DATABASE_TRANSACTION_DEPOSIT;
+
+import com.gjeziorski.vertxtrial.domain.Transaction;
+import com.gjeziorski.vertxtrial.domain.TransactionType;
+import com.gjeziorski.vertxtrial.repository.StorageMode;
+import com.gjeziorski.vertxtrial.verticles.RepositoryVerticle;
+import io.vertx.core.DeploymentOptions;
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonObject;
+import io.vertx.junit5.VertxExtension;
+import io.vertx.junit5.VertxTestContext;
+import java.io.File;
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+
+// Measures write throughput of deposits for each durability level and the time of re-initializing a populated
+// database, which must keep its data
+// Run with: mvn test -Pbenchmark
+@Tag("benchmark")
+@ExtendWith(VertxExtension.class)
+class DurabilityBenchmark {
+
+    private static final String MEMORY_URL = "jdbc:hsqldb:mem:test?shutdown=true";
+    private static final String DATABASE_DIRECTORY = "target/benchmark-db";
+    private static final int ACCOUNTS = 100;
+    private static final int WARM_UP_DEPOSITS = 2_000;
+    private static final int MEASURED_DEPOSITS = 10_000;
+    private static final int CONCURRENCY = 16;
+
+    @ParameterizedTest
+    @MethodSource("durabilityLevels")
+    void benchmarkDeposits(StorageMode mode, int writeDelayMs, Vertx vertx, VertxTestContext vertxTestContext)
+        throws Throwable {
+        String name = mode == StorageMode.FILE ? "write-delay-" + writeDelayMs : "memory";
+        String path = DATABASE_DIRECTORY + "/" + name;
+        deleteDatabaseFiles(name);
+        String url = mode == StorageMode.FILE ? "jdbc:hsqldb:file:" + path : MEMORY_URL;
+        JsonObject config = new JsonObject().put("database", new JsonObject()
+            .put("storage", new JsonObject().put("mode", mode.name()).put("path", path)
+                .put("write_delay_ms", writeDelayMs)));
+        DeploymentOptions deploymentOptions = new DeploymentOptions().setConfig(config);
+        vertx.deployVerticle(new RepositoryVerticle(), deploymentOptions, vertxTestContext.succeeding(id -> {
+            try {
+                createAccounts(url);
+            } catch (SQLException e) {
+                vertxTestContext.failNow(e);
+                return;
+            }
+            LatencyRecorder warmUp = new LatencyRecorder(WARM_UP_DEPOSITS);
+            LatencyRecorder sequential = new LatencyRecorder(MEASURED_DEPOSITS);
+            LatencyRecorder concurrent = new LatencyRecorder(MEASURED_DEPOSITS);
+            runDeposits(vertx, warmUp, WARM_UP_DEPOSITS, CONCURRENCY, () ->
+                runDeposits(vertx, sequential, MEASURED_DEPOSITS, 1, () ->
+                    runDeposits(vertx, concurrent, MEASURED_DEPOSITS, CONCURRENCY, () -> {
+                        System.out.println(sequential.summary(name + " sequential"));
+                        System.out.println(concurrent.summary(name + " concurrency " + CONCURRENCY));
+                        if (mode == StorageMode.MEMORY) {
+                            vertxTestContext.completeNow();
+                            return;
+                        }
+                        long startedAt = System.nanoTime();
+                        vertx.deployVerticle(new RepositoryVerticle(), deploymentOptions,
+                            vertxTestContext.succeeding(secondId -> vertxTestContext.verify(() -> {
+                                System.out.println(String.format("%s re-initialization: %.1f ms, accounts kept: %d",
+                                    name, (System.nanoTime() - startedAt) / 1_000_000.0, countAccounts(url)));
+                                vertxTestContext.completeNow();
+                            })));
+                    })));
+        }));
+        vertxTestContext.awaitCompletion(5, TimeUnit.MINUTES);
+        if (vertxTestContext.failed()) {
+            throw vertxTestContext.causeOfFailure();
+        }
+    }
+
+    private static Object[] durabilityLevels() {
+        return new Object[]{
+            new Object[]{StorageMode.MEMORY, 0},
+            new Object[]{StorageMode.FILE, 0},
+            new Object[]{StorageMode.FILE, 10},
+            new Object[]{StorageMode.FILE, 500}
+        };
+    }
+
+    private void deleteDatabaseFiles(String name) {
+        File[] files = new File(DATABASE_DIRECTORY).listFiles((directory, file) -> file.startsWith(name + "."));
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+    }
+
+    private void createAccounts(String url) throws SQLException {
+        try (Connection connection = DriverManager.getConnection(url);
+            PreparedStatement statement = connection
+                .prepareStatement("INSERT INTO ACCOUNT(ID, BALANCE, NAME, SURNAME) VALUES (?, 0, 'John', 'Doe')")) {
+            for (int i = 0; i < ACCOUNTS; i++) {
+                statement.setLong(1, i);
+                statement.executeUpdate();
+            }
+        }
+    }
+
+    private int countAccounts(String url) throws SQLException {
+        try (Connection connection = DriverManager.getConnection(url);
+            ResultSet resultSet = connection.createStatement().executeQuery("SELECT COUNT(*) FROM ACCOUNT")) {
+            resultSet.next();
+            return resultSet.getInt(1);
+        }
+    }
+
+    private void runDeposits(Vertx vertx, LatencyRecorder recorder, int deposits, int concurrency,
+        Runnable onFinished) {
+        AtomicInteger remaining = new AtomicInteger(deposits);
+        AtomicInteger runningChains = new AtomicInteger(concurrency);
+        recorder.start();
+        for (int i = 0; i < concurrency; i++) {
+            runChain(vertx, recorder, remaining, () -> {
+                if (runningChains.decrementAndGet() == 0) {
+                    recorder.finish();
+                    onFinished.run();
+                }
+            });
+        }
+    }
+
+    private void runChain(Vertx vertx, LatencyRecorder recorder, AtomicInteger remaining, Runnable onFinished) {
+        if (remaining.getAndDecrement() <= 0) {
+            onFinished.run();
+            return;
+        }
+        long startedAt = System.nanoTime();
+        vertx.eventBus().request(DATABASE_TRANSACTION_DEPOSIT, randomDeposit(), reply -> {
+            recorder.record(System.nanoTime() - startedAt);
+            if (reply.failed()) {
+                recorder.recordFailure();
+            }
+            runChain(vertx, recorder, remaining, onFinished);
+        });
+    }
+
+    private String randomDeposit() {
+        Transaction transaction = Transaction.builder().transactionType(TransactionType.DEPOSIT)
+            .amount(BigDecimal.ONE).destinationAccountId((long) ThreadLocalRandom.current().nextInt(ACCOUNTS)).build();
+        return JsonObject.mapFrom(transaction).toString();
+    }
+
+}
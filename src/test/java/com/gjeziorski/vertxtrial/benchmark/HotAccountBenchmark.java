@@ -0,0 +1,128 @@
+package com.gjeziorski.vertxtrial.benchmark;
+
+import static com.gjeziorski.vertxtrial.common.EventBusAddresses.DATABASE_ACCOUNT_HOT;
+import static com.gjeziorski.vertxtrial.common.EventBusAddresses.DATABASE_TRANSACTION_DEPOSIT;
+
+import com.gjeziorski.vertxtrial.domain.Transaction;
+import com.gjeziorski.vertxtrial.domain.TransactionType;
+import com.gjeziorski.vertxtrial.verticles.RepositoryVerticle;
+import io.vertx.core.DeploymentOptions;
+import io.vertx.core.Future;
+import io.vertx.core.Promise;
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonObject;
+import io.vertx.junit5.VertxExtension;
+import io.vertx.junit5.VertxTestContext;
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+// Compares throughput of concurrent deposits to a single account without balance slots and with growing number of
+// slots. Row level locking is needed for slots to help, so the database runs in MVCC mode.
+// Run with: mvn test -Pbenchmark -Dtest=HotAccountBenchmark
+@Tag("benchmark")
+@ExtendWith(VertxExtension.class)
+class HotAccountBenchmark {
+
+    private static final String URL = "jdbc:hsqldb:mem:test?shutdown=true";
+    private static final int WARM_UP_DEPOSITS = 5_000;
+    private static final int MEASURED_DEPOSITS = 20_000;
+    private static final int CONCURRENCY = 16;
+
+    @ParameterizedTest
+    @ValueSource(ints = {0, 4, 16})
+    void benchmarkDeposits(int slots, Vertx vertx, VertxTestContext vertxTestContext) throws Throwable {
+        JsonObject config = new JsonObject().put("database", new JsonObject()
+            .put("transaction_control", "MVCC")
+            .put("transaction_execution", new JsonObject().put("mode", "PESSIMISTIC")));
+        vertx.deployVerticle(new RepositoryVerticle(), new DeploymentOptions().setConfig(config),
+            vertxTestContext.succeeding(id -> {
+                try {
+                    createAccount();
+                } catch (SQLException e) {
+                    vertxTestContext.failNow(e);
+                    return;
+                }
+                markHot(vertx, slots).setHandler(vertxTestContext.succeeding(marked -> {
+                    LatencyRecorder warmUp = new LatencyRecorder(WARM_UP_DEPOSITS);
+                    LatencyRecorder concurrent = new LatencyRecorder(MEASURED_DEPOSITS);
+                    runDeposits(vertx, warmUp, WARM_UP_DEPOSITS, () ->
+                        runDeposits(vertx, concurrent, MEASURED_DEPOSITS, () -> {
+                            System.out.println(concurrent.summary("slots " + slots + " concurrency " + CONCURRENCY));
+                            vertxTestContext.completeNow();
+                        }));
+                }));
+            }));
+        vertxTestContext.awaitCompletion(5, TimeUnit.MINUTES);
+        if (vertxTestContext.failed()) {
+            throw vertxTestContext.causeOfFailure();
+        }
+    }
+
+    private void createAccount() throws SQLException {
+        try (Connection connection = DriverManager.getConnection(URL);
+            Statement statement = connection.createStatement()) {
+            statement.executeUpdate("INSERT INTO ACCOUNT(ID, BALANCE, NAME, SURNAME) VALUES (0, 0, 'John', 'Doe')");
+        }
+    }
+
+    private Future<Void> markHot(Vertx vertx, int slots) {
+        if (slots == 0) {
+            return Future.succeededFuture();
+        }
+        Promise<Void> marked = Promise.promise();
+        vertx.eventBus().request(DATABASE_ACCOUNT_HOT, new JsonObject().put("id", 0).put("slots", slots).toString(),
+            reply -> {
+                if (reply.succeeded()) {
+                    marked.complete();
+                } else {
+                    marked.fail(reply.cause());
+                }
+            });
+        return marked.future();
+    }
+
+    private void runDeposits(Vertx vertx, LatencyRecorder recorder, int deposits, Runnable onFinished) {
+        AtomicInteger remaining = new AtomicInteger(deposits);
+        AtomicInteger runningChains = new AtomicInteger(CONCURRENCY);
+        recorder.start();
+        for (int i = 0; i < CONCURRENCY; i++) {
+            runChain(vertx, recorder, remaining, () -> {
+                if (runningChains.decrementAndGet() == 0) {
+                    recorder.finish();
+                    onFinished.run();
+                }
+            });
+        }
+    }
+
+    private void runChain(Vertx vertx, LatencyRecorder recorder, AtomicInteger remaining, Runnable onFinished) {
+        if (remaining.getAndDecrement() <= 0) {
+            onFinished.run();
+            return;
+        }
+        long startedAt = System.nanoTime();
+        vertx.eventBus().request(DATABASE_TRANSACTION_DEPOSIT, deposit(), reply -> {
+            recorder.record(System.nanoTime() - startedAt);
+            if (reply.failed()) {
+                recorder.recordFailure();
+            }
+            runChain(vertx, recorder, remaining, onFinished);
+        });
+    }
+
+    private String deposit() {
+        Transaction transaction = Transaction.builder().transactionType(TransactionType.DEPOSIT)
+            .amount(BigDecimal.ONE).destinationAccountId(0L).build();
+        return JsonObject.mapFrom(transaction).toString();
+    }
+
+}
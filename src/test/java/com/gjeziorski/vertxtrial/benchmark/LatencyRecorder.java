@@ -0,0 +1,64 @@
+package com.gjeziorski.vertxtrial.benchmark;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+
+class LatencyRecorder {
+
+    private final long[] latencies;
+    private final AtomicInteger count = new AtomicInteger();
+    private final AtomicInteger failures = new AtomicInteger();
+    private long startedAt;
+    private long finishedAt;
+
+    LatencyRecorder(final int capacity) {
+        this.latencies = new long[capacity];
+    }
+
+    void start() {
+        startedAt = System.nanoTime();
+    }
+
+    void finish() {
+        finishedAt = System.nanoTime();
+    }
+
+    void record(final long latencyNanos) {
+        latencies[count.getAndIncrement()] = latencyNanos;
+    }
+
+    void recordFailure() {
+        failures.incrementAndGet();
+    }
+
+    int failures() {
+        return failures.get();
+    }
+
+    int count() {
+        return count.get();
+    }
+
+    double throughput() {
+        return count.get() / ((finishedAt - startedAt) / 1_000_000_000.0);
+    }
+
+    double percentileMs(final double percentile) {
+        final long[] sorted = Arrays.copyOf(latencies, count.get());
+        Arrays.sort(sorted);
+        final int index = Math.min(sorted.length - 1, (int) Math.ceil(percentile / 100.0 * sorted.length) - 1);
+        return sorted[Math.max(index, 0)] / 1_000_000.0;
+    }
+
+    double averageMs() {
+        return Arrays.stream(latencies, 0, count.get()).average().orElse(0) / 1_000_000.0;
+    }
+
+    String summary(final String name) {
+        return String.format(
+            "%-40s ops=%7d failed=%5d throughput=%9.1f/s avg=%7.3fms p50=%7.3fms p99=%7.3fms max=%8.3fms",
+            name, count(), failures(), throughput(), averageMs(), percentileMs(50), percentileMs(99),
+            percentileMs(100));
+    }
+
+}
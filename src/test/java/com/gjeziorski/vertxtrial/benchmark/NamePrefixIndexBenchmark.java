@@ -0,0 +1,58 @@
+package com.gjeziorski.vertxtrial.benchmark;
+
+import com.gjeziorski.vertxtrial.domain.AccountOwner;
+import com.gjeziorski.vertxtrial.domain.AccountSearchResult;
+import com.gjeziorski.vertxtrial.index.NamePrefixIndex;
+import java.util.Random;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+// Measures latency of prefix lookups of the account name index
+// Run with: mvn test -Pbenchmark -Dbenchmark.accounts=10000000 (needs a few GB of heap for ten million accounts)
+@Tag("benchmark")
+class NamePrefixIndexBenchmark {
+
+    private static final int ACCOUNTS = Integer.getInteger("benchmark.accounts", 1_000_000);
+    private static final int LOOKUPS = 100_000;
+    private static final int LIMIT = 20;
+    private static final String[] SYLLABLES = {"an", "be", "cho", "da", "el", "fi", "go", "ha", "jo", "ka", "li",
+        "ma", "no", "pe", "ra", "si", "to", "vi", "wo", "ze"};
+
+    @Test
+    void benchmarkPrefixSearch() {
+        Random random = new Random(42);
+        NamePrefixIndex index = new NamePrefixIndex();
+        long startedAt = System.nanoTime();
+        for (long id = 0; id < ACCOUNTS; id++) {
+            index.put(new AccountOwner(id, randomName(random), randomName(random)));
+        }
+        System.out.println(String.format("Indexed %d accounts in %d ms", ACCOUNTS,
+            (System.nanoTime() - startedAt) / 1_000_000));
+
+        for (int prefixLength = 1; prefixLength <= 3; prefixLength++) {
+            LatencyRecorder recorder = new LatencyRecorder(LOOKUPS);
+            recorder.start();
+            for (int i = 0; i < LOOKUPS; i++) {
+                String prefix = randomName(random).substring(0, prefixLength);
+                long lookupStartedAt = System.nanoTime();
+                AccountSearchResult result = index.search(prefix, LIMIT, null);
+                if (result.getNextCursor() != null) {
+                    index.search(prefix, LIMIT, result.getNextCursor());
+                }
+                recorder.record(System.nanoTime() - lookupStartedAt);
+            }
+            recorder.finish();
+            System.out.println(recorder.summary("prefix length " + prefixLength + ", two pages"));
+        }
+    }
+
+    private String randomName(Random random) {
+        StringBuilder name = new StringBuilder();
+        int syllables = 2 + random.nextInt(3);
+        for (int i = 0; i < syllables; i++) {
+            name.append(SYLLABLES[random.nextInt(SYLLABLES.length)]);
+        }
+        return name.toString();
+    }
+
+}
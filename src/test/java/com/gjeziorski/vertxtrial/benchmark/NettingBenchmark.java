@@ -0,0 +1,131 @@
+package com.gjeziorski.vertxtrial.benchmark;
+
+import static com.gjeziorski.vertxtrial.common.EventBusAddresses.DATABASE_METRICS_NETTING;
+import static com.gjeziorski.vertxtrial.common.EventBusAddresses.DATABASE_TRANSACTION_TRANSFER;
+
+import com.gjeziorski.vertxtrial.domain.Transaction;
+import com.gjeziorski.vertxtrial.domain.TransactionType;
+import com.gjeziorski.vertxtrial.verticles.RepositoryVerticle;
+import io.vertx.core.DeploymentOptions;
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.junit5.VertxExtension;
+import io.vertx.junit5.VertxTestContext;
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+// Compares throughput of concurrent transfers in both directions between two accounts executed one by one and
+// netted. Netted transfers are answered after the settlement, so their latency includes the settle interval.
+// Run with: mvn test -Pbenchmark -Dtest=NettingBenchmark
+@Tag("benchmark")
+@ExtendWith(VertxExtension.class)
+class NettingBenchmark {
+
+    private static final String URL = "jdbc:hsqldb:mem:test?shutdown=true";
+    private static final int WARM_UP_TRANSFERS = 20_000;
+    private static final int MEASURED_TRANSFERS = 200_000;
+    private static final int CONCURRENCY = 512;
+
+    @ParameterizedTest
+    @ValueSource(booleans = {false, true})
+    void benchmarkTransfers(boolean netting, Vertx vertx, VertxTestContext vertxTestContext) throws Throwable {
+        JsonObject config = new JsonObject().put("database", new JsonObject()
+            .put("write_pool", new JsonObject().put("queue_limit", CONCURRENCY * 2))
+            .put("netting", new JsonObject().put("enabled", netting).put("settle_interval_ms", 10)
+                .put("pairs", new JsonArray().add(new JsonObject().put("accounts", new JsonArray().add(0).add(1))
+                    .put("reserve", 100_000)))));
+        vertx.deployVerticle(new RepositoryVerticle(), new DeploymentOptions().setConfig(config),
+            vertxTestContext.succeeding(id -> {
+                try {
+                    createAccounts();
+                } catch (SQLException e) {
+                    vertxTestContext.failNow(e);
+                    return;
+                }
+                awaitActivation(vertx, netting, () -> {
+                    LatencyRecorder warmUp = new LatencyRecorder(WARM_UP_TRANSFERS);
+                    LatencyRecorder concurrent = new LatencyRecorder(MEASURED_TRANSFERS);
+                    runTransfers(vertx, warmUp, WARM_UP_TRANSFERS, () ->
+                        runTransfers(vertx, concurrent, MEASURED_TRANSFERS, () -> {
+                            System.out.println(concurrent.summary((netting ? "netted" : "one by one")
+                                + " concurrency " + CONCURRENCY));
+                            vertxTestContext.completeNow();
+                        }));
+                });
+            }));
+        vertxTestContext.awaitCompletion(10, TimeUnit.MINUTES);
+        if (vertxTestContext.failed()) {
+            throw vertxTestContext.causeOfFailure();
+        }
+    }
+
+    private void createAccounts() throws SQLException {
+        try (Connection connection = DriverManager.getConnection(URL);
+            Statement statement = connection.createStatement()) {
+            statement.executeUpdate("INSERT INTO ACCOUNT(ID, BALANCE, NAME, SURNAME) VALUES "
+                + "(0, 1000000, 'John', 'Doe'), (1, 1000000, 'Jane', 'Doe')");
+        }
+    }
+
+    private void awaitActivation(Vertx vertx, boolean netting, Runnable onActive) {
+        if (!netting) {
+            onActive.run();
+            return;
+        }
+        vertx.eventBus().<JsonObject>request(DATABASE_METRICS_NETTING, "", reply -> {
+            if (reply.succeeded() && reply.result().body().getJsonArray("pairs").getJsonObject(0).getBoolean("active")) {
+                onActive.run();
+            } else {
+                vertx.setTimer(100, timerId -> awaitActivation(vertx, true, onActive));
+            }
+        });
+    }
+
+    private void runTransfers(Vertx vertx, LatencyRecorder recorder, int transfers, Runnable onFinished) {
+        AtomicInteger remaining = new AtomicInteger(transfers);
+        AtomicInteger runningChains = new AtomicInteger(CONCURRENCY);
+        recorder.start();
+        for (int i = 0; i < CONCURRENCY; i++) {
+            runChain(vertx, recorder, remaining, i % 2, () -> {
+                if (runningChains.decrementAndGet() == 0) {
+                    recorder.finish();
+                    onFinished.run();
+                }
+            });
+        }
+    }
+
+    private void runChain(Vertx vertx, LatencyRecorder recorder, AtomicInteger remaining, int sourceAccountId,
+        Runnable onFinished) {
+        if (remaining.getAndDecrement() <= 0) {
+            onFinished.run();
+            return;
+        }
+        long startedAt = System.nanoTime();
+        vertx.eventBus().request(DATABASE_TRANSACTION_TRANSFER, transfer(sourceAccountId), reply -> {
+            recorder.record(System.nanoTime() - startedAt);
+            if (reply.failed()) {
+                recorder.recordFailure();
+            }
+            runChain(vertx, recorder, remaining, sourceAccountId, onFinished);
+        });
+    }
+
+    private String transfer(int sourceAccountId) {
+        Transaction transaction = Transaction.builder().transactionType(TransactionType.TRANSFER)
+            .amount(BigDecimal.ONE).sourceAccountId((long) sourceAccountId)
+            .destinationAccountId((long) (1 - sourceAccountId)).build();
+        return JsonObject.mapFrom(transaction).toString();
+    }
+
+}
@@ -0,0 +1,54 @@
+package com.gjeziorski.vertxtrial.benchmark;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.gjeziorski.vertxtrial.scheduling.TimingWheel;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+// Measures cost of scheduling and firing items spread over a year of 100 ms ticks, and checks that no item
+// fires before its deadline
+// Run with: mvn test -Pbenchmark -Dtest=TimingWheelBenchmark -Dbenchmark.pending=10000000
+@Tag("benchmark")
+class TimingWheelBenchmark {
+
+    private static final int PENDING = Integer.getInteger("benchmark.pending", 1_000_000);
+    private static final long TICK_MS = 100;
+    private static final long HORIZON_MS = 365L * 24 * 3600 * 1000;
+
+    @Test
+    void benchmarkScheduleAndFire() {
+        Random random = new Random(42);
+        TimingWheel<Long> wheel = new TimingWheel<>(TICK_MS, 8, 4, 0);
+        long startedAt = System.nanoTime();
+        for (int i = 0; i < PENDING; i++) {
+            long deadlineMs = (long) (random.nextDouble() * HORIZON_MS);
+            wheel.schedule(deadlineMs, deadlineMs);
+        }
+        long scheduleNanos = System.nanoTime() - startedAt;
+
+        AtomicLong fired = new AtomicLong();
+        AtomicLong early = new AtomicLong();
+        long[] nowMs = new long[1];
+        startedAt = System.nanoTime();
+        for (nowMs[0] = 0; nowMs[0] <= HORIZON_MS + TICK_MS; nowMs[0] += 3_600_000) {
+            wheel.advance(nowMs[0], deadlineMs -> {
+                fired.incrementAndGet();
+                if (deadlineMs > nowMs[0]) {
+                    early.incrementAndGet();
+                }
+            });
+        }
+        long fireNanos = System.nanoTime() - startedAt;
+
+        System.out.println(String.format("Scheduled %d items in %d ms (%.0f ns/item), advanced a year and fired them "
+                + "in %d ms (%.0f ns/item)", PENDING, scheduleNanos / 1_000_000, (double) scheduleNanos / PENDING,
+            fireNanos / 1_000_000, (double) fireNanos / PENDING));
+        assertThat(fired.get()).isEqualTo(PENDING);
+        assertThat(early.get()).isZero();
+        assertThat(wheel.size()).isZero();
+    }
+
+}
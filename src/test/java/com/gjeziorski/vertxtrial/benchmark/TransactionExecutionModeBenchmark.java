@@ -0,0 +1,131 @@
+package com.gjeziorski.vertxtrial.benchmark;
+
+import static com.gjeziorski.vertxtrial.common.EventBusAddresses.DATABASE_TRANSACTION_TRANSFER;
+
+import com.gjeziorski.vertxtrial.domain.Transaction;
+import com.gjeziorski.vertxtrial.domain.TransactionType;
+import com.gjeziorski.vertxtrial.repository.TransactionExecutionMode;
+import com.gjeziorski.vertxtrial.verticles.RepositoryVerticle;
+import io.vertx.core.DeploymentOptions;
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonObject;
+import io.vertx.junit5.VertxExtension;
+import io.vertx.junit5.VertxTestContext;
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+
+// Compares latency of a single transfer and throughput of concurrent transfers for each execution mode
+// Run with: mvn test -Pbenchmark
+@Tag("benchmark")
+@ExtendWith(VertxExtension.class)
+class TransactionExecutionModeBenchmark {
+
+    private static final String URL = "jdbc:hsqldb:mem:test?shutdown=true";
+    private static final int ACCOUNTS = 100;
+    private static final int WARM_UP_TRANSFERS = 5_000;
+    private static final int MEASURED_TRANSFERS = 20_000;
+    private static final int CONCURRENCY = 16;
+
+    @ParameterizedTest
+    @MethodSource("modes")
+    void benchmarkTransfers(TransactionExecutionMode mode, String transactionControl, Vertx vertx,
+        VertxTestContext vertxTestContext) throws Throwable {
+        JsonObject config = new JsonObject().put("database", new JsonObject()
+            .put("transaction_control", transactionControl)
+            .put("transaction_execution", new JsonObject().put("mode", mode.name())));
+        vertx.deployVerticle(new RepositoryVerticle(), new DeploymentOptions().setConfig(config),
+            vertxTestContext.succeeding(id -> {
+                try {
+                    createAccounts();
+                } catch (SQLException e) {
+                    vertxTestContext.failNow(e);
+                    return;
+                }
+                LatencyRecorder warmUp = new LatencyRecorder(WARM_UP_TRANSFERS);
+                LatencyRecorder sequential = new LatencyRecorder(MEASURED_TRANSFERS);
+                LatencyRecorder concurrent = new LatencyRecorder(MEASURED_TRANSFERS);
+                runTransfers(vertx, warmUp, WARM_UP_TRANSFERS, CONCURRENCY, () ->
+                    runTransfers(vertx, sequential, MEASURED_TRANSFERS, 1, () ->
+                        runTransfers(vertx, concurrent, MEASURED_TRANSFERS, CONCURRENCY, () -> {
+                            String name = mode + " " + transactionControl;
+                            System.out.println(sequential.summary(name + " sequential"));
+                            System.out.println(concurrent.summary(name + " concurrency " + CONCURRENCY));
+                            vertxTestContext.completeNow();
+                        })));
+            }));
+        vertxTestContext.awaitCompletion(5, TimeUnit.MINUTES);
+        if (vertxTestContext.failed()) {
+            throw vertxTestContext.causeOfFailure();
+        }
+    }
+
+    private static Object[] modes() {
+        return new Object[]{
+            new Object[]{TransactionExecutionMode.PESSIMISTIC, "LOCKS"},
+            new Object[]{TransactionExecutionMode.PROCEDURE, "LOCKS"},
+            new Object[]{TransactionExecutionMode.OPTIMISTIC, "LOCKS"},
+            new Object[]{TransactionExecutionMode.PESSIMISTIC, "MVCC"},
+            new Object[]{TransactionExecutionMode.OPTIMISTIC, "MVCC"}
+        };
+    }
+
+    private void createAccounts() throws SQLException {
+        try (Connection connection = DriverManager.getConnection(URL);
+            PreparedStatement statement = connection
+                .prepareStatement("INSERT INTO ACCOUNT(ID, BALANCE, NAME, SURNAME) VALUES (?, 1000000, 'John', 'Doe')")) {
+            for (int i = 0; i < ACCOUNTS; i++) {
+                statement.setLong(1, i);
+                statement.executeUpdate();
+            }
+        }
+    }
+
+    private void runTransfers(Vertx vertx, LatencyRecorder recorder, int transfers, int concurrency,
+        Runnable onFinished) {
+        AtomicInteger remaining = new AtomicInteger(transfers);
+        AtomicInteger runningChains = new AtomicInteger(concurrency);
+        recorder.start();
+        for (int i = 0; i < concurrency; i++) {
+            runChain(vertx, recorder, remaining, () -> {
+                if (runningChains.decrementAndGet() == 0) {
+                    recorder.finish();
+                    onFinished.run();
+                }
+            });
+        }
+    }
+
+    private void runChain(Vertx vertx, LatencyRecorder recorder, AtomicInteger remaining, Runnable onFinished) {
+        if (remaining.getAndDecrement() <= 0) {
+            onFinished.run();
+            return;
+        }
+        long startedAt = System.nanoTime();
+        vertx.eventBus().request(DATABASE_TRANSACTION_TRANSFER, randomTransfer(), reply -> {
+            recorder.record(System.nanoTime() - startedAt);
+            if (reply.failed()) {
+                recorder.recordFailure();
+            }
+            runChain(vertx, recorder, remaining, onFinished);
+        });
+    }
+
+    private String randomTransfer() {
+        long source = ThreadLocalRandom.current().nextInt(ACCOUNTS);
+        long destination = (source + 1 + ThreadLocalRandom.current().nextInt(ACCOUNTS - 1)) % ACCOUNTS;
+        Transaction transaction = Transaction.builder().transactionType(TransactionType.TRANSFER)
+            .amount(BigDecimal.ONE).sourceAccountId(source).destinationAccountId(destination).build();
+        return JsonObject.mapFrom(transaction).toString();
+    }
+
+}
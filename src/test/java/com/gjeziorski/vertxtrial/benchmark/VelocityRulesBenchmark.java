@@ -0,0 +1,67 @@
+package com.gjeziorski.vertxtrial.benchmark;
+
+import com.gjeziorski.vertxtrial.domain.Transaction;
+import com.gjeziorski.vertxtrial.domain.TransactionType;
+import com.gjeziorski.vertxtrial.velocity.VelocityLimit;
+import com.gjeziorski.vertxtrial.velocity.VelocityOptions;
+import com.gjeziorski.vertxtrial.velocity.VelocityRules;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+// Measures latency of velocity limit evaluation with minute, hour and day windows, with transfers spread over
+// many accounts and with all threads debiting a single account
+// Run with: mvn test -Pbenchmark -Dtest=VelocityRulesBenchmark
+@Tag("benchmark")
+class VelocityRulesBenchmark {
+
+    private static final int THREADS = 8;
+    private static final int EVALUATIONS_PER_THREAD = 500_000;
+    private static final int ACCOUNTS = 100_000;
+
+    @Test
+    void benchmarkEvaluation() throws InterruptedException {
+        run("spread over " + ACCOUNTS + " accounts", ACCOUNTS);
+        run("spread over " + ACCOUNTS + " accounts", ACCOUNTS);
+        run("single account", 1);
+    }
+
+    private void run(String name, int accounts) throws InterruptedException {
+        VelocityRules rules = new VelocityRules(VelocityOptions.builder().enabled(true).limits(Arrays.asList(
+            limit("minute", 60_000, 60), limit("hour", 3_600_000, 60), limit("day", 86_400_000, 24))).build());
+        LatencyRecorder recorder = new LatencyRecorder(THREADS * EVALUATIONS_PER_THREAD);
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < THREADS; i++) {
+            threads.add(new Thread(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                for (int j = 0; j < EVALUATIONS_PER_THREAD; j++) {
+                    Transaction transfer = Transaction.builder().transactionType(TransactionType.TRANSFER)
+                        .amount(BigDecimal.valueOf(random.nextInt(10_000), 2))
+                        .sourceAccountId((long) random.nextInt(accounts)).destinationAccountId(0L).build();
+                    long startedAt = System.nanoTime();
+                    if (rules.reserve(transfer) == null) {
+                        recorder.recordFailure();
+                    }
+                    recorder.record(System.nanoTime() - startedAt);
+                }
+            }));
+        }
+        recorder.start();
+        threads.forEach(Thread::start);
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        recorder.finish();
+        System.out.println(recorder.summary(name + ", " + THREADS + " threads"));
+    }
+
+    private VelocityLimit limit(String name, long windowMs, int buckets) {
+        return VelocityLimit.builder().name(name).windowMs(windowMs).buckets(buckets).maxCount(Integer.MAX_VALUE)
+            .build();
+    }
+
+}
@@ -0,0 +1,147 @@
+package com.gjeziorski.vertxtrial.benchmark;
+
+import static com.gjeziorski.vertxtrial.common.EventBusAddresses.DATABASE_TRANSACTION_TRANSFER;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import com.gjeziorski.vertxtrial.domain.Transaction;
+import com.gjeziorski.vertxtrial.domain.TransactionType;
+import com.gjeziorski.vertxtrial.repository.ThreadingMode;
+import com.gjeziorski.vertxtrial.repository.TransactionExecutionMode;
+import com.gjeziorski.vertxtrial.verticles.RepositoryVerticle;
+import io.vertx.core.DeploymentOptions;
+import io.vertx.core.Vertx;
+import io.vertx.core.eventbus.DeliveryOptions;
+import io.vertx.core.json.JsonObject;
+import io.vertx.junit5.VertxExtension;
+import io.vertx.junit5.VertxTestContext;
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+
+// Compares throughput and tail latency of thousands of concurrent transfers executed by reactive pipelines on
+// the JDBC client workers and by blocking JDBC on virtual threads. Virtual threads are skipped before JDK 21.
+// Run with: mvn test -Pbenchmark -Dtest=VirtualThreadsBenchmark
+// With the build on JDK 8, tests can be forked to JDK 21: -Djvm=<JDK 21 home>/bin/java
+@Tag("benchmark")
+@ExtendWith(VertxExtension.class)
+class VirtualThreadsBenchmark {
+
+    private static final String URL = "jdbc:hsqldb:mem:test?shutdown=true";
+    private static final int ACCOUNTS = 1_000;
+    private static final int WARM_UP_TRANSFERS = 10_000;
+    private static final int MEASURED_TRANSFERS = 40_000;
+    private static final int CONCURRENCY = 2_000;
+
+    @ParameterizedTest
+    @MethodSource("modes")
+    void benchmarkConcurrentTransfers(ThreadingMode threading, TransactionExecutionMode mode,
+        String transactionControl, Vertx vertx, VertxTestContext vertxTestContext) throws Throwable {
+        assumeTrue(threading == ThreadingMode.REACTIVE || virtualThreadsAvailable());
+        JsonObject config = new JsonObject().put("database", new JsonObject()
+            .put("threading", threading.name())
+            .put("transaction_control", transactionControl)
+            .put("transaction_execution", new JsonObject().put("mode", mode.name()))
+            .put("write_pool", new JsonObject().put("queue_limit", CONCURRENCY)));
+        vertx.deployVerticle(new RepositoryVerticle(), new DeploymentOptions().setConfig(config),
+            vertxTestContext.succeeding(id -> {
+                try {
+                    createAccounts();
+                } catch (SQLException e) {
+                    vertxTestContext.failNow(e);
+                    return;
+                }
+                LatencyRecorder warmUp = new LatencyRecorder(WARM_UP_TRANSFERS);
+                LatencyRecorder concurrent = new LatencyRecorder(MEASURED_TRANSFERS);
+                runTransfers(vertx, warmUp, WARM_UP_TRANSFERS, () ->
+                    runTransfers(vertx, concurrent, MEASURED_TRANSFERS, () -> {
+                        System.out.println(concurrent.summary(threading + " " + mode + " " + transactionControl
+                            + " concurrency " + CONCURRENCY));
+                        vertxTestContext.completeNow();
+                    }));
+            }));
+        vertxTestContext.awaitCompletion(5, TimeUnit.MINUTES);
+        if (vertxTestContext.failed()) {
+            throw vertxTestContext.causeOfFailure();
+        }
+    }
+
+    private static Object[] modes() {
+        return new Object[]{
+            new Object[]{ThreadingMode.REACTIVE, TransactionExecutionMode.PESSIMISTIC, "LOCKS"},
+            new Object[]{ThreadingMode.VIRTUAL_THREADS, TransactionExecutionMode.PESSIMISTIC, "LOCKS"},
+            new Object[]{ThreadingMode.REACTIVE, TransactionExecutionMode.PROCEDURE, "LOCKS"},
+            new Object[]{ThreadingMode.VIRTUAL_THREADS, TransactionExecutionMode.PROCEDURE, "LOCKS"},
+            new Object[]{ThreadingMode.REACTIVE, TransactionExecutionMode.OPTIMISTIC, "MVCC"},
+            new Object[]{ThreadingMode.VIRTUAL_THREADS, TransactionExecutionMode.OPTIMISTIC, "MVCC"}
+        };
+    }
+
+    private static boolean virtualThreadsAvailable() {
+        try {
+            Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return true;
+        } catch (NoSuchMethodException e) {
+            return false;
+        }
+    }
+
+    private void createAccounts() throws SQLException {
+        try (Connection connection = DriverManager.getConnection(URL);
+            PreparedStatement statement = connection
+                .prepareStatement("INSERT INTO ACCOUNT(ID, BALANCE, NAME, SURNAME) VALUES (?, 1000000, 'John', 'Doe')")) {
+            for (int i = 0; i < ACCOUNTS; i++) {
+                statement.setLong(1, i);
+                statement.executeUpdate();
+            }
+        }
+    }
+
+    private void runTransfers(Vertx vertx, LatencyRecorder recorder, int transfers, Runnable onFinished) {
+        AtomicInteger remaining = new AtomicInteger(transfers);
+        AtomicInteger runningChains = new AtomicInteger(CONCURRENCY);
+        recorder.start();
+        for (int i = 0; i < CONCURRENCY; i++) {
+            runChain(vertx, recorder, remaining, () -> {
+                if (runningChains.decrementAndGet() == 0) {
+                    recorder.finish();
+                    onFinished.run();
+                }
+            });
+        }
+    }
+
+    private void runChain(Vertx vertx, LatencyRecorder recorder, AtomicInteger remaining, Runnable onFinished) {
+        if (remaining.getAndDecrement() <= 0) {
+            onFinished.run();
+            return;
+        }
+        long startedAt = System.nanoTime();
+        vertx.eventBus().request(DATABASE_TRANSACTION_TRANSFER, randomTransfer(),
+            new DeliveryOptions().setSendTimeout(60_000), reply -> {
+                recorder.record(System.nanoTime() - startedAt);
+                if (reply.failed()) {
+                    recorder.recordFailure();
+                }
+                runChain(vertx, recorder, remaining, onFinished);
+            });
+    }
+
+    private String randomTransfer() {
+        long source = ThreadLocalRandom.current().nextInt(ACCOUNTS);
+        long destination = (source + 1 + ThreadLocalRandom.current().nextInt(ACCOUNTS - 1)) % ACCOUNTS;
+        Transaction transaction = Transaction.builder().transactionType(TransactionType.TRANSFER)
+            .amount(BigDecimal.ONE).sourceAccountId(source).destinationAccountId(destination).build();
+        return JsonObject.mapFrom(transaction).toString();
+    }
+
+}
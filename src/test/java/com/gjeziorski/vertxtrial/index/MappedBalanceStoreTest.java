@@ -0,0 +1,38 @@
+package com.gjeziorski.vertxtrial.index;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class MappedBalanceStoreTest {
+
+    private static final int SEGMENT_RECORDS = 16;
+
+    @TempDir
+    Path directory;
+
+    // Ids truncated to int would land on records of other accounts
+    @Test
+    void testShouldLeaveAccountsBeyondIntIdsToDatabase() throws IOException {
+        long beyondInt = (1L << 32) + 3;
+        MappedBalanceStore store = MappedBalanceStore.open(directory.resolve("balances"), SEGMENT_RECORDS);
+        store.put(3, BigDecimal.TEN);
+
+        store.put(beyondInt, BigDecimal.ONE);
+        store.put(Integer.MAX_VALUE, BigDecimal.ONE);
+        MappedBalanceStore.Reconciliation reconciliation = store.reconcile();
+        reconciliation.verify(3, BigDecimal.TEN);
+        reconciliation.verify(beyondInt, BigDecimal.ONE);
+
+        assertThat(reconciliation.finish()).isZero();
+        assertThat(store.get(beyondInt)).isNull();
+        assertThat(store.get(Integer.MAX_VALUE)).isNull();
+        assertThat(store.get(3).getBalance()).isEqualByComparingTo(BigDecimal.TEN);
+        store.close();
+    }
+
+}
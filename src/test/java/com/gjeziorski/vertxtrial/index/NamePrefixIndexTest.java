@@ -0,0 +1,39 @@
+package com.gjeziorski.vertxtrial.index;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.gjeziorski.vertxtrial.domain.AccountOwner;
+import com.gjeziorski.vertxtrial.domain.AccountSearchResult;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+import org.junit.jupiter.api.Test;
+
+class NamePrefixIndexTest {
+
+    @Test
+    void testShouldPageThroughIdsOfAnyValue() {
+        NamePrefixIndex index = new NamePrefixIndex();
+        // 0xD800 - 0xDFFF are surrogate chars, ids around them and above 16 bits have to page like any other
+        List<Long> ids = LongStream.concat(LongStream.rangeClosed(55290, 55300),
+            LongStream.of(0, 7, 57343, 57344, 1L << 32, Long.MAX_VALUE)).sorted().boxed()
+            .collect(Collectors.toList());
+        ids.forEach(id -> index.put(AccountOwner.builder().id(id).name("John").surname("Doe").build()));
+        index.put(AccountOwner.builder().id(1L).name("Jane").surname("Johnson").build());
+
+        List<Long> found = new ArrayList<>();
+        String cursor = null;
+        int pages = 0;
+        do {
+            AccountSearchResult page = index.search("JOHN", 3, cursor);
+            page.getAccounts().forEach(owner -> found.add(owner.getId()));
+            cursor = page.getNextCursor();
+        } while (cursor != null && ++pages <= ids.size());
+
+        List<Long> expected = new ArrayList<>(ids);
+        expected.add(1L);
+        assertThat(found).containsExactlyElementsOf(expected);
+    }
+
+}
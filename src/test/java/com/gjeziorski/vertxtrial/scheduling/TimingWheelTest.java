@@ -0,0 +1,121 @@
+package com.gjeziorski.vertxtrial.scheduling;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+class TimingWheelTest {
+
+    private static final long TICK_MS = 10;
+
+    // 2 levels of 4 buckets cover 16 ticks, later deadlines go to overflow
+    private static final int BITS_PER_LEVEL = 2;
+    private static final int LEVELS = 2;
+
+    @Test
+    void testShouldFireEveryDeadlineInItsTickAcrossCascadesAndOverflow() {
+        long startMs = 1234;
+        TimingWheel<Long> wheel = new TimingWheel<>(TICK_MS, BITS_PER_LEVEL, LEVELS, startMs);
+        Map<Long, Long> firedAt = new HashMap<>();
+        for (long deadlineMs = startMs + 1; deadlineMs <= startMs + 100 * TICK_MS; deadlineMs++) {
+            wheel.schedule(deadlineMs, deadlineMs);
+        }
+        assertThat(wheel.size()).isEqualTo(100 * TICK_MS);
+
+        for (long nowMs = startMs; nowMs <= startMs + 101 * TICK_MS; nowMs += TICK_MS) {
+            long tick = nowMs / TICK_MS;
+            wheel.advance(nowMs, deadlineMs -> firedAt.put(deadlineMs, tick));
+        }
+
+        assertThat(wheel.size()).isZero();
+        assertThat(firedAt).hasSize((int) (100 * TICK_MS));
+        firedAt.forEach((deadlineMs, tick) -> assertThat(tick)
+            .as("tick of deadline %d", deadlineMs).isEqualTo((deadlineMs + TICK_MS - 1) / TICK_MS));
+    }
+
+    @Test
+    void testShouldFireDeadlinesAtOrBeforeNowOnNextTick() {
+        TimingWheel<String> wheel = new TimingWheel<>(TICK_MS, BITS_PER_LEVEL, LEVELS, 0);
+        List<String> fired = new ArrayList<>();
+        wheel.advance(155, fired::add);
+
+        wheel.schedule("past", 20);
+        wheel.schedule("now", 155);
+        wheel.schedule("current tick", 150);
+        wheel.advance(155, fired::add);
+        assertThat(fired).isEmpty();
+
+        wheel.advance(160, fired::add);
+        assertThat(fired).containsExactlyInAnyOrder("past", "now", "current tick");
+        assertThat(wheel.size()).isZero();
+    }
+
+    @Test
+    void testShouldFireFarDeadlinesFromOverflowInTheirTick() {
+        TimingWheel<Long> wheel = new TimingWheel<>(TICK_MS, BITS_PER_LEVEL, LEVELS, 0);
+        List<Long> fired = new ArrayList<>();
+        long farMs = 1000 * TICK_MS + 5;
+        wheel.schedule(farMs, farMs);
+
+        wheel.advance(1000 * TICK_MS, fired::add);
+        assertThat(fired).isEmpty();
+        assertThat(wheel.size()).isEqualTo(1);
+
+        wheel.advance(1001 * TICK_MS, fired::add);
+        assertThat(fired).containsExactly(farMs);
+    }
+
+    // Items are their expected tick, the wheel is advanced one tick at a time so the firing tick is known
+    @Test
+    void testShouldFireInTheRightTickWhenSchedulingBetweenTicks() {
+        Random random = new Random(42);
+        long nowMs = 987;
+        TimingWheel<Long> wheel = new TimingWheel<>(TICK_MS, BITS_PER_LEVEL, LEVELS, nowMs);
+        List<Long> fired = new ArrayList<>();
+        int scheduled = 0;
+        while (nowMs < 24_000) {
+            if (nowMs < 20_000) {
+                for (int i = random.nextInt(5); i > 0; i--) {
+                    long deadlineMs = nowMs - 50 + random.nextInt(3000);
+                    wheel.schedule(Math.max((deadlineMs + TICK_MS - 1) / TICK_MS, nowMs / TICK_MS + 1), deadlineMs);
+                    scheduled++;
+                }
+            }
+            long nextMs = nowMs + random.nextInt(40);
+            for (long tick = nowMs / TICK_MS + 1; tick <= nextMs / TICK_MS; tick++) {
+                long currentTick = tick;
+                wheel.advance(tick * TICK_MS, expectedTick -> {
+                    assertThat(expectedTick).isEqualTo(currentTick);
+                    fired.add(expectedTick);
+                });
+            }
+            wheel.advance(nextMs, expectedTick -> fired.add(-1L));
+            nowMs = nextMs;
+        }
+
+        assertThat(fired).hasSize(scheduled).doesNotContain(-1L);
+        assertThat(wheel.size()).isZero();
+    }
+
+    @Test
+    void testShouldFireInTickOrderOnLargeAdvance() {
+        Random random = new Random(7);
+        TimingWheel<Long> wheel = new TimingWheel<>(TICK_MS, BITS_PER_LEVEL, LEVELS, 0);
+        for (int i = 0; i < 1000; i++) {
+            long deadlineMs = random.nextInt(5000);
+            wheel.schedule(Math.max((deadlineMs + TICK_MS - 1) / TICK_MS, 1), deadlineMs);
+        }
+        List<Long> fired = new ArrayList<>();
+
+        wheel.advance(5000, fired::add);
+
+        assertThat(fired).hasSize(1000).isSorted();
+        assertThat(wheel.size()).isZero();
+    }
+
+}
@@ -0,0 +1,301 @@
+package com.gjeziorski.vertxtrial.stress;
+
+import static com.gjeziorski.vertxtrial.common.EventBusAddresses.DATABASE_TRANSACTION_DEPOSIT;
+import static com.gjeziorski.vertxtrial.common.EventBusAddresses.DATABASE_TRANSACTION_TRANSFER;
+import static com.gjeziorski.vertxtrial.common.EventBusAddresses.DATABASE_TRANSACTION_WITHDRAW;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.gjeziorski.vertxtrial.common.ErrorCodes;
+import com.gjeziorski.vertxtrial.domain.Transaction;
+import com.gjeziorski.vertxtrial.domain.TransactionType;
+import com.gjeziorski.vertxtrial.repository.TransactionExecutionMode;
+import com.gjeziorski.vertxtrial.verticles.RepositoryVerticle;
+import io.vertx.core.DeploymentOptions;
+import io.vertx.core.Vertx;
+import io.vertx.core.eventbus.DeliveryOptions;
+import io.vertx.core.eventbus.ReplyException;
+import io.vertx.core.eventbus.ReplyFailure;
+import io.vertx.core.json.JsonObject;
+import io.vertx.junit5.VertxExtension;
+import io.vertx.junit5.VertxTestContext;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+
+// Sends thousands of concurrent deposits, withdrawals and transfers straight to the repository addresses for every
+// mix and execution mode, then checks that money was conserved, that no balance is negative, that every balance
+// equals its initial value plus its transactions (no lost updates) and that no request hung or failed with
+// a technical error (no deadlocks). Throughput has to stay within stress.tolerance of stress-baseline.properties.
+// Run with: mvn test -Pstress
+// Record a new baseline with: mvn test -Pstress -Dstress.record=true, it's written to target/stress-baseline.properties
+@Tag("stress")
+@ExtendWith(VertxExtension.class)
+class TransactionStressTest {
+
+    private static final String URL = "jdbc:hsqldb:mem:test?shutdown=true";
+    private static final String BASELINE = "/stress-baseline.properties";
+    private static final int ACCOUNTS = 50;
+    private static final long INITIAL_BALANCE = 1_000;
+    private static final int MAX_AMOUNT = 50;
+    private static final int OPERATIONS = Integer.getInteger("stress.operations", 10_000);
+    private static final int CONCURRENCY = Integer.getInteger("stress.concurrency", 32);
+    private static final double TOLERANCE = Double.parseDouble(System.getProperty("stress.tolerance", "0.5"));
+    private static final boolean RECORD = Boolean.getBoolean("stress.record");
+    private static final long REQUEST_TIMEOUT_MS = 30_000;
+    // Optimistic transactions on a hot pair conflict all the time, with enough retries every one of them commits
+    private static final int MAX_RETRIES = 100;
+    private static final long MAX_RETRY_BACKOFF_MS = 50;
+    private static final Properties MEASURED = new Properties();
+
+    enum Mix {
+        // Deposits, withdrawals and transfers between random accounts
+        RANDOM,
+        // Transfers both ways between the same two accounts
+        HOT_PAIR,
+        // Transfers around a cycle A -> B -> C -> A
+        CYCLIC
+    }
+
+    @ParameterizedTest(name = "{0} {1} {2}")
+    @MethodSource("scenarios")
+    void stress(Mix mix, TransactionExecutionMode mode, String transactionControl, Vertx vertx,
+        VertxTestContext vertxTestContext) throws Throwable {
+        JsonObject config = new JsonObject().put("database", new JsonObject()
+            .put("transaction_control", transactionControl)
+            .put("transaction_execution", new JsonObject().put("mode", mode.name())
+                .put("max_retries", MAX_RETRIES).put("max_retry_backoff_ms", MAX_RETRY_BACKOFF_MS)));
+        Outcome outcome = new Outcome();
+        vertx.deployVerticle(new RepositoryVerticle(), new DeploymentOptions().setConfig(config),
+            vertxTestContext.succeeding(id -> {
+                try {
+                    createAccounts();
+                } catch (SQLException e) {
+                    vertxTestContext.failNow(e);
+                    return;
+                }
+                run(vertx, mix, outcome, vertxTestContext::completeNow);
+            }));
+        boolean completed = vertxTestContext.awaitCompletion(5, TimeUnit.MINUTES);
+        if (vertxTestContext.failed()) {
+            throw vertxTestContext.causeOfFailure();
+        }
+
+        String name = mix + "." + mode + "." + transactionControl;
+        double throughput = outcome.finished.get() / ((outcome.finishedAt - outcome.startedAt) / 1_000_000_000.0);
+        System.out.println(String.format("%-30s ops=%6d committed=%6d insufficient=%5d failed=%3d timed_out=%3d "
+                + "throughput=%8.1f/s", name, outcome.finished.get(), outcome.committed.get(),
+            outcome.insufficientFunds.get(), outcome.failed.get(), outcome.timedOut.get(), throughput));
+        outcome.failureCodes.forEach((code, count) -> System.out.println("  failure code " + code + ": " + count));
+
+        assertThat(completed).as("all requests completed, no deadlock").isTrue();
+        assertThat(outcome.timedOut.get()).as("requests which got no reply").isZero();
+        assertThat(outcome.failed.get()).as("requests failed with a technical error").isZero();
+        assertInvariants(outcome);
+
+        MEASURED.setProperty(name, String.format("%.0f", throughput));
+        if (!RECORD) {
+            double baseline = baseline(name);
+            assertThat(throughput).as("throughput of " + name + " against baseline " + baseline)
+                .isGreaterThanOrEqualTo(baseline * (1 - TOLERANCE));
+        }
+    }
+
+    @AfterAll
+    static void recordBaseline() throws IOException {
+        if (RECORD) {
+            try (OutputStream output = new FileOutputStream("target" + BASELINE)) {
+                MEASURED.store(output, "Throughput in operations per second, " + OPERATIONS + " operations, "
+                    + CONCURRENCY + " concurrent");
+            }
+        }
+    }
+
+    private static Object[] scenarios() {
+        Object[][] modes = {
+            {TransactionExecutionMode.PESSIMISTIC, "LOCKS"},
+            {TransactionExecutionMode.PROCEDURE, "LOCKS"},
+            {TransactionExecutionMode.OPTIMISTIC, "MVCC"}
+        };
+        Object[] scenarios = new Object[Mix.values().length * modes.length];
+        int i = 0;
+        for (Mix mix : Mix.values()) {
+            for (Object[] mode : modes) {
+                scenarios[i++] = new Object[]{mix, mode[0], mode[1]};
+            }
+        }
+        return scenarios;
+    }
+
+    private void run(Vertx vertx, Mix mix, Outcome outcome, Runnable onFinished) {
+        AtomicInteger remaining = new AtomicInteger(OPERATIONS);
+        AtomicInteger runningChains = new AtomicInteger(CONCURRENCY);
+        outcome.startedAt = System.nanoTime();
+        for (int i = 0; i < CONCURRENCY; i++) {
+            runChain(vertx, mix, outcome, remaining, () -> {
+                if (runningChains.decrementAndGet() == 0) {
+                    outcome.finishedAt = System.nanoTime();
+                    onFinished.run();
+                }
+            });
+        }
+    }
+
+    private void runChain(Vertx vertx, Mix mix, Outcome outcome, AtomicInteger remaining, Runnable onFinished) {
+        if (remaining.getAndDecrement() <= 0) {
+            onFinished.run();
+            return;
+        }
+        Transaction transaction = next(mix);
+        vertx.eventBus().request(address(transaction), JsonObject.mapFrom(transaction).toString(),
+            new DeliveryOptions().setSendTimeout(REQUEST_TIMEOUT_MS), reply -> {
+                outcome.finished.incrementAndGet();
+                if (reply.succeeded()) {
+                    outcome.committed(transaction);
+                } else {
+                    ReplyException cause = (ReplyException) reply.cause();
+                    if (cause.failureType() == ReplyFailure.TIMEOUT) {
+                        outcome.timedOut.incrementAndGet();
+                    } else if (cause.failureCode() == ErrorCodes.INSUFFICIENT_FUNDS) {
+                        outcome.insufficientFunds.incrementAndGet();
+                    } else {
+                        outcome.failed.incrementAndGet();
+                        outcome.failureCodes.computeIfAbsent(cause.failureCode(), code -> new AtomicLong())
+                            .incrementAndGet();
+                    }
+                }
+                runChain(vertx, mix, outcome, remaining, onFinished);
+            });
+    }
+
+    private Transaction next(Mix mix) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        BigDecimal amount = BigDecimal.valueOf(1 + random.nextInt(MAX_AMOUNT));
+        switch (mix) {
+            case HOT_PAIR:
+                long source = random.nextInt(2);
+                return transfer(source, 1 - source, amount);
+            case CYCLIC:
+                long from = random.nextInt(3);
+                return transfer(from, (from + 1) % 3, amount);
+            default:
+                long account = random.nextInt(ACCOUNTS);
+                int kind = random.nextInt(10);
+                if (kind < 2) {
+                    return Transaction.builder().transactionType(TransactionType.DEPOSIT).amount(amount)
+                        .destinationAccountId(account).build();
+                }
+                if (kind < 4) {
+                    return Transaction.builder().transactionType(TransactionType.WITHDRAW).amount(amount)
+                        .destinationAccountId(account).build();
+                }
+                return transfer(account, (account + 1 + random.nextInt(ACCOUNTS - 1)) % ACCOUNTS, amount);
+        }
+    }
+
+    private Transaction transfer(long source, long destination, BigDecimal amount) {
+        return Transaction.builder().transactionType(TransactionType.TRANSFER).amount(amount)
+            .sourceAccountId(source).destinationAccountId(destination).build();
+    }
+
+    private String address(Transaction transaction) {
+        switch (transaction.getTransactionType()) {
+            case DEPOSIT:
+                return DATABASE_TRANSACTION_DEPOSIT;
+            case WITHDRAW:
+                return DATABASE_TRANSACTION_WITHDRAW;
+            default:
+                return DATABASE_TRANSACTION_TRANSFER;
+        }
+    }
+
+    private void createAccounts() throws SQLException {
+        try (Connection connection = DriverManager.getConnection(URL);
+            PreparedStatement statement = connection.prepareStatement(
+                "INSERT INTO ACCOUNT(ID, BALANCE, NAME, SURNAME) VALUES (?, " + INITIAL_BALANCE + ", 'John', 'Doe')")) {
+            for (int i = 0; i < ACCOUNTS; i++) {
+                statement.setLong(1, i);
+                statement.executeUpdate();
+            }
+        }
+    }
+
+    private void assertInvariants(Outcome outcome) throws SQLException {
+        try (Connection connection = DriverManager.getConnection(URL);
+            Statement statement = connection.createStatement()) {
+            BigDecimal expectedTotal = BigDecimal.valueOf(ACCOUNTS * INITIAL_BALANCE + outcome.deposited.get()
+                - outcome.withdrawn.get());
+            assertThat(queryDecimal(statement, "SELECT SUM(BALANCE) FROM ACCOUNT")
+                .add(queryDecimal(statement, "SELECT COALESCE(SUM(BALANCE), 0) FROM ACCOUNT_BALANCE_SLOT")))
+                .as("total money").isEqualByComparingTo(expectedTotal);
+            assertThat(queryDecimal(statement, "SELECT COUNT(*) FROM ACCOUNT WHERE BALANCE < 0"))
+                .as("accounts with negative balance").isZero();
+            assertThat(queryDecimal(statement, "SELECT COUNT(*) FROM ACCOUNT A WHERE A.BALANCE <> " + INITIAL_BALANCE
+                + " + COALESCE((SELECT SUM(CASE WHEN T.TRANSACTION_TYPE = 'WITHDRAW' THEN -T.AMOUNT ELSE T.AMOUNT END) "
+                + "FROM TRANSACTION T WHERE T.DESTINATION_ACCOUNT_ID = A.ID), 0) "
+                + "- COALESCE((SELECT SUM(T.AMOUNT) FROM TRANSACTION T WHERE T.SOURCE_ACCOUNT_ID = A.ID), 0)"))
+                .as("accounts whose balance doesn't match their transactions").isZero();
+            assertThat(queryDecimal(statement, "SELECT COUNT(*) FROM TRANSACTION").longValue())
+                .as("stored transactions").isEqualTo(outcome.committed.get());
+        }
+    }
+
+    private BigDecimal queryDecimal(Statement statement, String sql) throws SQLException {
+        try (ResultSet resultSet = statement.executeQuery(sql)) {
+            resultSet.next();
+            return resultSet.getBigDecimal(1);
+        }
+    }
+
+    private double baseline(String name) throws IOException {
+        Properties baseline = new Properties();
+        try (InputStream input = getClass().getResourceAsStream(BASELINE)) {
+            baseline.load(input);
+        }
+        assertThat(baseline.getProperty(name)).as("baseline of " + name).isNotNull();
+        return Double.parseDouble(baseline.getProperty(name));
+    }
+
+    private static class Outcome {
+
+        private final AtomicLong finished = new AtomicLong();
+        private final AtomicLong committed = new AtomicLong();
+        private final AtomicLong insufficientFunds = new AtomicLong();
+        private final AtomicLong failed = new AtomicLong();
+        private final AtomicLong timedOut = new AtomicLong();
+        private final AtomicLong deposited = new AtomicLong();
+        private final AtomicLong withdrawn = new AtomicLong();
+        private final ConcurrentHashMap<Integer, AtomicLong> failureCodes = new ConcurrentHashMap<>();
+        private volatile long startedAt;
+        private volatile long finishedAt;
+
+        private void committed(Transaction transaction) {
+            committed.incrementAndGet();
+            if (transaction.getTransactionType() == TransactionType.DEPOSIT) {
+                deposited.addAndGet(transaction.getAmount().longValue());
+            } else if (transaction.getTransactionType() == TransactionType.WITHDRAW) {
+                withdrawn.addAndGet(transaction.getAmount().longValue());
+            }
+        }
+
+    }
+
+}
@@ -11,10 +11,12 @@ import com.gjeziorski.vertxtrial.domain.Account;
 import com.gjeziorski.vertxtrial.domain.FetchTransactionsRequest;
 import com.gjeziorski.vertxtrial.domain.Transaction;
 import com.gjeziorski.vertxtrial.domain.TransactionType;
+import com.gjeziorski.vertxtrial.serialization.Payload;
 import io.vertx.core.Vertx;
 import io.vertx.core.json.JsonObject;
 import io.vertx.junit5.VertxExtension;
 import io.vertx.junit5.VertxTestContext;
+import io.vertx.reactivex.core.MultiMap;
 import io.vertx.reactivex.core.eventbus.Message;
 import java.io.IOException;
 import java.math.BigDecimal;
@@ -54,6 +56,7 @@ class RepositoryVerticleTest {
     @Test
     void testShouldFetchListOfAccounts(VertxTestContext vertxTestContext) {
         Message<Object> message = mock(Message.class);
+        when(message.headers()).thenReturn(MultiMap.caseInsensitiveMultiMap());
         repositoryVerticle.listAccounts(message).subscribe(
             result -> vertxTestContext.verify(
                 () -> {
@@ -72,6 +75,7 @@ class RepositoryVerticleTest {
         when(transferMessage.body()).thenReturn(JsonObject.mapFrom(transferTransaction).toString());
 
         Message<Object> transactionsMessage = mock(Message.class);
+        when(transactionsMessage.headers()).thenReturn(MultiMap.caseInsensitiveMultiMap());
         FetchTransactionsRequest fetchTransactionsRequest = FetchTransactionsRequest.builder().accountId(0L).build();
         when(transactionsMessage.body()).thenReturn(JsonObject.mapFrom(fetchTransactionsRequest).toString());
 
@@ -89,6 +93,7 @@ class RepositoryVerticleTest {
         Message<Object> depositMessage = mock(Message.class);
         Message<Object> withdrawMessage = mock(Message.class);
         Message<Object> transactionsMessage = mock(Message.class);
+        when(transactionsMessage.headers()).thenReturn(MultiMap.caseInsensitiveMultiMap());
         Transaction depositTransaction = Transaction.builder().transactionType(TransactionType.DEPOSIT)
             .amount(new BigDecimal(50)).destinationAccountId(0L).build();
         Transaction withdrawTransaction = Transaction.builder().transactionType(TransactionType.WITHDRAW)
@@ -115,6 +120,7 @@ class RepositoryVerticleTest {
         Message<Object> depositMessage = mock(Message.class);
         Message<Object> withdrawMessage = mock(Message.class);
         Message<Object> transactionsMessage = mock(Message.class);
+        when(transactionsMessage.headers()).thenReturn(MultiMap.caseInsensitiveMultiMap());
         Transaction depositTransaction = Transaction.builder().transactionType(TransactionType.DEPOSIT)
             .amount(new BigDecimal(50)).destinationAccountId(0L).build();
         Transaction withdrawTransaction = Transaction.builder().transactionType(TransactionType.WITHDRAW)
@@ -143,8 +149,10 @@ class RepositoryVerticleTest {
         }
     }
 
-    private static List<Transaction> getTransactions(final String result) throws IOException {
-        final List<Transaction> transactions = ObjectMapperProvider.getObjectMapper().readValue(result, List.class);
+    private static List<Transaction> getTransactions(final Payload result) throws IOException {
+        final List<Transaction> transactions = ObjectMapperProvider.getObjectMapper()
+            .readValue(result.toString(), List.class);
+        result.release();
         return transactions;
     }
 